@@ -30,7 +30,9 @@ import org.mozilla.geckoview.CrashReporter;
 import org.mozilla.geckoview.GeckoRuntime;
 import org.mozilla.geckoview.GeckoSession;
 import org.mozilla.vrbrowser.audio.AudioEngine;
+import org.mozilla.vrbrowser.audio.AudioUpdateScheduler;
 import org.mozilla.vrbrowser.audio.VRAudioTheme;
+import org.mozilla.vrbrowser.browser.EngineBenchmark;
 import org.mozilla.vrbrowser.browser.PermissionDelegate;
 import org.mozilla.vrbrowser.browser.SessionStore;
 import org.mozilla.vrbrowser.browser.SettingsStore;
@@ -45,12 +47,15 @@ import org.mozilla.vrbrowser.ui.widgets.CrashDialogWidget;
 import org.mozilla.vrbrowser.ui.widgets.KeyboardWidget;
 import org.mozilla.vrbrowser.ui.widgets.NavigationBarWidget;
 import org.mozilla.vrbrowser.ui.widgets.RootWidget;
+import org.mozilla.vrbrowser.ui.widgets.TextureResolutionPolicy;
 import org.mozilla.vrbrowser.ui.widgets.TopBarWidget;
 import org.mozilla.vrbrowser.ui.widgets.TrayWidget;
 import org.mozilla.vrbrowser.ui.widgets.UIWidget;
 import org.mozilla.vrbrowser.ui.widgets.Widget;
+import org.mozilla.vrbrowser.ui.widgets.WidgetAtlas;
 import org.mozilla.vrbrowser.ui.widgets.WidgetManagerDelegate;
 import org.mozilla.vrbrowser.ui.widgets.WidgetPlacement;
+import org.mozilla.vrbrowser.utils.AssetWarmupService;
 
 import java.io.IOException;
 import java.net.URISyntaxException;
@@ -92,15 +97,18 @@ public class VRBrowserActivity extends PlatformActivity implements WidgetManager
     static final int SwipeDelay = 1000; // milliseconds
 
     static final String LOGTAG = "VRB";
+    static final String EXTRA_ENGINE_BENCHMARK = "engine_benchmark";
     HashMap<Integer, Widget> mWidgets;
     private int mWidgetHandleIndex = 1;
     AudioEngine mAudioEngine;
     OffscreenDisplay mOffscreenDisplay;
     FrameLayout mWidgetContainer;
+    WidgetAtlas mWidgetAtlas;
+    TextureResolutionPolicy mTextureResolution;
     int mLastGesture;
     SwipeRunnable mLastRunnable;
     Handler mHandler = new Handler();
-    Runnable mAudioUpdateRunnable;
+    AudioUpdateScheduler mAudioUpdateScheduler;
     BrowserWidget mBrowserWidget;
     RootWidget mRootWidget;
     KeyboardWidget mKeyboard;
@@ -149,6 +157,15 @@ public class VRBrowserActivity extends PlatformActivity implements WidgetManager
         mCurrentBrightness = Pair.create(null, 1.0f);
 
         mWidgets = new HashMap<>();
+        mWidgetAtlas = new WidgetAtlas(this);
+        mTextureResolution = new TextureResolutionPolicy();
+        mTextureResolution.setDelegate((aHandle, aScale) -> {
+            Widget widget = mWidgets.get(aHandle);
+            if (widget instanceof UIWidget) {
+                setTextureScale((UIWidget) widget, aScale);
+                queueRunnable(() -> updateWidgetNative(widget.getHandle(), widget.getPlacement()));
+            }
+        });
         mWidgetContainer = new FrameLayout(this);
         mWidgetContainer.getViewTreeObserver().addOnGlobalFocusChangeListener((oldFocus, newFocus) -> {
             Log.d(LOGTAG, "======> OnGlobalFocusChangeListener: old(" + oldFocus + ") new(" + newFocus + ")");
@@ -160,11 +177,7 @@ public class VRBrowserActivity extends PlatformActivity implements WidgetManager
         mPermissionDelegate = new PermissionDelegate(this, this);
 
         mAudioEngine = new AudioEngine(this, new VRAudioTheme());
-        mAudioEngine.preloadAsync(() -> {
-            Log.i(LOGTAG, "AudioEngine sounds preloaded!");
-            // mAudioEngine.playSound(AudioEngine.Sound.AMBIENT, true);
-        });
-        mAudioUpdateRunnable = () -> mAudioEngine.update();
+        mAudioUpdateScheduler = new AudioUpdateScheduler(mAudioEngine);
 
         loadFromIntent(getIntent());
         queueRunnable(() -> createOffscreenDisplay());
@@ -183,6 +196,7 @@ public class VRBrowserActivity extends PlatformActivity implements WidgetManager
         }
         int currentSession = SessionStore.get().getCurrentSessionId();
         mBrowserWidget = new BrowserWidget(this, currentSession);
+        mBrowserWidget.setRefreshRate(getWindowManager().getDefaultDisplay().getRefreshRate());
         mPermissionDelegate.setParentWidgetHandle(mBrowserWidget.getHandle());
 
         // Create Browser navigation widget
@@ -211,6 +225,38 @@ public class VRBrowserActivity extends PlatformActivity implements WidgetManager
         addWidgets(Arrays.<Widget>asList(mRootWidget, mBrowserWidget, mNavigationBar, mKeyboard, mTray));
     }
 
+    // Warm up the assets loaded at startup in the order they become visible. Assets already
+    // loaded are skipped, so this is called again on resume to finish work cancelled on pause.
+    protected void warmupAssets() {
+        AssetWarmupService warmup = AssetWarmupService.get();
+        String environment = SettingsStore.getInstance(this).getEnvironment();
+        for (String face: new String[] { "posx", "negx", "posy", "negy", "posz", "negz" }) {
+            warmup.warmupAsset(getAssets(), "cubemap/" + environment + "/" + face + ".jpg", AssetWarmupService.Priority.VISIBLE);
+        }
+
+        mAudioEngine.preloadAsync(() -> {
+            Log.i(LOGTAG, "AudioEngine sounds preloaded!");
+            // mAudioEngine.playSound(AudioEngine.Sound.AMBIENT, true);
+        });
+
+        try {
+            String[] assets = getAssets().list("");
+            if (assets != null) {
+                for (String asset: assets) {
+                    if (asset.startsWith("vr_controller_")) {
+                        warmup.warmupAsset(getAssets(), asset, AssetWarmupService.Priority.HIGH);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            Log.e(LOGTAG, "Unable to list controller assets: " + e.toString());
+        }
+
+        for (String asset: new String[] { "spinners_v3.obj", "spinners_v3.mtl", "spinners_v3.jpg", "webvr_spinner.png" }) {
+            warmup.warmupAsset(getAssets(), asset, AssetWarmupService.Priority.LOW);
+        }
+    }
+
     @Override
     protected void onStart() {
         super.onStart();
@@ -230,6 +276,8 @@ public class VRBrowserActivity extends PlatformActivity implements WidgetManager
             // Also prevents a deadlock in onDestroy when the BrowserWidget is released.
             exitImmersiveSync();
         }
+        AssetWarmupService.get().cancelPending();
+        mAudioUpdateScheduler.stop();
         mAudioEngine.pauseEngine();
         SessionStore.get().setActive(false);
         super.onPause();
@@ -239,9 +287,17 @@ public class VRBrowserActivity extends PlatformActivity implements WidgetManager
     protected void onResume() {
         SessionStore.get().setActive(true);
         mAudioEngine.resumeEngine();
+        mAudioUpdateScheduler.start();
+        warmupAssets();
         super.onResume();
     }
 
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        SessionStore.get().onTrimMemory(level);
+    }
+
     @Override
     protected void onDestroy() {
         // Unregister the crash service broadcast receiver
@@ -254,6 +310,9 @@ public class VRBrowserActivity extends PlatformActivity implements WidgetManager
         if (mOffscreenDisplay != null) {
             mOffscreenDisplay.release();
         }
+        if (mAudioUpdateScheduler != null) {
+            mAudioUpdateScheduler.release();
+        }
         if (mAudioEngine != null) {
             mAudioEngine.release();
         }
@@ -300,6 +359,12 @@ public class VRBrowserActivity extends PlatformActivity implements WidgetManager
             Log.d(LOGTAG, "Loading URI from intent: " + uri.toString());
             SessionStore.get().loadUri(uri.toString());
         }
+
+        // Comma separated list of pages, e.g. adb shell am start --es engine_benchmark "url1,url2"
+        String benchmarkUrls = intent.getStringExtra(EXTRA_ENGINE_BENCHMARK);
+        if (benchmarkUrls != null) {
+            new EngineBenchmark(Arrays.asList(benchmarkUrls.split(","))).start();
+        }
     }
 
     private void handleCrashIntent(final Intent intent) {
@@ -393,7 +458,8 @@ public class VRBrowserActivity extends PlatformActivity implements WidgetManager
             }
             if (aTexture == null) {
                 Log.d(LOGTAG, "Widget: " + aHandle + " (" + aWidth + "x" + aHeight + ") received a null surface texture.");
-            } else {
+            } else if (!widget.getPlacement().isInAtlas()) {
+                // The widget atlas tracks the first draw of the widgets sharing its texture
                 aTexture.setOnFrameAvailableListener(new SurfaceTexture.OnFrameAvailableListener() {
                     @Override
                     public void onFrameAvailable(SurfaceTexture surfaceTexture) {
@@ -481,12 +547,20 @@ public class VRBrowserActivity extends PlatformActivity implements WidgetManager
 
     @Keep
     @SuppressWarnings({"UnusedDeclaration"})
-    void handleAudioPose(float qx, float qy, float qz, float qw, float px, float py, float pz) {
-        mAudioEngine.setPose(qx, qy, qz, qw, px, py, pz);
+    void handleFrameTime(final float aAverage, final float aMax) {
+        runOnUiThread(() -> {
+            if (mBrowserWidget != null) {
+                mBrowserWidget.handleFrameTime(aAverage, aMax);
+            }
+        });
+    }
 
-        // https://developers.google.com/vr/reference/android/com/google/vr/sdk/audio/GvrAudioEngine.html#resume()
-        // The update method must be called from the main thread at a regular rate.
-        runOnUiThread(mAudioUpdateRunnable);
+    @Keep
+    @SuppressWarnings({"UnusedDeclaration"})
+    void handleAudioPose(float qx, float qy, float qz, float qw, float px, float py, float pz) {
+        // The pose is applied and GvrAudioEngine.update() called at a regular rate
+        // from the main thread, see AudioUpdateScheduler.
+        mAudioUpdateScheduler.setPose(qx, qy, qz, qw, px, py, pz);
     }
 
     @Keep
@@ -619,6 +693,11 @@ public class VRBrowserActivity extends PlatformActivity implements WidgetManager
             mWidgets.put(widget.getHandle(), widget);
             ((View)widget).setVisibility(widget.getPlacement().visible ? View.VISIBLE : View.GONE);
         }
+        for (Widget widget: aWidgets) {
+            if (widget instanceof UIWidget) {
+                updateTextureScale((UIWidget) widget);
+            }
+        }
         queueRunnable(() -> {
             for (Widget widget: aWidgets) {
                 addWidgetNative(widget.getHandle(), widget.getPlacement());
@@ -631,11 +710,20 @@ public class VRBrowserActivity extends PlatformActivity implements WidgetManager
     public void addWidget(final Widget aWidget) {
         mWidgets.put(aWidget.getHandle(), aWidget);
         ((View)aWidget).setVisibility(aWidget.getPlacement().visible ? View.VISIBLE : View.GONE);
+        if (aWidget instanceof UIWidget) {
+            updateTextureScale((UIWidget) aWidget);
+        }
         queueRunnable(() -> addWidgetNative(aWidget.getHandle(), aWidget.getPlacement()));
     }
 
     @Override
     public void updateWidget(final Widget aWidget) {
+        if (aWidget instanceof UIWidget) {
+            updateTextureScale((UIWidget) aWidget);
+        }
+        if (aWidget.getPlacement().isInAtlas()) {
+            mWidgetAtlas.resize(aWidget);
+        }
         queueRunnable(() -> updateWidgetNative(aWidget.getHandle(), aWidget.getPlacement()));
 
         final int textureWidth = aWidget.getPlacement().textureWidth();
@@ -665,9 +753,37 @@ public class VRBrowserActivity extends PlatformActivity implements WidgetManager
 
     }
 
+    private void updateTextureScale(UIWidget aWidget) {
+        WidgetPlacement placement = aWidget.getPlacement();
+        // Widgets are placed relative to their parents, which are in front of the user
+        float z = 0.0f;
+        Widget widget = aWidget;
+        for (int i = 0; widget != null && i <= mWidgets.size(); i++) {
+            z += widget.getPlacement().translationZ;
+            widget = mWidgets.get(widget.getPlacement().parentHandle);
+        }
+        float distance = Math.abs(WidgetPlacement.metersFromUnit(z));
+        float scale = mTextureResolution.update(aWidget.getHandle(), placement.worldWidth(), distance,
+                placement.textureWidth(), placement.textureHeight());
+        setTextureScale(aWidget, scale);
+    }
+
+    private void setTextureScale(UIWidget aWidget, float aScale) {
+        WidgetPlacement placement = aWidget.getPlacement();
+        if (aScale != placement.textureScale) {
+            Log.d(LOGTAG, "Widget " + aWidget.getHandle() + " texture scale " + placement.textureScale + " -> " + aScale +
+                    ", widget textures use " + (mTextureResolution.getMemoryUsage() / 1024) + "KB");
+            aWidget.setTextureScale(aScale);
+            if (placement.isInAtlas()) {
+                mWidgetAtlas.resize(aWidget);
+            }
+        }
+    }
+
     @Override
     public void removeWidget(final Widget aWidget) {
         mWidgets.remove(aWidget.getHandle());
+        mTextureResolution.remove(aWidget.getHandle());
         mWidgetContainer.removeView((View) aWidget);
         aWidget.setFirstDraw(false);
         queueRunnable(() -> removeWidgetNative(aWidget.getHandle()));
@@ -834,6 +950,11 @@ public class VRBrowserActivity extends PlatformActivity implements WidgetManager
                 aCallback);
     }
 
+    @Override
+    public WidgetAtlas getWidgetAtlas() {
+        return mWidgetAtlas;
+    }
+
     @Override
     public void onRequestPermissionsResult(int requestCode, String[] permissions, int[] grantResults) {
         super.onRequestPermissionsResult(requestCode, permissions, grantResults);
@@ -5,21 +5,40 @@
 
 package org.mozilla.vrbrowser.audio;
 
-import android.app.Activity;
 import android.content.Context;
+import android.os.SystemClock;
 import android.util.Log;
 
 import com.google.vr.sdk.audio.GvrAudioEngine;
+
+import org.mozilla.vrbrowser.utils.AssetWarmupService;
+import org.mozilla.vrbrowser.utils.LatencyHistogram;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class AudioEngine {
     private Context mContext;
     private GvrAudioEngine mEngine;
     private AudioTheme mTheme;
     private ConcurrentHashMap<Sound, Integer> mSourceIds;
+    private Set<String> mLoadedFiles;
+    private ArrayDeque<Voice> mVoices;
+    private LatencyHistogram mCreateLatency;
+    private int mStolenVoices;
     private float mMasterVolume = 1.0f;
     private static ConcurrentHashMap<Context, AudioEngine> mEngines = new ConcurrentHashMap<>();
     private static final String LOGTAG = "VRB";
+    // Global cap of simultaneously alive sources. When reached the oldest voice is stolen.
+    private static final int MAX_VOICES = 8;
+    // Per sound cap, so a burst of keyboard clicks can't starve the rest of the sounds.
+    private static final int MAX_VOICES_PER_SOUND = 3;
+    private static final int CREATE_LATENCY_BUCKET_US = 50;
+    private static final int CREATE_LATENCY_BUCKETS = 100;
 
     public enum SoundType {
         STEREO,
@@ -51,6 +70,16 @@ public class AudioEngine {
         String getPath(Sound aSound);
     }
 
+    private static class Voice {
+        Sound mSound;
+        int mSourceId;
+
+        Voice(Sound aSound, int aSourceId) {
+            mSound = aSound;
+            mSourceId = aSourceId;
+        }
+    }
+
     public static AudioEngine fromContext(Context aContext) {
         return mEngines.get(aContext);
     }
@@ -60,10 +89,52 @@ public class AudioEngine {
         mTheme = aTheme;
         mEngine = new GvrAudioEngine(aContext, GvrAudioEngine.RenderingMode.BINAURAL_HIGH_QUALITY);
         mSourceIds = new ConcurrentHashMap<>();
+        mLoadedFiles = ConcurrentHashMap.newKeySet();
+        mVoices = new ArrayDeque<>();
+        mCreateLatency = new LatencyHistogram("AudioEngine source creation (us)", CREATE_LATENCY_BUCKET_US, CREATE_LATENCY_BUCKETS);
         mEngines.put(aContext, this);
     }
 
     public void preload() {
+        for (String path: getPreloadPaths()) {
+            preloadFile(path);
+        }
+    }
+
+    public void preloadAsync() {
+        preloadAsync(null);
+    }
+
+    // Perform preloading in the asset warmup pool in order to avoid blocking the main thread.
+    // Each file is a separate task so they load in parallel and report their own load time.
+    // The callback runs on the main thread once all the sounds have been tried.
+    public void preloadAsync(final Runnable aCallback) {
+        ArrayList<String> paths = getPreloadPaths();
+        if (paths.isEmpty()) {
+            if (aCallback != null) {
+                aCallback.run();
+            }
+            return;
+        }
+        AtomicInteger remaining = new AtomicInteger(paths.size());
+        for (String path: paths) {
+            AssetWarmupService.get().submit(getWarmupName(path), AssetWarmupService.Priority.HIGH,
+                    () -> preloadFile(path),
+                    () -> {
+                        if (remaining.decrementAndGet() == 0 && aCallback != null) {
+                            aCallback.run();
+                        }
+                    });
+        }
+    }
+
+    // The files are loaded into this engine, so another engine has to load them again.
+    private String getWarmupName(String aPath) {
+        return "sound:" + aPath + "@" + System.identityHashCode(this);
+    }
+
+    private ArrayList<String> getPreloadPaths() {
+        ArrayList<String> result = new ArrayList<>();
         for (Sound sound: Sound.values()) {
             if (sound.getType() == SoundType.FIELD) {
                 // Ambisonic soundfields do *not* need to be preloaded
@@ -73,36 +144,27 @@ public class AudioEngine {
             }
             String path = mTheme.getPath(sound);
             if (path != null && path.length() > 0) {
-                preloadFile(path);
+                result.add(path);
             }
         }
-    }
-
-    public void preloadAsync() {
-        preloadAsync(null);
-    }
-
-    // Perform preloading in a separate thread in order to avoid blocking the main thread
-    public void preloadAsync(final Runnable aCallback) {
-        Thread thread = new Thread(new Runnable(){
-            @Override
-            public void run(){
-                preload();
-                if (aCallback != null) {
-                    ((Activity)mContext).runOnUiThread(aCallback);
-                }
-            }
-        });
-        thread.start();
+        return result;
     }
 
     public void release() {
+        Log.d(LOGTAG, "AudioEngine stats: " + mCreateLatency + " stolen voices=" + mStolenVoices);
+        synchronized (mVoices) {
+            for (Voice voice: mVoices) {
+                mEngine.stopSound(voice.mSourceId);
+            }
+            mVoices.clear();
+        }
         mSourceIds.clear();
         mEngines.remove(mContext);
         for (Sound sound: Sound.values()) {
             String path = mTheme.getPath(sound);
             if (path != null && sound.getType() != SoundType.FIELD) {
-                mEngine.unloadSoundFile(mTheme.getPath(sound));
+                unloadFile(path);
+                AssetWarmupService.get().forget(getWarmupName(path));
             }
         }
     }
@@ -133,13 +195,73 @@ public class AudioEngine {
         if (path == null || path.length() == 0) {
             return;
         }
-        int sourceId = createSound(aSound.getType(), mTheme.getPath(aSound));
+        int sourceId = acquireSource(aSound, path);
         if (sourceId != GvrAudioEngine.INVALID_ID) {
             mSourceIds.put(aSound, sourceId);
             playSound(sourceId, aLoopEnabled);
         }
     }
 
+    public int getActiveVoiceCount() {
+        synchronized (mVoices) {
+            reapVoices();
+            return mVoices.size();
+        }
+    }
+
+    public int getStolenVoiceCount() {
+        return mStolenVoices;
+    }
+
+    public LatencyHistogram getCreateLatency() {
+        return mCreateLatency;
+    }
+
+    // GVR sources destroy themselves once playback stops, so the pool for each sound is the
+    // set of voices still alive. Finished voices are reaped and their slots reused, and when a
+    // cap is reached the oldest voice is stopped to make room for the new one.
+    private int acquireSource(Sound aSound, String aPath) {
+        synchronized (mVoices) {
+            reapVoices();
+            Voice victim = null;
+            int soundVoices = 0;
+            for (Voice voice: mVoices) {
+                if (voice.mSound == aSound) {
+                    if (victim == null) {
+                        victim = voice;
+                    }
+                    soundVoices++;
+                }
+            }
+            if (soundVoices < MAX_VOICES_PER_SOUND) {
+                victim = mVoices.size() >= MAX_VOICES ? mVoices.peekFirst() : null;
+            }
+            if (victim != null) {
+                mVoices.remove(victim);
+                mEngine.stopSound(victim.mSourceId);
+                mSourceIds.remove(victim.mSound, victim.mSourceId);
+                mStolenVoices++;
+            }
+
+            int sourceId = createSound(aSound.getType(), aPath);
+            if (sourceId != GvrAudioEngine.INVALID_ID && aSound.getType() != SoundType.FIELD) {
+                mVoices.addLast(new Voice(aSound, sourceId));
+            }
+            return sourceId;
+        }
+    }
+
+    private void reapVoices() {
+        Iterator<Voice> it = mVoices.iterator();
+        while (it.hasNext()) {
+            Voice voice = it.next();
+            if (!mEngine.isSourceIdValid(voice.mSourceId)) {
+                mSourceIds.remove(voice.mSound, voice.mSourceId);
+                it.remove();
+            }
+        }
+    }
+
     public void playSound(int aSourceId, boolean aLoopEnabled) {
         mEngine.playSound(aSourceId, aLoopEnabled);
     }
@@ -198,7 +320,10 @@ public class AudioEngine {
 
 
     public int createSound(SoundType aType, String path) {
-        mEngine.preloadSoundFile(path);
+        if (aType != SoundType.FIELD) {
+            preloadFile(path);
+        }
+        long start = SystemClock.elapsedRealtimeNanos();
         int sourceId = GvrAudioEngine.INVALID_ID;
         switch (aType) {
             case FIELD: sourceId = mEngine.createSoundfield(path); break;
@@ -206,6 +331,8 @@ public class AudioEngine {
             case STEREO: sourceId = mEngine.createStereoSound(path); break;
         }
 
+        mCreateLatency.record((SystemClock.elapsedRealtimeNanos() - start) / 1000);
+
         if (sourceId == GvrAudioEngine.INVALID_ID) {
             Log.e(LOGTAG, "Error loading sound from path: " + path);
         }
@@ -213,11 +340,19 @@ public class AudioEngine {
         return sourceId;
     }
 
-    public void preloadFile(String path) {
-        mEngine.preloadSoundFile(path);
+    public boolean preloadFile(String path) {
+        if (mLoadedFiles.contains(path)) {
+            return true;
+        }
+        if (mEngine.preloadSoundFile(path)) {
+            mLoadedFiles.add(path);
+            return true;
+        }
+        return false;
     }
 
     public void unloadFile(String path) {
+        mLoadedFiles.remove(path);
         mEngine.unloadSoundFile(path);
     }
 
@@ -0,0 +1,137 @@
+/* -*- Mode: Java; c-basic-offset: 4; tab-width: 4; indent-tabs-mode: nil; -*-
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.vrbrowser.audio;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import org.mozilla.vrbrowser.utils.LatencyHistogram;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Drives AudioEngine.update() at a steady rate from the main thread, which GvrAudioEngine
+// requires for update() and the head pose, like the rest of its calls made from the UI.
+// The render thread publishes the latest head pose with setPose(), which only writes into a
+// preallocated slot guarded by a sequence counter, so nothing is allocated or posted per frame.
+public class AudioUpdateScheduler {
+    private static final String LOGTAG = "VRB";
+    private static final long UPDATE_INTERVAL_NS = 16666667L; // 60Hz
+    private static final int JITTER_BUCKET_US = 250;
+    private static final int JITTER_BUCKETS = 80;
+    private static final int STATS_LOG_INTERVAL = 60 * 60; // Once per minute at 60Hz
+
+    private final AudioEngine mEngine;
+    private final Handler mHandler;
+    private final LatencyHistogram mJitter;
+
+    // Latest-value pose slot. Single writer (render thread), single reader (main thread).
+    // The sequence is odd while the writer is updating the values.
+    private final AtomicInteger mPoseSequence = new AtomicInteger(0);
+    private final float[] mPose = new float[7];
+    private final float[] mReadPose = new float[7];
+    private int mAppliedSequence = 0;
+
+    private boolean mRunning;
+    private long mNextUpdateTime;
+    private long mLastUpdateTime;
+    private int mUpdates;
+
+    private final Runnable mUpdateRunnable = new Runnable() {
+        @Override
+        public void run() {
+            if (!mRunning) {
+                return;
+            }
+            long now = SystemClock.elapsedRealtimeNanos();
+            if (mLastUpdateTime > 0) {
+                mJitter.record(Math.abs(now - mLastUpdateTime - UPDATE_INTERVAL_NS) / 1000);
+            }
+            mLastUpdateTime = now;
+
+            applyPose();
+            mEngine.update();
+
+            if (++mUpdates % STATS_LOG_INTERVAL == 0) {
+                Log.d(LOGTAG, mJitter.toString());
+            }
+
+            // Schedule against absolute deadlines so the rate doesn't drift with the update cost.
+            mNextUpdateTime += UPDATE_INTERVAL_NS;
+            if (mNextUpdateTime < now) {
+                mNextUpdateTime = now + UPDATE_INTERVAL_NS;
+            }
+            long delayMs = (mNextUpdateTime - now) / 1000000L;
+            mHandler.postDelayed(this, delayMs);
+        }
+    };
+
+    public AudioUpdateScheduler(AudioEngine aEngine) {
+        mEngine = aEngine;
+        mJitter = new LatencyHistogram("Audio update jitter (us)", JITTER_BUCKET_US, JITTER_BUCKETS);
+        mHandler = new Handler(Looper.getMainLooper());
+    }
+
+    // Called from the render thread every frame.
+    public void setPose(float qx, float qy, float qz, float qw, float px, float py, float pz) {
+        mPoseSequence.incrementAndGet();
+        mPose[0] = qx;
+        mPose[1] = qy;
+        mPose[2] = qz;
+        mPose[3] = qw;
+        mPose[4] = px;
+        mPose[5] = py;
+        mPose[6] = pz;
+        mPoseSequence.incrementAndGet();
+    }
+
+    public void start() {
+        mHandler.post(() -> {
+            if (mRunning) {
+                return;
+            }
+            mRunning = true;
+            mLastUpdateTime = 0;
+            mNextUpdateTime = SystemClock.elapsedRealtimeNanos();
+            mUpdateRunnable.run();
+        });
+    }
+
+    public void stop() {
+        mHandler.post(() -> {
+            mRunning = false;
+            mHandler.removeCallbacks(mUpdateRunnable);
+        });
+    }
+
+    public void release() {
+        stop();
+    }
+
+    public LatencyHistogram getJitter() {
+        return mJitter;
+    }
+
+    private void applyPose() {
+        int sequence;
+        do {
+            sequence = mPoseSequence.get();
+            if (sequence == mAppliedSequence) {
+                return;
+            }
+            if ((sequence & 1) != 0) {
+                // Writer in progress, use the previous pose for this tick.
+                return;
+            }
+            System.arraycopy(mPose, 0, mReadPose, 0, mPose.length);
+        } while (sequence != mPoseSequence.get());
+
+        mAppliedSequence = sequence;
+        mEngine.setPose(mReadPose[0], mReadPose[1], mReadPose[2], mReadPose[3],
+                mReadPose[4], mReadPose[5], mReadPose[6]);
+    }
+}
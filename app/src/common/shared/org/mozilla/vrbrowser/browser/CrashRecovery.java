@@ -0,0 +1,80 @@
+/* -*- Mode: Java; c-basic-offset: 4; tab-width: 4; indent-tabs-mode: nil; -*-
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.vrbrowser.browser;
+
+import org.mozilla.vrbrowser.utils.LatencyHistogram;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+
+// Bookkeeping for sessions recovered after a content process crash.
+// A session is restored with its saved state unless it keeps crashing, in which case it's reset
+// so a page crashing the content process on load can't loop forever. Also measures the time from
+// the crash until the recovered session finished loading.
+class CrashRecovery {
+    private static final int MAX_CRASHES = 3;
+    private static final long CRASH_WINDOW = 60 * 1000;
+
+    private final HashMap<Integer, ArrayDeque<Long>> mCrashTimes = new HashMap<>();
+    private final HashMap<Integer, Long> mRecovering = new HashMap<>();
+    private final LatencyHistogram mRecoveryLatency = new LatencyHistogram("Crash recovery (ms)", 100, 50);
+    private int mResets;
+
+    // Records the crash. Returns true if the session should be restored with its saved state.
+    boolean onCrash(int aSessionId, long aTime) {
+        ArrayDeque<Long> times = mCrashTimes.get(aSessionId);
+        if (times == null) {
+            times = new ArrayDeque<>();
+            mCrashTimes.put(aSessionId, times);
+        }
+        while (!times.isEmpty() && aTime - times.peekFirst() > CRASH_WINDOW) {
+            times.pollFirst();
+        }
+        times.addLast(aTime);
+        mRecovering.put(aSessionId, aTime);
+        if (times.size() >= MAX_CRASHES) {
+            times.clear();
+            mResets++;
+            return false;
+        }
+        return true;
+    }
+
+    // Starts measuring again, for sessions recovered later than the crash.
+    void onRecoveryStarted(int aSessionId, long aTime) {
+        mRecovering.put(aSessionId, aTime);
+    }
+
+    boolean isRecovering(int aSessionId) {
+        return mRecovering.containsKey(aSessionId);
+    }
+
+    // Called when a session finished loading. Returns the recovery time if it was recovering,
+    // or -1 otherwise.
+    long onLoaded(int aSessionId, long aTime) {
+        Long crashTime = mRecovering.remove(aSessionId);
+        if (crashTime == null) {
+            return -1;
+        }
+        long latency = aTime - crashTime;
+        mRecoveryLatency.record(latency);
+        return latency;
+    }
+
+    void forget(int aSessionId) {
+        mCrashTimes.remove(aSessionId);
+        mRecovering.remove(aSessionId);
+    }
+
+    // Number of sessions reset instead of restored because they crashed repeatedly.
+    int getResetCount() {
+        return mResets;
+    }
+
+    LatencyHistogram getRecoveryLatency() {
+        return mRecoveryLatency;
+    }
+}
@@ -0,0 +1,56 @@
+/* -*- Mode: Java; c-basic-offset: 4; tab-width: 4; indent-tabs-mode: nil; -*-
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.vrbrowser.browser;
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import org.mozilla.geckoview.GeckoSession;
+import org.mozilla.vrbrowser.utils.ServoUtils;
+
+// The browser engines a session can run on, and the factories creating their sessions.
+public class Engine {
+    public static final int GECKO = 0;
+    public static final int SERVO = 1;
+    public static final int COUNT = 2;
+
+    public interface Factory {
+        // Returns null if the session couldn't be created.
+        @Nullable GeckoSession createSession(@NonNull Context aContext);
+    }
+
+    private static final Factory[] FACTORIES = {
+            aContext -> new GeckoSession(),
+            ServoUtils::createServoSession
+    };
+    private static final String[] NAMES = { "Gecko", "Servo" };
+
+    public static boolean isAvailable(int aEngine) {
+        switch (aEngine) {
+            case GECKO:
+                return true;
+            case SERVO:
+                return ServoUtils.isServoAvailable();
+            default:
+                return false;
+        }
+    }
+
+    @NonNull
+    public static Factory getFactory(int aEngine) {
+        return FACTORIES[aEngine];
+    }
+
+    public static int getEngine(@Nullable GeckoSession aSession) {
+        return ServoUtils.isInstanceOfServoSession(aSession) ? SERVO : GECKO;
+    }
+
+    @NonNull
+    public static String getName(int aEngine) {
+        return NAMES[aEngine];
+    }
+}
@@ -0,0 +1,182 @@
+/* -*- Mode: Java; c-basic-offset: 4; tab-width: 4; indent-tabs-mode: nil; -*-
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.vrbrowser.browser;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.support.annotation.NonNull;
+import android.util.Log;
+
+import org.mozilla.geckoview.GeckoSession;
+import org.mozilla.vrbrowser.utils.LatencyHistogram;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Loads the same list of pages with each available engine, one page after another, and records
+// the load time of every page so the engines can be compared on the same device.
+// Each engine gets a new session, and the previous current session is restored at the end.
+public class EngineBenchmark implements GeckoSession.ProgressDelegate {
+    private static final String LOGTAG = "VRB";
+    // Pages that don't finish loading in time are skipped
+    private static final long PAGE_TIMEOUT = 30000;
+
+    private final List<String> mUrls;
+    private final LatencyHistogram[] mLoadTimes = new LatencyHistogram[Engine.COUNT];
+    private final int[] mTimeouts = new int[Engine.COUNT];
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private int mEngine = -1;
+    private int mIndex;
+    private int mSessionId = SessionStore.NO_SESSION_ID;
+    private int mPreviousSessionId = SessionStore.NO_SESSION_ID;
+    private long mLoadStart = -1;
+    // Index of the page whose load last started, so the stop of a page that timed out
+    // isn't credited to the next one
+    private int mStartedIndex = -1;
+    private boolean mRunning;
+
+    public EngineBenchmark(@NonNull List<String> aUrls) {
+        mUrls = new ArrayList<>();
+        for (String url: aUrls) {
+            if (!url.trim().isEmpty()) {
+                mUrls.add(url.trim());
+            }
+        }
+        for (int i = 0; i < Engine.COUNT; i++) {
+            mLoadTimes[i] = new LatencyHistogram(Engine.getName(i) + " page load (ms)", 100, 100);
+        }
+    }
+
+    public void start() {
+        if (mRunning || mUrls.isEmpty()) {
+            return;
+        }
+        Log.d(LOGTAG, "Engine benchmark started with " + mUrls.size() + " pages");
+        mRunning = true;
+        mPreviousSessionId = SessionStore.get().getCurrentSessionId();
+        SessionStore.get().addProgressListener(this);
+        nextEngine();
+    }
+
+    public boolean isRunning() {
+        return mRunning;
+    }
+
+    @NonNull
+    public LatencyHistogram getLoadTimes(int aEngine) {
+        return mLoadTimes[aEngine];
+    }
+
+    private void nextEngine() {
+        do {
+            mEngine++;
+        } while (mEngine < Engine.COUNT && !Engine.isAvailable(mEngine));
+        if (mEngine >= Engine.COUNT) {
+            finish();
+            return;
+        }
+
+        // Switch to the new session before closing the previous one
+        int previousId = mSessionId;
+        SessionStore.SessionSettings settings = SessionStore.get().new SessionSettings();
+        settings.engine = mEngine;
+        mSessionId = SessionStore.get().createSession(settings);
+        SessionStore.get().setCurrentSession(mSessionId);
+        if (previousId != SessionStore.NO_SESSION_ID) {
+            SessionStore.get().removeSession(previousId);
+        }
+        mIndex = 0;
+        loadNext();
+    }
+
+    private void loadNext() {
+        if (mIndex >= mUrls.size()) {
+            nextEngine();
+            return;
+        }
+        mLoadStart = SystemClock.elapsedRealtime();
+        mStartedIndex = -1;
+        mHandler.postDelayed(mTimeout, PAGE_TIMEOUT);
+        SessionStore.get().loadUri(mUrls.get(mIndex));
+    }
+
+    private Runnable mTimeout = new Runnable() {
+        @Override
+        public void run() {
+            Log.e(LOGTAG, "Engine benchmark: " + mUrls.get(mIndex) + " timed out with " + Engine.getName(mEngine));
+            mTimeouts[mEngine]++;
+            mLoadStart = -1;
+            mIndex++;
+            loadNext();
+        }
+    };
+
+    private Runnable mLoadNext = new Runnable() {
+        @Override
+        public void run() {
+            loadNext();
+        }
+    };
+
+    private void removeSession() {
+        if (mSessionId != SessionStore.NO_SESSION_ID) {
+            SessionStore.get().removeSession(mSessionId);
+            mSessionId = SessionStore.NO_SESSION_ID;
+        }
+    }
+
+    private void finish() {
+        mRunning = false;
+        mHandler.removeCallbacks(mTimeout);
+        mHandler.removeCallbacks(mLoadNext);
+        SessionStore.get().removeProgressListener(this);
+        if (SessionStore.get().getSession(mPreviousSessionId) != null) {
+            SessionStore.get().setCurrentSession(mPreviousSessionId);
+        }
+        removeSession();
+        for (int i = 0; i < Engine.COUNT; i++) {
+            if (mLoadTimes[i].getCount() > 0 || mTimeouts[i] > 0) {
+                Log.d(LOGTAG, "Engine benchmark: " + mLoadTimes[i].toString() + ", timeouts: " + mTimeouts[i]);
+            }
+        }
+    }
+
+    // ProgressDelegate
+
+    @Override
+    public void onPageStart(GeckoSession aSession, String aUrl) {
+        if (mLoadStart >= 0 && aSession.hashCode() == mSessionId) {
+            mStartedIndex = mIndex;
+        }
+    }
+
+    @Override
+    public void onPageStop(GeckoSession aSession, boolean aSuccess) {
+        if (mLoadStart < 0 || aSession.hashCode() != mSessionId || mStartedIndex != mIndex) {
+            return;
+        }
+        long loadTime = SystemClock.elapsedRealtime() - mLoadStart;
+        mLoadStart = -1;
+        mHandler.removeCallbacks(mTimeout);
+        mLoadTimes[mEngine].record(loadTime);
+        Log.d(LOGTAG, "Engine benchmark: " + mUrls.get(mIndex) + " loaded in " + loadTime + "ms with " +
+                Engine.getName(mEngine) + (aSuccess ? "" : " (failed)"));
+        mIndex++;
+        // Not from inside the delegate call
+        mHandler.post(mLoadNext);
+    }
+
+    @Override
+    public void onProgressChange(GeckoSession aSession, int aProgress) {
+
+    }
+
+    @Override
+    public void onSecurityChange(GeckoSession aSession, SecurityInformation aInformation) {
+
+    }
+}
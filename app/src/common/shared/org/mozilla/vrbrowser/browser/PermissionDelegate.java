@@ -8,14 +8,15 @@ import android.support.annotation.NonNull;
 import android.util.Log;
 
 import org.mozilla.geckoview.GeckoSession;
+import org.mozilla.geckoview.GeckoSessionSettings;
 import org.mozilla.vrbrowser.PlatformActivity;
 import org.mozilla.vrbrowser.R;
 import org.mozilla.vrbrowser.browser.SessionStore;
 import org.mozilla.vrbrowser.ui.widgets.PermissionWidget;
 import org.mozilla.vrbrowser.ui.widgets.WidgetManagerDelegate;
 
-import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
 
 public class PermissionDelegate implements GeckoSession.PermissionDelegate, WidgetManagerDelegate.PermissionListener {
 
@@ -27,6 +28,8 @@ public class PermissionDelegate implements GeckoSession.PermissionDelegate, Widg
     private WidgetManagerDelegate mWidgetManager;
     private GeckoSession.PermissionDelegate.Callback mCallback;
     private PermissionWidget mPermissionWidget;
+    // Camera and microphone grants the user asked to remember, kept until the app is closed
+    private HashSet<String> mSessionGrants = new HashSet<>();
 
     public PermissionDelegate(Context aContext, WidgetManagerDelegate aWidgetManager) {
         mContext = aContext;
@@ -61,19 +64,81 @@ public class PermissionDelegate implements GeckoSession.PermissionDelegate, Widg
     }
 
     public void handlePermission(final String aUri, final PermissionWidget.PermissionType aType, final Callback aCallback) {
+        handlePermission(aUri, aType, false, aCallback);
+    }
+
+    private void handlePermission(final String aUri, final PermissionWidget.PermissionType aType, boolean aRememberable, final Callback aCallback) {
         if (mPermissionWidget == null) {
             mPermissionWidget = new PermissionWidget(mContext);
             mPermissionWidget.getPlacement().parentHandle = mParentWidgetHandle;
             mWidgetManager.addWidget(mPermissionWidget);
         }
 
-        mPermissionWidget.showPrompt(aUri, aType, aCallback);
+        mPermissionWidget.showPrompt(aUri, aType, aRememberable, aCallback);
+    }
+
+    private static boolean isMediaPermission(PermissionWidget.PermissionType aType) {
+        return aType == PermissionWidget.PermissionType.Camera ||
+                aType == PermissionWidget.PermissionType.Microphone ||
+                aType == PermissionWidget.PermissionType.CameraAndMicrophone;
+    }
+
+    // Answers from the decisions remembered for the origin, or prompts and remembers the answer
+    // if the user checks "Remember this decision". Camera and microphone grants are only kept
+    // until the app is closed, their denials are persisted like the other decisions. Nothing is
+    // remembered in private sessions.
+    private void handleSitePermission(final GeckoSession aSession, final String aUri, final PermissionWidget.PermissionType aType, final Callback aCallback) {
+        final PermissionStore store = PermissionStore.getInstance(mContext);
+        final String origin = PermissionStore.getOrigin(aUri);
+        final String type = aType.name();
+        final boolean media = isMediaPermission(aType);
+        final String key = type + " " + origin;
+        if (media && mSessionGrants.contains(key)) {
+            Log.d(LOGTAG, "Permission " + type + " granted for " + origin + " in this session");
+            aCallback.grant();
+            return;
+        }
+        Boolean decision = store.getDecision(origin, type);
+        // Media grants persisted by earlier versions are ignored
+        if (decision != null && !(media && decision)) {
+            Log.d(LOGTAG, "Remembered permission " + type + " for " + origin + ": " + decision);
+            if (decision) {
+                aCallback.grant();
+            } else {
+                aCallback.reject();
+            }
+            return;
+        }
+
+        final boolean rememberable = aSession == null || !aSession.getSettings().getBoolean(GeckoSessionSettings.USE_PRIVATE_MODE);
+        handlePermission(aUri, aType, rememberable, new Callback() {
+            @Override
+            public void grant() {
+                if (mPermissionWidget.isRememberChecked()) {
+                    if (media) {
+                        mSessionGrants.add(key);
+                    } else {
+                        store.setDecision(origin, type, true);
+                    }
+                }
+                aCallback.grant();
+            }
+
+            @Override
+            public void reject() {
+                if (mPermissionWidget.isRememberChecked()) {
+                    store.setDecision(origin, type, false);
+                }
+                aCallback.reject();
+            }
+        });
     }
 
     public void release() {
         mWidgetManager.removePermissionListener(this);
         SessionStore.get().setPermissionDelegate(null);
         mCallback = null;
+        mSessionGrants.clear();
         mContext = null;
         mWidgetManager = null;
     }
@@ -81,22 +146,26 @@ public class PermissionDelegate implements GeckoSession.PermissionDelegate, Widg
     @Override
     public void onAndroidPermissionsRequest(GeckoSession aSession, String[] permissions, Callback aCallback) {
         Log.d(LOGTAG, "onAndroidPermissionsRequest: " + Arrays.toString(permissions));
-        ArrayList<String> missingPermissions = new ArrayList<>();
-        ArrayList<String> filteredPemissions = new ArrayList<>();
-        for (String permission: permissions) {
+        // Only the missing permissions are requested
+        boolean[] missing = new boolean[permissions.length];
+        int missingCount = 0;
+        int filteredCount = 0;
+        for (int i = 0; i < permissions.length; i++) {
+            String permission = permissions[i];
             if (PlatformActivity.filterPermission(permission)) {
                 Log.d(LOGTAG, "Skipping permission: " + permission);
-                filteredPemissions.add(permission);
+                filteredCount++;
                 continue;
             }
             Log.d(LOGTAG, "permission = " + permission);
             if (mContext.checkSelfPermission(permission) != PackageManager.PERMISSION_GRANTED) {
-                missingPermissions.add(permission);
+                missing[i] = true;
+                missingCount++;
             }
         }
 
-        if (missingPermissions.size() == 0) {
-            if (filteredPemissions.size() == 0) {
+        if (missingCount == 0) {
+            if (filteredCount == 0) {
                 Log.d(LOGTAG, "Android permissions granted");
                 aCallback.grant();
             } else {
@@ -104,9 +173,15 @@ public class PermissionDelegate implements GeckoSession.PermissionDelegate, Widg
                 aCallback.reject();
             }
         } else {
-            Log.d(LOGTAG, "Request Android permissions: " + missingPermissions);
+            String[] missingPermissions = new String[missingCount];
+            for (int i = 0, j = 0; i < permissions.length; i++) {
+                if (missing[i]) {
+                    missingPermissions[j++] = permissions[i];
+                }
+            }
+            Log.d(LOGTAG, "Request Android permissions: " + Arrays.toString(missingPermissions));
             mCallback = aCallback;
-            ((Activity)mContext).requestPermissions(missingPermissions.toArray(new String[missingPermissions.size()]), PERMISSION_REQUEST_CODE);
+            ((Activity)mContext).requestPermissions(missingPermissions, PERMISSION_REQUEST_CODE);
         }
     }
 
@@ -128,7 +203,7 @@ public class PermissionDelegate implements GeckoSession.PermissionDelegate, Widg
             return;
         }
 
-        handlePermission(aUri, type, callback);
+        handleSitePermission(aSession, aUri, type, callback);
     }
 
     @Override
@@ -161,7 +236,7 @@ public class PermissionDelegate implements GeckoSession.PermissionDelegate, Widg
             }
         };
 
-        handlePermission(aUri, type, callback);
+        handleSitePermission(aSession, aUri, type, callback);
     }
 
     public boolean isPermissionGranted(@NonNull String permission) {
@@ -0,0 +1,157 @@
+/* -*- Mode: Java; c-basic-offset: 4; tab-width: 4; indent-tabs-mode: nil; -*-
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.vrbrowser.browser;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.net.Uri;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+// Remembers the permission decisions of the user per origin, so repeated requests from a site
+// are answered without prompting again. Decisions expire, denials sooner than grants so a site
+// can ask again. They are persisted in their own preferences file and indexed in memory.
+public class PermissionStore {
+    private static final String LOGTAG = "VRB";
+    private static final String PREFS_NAME = "permissions";
+    private static final long DAY = 24 * 60 * 60 * 1000L;
+    public static final long GRANT_LIFETIME = 30 * DAY;
+    public static final long DENY_LIFETIME = 7 * DAY;
+
+    private static PermissionStore mPermissionStoreInstance;
+
+    public static synchronized @NonNull
+    PermissionStore getInstance(final @NonNull Context aContext) {
+        if (mPermissionStoreInstance == null) {
+            mPermissionStoreInstance = new PermissionStore(aContext);
+        }
+
+        return mPermissionStoreInstance;
+    }
+
+    public static class Decision {
+        public final String origin;
+        public final String type;
+        public final boolean granted;
+        public final long expiration;
+
+        Decision(String aOrigin, String aType, boolean aGranted, long aExpiration) {
+            origin = aOrigin;
+            type = aType;
+            granted = aGranted;
+            expiration = aExpiration;
+        }
+    }
+
+    private SharedPreferences mPrefs;
+    private HashMap<String, Decision> mDecisions = new HashMap<>();
+
+    private PermissionStore(Context aContext) {
+        mPrefs = aContext.getApplicationContext().getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        load(System.currentTimeMillis());
+    }
+
+    // Returns the scheme, host and port of the URI, which permissions are scoped to.
+    @NonNull
+    public static String getOrigin(@NonNull String aUri) {
+        Uri uri = Uri.parse(aUri);
+        if (uri.getScheme() == null || uri.getHost() == null) {
+            return aUri;
+        }
+        String origin = uri.getScheme() + "://" + uri.getHost();
+        return uri.getPort() >= 0 ? origin + ":" + uri.getPort() : origin;
+    }
+
+    // Returns the remembered decision, or null if there is none or it expired.
+    @Nullable
+    public Boolean getDecision(@NonNull String aOrigin, @NonNull String aType) {
+        String key = getKey(aOrigin, aType);
+        Decision decision = mDecisions.get(key);
+        if (decision == null) {
+            return null;
+        }
+        if (decision.expiration <= System.currentTimeMillis()) {
+            mDecisions.remove(key);
+            mPrefs.edit().remove(key).apply();
+            return null;
+        }
+        return decision.granted;
+    }
+
+    public void setDecision(@NonNull String aOrigin, @NonNull String aType, boolean aGranted) {
+        long expiration = System.currentTimeMillis() + (aGranted ? GRANT_LIFETIME : DENY_LIFETIME);
+        String key = getKey(aOrigin, aType);
+        mDecisions.put(key, new Decision(aOrigin, aType, aGranted, expiration));
+        mPrefs.edit().putString(key, (aGranted ? "1:" : "0:") + expiration).apply();
+    }
+
+    // Decisions that haven't expired, for the settings.
+    @NonNull
+    public List<Decision> getDecisions() {
+        long now = System.currentTimeMillis();
+        List<Decision> result = new ArrayList<>(mDecisions.size());
+        for (Decision decision: mDecisions.values()) {
+            if (decision.expiration > now) {
+                result.add(decision);
+            }
+        }
+        return result;
+    }
+
+    public void removeOrigin(@NonNull String aOrigin) {
+        SharedPreferences.Editor editor = mPrefs.edit();
+        Iterator<Map.Entry<String, Decision>> it = mDecisions.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, Decision> entry = it.next();
+            if (entry.getValue().origin.equals(aOrigin)) {
+                editor.remove(entry.getKey());
+                it.remove();
+            }
+        }
+        editor.apply();
+    }
+
+    public void clear() {
+        mDecisions.clear();
+        mPrefs.edit().clear().apply();
+    }
+
+    private static String getKey(String aOrigin, String aType) {
+        return aType + " " + aOrigin;
+    }
+
+    private void load(long aNow) {
+        SharedPreferences.Editor editor = mPrefs.edit();
+        for (Map.Entry<String, ?> entry: mPrefs.getAll().entrySet()) {
+            String key = entry.getKey();
+            int separator = key.indexOf(' ');
+            Object value = entry.getValue();
+            Decision decision = null;
+            if (separator > 0 && value instanceof String) {
+                String[] parts = ((String) value).split(":");
+                try {
+                    decision = new Decision(key.substring(separator + 1), key.substring(0, separator),
+                            "1".equals(parts[0]), Long.parseLong(parts[1]));
+                } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                    Log.e(LOGTAG, "Invalid permission entry: " + key);
+                }
+            }
+            if (decision == null || decision.expiration <= aNow) {
+                editor.remove(key);
+            } else {
+                mDecisions.put(key, decision);
+            }
+        }
+        editor.apply();
+    }
+}
@@ -0,0 +1,147 @@
+/* -*- Mode: Java; c-basic-offset: 4; tab-width: 4; indent-tabs-mode: nil; -*-
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.vrbrowser.browser;
+
+import android.os.Looper;
+import android.os.SystemClock;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+import org.mozilla.geckoview.GeckoSession;
+import org.mozilla.geckoview.GeckoSessionSettings;
+import org.mozilla.vrbrowser.utils.LatencyHistogram;
+
+import java.util.ArrayDeque;
+
+// Keeps idle sessions opened ahead of time so new sessions don't pay the open cost on the
+// critical path. Normal and private sessions are pooled separately, and the private pool is only
+// filled while private mode is in use. Pools are refilled when the UI thread is idle.
+// Only used on the UI thread.
+class SessionPool {
+    private static final String LOGTAG = "VRB";
+    private static final int POOL_SIZE = 1;
+
+    interface Factory {
+        // Creates and opens an idle session with the current settings.
+        @Nullable GeckoSession createPooledSession(boolean aPrivateMode);
+    }
+
+    private final Factory mFactory;
+    private final ArrayDeque<GeckoSession> mNormalSessions = new ArrayDeque<>();
+    private final ArrayDeque<GeckoSession> mPrivateSessions = new ArrayDeque<>();
+    private final LatencyHistogram mCreationLatency = new LatencyHistogram("Session creation (ms)", 10, 50);
+    private boolean mPrivateModeUsed;
+    private boolean mRefillScheduled;
+    private int mHits;
+    private int mMisses;
+
+    SessionPool(@NonNull Factory aFactory) {
+        mFactory = aFactory;
+    }
+
+    // Returns an opened session matching the settings, or null if none is available.
+    @Nullable
+    GeckoSession acquire(boolean aPrivateMode, boolean aMultiprocess) {
+        if (aPrivateMode) {
+            mPrivateModeUsed = true;
+        }
+        ArrayDeque<GeckoSession> pool = aPrivateMode ? mPrivateSessions : mNormalSessions;
+        GeckoSession result = null;
+        while (result == null && !pool.isEmpty()) {
+            GeckoSession session = pool.poll();
+            if (session.getSettings().getBoolean(GeckoSessionSettings.USE_MULTIPROCESS) == aMultiprocess) {
+                result = session;
+            } else {
+                // The process settings changed since it was opened
+                session.close();
+            }
+        }
+        if (result != null) {
+            mHits++;
+        } else {
+            mMisses++;
+        }
+        scheduleRefill();
+        return result;
+    }
+
+    // Records the time it took to create a session that wasn't in the pool.
+    void recordMiss(long aCreationTime) {
+        mCreationLatency.record(aCreationTime);
+    }
+
+    void scheduleRefill() {
+        if (mRefillScheduled) {
+            return;
+        }
+        mRefillScheduled = true;
+        Looper.myQueue().addIdleHandler(() -> {
+            mRefillScheduled = false;
+            refill();
+            return false;
+        });
+    }
+
+    void clear() {
+        for (GeckoSession session: mNormalSessions) {
+            session.close();
+        }
+        for (GeckoSession session: mPrivateSessions) {
+            session.close();
+        }
+        mNormalSessions.clear();
+        mPrivateSessions.clear();
+    }
+
+    // Closes the idle private sessions, so the private browsing data is dropped with the last
+    // private window. The private pool is filled again when private mode is entered again.
+    void clearPrivate() {
+        for (GeckoSession session: mPrivateSessions) {
+            session.close();
+        }
+        mPrivateSessions.clear();
+        mPrivateModeUsed = false;
+    }
+
+    int getHits() {
+        return mHits;
+    }
+
+    int getMisses() {
+        return mMisses;
+    }
+
+    LatencyHistogram getCreationLatency() {
+        return mCreationLatency;
+    }
+
+    // Opens one session at a time so a refill never blocks the UI thread for long.
+    private void refill() {
+        ArrayDeque<GeckoSession> pool = null;
+        boolean privateMode = false;
+        if (mNormalSessions.size() < POOL_SIZE) {
+            pool = mNormalSessions;
+        } else if (mPrivateModeUsed && mPrivateSessions.size() < POOL_SIZE) {
+            pool = mPrivateSessions;
+            privateMode = true;
+        }
+        if (pool == null) {
+            return;
+        }
+
+        long start = SystemClock.elapsedRealtime();
+        GeckoSession session = mFactory.createPooledSession(privateMode);
+        if (session == null) {
+            return;
+        }
+        mCreationLatency.record(SystemClock.elapsedRealtime() - start);
+        pool.add(session);
+        Log.d(LOGTAG, "Pooled " + (privateMode ? "private" : "normal") + " session, hits: " + mHits +
+                ", misses: " + mMisses + ", " + mCreationLatency.toString());
+        scheduleRefill();
+    }
+}
@@ -5,9 +5,14 @@
 
 package org.mozilla.vrbrowser.browser;
 
+import android.app.ActivityManager;
+import android.content.ComponentCallbacks2;
 import android.content.Context;
 import android.graphics.Rect;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.util.Log;
@@ -28,6 +33,7 @@ import org.mozilla.vrbrowser.R;
 import org.mozilla.vrbrowser.crashreporting.CrashReporterService;
 import org.mozilla.vrbrowser.telemetry.TelemetryWrapper;
 import org.mozilla.vrbrowser.utils.InternalPages;
+import org.mozilla.vrbrowser.utils.LatencyHistogram;
 import org.mozilla.vrbrowser.utils.ValueHolder;
 
 import java.io.File;
@@ -63,6 +69,12 @@ public class SessionStore implements GeckoSession.NavigationDelegate, GeckoSessi
     private static final String HOME_WITHOUT_REGION_ORIGIN = "https://webxr.today/";
     public static final String PRIVATE_BROWSING_URI = "about:privatebrowsing";
     public static final int NO_SESSION_ID = -1;
+    // Background session tiers, see TabActivityPolicy
+    private static final long FREEZE_DELAY = 60 * 1000;
+    private static final long DISCARD_DELAY = 10 * 60 * 1000;
+    private static final long TAB_ACTIVITY_INTERVAL = 30 * 1000;
+    // Pages visited in this run that typed text can be prerendered for
+    private static final int MAX_VISITED_URIS = 100;
 
     private LinkedList<GeckoSession.NavigationDelegate> mNavigationListeners;
     private LinkedList<GeckoSession.ProgressDelegate> mProgressListeners;
@@ -83,7 +95,9 @@ public class SessionStore implements GeckoSession.NavigationDelegate, GeckoSessi
         boolean trackingProtection = true;
         boolean suspendMediaWhenInactive = true;
         int userAgentMode = SettingsStore.getInstance(mContext).getUaMode();
-        boolean servo = false;
+        int engine = Engine.GECKO;
+        // Sessions returned to GeckoView from onNewSession must not be opened yet
+        boolean opened = true;
     }
 
     class State {
@@ -98,6 +112,10 @@ public class SessionStore implements GeckoSession.NavigationDelegate, GeckoSessi
         boolean mFullScreen;
         GeckoSession mSession;
         SessionSettings mSettings;
+        long mLastFocusTime;
+        int mTier = TabActivityPolicy.TIER_ACTIVE;
+        // Last state saved, used to restore the session after it was discarded or crashed
+        GeckoSession.SessionState mSessionState;
     }
 
     private GeckoRuntime mRuntime;
@@ -109,6 +127,29 @@ public class SessionStore implements GeckoSession.NavigationDelegate, GeckoSessi
     private int mPreviousSessionId = SessionStore.NO_SESSION_ID;
     private String mRegion;
     private Context mContext;
+    // Hidden session loading the URL typed in the URL bar, see prerenderUri()
+    private State mPrerenderState;
+    private String mPrerenderUri;
+    private PrerenderDelegate mPrerenderDelegate = new PrerenderDelegate();
+    private GeckoSession mSubmitSession;
+    private long mSubmitTime;
+    private boolean mSubmitPrerendered;
+    private int mPrerenderHits;
+    private int mPrerenderMisses;
+    private Map<String, Boolean> mVisitedUris = new LinkedHashMap<String, Boolean>(MAX_VISITED_URIS, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Boolean> aEldest) {
+            return size() > MAX_VISITED_URIS;
+        }
+    };
+    private LatencyHistogram mSubmitLatency = new LatencyHistogram("Submit to load (ms)", 100, 50);
+    private SessionPool mSessionPool;
+    private TabActivityPolicy mTabActivityPolicy;
+    // False while the activity is paused
+    private boolean mActive = true;
+    private int mMaxLiveSessions = 2;
+    private Handler mHandler = new Handler(Looper.getMainLooper());
+    private CrashRecovery mCrashRecovery = new CrashRecovery();
 
     private SessionStore() {
         mNavigationListeners = new LinkedList<>();
@@ -121,6 +162,8 @@ public class SessionStore implements GeckoSession.NavigationDelegate, GeckoSessi
         mSessions = new LinkedHashMap<>();
         mSessionsStack = new ArrayDeque<>();
         mPrivateSessionsStack = new ArrayDeque<>();
+        mSessionPool = new SessionPool(this::createPooledSession);
+        mTabActivityPolicy = new TabActivityPolicy(FREEZE_DELAY, DISCARD_DELAY, mMaxLiveSessions);
     }
 
     public void clearListeners() {
@@ -156,6 +199,13 @@ public class SessionStore implements GeckoSession.NavigationDelegate, GeckoSessi
         }
 
         mContext = aContext;
+
+        // Background sessions kept loaded, depending on the memory available to the app
+        ActivityManager activityManager = (ActivityManager) aContext.getSystemService(Context.ACTIVITY_SERVICE);
+        if (activityManager != null) {
+            mMaxLiveSessions = activityManager.isLowRamDevice() ? 1 : (activityManager.getMemoryClass() >= 256 ? 3 : 2);
+            mTabActivityPolicy.setMaxLiveSessions(mMaxLiveSessions);
+        }
     }
 
     public void dumpAllState(Integer sessionId) {
@@ -286,11 +336,18 @@ public class SessionStore implements GeckoSession.NavigationDelegate, GeckoSessi
         State state = new State();
         state.mSettings = aSettings;
 
-        if (aSettings.servo) {
-            if (isServoAvailable()) {
-                state.mSession = createServoSession(mContext);
-            } else {
-                Log.e(LOGTAG, "Attempt to create a ServoSession. Servo hasn't been enable at build time. Using a GeckoSession instead.");
+        if (aSettings.engine != Engine.GECKO) {
+            if (Engine.isAvailable(aSettings.engine)) {
+                state.mSession = Engine.getFactory(aSettings.engine).createSession(mContext);
+            }
+            if (state.mSession == null) {
+                Log.e(LOGTAG, "Attempt to create a " + Engine.getName(aSettings.engine) + " session. The engine isn't available. Using a GeckoSession instead.");
+                aSettings.engine = Engine.GECKO;
+                state.mSession = new GeckoSession();
+            }
+        } else if (aSettings.opened) {
+            state.mSession = mSessionPool.acquire(aSettings.privateMode, aSettings.multiprocess);
+            if (state.mSession == null) {
                 state.mSession = new GeckoSession();
             }
         } else {
@@ -299,18 +356,8 @@ public class SessionStore implements GeckoSession.NavigationDelegate, GeckoSessi
 
         int result = state.mSession.hashCode();
         mSessions.put(result, state);
-        state.mSession.getSettings().setBoolean(GeckoSessionSettings.USE_MULTIPROCESS, aSettings.multiprocess);
-        state.mSession.getSettings().setBoolean(GeckoSessionSettings.USE_PRIVATE_MODE, aSettings.privateMode);
-        state.mSession.getSettings().setBoolean(GeckoSessionSettings.USE_TRACKING_PROTECTION, aSettings.trackingProtection);
-        state.mSession.getSettings().setBoolean(GeckoSessionSettings.SUSPEND_MEDIA_WHEN_INACTIVE, aSettings.suspendMediaWhenInactive);
-        state.mSession.getSettings().setInt(GeckoSessionSettings.USER_AGENT_MODE, aSettings.userAgentMode);
-        state.mSession.setNavigationDelegate(this);
-        state.mSession.setProgressDelegate(this);
-        state.mSession.setPromptDelegate(this);
-        state.mSession.setContentDelegate(this);
-        state.mSession.getTextInput().setDelegate(this);
-        state.mSession.setPermissionDelegate(mPermissionDelegate);
-        state.mSession.setTrackingProtectionDelegate(this);
+        applySettings(state.mSession, aSettings);
+        setDelegates(state.mSession);
         for (SessionChangeListener listener: mSessionChangeListeners) {
             listener.onNewSession(state.mSession, result);
         }
@@ -318,6 +365,40 @@ public class SessionStore implements GeckoSession.NavigationDelegate, GeckoSessi
         return result;
     }
 
+    private void applySettings(GeckoSession aSession, SessionSettings aSettings) {
+        if (!aSession.isOpen()) {
+            // Read only once opened, pooled sessions were opened with the same values.
+            aSession.getSettings().setBoolean(GeckoSessionSettings.USE_MULTIPROCESS, aSettings.multiprocess);
+            aSession.getSettings().setBoolean(GeckoSessionSettings.USE_PRIVATE_MODE, aSettings.privateMode);
+        }
+        aSession.getSettings().setBoolean(GeckoSessionSettings.USE_TRACKING_PROTECTION, aSettings.trackingProtection);
+        aSession.getSettings().setBoolean(GeckoSessionSettings.SUSPEND_MEDIA_WHEN_INACTIVE, aSettings.suspendMediaWhenInactive);
+        aSession.getSettings().setInt(GeckoSessionSettings.USER_AGENT_MODE, aSettings.userAgentMode);
+    }
+
+    private void setDelegates(GeckoSession aSession) {
+        aSession.setNavigationDelegate(this);
+        aSession.setProgressDelegate(this);
+        aSession.setPromptDelegate(this);
+        aSession.setContentDelegate(this);
+        aSession.getTextInput().setDelegate(this);
+        aSession.setPermissionDelegate(mPermissionDelegate);
+        aSession.setTrackingProtectionDelegate(this);
+    }
+
+    private GeckoSession createPooledSession(boolean aPrivateMode) {
+        if (mRuntime == null) {
+            return null;
+        }
+        SessionSettings settings = new SessionSettings();
+        settings.privateMode = aPrivateMode;
+        GeckoSession session = new GeckoSession();
+        applySettings(session, settings);
+        session.open(mRuntime);
+        session.setActive(false);
+        return session;
+    }
+
     public void removeSession(int aSessionId) {
         GeckoSession session = getSession(aSessionId);
         if (session != null) {
@@ -329,12 +410,15 @@ public class SessionStore implements GeckoSession.NavigationDelegate, GeckoSessi
             session.setPermissionDelegate(null);
             session.setTrackingProtectionDelegate(null);
             mSessions.remove(aSessionId);
+            mCrashRecovery.forget(aSessionId);
             for (SessionChangeListener listener: mSessionChangeListeners) {
                 listener.onRemoveSession(session, aSessionId);
             }
-            session.setActive(false);
-            session.stop();
-            session.close();
+            if (session.isOpen()) {
+                session.setActive(false);
+                session.stop();
+                session.close();
+            }
         }
     }
 
@@ -417,6 +501,7 @@ public class SessionStore implements GeckoSession.NavigationDelegate, GeckoSessi
 
         if (mCurrentSession != null) {
             mCurrentSession.setActive(false);
+            onSessionUnfocused(mCurrentSession);
         }
 
         mCurrentSession = null;
@@ -424,8 +509,21 @@ public class SessionStore implements GeckoSession.NavigationDelegate, GeckoSessi
         if (state != null) {
             mCurrentSession = state.mSession;
             if (!mCurrentSession.isOpen()) {
+                long start = SystemClock.elapsedRealtime();
                 mCurrentSession.open(mRuntime);
+                if (mCrashRecovery.isRecovering(aId)) {
+                    // The session crashed while in the background
+                    mCrashRecovery.onRecoveryStarted(aId, start);
+                    restoreCrashedSession(state);
+                } else if (state.mSessionState != null) {
+                    // The session was discarded while in the background
+                    mCurrentSession.restoreState(state.mSessionState);
+                } else {
+                    mSessionPool.recordMiss(SystemClock.elapsedRealtime() - start);
+                }
             }
+            state.mTier = TabActivityPolicy.TIER_ACTIVE;
+            mSessionPool.scheduleRefill();
             for (SessionChangeListener listener: mSessionChangeListeners) {
                 listener.onCurrentSessionChange(mCurrentSession, aId);
             }
@@ -434,6 +532,107 @@ public class SessionStore implements GeckoSession.NavigationDelegate, GeckoSessi
 
         if (mCurrentSession != null)
             mCurrentSession.setActive(true);
+
+        updateTabActivity();
+    }
+
+    private void onSessionUnfocused(GeckoSession aSession) {
+        State state = mSessions.get(aSession.hashCode());
+        if (state != null) {
+            state.mLastFocusTime = SystemClock.elapsedRealtime();
+        }
+    }
+
+    // Moves the background sessions to the tier chosen by the policy, and evaluates it again
+    // later while there are background sessions and the app is in the foreground.
+    private void updateTabActivity() {
+        mHandler.removeCallbacks(mUpdateTabActivity);
+        ArrayList<TabActivityPolicy.Entry> entries = new ArrayList<>(mSessions.size());
+        for (Map.Entry<Integer, State> sessionEntry: mSessions.entrySet()) {
+            State state = sessionEntry.getValue();
+            TabActivityPolicy.Entry entry = new TabActivityPolicy.Entry(sessionEntry.getKey());
+            entry.lastFocusTime = state.mLastFocusTime;
+            entry.current = state.mSession == mCurrentSession;
+            // Closing the private sessions would drop the private browsing data
+            entry.discardable = state.mSettings != null && !state.mSettings.privateMode &&
+                    !isInstanceOfServoSession(state.mSession);
+            entry.tier = state.mTier;
+            entries.add(entry);
+        }
+        mTabActivityPolicy.update(entries, SystemClock.elapsedRealtime());
+
+        for (TabActivityPolicy.Entry entry: entries) {
+            State state = mSessions.get(entry.id);
+            if (state != null && state.mTier != entry.tier) {
+                applyTier(state, entry.tier);
+            }
+        }
+        if (entries.size() > 1) {
+            Log.d(LOGTAG, mTabActivityPolicy.toString());
+            if (mActive) {
+                mHandler.postDelayed(mUpdateTabActivity, TAB_ACTIVITY_INTERVAL);
+            }
+        }
+    }
+
+    private Runnable mUpdateTabActivity = new Runnable() {
+        @Override
+        public void run() {
+            updateTabActivity();
+        }
+    };
+
+    private void applyTier(final State aState, final int aTier) {
+        aState.mTier = aTier;
+        switch (aTier) {
+            case TabActivityPolicy.TIER_FROZEN:
+                // Keep the state ready, so discarding or recovering the session is immediate
+                saveSessionState(aState);
+                break;
+            case TabActivityPolicy.TIER_DISCARDED:
+                saveSessionState(aState);
+                break;
+            default:
+                break;
+        }
+    }
+
+    // Saves the session state, and closes the session if it's been discarded in the meantime.
+    private void saveSessionState(final State aState) {
+        aState.mSession.saveState().then(new GeckoResult.OnValueListener<GeckoSession.SessionState, Object>() {
+            @Nullable
+            @Override
+            public GeckoResult<Object> onValue(@Nullable GeckoSession.SessionState value) throws Throwable {
+                if (value != null) {
+                    aState.mSessionState = value;
+                }
+                if (aState.mTier == TabActivityPolicy.TIER_DISCARDED && aState.mSessionState != null &&
+                        aState.mSession != mCurrentSession && aState.mSession.isOpen()) {
+                    aState.mSession.stop();
+                    aState.mSession.close();
+                }
+                return null;
+            }
+        }, new GeckoResult.OnExceptionListener<Object>() {
+            @Nullable
+            @Override
+            public GeckoResult<Object> onException(@NonNull Throwable exception) throws Throwable {
+                Log.e(LOGTAG, "Unable to save the session state: " + exception.getLocalizedMessage());
+                return null;
+            }
+        });
+    }
+
+    // Discards the background sessions when the system is critically low on memory, or the app is
+    // in the background list of processes to kill. Hiding the UI alone keeps them.
+    public void onTrimMemory(int aLevel) {
+        if (aLevel != ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL &&
+                aLevel < ComponentCallbacks2.TRIM_MEMORY_BACKGROUND) {
+            return;
+        }
+        mTabActivityPolicy.setMaxLiveSessions(0);
+        updateTabActivity();
+        mTabActivityPolicy.setMaxLiveSessions(mMaxLiveSessions);
     }
 
     public void setRegion(String aRegion) {
@@ -522,6 +721,12 @@ public class SessionStore implements GeckoSession.NavigationDelegate, GeckoSessi
     }
 
     public void setActive(boolean aActive) {
+        mActive = aActive;
+        if (aActive) {
+            updateTabActivity();
+        } else {
+            mHandler.removeCallbacks(mUpdateTabActivity);
+        }
         if (mCurrentSession == null) {
             return;
         }
@@ -555,6 +760,307 @@ public class SessionStore implements GeckoSession.NavigationDelegate, GeckoSessi
         mCurrentSession.loadUri(aUri);
     }
 
+    // Loads an URL submitted from the URL bar. If it's the one being prerendered, the prerendered
+    // session is shown instead and the current one is stacked so back returns to it.
+    public void submitUri(String aUri) {
+        if (mCurrentSession == null || aUri == null) {
+            return;
+        }
+        mSubmitTime = SystemClock.elapsedRealtime();
+        State prerender = mPrerenderState;
+        if (prerender != null && !isCurrentSessionPrivate() &&
+                (aUri.equals(mPrerenderUri) || aUri.equals(prerender.mUri))) {
+            mPrerenderState = null;
+            mPrerenderHits++;
+            int sessionId = adoptPrerenderedSession(prerender);
+            mSubmitSession = prerender.mSession;
+            mSubmitPrerendered = true;
+            if (!prerender.mIsLoading) {
+                recordSubmitLatency();
+            }
+            Log.d(LOGTAG, "Showing prerendered session " + sessionId + " for: " + aUri);
+            return;
+        }
+
+        if (prerender != null) {
+            mPrerenderMisses++;
+            cancelPrerender();
+        }
+        mSubmitSession = mCurrentSession;
+        mSubmitPrerendered = false;
+        loadUri(aUri);
+    }
+
+    // Starts loading the URL in a hidden session. It doesn't notify the listeners until it's shown
+    // by submitUri(). Only one page is prerendered at a time.
+    public void prerenderUri(String aUri) {
+        if (mRuntime == null || mCurrentSession == null || aUri == null || isCurrentSessionPrivate() ||
+                isInstanceOfServoSession(mCurrentSession) || aUri.equals(getCurrentUri())) {
+            return;
+        }
+        if (mPrerenderState != null) {
+            if (aUri.equals(mPrerenderUri)) {
+                return;
+            }
+            cancelPrerender();
+        }
+
+        State state = new State();
+        state.mSettings = copyCurrentSettings();
+        state.mSession = new GeckoSession();
+        applySettings(state.mSession, state.mSettings);
+        state.mSession.setNavigationDelegate(mPrerenderDelegate);
+        state.mSession.setProgressDelegate(mPrerenderDelegate);
+        state.mSession.setContentDelegate(mPrerenderDelegate);
+        state.mSession.setPromptDelegate(mPrerenderDelegate);
+        state.mSession.setPermissionDelegate(mPrerenderDelegate);
+        state.mSession.open(mRuntime);
+        state.mSession.setActive(false);
+        state.mSession.loadUri(aUri);
+        mPrerenderState = state;
+        mPrerenderUri = aUri;
+        Log.d(LOGTAG, "Prerendering: " + aUri);
+    }
+
+    // True if the page was visited in a non private session of this run, the only pages
+    // prerendered for typed text.
+    public boolean isVisitedUri(@NonNull String aUri) {
+        return mVisitedUris.containsKey(normalizeVisitedUri(aUri));
+    }
+
+    private static String normalizeVisitedUri(String aUri) {
+        return aUri.endsWith("/") ? aUri.substring(0, aUri.length() - 1) : aUri;
+    }
+
+    // Settings of the current GeckoSession, so a session shown in its place behaves the same.
+    private SessionSettings copyCurrentSettings() {
+        SessionSettings settings = new SessionSettings();
+        GeckoSessionSettings current = mCurrentSession.getSettings();
+        settings.multiprocess = current.getBoolean(GeckoSessionSettings.USE_MULTIPROCESS);
+        settings.privateMode = current.getBoolean(GeckoSessionSettings.USE_PRIVATE_MODE);
+        settings.trackingProtection = current.getBoolean(GeckoSessionSettings.USE_TRACKING_PROTECTION);
+        settings.suspendMediaWhenInactive = current.getBoolean(GeckoSessionSettings.SUSPEND_MEDIA_WHEN_INACTIVE);
+        settings.userAgentMode = current.getInt(GeckoSessionSettings.USER_AGENT_MODE);
+        return settings;
+    }
+
+    public void cancelPrerender() {
+        State state = mPrerenderState;
+        if (state == null) {
+            return;
+        }
+        mPrerenderState = null;
+        state.mSession.setNavigationDelegate(null);
+        state.mSession.setProgressDelegate(null);
+        state.mSession.setContentDelegate(null);
+        state.mSession.setPromptDelegate(null);
+        state.mSession.setPermissionDelegate(null);
+        state.mSession.stop();
+        state.mSession.close();
+    }
+
+    private int adoptPrerenderedSession(State aState) {
+        setDelegates(aState.mSession);
+        int sessionId = aState.mSession.hashCode();
+        mSessions.put(sessionId, aState);
+        for (SessionChangeListener listener: mSessionChangeListeners) {
+            listener.onNewSession(aState.mSession, sessionId);
+        }
+        pushSession(getCurrentSessionId());
+        setCurrentSession(sessionId);
+        return sessionId;
+    }
+
+    private void recordSubmitLatency() {
+        mSubmitLatency.record(SystemClock.elapsedRealtime() - mSubmitTime);
+        mSubmitSession = null;
+        Log.d(LOGTAG, mSubmitLatency.toString() + ", prerender hits: " + mPrerenderHits +
+                ", misses: " + mPrerenderMisses + (mSubmitPrerendered ? " (prerendered)" : ""));
+    }
+
+    // Records the state of the prerendering session without notifying the listeners. Nobody sees
+    // the hidden page, so its prompts are dismissed and its permission requests rejected.
+    private class PrerenderDelegate implements GeckoSession.NavigationDelegate,
+            GeckoSession.ProgressDelegate, GeckoSession.ContentDelegate,
+            GeckoSession.PromptDelegate, GeckoSession.PermissionDelegate {
+        private State getState(GeckoSession aSession) {
+            return mPrerenderState != null && mPrerenderState.mSession == aSession ? mPrerenderState : null;
+        }
+
+        @Override
+        public void onLocationChange(GeckoSession aSession, String aUri) {
+            State state = getState(aSession);
+            if (state != null) {
+                state.mUri = aUri;
+            }
+        }
+
+        @Override
+        public void onCanGoBack(GeckoSession aSession, boolean aCanGoBack) {
+            State state = getState(aSession);
+            if (state != null) {
+                state.mCanGoBack = aCanGoBack;
+            }
+        }
+
+        @Override
+        public void onCanGoForward(GeckoSession aSession, boolean aCanGoForward) {
+            State state = getState(aSession);
+            if (state != null) {
+                state.mCanGoForward = aCanGoForward;
+            }
+        }
+
+        @Override
+        public @Nullable GeckoResult<AllowOrDeny> onLoadRequest(@NonNull GeckoSession aSession, @NonNull LoadRequest aRequest) {
+            return GeckoResult.fromValue(AllowOrDeny.ALLOW);
+        }
+
+        @Override
+        public GeckoResult<GeckoSession> onNewSession(@NonNull GeckoSession aSession, @NonNull String aUri) {
+            // Hidden pages can't open windows
+            return null;
+        }
+
+        @Override
+        public GeckoResult<String> onLoadError(GeckoSession aSession, String aUri, @LoadErrorCategory int aCategory, @LoadError int aError) {
+            // Don't keep error pages around, the load is retried when the URL is submitted
+            if (getState(aSession) != null) {
+                cancelPrerender();
+            }
+            return null;
+        }
+
+        @Override
+        public void onPageStart(GeckoSession aSession, String aUri) {
+            State state = getState(aSession);
+            if (state != null) {
+                state.mIsLoading = true;
+            }
+        }
+
+        @Override
+        public void onPageStop(GeckoSession aSession, boolean aSuccess) {
+            State state = getState(aSession);
+            if (state != null) {
+                state.mIsLoading = false;
+            }
+        }
+
+        @Override
+        public void onProgressChange(GeckoSession aSession, int aProgress) {
+
+        }
+
+        @Override
+        public void onSecurityChange(GeckoSession aSession, SecurityInformation aInformation) {
+            State state = getState(aSession);
+            if (state != null) {
+                state.mSecurityInformation = aInformation;
+            }
+        }
+
+        @Override
+        public void onTitleChange(GeckoSession aSession, String aTitle) {
+            State state = getState(aSession);
+            if (state != null) {
+                state.mTitle = aTitle;
+            }
+        }
+
+        @Override
+        public void onFocusRequest(GeckoSession aSession) {
+
+        }
+
+        @Override
+        public void onCloseRequest(GeckoSession aSession) {
+
+        }
+
+        @Override
+        public void onFullScreen(GeckoSession aSession, boolean aFullScreen) {
+
+        }
+
+        @Override
+        public void onContextMenu(GeckoSession aSession, int aScreenX, int aScreenY, String aUri, int aElementType, String aElementSrc) {
+
+        }
+
+        @Override
+        public void onExternalResponse(GeckoSession aSession, GeckoSession.WebResponseInfo aResponse) {
+
+        }
+
+        @Override
+        public void onCrash(GeckoSession aSession) {
+            if (getState(aSession) != null) {
+                cancelPrerender();
+            }
+        }
+
+        @Override
+        public void onAlert(GeckoSession aSession, String aTitle, String aMsg, AlertCallback aCallback) {
+            aCallback.dismiss();
+        }
+
+        @Override
+        public void onButtonPrompt(GeckoSession aSession, String aTitle, String aMsg, String[] aBtnMsg, ButtonCallback aCallback) {
+            aCallback.dismiss();
+        }
+
+        @Override
+        public void onTextPrompt(GeckoSession aSession, String aTitle, String aMsg, String aValue, TextCallback aCallback) {
+            aCallback.dismiss();
+        }
+
+        @Override
+        public void onAuthPrompt(GeckoSession aSession, String aTitle, String aMsg, AuthOptions aOptions, AuthCallback aCallback) {
+            aCallback.dismiss();
+        }
+
+        @Override
+        public void onChoicePrompt(GeckoSession aSession, String aTitle, String aMsg, int aType, Choice[] aChoices, ChoiceCallback aCallback) {
+            aCallback.dismiss();
+        }
+
+        @Override
+        public void onColorPrompt(GeckoSession aSession, String aTitle, String aValue, TextCallback aCallback) {
+            aCallback.dismiss();
+        }
+
+        @Override
+        public void onDateTimePrompt(GeckoSession aSession, String aTitle, int aType, String aValue, String aMin, String aMax, TextCallback aCallback) {
+            aCallback.dismiss();
+        }
+
+        @Override
+        public void onFilePrompt(GeckoSession aSession, String aTitle, int aType, String[] aMimeTypes, FileCallback aCallback) {
+            aCallback.dismiss();
+        }
+
+        @Override
+        public GeckoResult<AllowOrDeny> onPopupRequest(GeckoSession aSession, String aTargetUri) {
+            return GeckoResult.fromValue(AllowOrDeny.DENY);
+        }
+
+        @Override
+        public void onAndroidPermissionsRequest(GeckoSession aSession, String[] aPermissions, Callback aCallback) {
+            aCallback.reject();
+        }
+
+        @Override
+        public void onContentPermissionRequest(GeckoSession aSession, String aUri, int aType, String aAccess, Callback aCallback) {
+            aCallback.reject();
+        }
+
+        @Override
+        public void onMediaPermissionRequest(GeckoSession aSession, String aUri, MediaSource[] aVideo, MediaSource[] aAudio, MediaCallback aCallback) {
+            aCallback.reject();
+        }
+    }
+
     public void toggleServo() {
         if (mCurrentSession == null) {
             return;
@@ -563,7 +1069,7 @@ public class SessionStore implements GeckoSession.NavigationDelegate, GeckoSessi
         boolean was_servo = isInstanceOfServoSession(mCurrentSession);
         String uri = getCurrentUri();
         SessionStore.SessionSettings settings = new SessionStore.SessionSettings();
-        settings.servo = !was_servo;
+        settings.engine = was_servo ? Engine.GECKO : Engine.SERVO;
         int id = createSession(settings);
         setCurrentSession(id);
         loadUri(uri);
@@ -670,6 +1176,10 @@ public class SessionStore implements GeckoSession.NavigationDelegate, GeckoSessi
     public void setUaMode(int mode) {
         if (mCurrentSession != null) {
             mCurrentSession.getSettings().setInt(GeckoSessionSettings.USER_AGENT_MODE, mode);
+            State state = mSessions.get(mCurrentSession.hashCode());
+            if (state != null) {
+                state.mSettings.userAgentMode = mode;
+            }
             mCurrentSession.reload();
         }
     }
@@ -693,6 +1203,7 @@ public class SessionStore implements GeckoSession.NavigationDelegate, GeckoSessi
                 removeSession(sessionId);
             }
             mPrivateSessionsStack.clear();
+            mSessionPool.clearPrivate();
         }
     }
 
@@ -749,9 +1260,11 @@ public class SessionStore implements GeckoSession.NavigationDelegate, GeckoSessi
                         mCurrentSession.close();
 
                         int oldSessionId = getCurrentSessionId();
-                        int sessionId = createSession();
+                        mSessionPool.clear();
+                        SessionSettings settings = new SessionSettings();
+                        settings.multiprocess = enabled;
+                        int sessionId = createSession(settings);
                         GeckoSession session = getSession(sessionId);
-                        session.getSettings().setBoolean(GeckoSessionSettings.USE_MULTIPROCESS, enabled);
                         session.restoreState(value);
                         setCurrentSession(sessionId);
                         removeSession(oldSessionId);
@@ -787,6 +1300,9 @@ public class SessionStore implements GeckoSession.NavigationDelegate, GeckoSessi
 
         state.mPreviousUri = state.mUri;
         state.mUri = aUri;
+        if (aUri != null && !aSession.getSettings().getBoolean(GeckoSessionSettings.USE_PRIVATE_MODE)) {
+            mVisitedUris.put(normalizeVisitedUri(aUri), true);
+        }
 
         for (GeckoSession.NavigationDelegate listener: mNavigationListeners) {
             listener.onLocationChange(aSession, aUri);
@@ -862,17 +1378,14 @@ public class SessionStore implements GeckoSession.NavigationDelegate, GeckoSessi
 
         pushSession(getCurrentSessionId());
 
-        int sessionId;
         boolean isPreviousPrivateMode = mCurrentSession.getSettings().getBoolean(GeckoSessionSettings.USE_PRIVATE_MODE);
-        if (isPreviousPrivateMode) {
-            SessionStore.SessionSettings settings = new SessionStore.SessionSettings();
-            settings.privateMode = true;
-            sessionId = createSession(settings);
-
-        } else {
-            sessionId = createSession();
-        }
+        SessionStore.SessionSettings settings = new SessionStore.SessionSettings();
+        settings.privateMode = isPreviousPrivateMode;
+        // GeckoView opens the session it gets back, so it can't come from the pool
+        settings.opened = false;
+        int sessionId = createSession(settings);
 
+        onSessionUnfocused(mCurrentSession);
         mCurrentSession = null;
         State state = mSessions.get(sessionId);
         if (state != null) {
@@ -882,6 +1395,7 @@ public class SessionStore implements GeckoSession.NavigationDelegate, GeckoSessi
             }
         }
         dumpAllState(mCurrentSession);
+        updateTabActivity();
 
         return GeckoResult.fromValue(getSession(sessionId));
     }
@@ -920,6 +1434,17 @@ public class SessionStore implements GeckoSession.NavigationDelegate, GeckoSessi
         if (!isLocalizedContent(state.mUri)) {
             TelemetryWrapper.uploadPageLoadToHistogram(state.mUri);
         }
+        if (aSession == mSubmitSession) {
+            recordSubmitLatency();
+        }
+        long recoveryTime = mCrashRecovery.onLoaded(aSession.hashCode(), SystemClock.elapsedRealtime());
+        if (recoveryTime >= 0) {
+            Log.d(LOGTAG, "Session recovered in " + recoveryTime + "ms, " + mCrashRecovery.getRecoveryLatency().toString());
+        }
+        if (b && state.mTier == TabActivityPolicy.TIER_ACTIVE) {
+            // Keep the state fresh in case the content process crashes
+            saveSessionState(state);
+        }
         for (GeckoSession.ProgressDelegate listener: mProgressListeners) {
             listener.onPageStop(aSession, b);
         }
@@ -996,13 +1521,43 @@ public class SessionStore implements GeckoSession.NavigationDelegate, GeckoSessi
     }
 
     @Override
-    public void onCrash(GeckoSession session) {
-        Log.e(LOGTAG,"Child crashed. Creating new session");
-        int crashedSessionId = SessionStore.get().getCurrentSessionId();
-        int newSessionId = createSession();
-        setCurrentSession(newSessionId);
-        loadUri(getHomeUri());
-        removeSession(crashedSessionId);
+    public void onCrash(GeckoSession aSession) {
+        int sessionId = aSession.hashCode();
+        State state = mSessions.get(sessionId);
+        if (state == null) {
+            return;
+        }
+
+        // Reuse the session so its id, listeners and windows stay the same
+        long now = SystemClock.elapsedRealtime();
+        if (!mCrashRecovery.onCrash(sessionId, now)) {
+            Log.e(LOGTAG, "Session " + sessionId + " keeps crashing, loading the home page");
+            state.mSessionState = null;
+            state.mUri = getHomeUri();
+        } else {
+            Log.e(LOGTAG, "Child crashed. Recovering session " + sessionId);
+        }
+        state.mIsLoading = false;
+        if (aSession.isOpen()) {
+            aSession.close();
+        }
+        if (aSession != mCurrentSession) {
+            // Recovered when it's focused again
+            state.mTier = TabActivityPolicy.TIER_DISCARDED;
+            return;
+        }
+
+        aSession.open(mRuntime);
+        restoreCrashedSession(state);
+        aSession.setActive(true);
+    }
+
+    private void restoreCrashedSession(State aState) {
+        if (aState.mSessionState != null) {
+            aState.mSession.restoreState(aState.mSessionState);
+        } else {
+            aState.mSession.loadUri(aState.mUri != null ? aState.mUri : getHomeUri());
+        }
     }
 
     // TextInput Delegate
@@ -0,0 +1,129 @@
+/* -*- Mode: Java; c-basic-offset: 4; tab-width: 4; indent-tabs-mode: nil; -*-
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.vrbrowser.browser;
+
+import android.net.Uri;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Process;
+import android.support.annotation.NonNull;
+import android.util.Log;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Uses the idle time while the user types in the URL bar to warm up the next load.
+// After a short pause the host the text would load is looked up, so the DNS answer is cached when
+// the page is requested. After a longer pause on text that resolves to a page already visited,
+// the page is prerendered in a hidden session that SessionStore swaps in if that URL is submitted.
+// Other text, e.g. a half typed host, only gets the DNS warmup.
+public class SpeculativeLoader {
+    private static final String LOGTAG = "VRB";
+    private static final long PRECONNECT_DELAY = 150;
+    private static final long PRERENDER_DELAY = 1000;
+    // Hosts looked up recently aren't looked up again for this long
+    private static final long HOST_WARMUP_TTL = 60000;
+    private static final int MAX_WARM_HOSTS = 32;
+
+    public interface Resolver {
+        // Returns the URL the text would load.
+        @NonNull String resolve(@NonNull String aText);
+        // True if the text is an URL rather than a search.
+        boolean isURL(@NonNull String aText);
+    }
+
+    private static HandlerThread sLookupThread;
+
+    private final Resolver mResolver;
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final Handler mLookupHandler;
+    private final Map<String, Long> mWarmHosts = new LinkedHashMap<String, Long>(MAX_WARM_HOSTS, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Long> aEldest) {
+            return size() > MAX_WARM_HOSTS;
+        }
+    };
+    private String mText = "";
+    private long mLookups;
+
+    public SpeculativeLoader(@NonNull Resolver aResolver) {
+        mResolver = aResolver;
+        synchronized (SpeculativeLoader.class) {
+            if (sLookupThread == null) {
+                sLookupThread = new HandlerThread("SpeculativeLoader", Process.THREAD_PRIORITY_BACKGROUND);
+                sLookupThread.start();
+            }
+        }
+        mLookupHandler = new Handler(sLookupThread.getLooper());
+    }
+
+    // Called on the UI thread when the URL bar text changes.
+    public void onTextChanged(@NonNull String aText) {
+        String text = aText.trim();
+        if (text.equals(mText)) {
+            return;
+        }
+        mText = text;
+        mHandler.removeCallbacks(mPreconnect);
+        mHandler.removeCallbacks(mPrerender);
+        if (text.isEmpty()) {
+            SessionStore.get().cancelPrerender();
+            return;
+        }
+        mHandler.postDelayed(mPreconnect, PRECONNECT_DELAY);
+        if (mResolver.isURL(text) && !SessionStore.get().isCurrentSessionPrivate() &&
+                SessionStore.get().isVisitedUri(mResolver.resolve(text))) {
+            mHandler.postDelayed(mPrerender, PRERENDER_DELAY);
+        }
+    }
+
+    // Stops the pending work, the prerendered page is kept until it's used or replaced.
+    public void cancel() {
+        mText = "";
+        mHandler.removeCallbacks(mPreconnect);
+        mHandler.removeCallbacks(mPrerender);
+    }
+
+    public long getLookupCount() {
+        return mLookups;
+    }
+
+    private final Runnable mPreconnect = new Runnable() {
+        @Override
+        public void run() {
+            final String host = Uri.parse(mResolver.resolve(mText)).getHost();
+            if (host == null || host.isEmpty()) {
+                return;
+            }
+            long now = System.currentTimeMillis();
+            Long warmed = mWarmHosts.get(host);
+            if (warmed != null && now - warmed < HOST_WARMUP_TTL) {
+                return;
+            }
+            mWarmHosts.put(host, now);
+            mLookups++;
+            mLookupHandler.post(() -> {
+                try {
+                    InetAddress.getAllByName(host);
+                } catch (UnknownHostException e) {
+                    // The user is still typing the host
+                } catch (SecurityException e) {
+                    Log.e(LOGTAG, "Unable to resolve " + host + ": " + e.toString());
+                }
+            });
+        }
+    };
+
+    private final Runnable mPrerender = new Runnable() {
+        @Override
+        public void run() {
+            SessionStore.get().prerenderUri(mResolver.resolve(mText));
+        }
+    };
+}
@@ -0,0 +1,105 @@
+/* -*- Mode: Java; c-basic-offset: 4; tab-width: 4; indent-tabs-mode: nil; -*-
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.vrbrowser.browser;
+
+import android.support.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// Decides which background sessions stay loaded. Sessions are already inactive in GeckoView as
+// soon as they lose focus. Background sessions are frozen, with their state saved, and then
+// discarded, based on the time since they last had focus. Discarding also happens earlier when
+// more background sessions are alive than the memory budget allows, starting with the least
+// recently focused. Sessions that can't be restored, like private ones, are never discarded.
+public class TabActivityPolicy {
+    // Loaded and left as it is
+    public static final int TIER_ACTIVE = 0;
+    public static final int TIER_FROZEN = 1;
+    public static final int TIER_DISCARDED = 2;
+    public static final int TIER_COUNT = 3;
+
+    public static class Entry {
+        public final int id;
+        public long lastFocusTime;
+        public boolean current;
+        public boolean discardable;
+        // Tier of the session, updated by update()
+        public int tier = TIER_ACTIVE;
+
+        public Entry(int aId) {
+            id = aId;
+        }
+    }
+
+    private final long mFreezeDelay;
+    private final long mDiscardDelay;
+    private int mMaxLiveSessions;
+    private final int[] mTierCounts = new int[TIER_COUNT];
+
+    // aMaxLiveSessions is the number of background sessions allowed to stay loaded.
+    public TabActivityPolicy(long aFreezeDelay, long aDiscardDelay, int aMaxLiveSessions) {
+        mFreezeDelay = aFreezeDelay;
+        mDiscardDelay = aDiscardDelay;
+        mMaxLiveSessions = aMaxLiveSessions;
+    }
+
+    public void setMaxLiveSessions(int aMaxLiveSessions) {
+        mMaxLiveSessions = Math.max(0, aMaxLiveSessions);
+    }
+
+    public int getMaxLiveSessions() {
+        return mMaxLiveSessions;
+    }
+
+    // Computes the tier of each entry at aNow.
+    public void update(@NonNull List<Entry> aEntries, long aNow) {
+        List<Entry> live = new ArrayList<>();
+        for (Entry entry: aEntries) {
+            long age = aNow - entry.lastFocusTime;
+            if (entry.current) {
+                entry.tier = TIER_ACTIVE;
+            } else if (entry.tier == TIER_DISCARDED) {
+                // Stays discarded until it gets focus again
+                continue;
+            } else if (age >= mDiscardDelay && entry.discardable) {
+                entry.tier = TIER_DISCARDED;
+            } else {
+                entry.tier = age >= mFreezeDelay ? TIER_FROZEN : TIER_ACTIVE;
+                if (entry.discardable) {
+                    live.add(entry);
+                }
+            }
+        }
+
+        if (live.size() > mMaxLiveSessions) {
+            // Least recently focused first
+            Collections.sort(live, (a, b) -> Long.compare(a.lastFocusTime, b.lastFocusTime));
+            for (int i = 0; i < live.size() - mMaxLiveSessions; i++) {
+                live.get(i).tier = TIER_DISCARDED;
+            }
+        }
+
+        for (int i = 0; i < TIER_COUNT; i++) {
+            mTierCounts[i] = 0;
+        }
+        for (Entry entry: aEntries) {
+            mTierCounts[entry.tier]++;
+        }
+    }
+
+    // Number of sessions in the tier after the last update().
+    public int getTierCount(int aTier) {
+        return mTierCounts[aTier];
+    }
+
+    @Override
+    public String toString() {
+        return "Sessions active: " + mTierCounts[TIER_ACTIVE] + ", frozen: " + mTierCounts[TIER_FROZEN] +
+                ", discarded: " + mTierCounts[TIER_DISCARDED];
+    }
+}
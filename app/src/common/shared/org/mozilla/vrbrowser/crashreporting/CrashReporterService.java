@@ -5,6 +5,7 @@ import android.content.Context;
 import android.content.Intent;
 import android.os.Build;
 import android.os.Process;
+import android.os.SystemClock;
 import android.support.annotation.NonNull;
 import android.support.v4.app.JobIntentService;
 import android.util.Log;
@@ -14,6 +15,8 @@ import org.mozilla.vrbrowser.BuildConfig;
 import org.mozilla.vrbrowser.R;
 import org.mozilla.vrbrowser.VRBrowserActivity;
 
+import java.util.List;
+
 public class CrashReporterService extends JobIntentService {
 
     private static final String LOGTAG = "VRB";
@@ -21,7 +24,10 @@ public class CrashReporterService extends JobIntentService {
     public static final String CRASH_ACTION = "org.mozilla.vrbrowser.CRASH_ACTION";
     public static final String DATA_TAG = "intent";
 
-    private static final int PID_CHECK_INTERVAL = 100;
+    private static final int MIN_PID_CHECK_INTERVAL = 10;
+    private static final int MAX_PID_CHECK_INTERVAL = 200;
+    // Processes still running after this long are killed before restarting
+    private static final int MAX_PROCESS_WAIT = 5000;
     private static final int JOB_ID = 1000;
 
     @Override
@@ -49,31 +55,10 @@ public class CrashReporterService extends JobIntentService {
                     return;
                 }
 
-                do {
-                    boolean otherProcessesFound = false;
-                    for (final ActivityManager.RunningAppProcessInfo info : activityManager.getRunningAppProcesses()) {
-                        if (pid != info.pid) {
-                            otherProcessesFound = true;
-                            Log.e(LOGTAG, "======> Found PID " + info.pid);
-                            break;
-                        }
-                    }
-
-                    if (!otherProcessesFound) {
-                        intent.setClass(CrashReporterService.this, VRBrowserActivity.class);
-                        intent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
-                        startActivity(intent);
-                        break;
-
-                    } else {
-                        try {
-                            Thread.sleep(PID_CHECK_INTERVAL);
-                        } catch (InterruptedException e) {
-                            e.printStackTrace();
-                        }
-                    }
-
-                } while (true);
+                waitForOtherProcesses(activityManager, pid);
+                intent.setClass(CrashReporterService.this, VRBrowserActivity.class);
+                intent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
+                startActivity(intent);
 
             } else {
                 Log.d(LOGTAG, "======> NATIVE CRASH CONTENT" + intent);
@@ -86,4 +71,43 @@ public class CrashReporterService extends JobIntentService {
         Log.d(LOGTAG, "======> Crash reporter job finished");
     }
 
+    // Waits until the other processes of the app are gone, so the restarted activity doesn't
+    // reuse the crashed ones. There is no death notification for processes we aren't bound to,
+    // so the process list is checked with a growing interval, and the processes still running
+    // at the deadline are killed.
+    private void waitForOtherProcesses(@NonNull ActivityManager aActivityManager, int aPid) {
+        final long start = SystemClock.elapsedRealtime();
+        long interval = MIN_PID_CHECK_INTERVAL;
+        while (true) {
+            List<ActivityManager.RunningAppProcessInfo> processes = aActivityManager.getRunningAppProcesses();
+            int otherPid = -1;
+            if (processes != null) {
+                for (final ActivityManager.RunningAppProcessInfo info : processes) {
+                    if (aPid != info.pid) {
+                        otherPid = info.pid;
+                        break;
+                    }
+                }
+            }
+
+            long elapsed = SystemClock.elapsedRealtime() - start;
+            if (otherPid < 0) {
+                Log.d(LOGTAG, "======> Processes exited after " + elapsed + "ms");
+                return;
+            }
+            if (elapsed >= MAX_PROCESS_WAIT) {
+                for (final ActivityManager.RunningAppProcessInfo info : processes) {
+                    if (aPid != info.pid) {
+                        Log.e(LOGTAG, "======> Killing PID " + info.pid);
+                        Process.killProcess(info.pid);
+                    }
+                }
+                return;
+            }
+
+            SystemClock.sleep(Math.min(interval, MAX_PROCESS_WAIT - elapsed));
+            interval = Math.min(interval * 2, MAX_PID_CHECK_INTERVAL);
+        }
+    }
+
 }
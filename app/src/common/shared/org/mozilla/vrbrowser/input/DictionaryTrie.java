@@ -0,0 +1,401 @@
+/* -*- Mode: Java; c-basic-offset: 4; tab-width: 4; indent-tabs-mode: nil; -*-
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.vrbrowser.input;
+
+import android.support.annotation.NonNull;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+// Read only dictionary trie with unigram and bigram frequencies, stored in a flat int buffer so it
+// can be memory mapped from a file instead of being parsed into objects.
+//
+// Layout (big endian ints): a header, the nodes in breadth first order so the children of a node
+// are contiguous and sorted by character, then the bigram table sorted by (first word, second word).
+// Words are stored lower case. Queries reuse internal scratch arrays, so an instance must only be
+// queried from one thread at a time.
+public class DictionaryTrie {
+    public static final int NO_NODE = -1;
+    public static final int MAX_FREQUENCY = 255;
+
+    static final int MAGIC = 0x56524454; // "VRDT"
+    static final int VERSION = 1;
+    private static final int HEADER_SIZE = 4;
+
+    // Node fields
+    private static final int NODE_SIZE = 6;
+    private static final int CHAR_AND_CHILD_COUNT = 0; // Char in the low 16 bits, child count in the high 16 bits
+    private static final int FIRST_CHILD = 1;
+    private static final int PARENT = 2;
+    private static final int FREQUENCY = 3; // 0 if the node doesn't end a word
+    private static final int SUBTREE_FREQUENCY = 4; // Max word frequency in the subtree
+    private static final int FIRST_BIGRAM = 5;
+
+    // Bigram fields
+    private static final int BIGRAM_SIZE = 2;
+    private static final int BIGRAM_NODE = 0;
+    private static final int BIGRAM_FREQUENCY = 1;
+
+    private final IntBuffer mData;
+    private final int mNodeCount;
+    private final int mBigramCount;
+    private final int mBigramOffset;
+
+    // Scratch max-heap used by complete(). Entries are node indices, or ~node for a word result.
+    private int[] mHeap = new int[64];
+    private int[] mHeapKeys = new int[64];
+    private int mHeapSize;
+
+    public DictionaryTrie(@NonNull ByteBuffer aBuffer) {
+        mData = aBuffer.order(ByteOrder.BIG_ENDIAN).asIntBuffer();
+        if (mData.limit() < HEADER_SIZE || mData.get(0) != MAGIC) {
+            throw new IllegalArgumentException("Invalid dictionary");
+        }
+        if (mData.get(1) != VERSION) {
+            throw new IllegalArgumentException("Unsupported dictionary version: " + mData.get(1));
+        }
+        mNodeCount = mData.get(2);
+        mBigramCount = mData.get(3);
+        mBigramOffset = HEADER_SIZE + mNodeCount * NODE_SIZE;
+        if (mNodeCount < 1 || mData.limit() < mBigramOffset + mBigramCount * BIGRAM_SIZE) {
+            throw new IllegalArgumentException("Truncated dictionary");
+        }
+    }
+
+    public int getNodeCount() {
+        return mNodeCount;
+    }
+
+    public int getBigramCount() {
+        return mBigramCount;
+    }
+
+    // Returns the node reached by aWord (lower case), or NO_NODE.
+    public int findNode(@NonNull CharSequence aWord) {
+        int node = 0;
+        for (int i = 0; i < aWord.length() && node != NO_NODE; i++) {
+            node = findChild(node, aWord.charAt(i));
+        }
+        return node;
+    }
+
+    // Returns the frequency of aWord, 0 if it's not in the dictionary.
+    public int getFrequency(@NonNull CharSequence aWord) {
+        int node = findNode(aWord);
+        return node != NO_NODE ? getNodeFrequency(node) : 0;
+    }
+
+    public int getNodeFrequency(int aNode) {
+        return field(aNode, FREQUENCY);
+    }
+
+    // Appends the word ending at aNode to aOut.
+    public void getWord(int aNode, @NonNull StringBuilder aOut) {
+        int start = aOut.length();
+        while (aNode > 0) {
+            aOut.append((char)(field(aNode, CHAR_AND_CHILD_COUNT) & 0xFFFF));
+            aNode = field(aNode, PARENT);
+        }
+        // Chars were appended from the leaf up.
+        for (int i = start, j = aOut.length() - 1; i < j; i++, j--) {
+            char c = aOut.charAt(i);
+            aOut.setCharAt(i, aOut.charAt(j));
+            aOut.setCharAt(j, c);
+        }
+    }
+
+    // Finds up to aResults.length words starting with aPrefix, most frequent first.
+    // Fills aResults with their nodes and returns how many were found.
+    public int complete(@NonNull CharSequence aPrefix, @NonNull int[] aResults) {
+        int node = findNode(aPrefix);
+        if (node == NO_NODE || aResults.length == 0) {
+            return 0;
+        }
+
+        // Best first search: subtrees are expanded by their max frequency, so words come out sorted.
+        int found = 0;
+        mHeapSize = 0;
+        push(node, field(node, SUBTREE_FREQUENCY));
+        while (mHeapSize > 0 && found < aResults.length) {
+            int entry = pop();
+            if (entry < 0) {
+                aResults[found++] = ~entry;
+                continue;
+            }
+            int frequency = field(entry, FREQUENCY);
+            if (frequency > 0) {
+                push(~entry, frequency);
+            }
+            int child = field(entry, FIRST_CHILD);
+            int childCount = field(entry, CHAR_AND_CHILD_COUNT) >>> 16;
+            for (int i = 0; i < childCount; i++, child++) {
+                push(child, field(child, SUBTREE_FREQUENCY));
+            }
+        }
+        return found;
+    }
+
+    // Bigrams of the word ending at aNode are the entries [getFirstBigram(aNode), getFirstBigram(aNode + 1)).
+    public int getFirstBigram(int aNode) {
+        return field(aNode, FIRST_BIGRAM);
+    }
+
+    public int getBigramEnd(int aNode) {
+        return aNode + 1 < mNodeCount ? field(aNode + 1, FIRST_BIGRAM) : mBigramCount;
+    }
+
+    public int getBigramNode(int aBigram) {
+        return mData.get(mBigramOffset + aBigram * BIGRAM_SIZE + BIGRAM_NODE);
+    }
+
+    public int getBigramFrequency(int aBigram) {
+        return mData.get(mBigramOffset + aBigram * BIGRAM_SIZE + BIGRAM_FREQUENCY);
+    }
+
+    // Returns the frequency of the bigram (aFirstNode, aSecondNode), 0 if unknown.
+    public int getBigramFrequency(int aFirstNode, int aSecondNode) {
+        if (aFirstNode == NO_NODE || aSecondNode == NO_NODE) {
+            return 0;
+        }
+        int low = getFirstBigram(aFirstNode);
+        int high = getBigramEnd(aFirstNode) - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int node = getBigramNode(middle);
+            if (node < aSecondNode) {
+                low = middle + 1;
+            } else if (node > aSecondNode) {
+                high = middle - 1;
+            } else {
+                return getBigramFrequency(middle);
+            }
+        }
+        return 0;
+    }
+
+    private int field(int aNode, int aField) {
+        return mData.get(HEADER_SIZE + aNode * NODE_SIZE + aField);
+    }
+
+    private int findChild(int aNode, char aChar) {
+        int low = field(aNode, FIRST_CHILD);
+        int high = low + (field(aNode, CHAR_AND_CHILD_COUNT) >>> 16) - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            char c = (char)(field(middle, CHAR_AND_CHILD_COUNT) & 0xFFFF);
+            if (c < aChar) {
+                low = middle + 1;
+            } else if (c > aChar) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return NO_NODE;
+    }
+
+    private void push(int aEntry, int aKey) {
+        if (mHeapSize == mHeap.length) {
+            mHeap = java.util.Arrays.copyOf(mHeap, mHeapSize * 2);
+            mHeapKeys = java.util.Arrays.copyOf(mHeapKeys, mHeapSize * 2);
+        }
+        // Word results go before subtrees with the same key, so they come out first.
+        int index = mHeapSize++;
+        while (index > 0) {
+            int parent = (index - 1) / 2;
+            if (!greater(aEntry, aKey, mHeap[parent], mHeapKeys[parent])) {
+                break;
+            }
+            mHeap[index] = mHeap[parent];
+            mHeapKeys[index] = mHeapKeys[parent];
+            index = parent;
+        }
+        mHeap[index] = aEntry;
+        mHeapKeys[index] = aKey;
+    }
+
+    private int pop() {
+        int result = mHeap[0];
+        int entry = mHeap[--mHeapSize];
+        int key = mHeapKeys[mHeapSize];
+        int index = 0;
+        while (true) {
+            int child = index * 2 + 1;
+            if (child >= mHeapSize) {
+                break;
+            }
+            if (child + 1 < mHeapSize && greater(mHeap[child + 1], mHeapKeys[child + 1], mHeap[child], mHeapKeys[child])) {
+                child++;
+            }
+            if (!greater(mHeap[child], mHeapKeys[child], entry, key)) {
+                break;
+            }
+            mHeap[index] = mHeap[child];
+            mHeapKeys[index] = mHeapKeys[child];
+            index = child;
+        }
+        mHeap[index] = entry;
+        mHeapKeys[index] = key;
+        return result;
+    }
+
+    private static boolean greater(int aEntry, int aKey, int aOtherEntry, int aOtherKey) {
+        if (aKey != aOtherKey) {
+            return aKey > aOtherKey;
+        }
+        if ((aEntry < 0) != (aOtherEntry < 0)) {
+            return aEntry < 0;
+        }
+        // Ties in node order, which is alphabetical within a level.
+        return aEntry < 0 ? ~aEntry < ~aOtherEntry : aEntry < aOtherEntry;
+    }
+
+    // Builds the serialized form of a dictionary.
+    public static class Builder {
+        private static class Node {
+            final char mChar;
+            final Node mParent;
+            final TreeMap<Character, Node> mChildren = new TreeMap<>();
+            final TreeMap<Node, Integer> mBigrams = new TreeMap<>((a, b) -> Integer.compare(a.mIndex, b.mIndex));
+            int mFrequency;
+            int mSubtreeFrequency;
+            int mIndex;
+
+            Node(char aChar, Node aParent) {
+                mChar = aChar;
+                mParent = aParent;
+            }
+        }
+
+        private final Node mRoot = new Node('\0', null);
+        // Bigrams are resolved once all the nodes have an index.
+        private final ArrayList<String[]> mBigrams = new ArrayList<>();
+        private final ArrayList<Integer> mBigramFrequencies = new ArrayList<>();
+
+        public Builder addWord(@NonNull String aWord, int aFrequency) {
+            Node node = mRoot;
+            String word = aWord.toLowerCase(Locale.ROOT);
+            for (int i = 0; i < word.length(); i++) {
+                char c = word.charAt(i);
+                Node child = node.mChildren.get(c);
+                if (child == null) {
+                    child = new Node(c, node);
+                    node.mChildren.put(c, child);
+                }
+                node = child;
+            }
+            if (node != mRoot) {
+                node.mFrequency = Math.max(node.mFrequency, clamp(aFrequency));
+            }
+            return this;
+        }
+
+        public Builder addBigram(@NonNull String aFirst, @NonNull String aSecond, int aFrequency) {
+            mBigrams.add(new String[] { aFirst.toLowerCase(Locale.ROOT), aSecond.toLowerCase(Locale.ROOT) });
+            mBigramFrequencies.add(clamp(aFrequency));
+            return this;
+        }
+
+        // Reads "word frequency" and "first second frequency" lines. Lines starting with # are ignored.
+        public Builder parse(@NonNull Reader aReader) throws IOException {
+            BufferedReader reader = new BufferedReader(aReader);
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] parts = line.split("\\s+");
+                try {
+                    if (parts.length == 2) {
+                        addWord(parts[0], Integer.parseInt(parts[1]));
+                    } else if (parts.length == 3) {
+                        addBigram(parts[0], parts[1], Integer.parseInt(parts[2]));
+                    }
+                } catch (NumberFormatException e) {
+                    throw new IOException("Invalid dictionary line: " + line);
+                }
+            }
+            return this;
+        }
+
+        @NonNull
+        public ByteBuffer build() {
+            // Breadth first order so siblings are contiguous.
+            ArrayList<Node> nodes = new ArrayList<>();
+            ArrayDeque<Node> queue = new ArrayDeque<>();
+            queue.add(mRoot);
+            while (!queue.isEmpty()) {
+                Node node = queue.poll();
+                node.mIndex = nodes.size();
+                nodes.add(node);
+                queue.addAll(node.mChildren.values());
+            }
+            for (int i = nodes.size() - 1; i >= 0; i--) {
+                Node node = nodes.get(i);
+                node.mSubtreeFrequency = Math.max(node.mSubtreeFrequency, node.mFrequency);
+                if (node.mParent != null) {
+                    node.mParent.mSubtreeFrequency = Math.max(node.mParent.mSubtreeFrequency, node.mSubtreeFrequency);
+                }
+            }
+
+            int bigramCount = 0;
+            for (int i = 0; i < mBigrams.size(); i++) {
+                Node first = find(mBigrams.get(i)[0]);
+                Node second = find(mBigrams.get(i)[1]);
+                if (first == null || second == null || first.mFrequency == 0 || second.mFrequency == 0) {
+                    continue;
+                }
+                Integer existing = first.mBigrams.put(second, mBigramFrequencies.get(i));
+                if (existing == null) {
+                    bigramCount++;
+                }
+            }
+
+            ByteBuffer buffer = ByteBuffer.allocate(4 * (HEADER_SIZE + nodes.size() * NODE_SIZE + bigramCount * BIGRAM_SIZE));
+            IntBuffer data = buffer.order(ByteOrder.BIG_ENDIAN).asIntBuffer();
+            data.put(MAGIC).put(VERSION).put(nodes.size()).put(bigramCount);
+            int bigram = 0;
+            for (Node node: nodes) {
+                int firstChild = node.mChildren.isEmpty() ? 0 : node.mChildren.firstEntry().getValue().mIndex;
+                data.put(node.mChar | (node.mChildren.size() << 16));
+                data.put(firstChild);
+                data.put(node.mParent != null ? node.mParent.mIndex : NO_NODE);
+                data.put(node.mFrequency);
+                data.put(node.mSubtreeFrequency);
+                data.put(bigram);
+                bigram += node.mBigrams.size();
+            }
+            for (Node node: nodes) {
+                for (Map.Entry<Node, Integer> entry: node.mBigrams.entrySet()) {
+                    data.put(entry.getKey().mIndex).put(entry.getValue());
+                }
+            }
+            return buffer;
+        }
+
+        private Node find(String aWord) {
+            Node node = mRoot;
+            for (int i = 0; i < aWord.length() && node != null; i++) {
+                node = node.mChildren.get(aWord.charAt(i));
+            }
+            return node;
+        }
+
+        private static int clamp(int aFrequency) {
+            return Math.max(1, Math.min(MAX_FREQUENCY, aFrequency));
+        }
+    }
+}
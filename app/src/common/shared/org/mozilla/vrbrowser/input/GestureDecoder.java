@@ -0,0 +1,275 @@
+/* -*- Mode: Java; c-basic-offset: 4; tab-width: 4; indent-tabs-mode: nil; -*-
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.vrbrowser.input;
+
+import android.support.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Decodes gesture typing paths into words.
+// Each dictionary word has a template: the polyline through the centers of its keys, resampled to
+// a fixed number of points. A traced path is resampled the same way and compared to the templates
+// with dynamic time warping restricted to a band around the diagonal. Words whose first or last
+// key is far from the ends of the path are skipped, and the warping of a word is abandoned as soon
+// as it can't beat the current best candidates. Doesn't depend on Android, coordinates are in any
+// unit as long as the key centers and the paths use the same one.
+public class GestureDecoder {
+    private static final int SAMPLES = 32;
+    private static final int BAND = 4;
+    // Max distance, in key widths, between the ends of the path and the first and last keys.
+    private static final float END_RADIUS = 1.5f;
+    // Weight of the word frequency (0..255) against the mean distance in key widths.
+    private static final float FREQUENCY_WEIGHT = 0.15f;
+
+    private final char[] mKeys;
+    private final float[] mKeyX;
+    private final float[] mKeyY;
+    private final float mKeyWidth;
+
+    private String[] mWords = new String[0];
+    private float[] mFrequencyScores = new float[0];
+    // Templates of all the words, SAMPLES points each.
+    private float[] mTemplateX = new float[0];
+    private float[] mTemplateY = new float[0];
+    private int[] mFirstKey = new int[0];
+    private int[] mLastKey = new int[0];
+
+    // Scratch buffers, decode() isn't thread safe.
+    private final float[] mPathX = new float[SAMPLES];
+    private final float[] mPathY = new float[SAMPLES];
+    private final float[] mPrevious = new float[SAMPLES];
+    private final float[] mCurrent = new float[SAMPLES];
+    private final float[] mDistances = new float[SAMPLES * SAMPLES];
+
+    public static class Candidate {
+        public final String word;
+        public final float score;
+
+        Candidate(String aWord, float aScore) {
+            word = aWord;
+            score = aScore;
+        }
+    }
+
+    // aKeys are the characters typed by the keys centered at (aKeyX[i], aKeyY[i]).
+    public GestureDecoder(@NonNull char[] aKeys, @NonNull float[] aKeyX, @NonNull float[] aKeyY, float aKeyWidth) {
+        if (aKeys.length != aKeyX.length || aKeys.length != aKeyY.length) {
+            throw new IllegalArgumentException("Key arrays must have the same length");
+        }
+        mKeys = aKeys.clone();
+        mKeyX = aKeyX.clone();
+        mKeyY = aKeyY.clone();
+        mKeyWidth = aKeyWidth;
+    }
+
+    // Sets the words that can be decoded. Words with characters not on the keyboard are ignored.
+    public void setWords(@NonNull List<String> aWords, @NonNull int[] aFrequencies) {
+        ArrayList<String> words = new ArrayList<>();
+        float[] templateX = new float[aWords.size() * SAMPLES];
+        float[] templateY = new float[aWords.size() * SAMPLES];
+        int[] firstKey = new int[aWords.size()];
+        int[] lastKey = new int[aWords.size()];
+        float[] frequencies = new float[aWords.size()];
+        float[] pointsX = new float[64];
+        float[] pointsY = new float[64];
+
+        for (int i = 0; i < aWords.size(); i++) {
+            String word = aWords.get(i);
+            int count = 0;
+            int previousKey = -1;
+            boolean valid = word.length() > 1;
+            for (int j = 0; j < word.length() && valid; j++) {
+                int key = findKey(Character.toLowerCase(word.charAt(j)));
+                if (key < 0) {
+                    valid = false;
+                } else if (key != previousKey) {
+                    // Double letters don't change the path
+                    if (count == pointsX.length) {
+                        pointsX = Arrays.copyOf(pointsX, count * 2);
+                        pointsY = Arrays.copyOf(pointsY, count * 2);
+                    }
+                    pointsX[count] = mKeyX[key];
+                    pointsY[count] = mKeyY[key];
+                    count++;
+                    previousKey = key;
+                }
+            }
+            if (!valid) {
+                continue;
+            }
+            int index = words.size();
+            resample(pointsX, pointsY, count, templateX, templateY, index * SAMPLES);
+            firstKey[index] = findKey(Character.toLowerCase(word.charAt(0)));
+            lastKey[index] = previousKey;
+            frequencies[index] = FREQUENCY_WEIGHT * Math.max(0, Math.min(255, aFrequencies[i])) / 255.0f;
+            words.add(word);
+        }
+
+        int count = words.size();
+        mWords = words.toArray(new String[count]);
+        mTemplateX = Arrays.copyOf(templateX, count * SAMPLES);
+        mTemplateY = Arrays.copyOf(templateY, count * SAMPLES);
+        mFirstKey = Arrays.copyOf(firstKey, count);
+        mLastKey = Arrays.copyOf(lastKey, count);
+        mFrequencyScores = Arrays.copyOf(frequencies, count);
+    }
+
+    public int getWordCount() {
+        return mWords.length;
+    }
+
+    // Returns up to aMax words for the first aCount points of the path, best first.
+    @NonNull
+    public List<Candidate> decode(@NonNull float[] aX, @NonNull float[] aY, int aCount, int aMax) {
+        ArrayList<Candidate> result = new ArrayList<>();
+        if (aCount < 2 || aMax <= 0 || mWords.length == 0) {
+            return result;
+        }
+        resample(aX, aY, aCount, mPathX, mPathY, 0);
+
+        float radius = END_RADIUS * mKeyWidth;
+        float radiusSquared = radius * radius;
+        float startX = aX[0], startY = aY[0];
+        float endX = aX[aCount - 1], endY = aY[aCount - 1];
+
+        // Kept sorted by score, worst last.
+        String[] bestWords = new String[aMax];
+        float[] bestScores = new float[aMax];
+        int found = 0;
+
+        for (int word = 0; word < mWords.length; word++) {
+            int first = mFirstKey[word];
+            int last = mLastKey[word];
+            if (distanceSquared(startX, startY, mKeyX[first], mKeyY[first]) > radiusSquared ||
+                distanceSquared(endX, endY, mKeyX[last], mKeyY[last]) > radiusSquared) {
+                continue;
+            }
+            // Scores are mean distances in key widths minus the frequency bonus.
+            float limit = found == aMax ? bestScores[aMax - 1] + mFrequencyScores[word] : Float.MAX_VALUE;
+            float distance = warp(word, limit * mKeyWidth * SAMPLES);
+            if (distance == Float.MAX_VALUE) {
+                continue;
+            }
+            float score = distance / (SAMPLES * mKeyWidth) - mFrequencyScores[word];
+            if (found == aMax && score >= bestScores[aMax - 1]) {
+                continue;
+            }
+            int index = found < aMax ? found++ : aMax - 1;
+            while (index > 0 && bestScores[index - 1] > score) {
+                bestScores[index] = bestScores[index - 1];
+                bestWords[index] = bestWords[index - 1];
+                index--;
+            }
+            bestScores[index] = score;
+            bestWords[index] = mWords[word];
+        }
+
+        for (int i = 0; i < found; i++) {
+            result.add(new Candidate(bestWords[i], bestScores[i]));
+        }
+        return result;
+    }
+
+    // Banded DTW between the resampled path and a template. Returns Float.MAX_VALUE if the
+    // distance exceeds aLimit.
+    private float warp(int aWord, float aLimit) {
+        int offset = aWord * SAMPLES;
+        for (int i = 0; i < SAMPLES; i++) {
+            int from = Math.max(0, i - BAND);
+            int to = Math.min(SAMPLES - 1, i + BAND);
+            for (int j = from; j <= to; j++) {
+                mDistances[i * SAMPLES + j] = (float)Math.sqrt(distanceSquared(mPathX[i], mPathY[i],
+                        mTemplateX[offset + j], mTemplateY[offset + j]));
+            }
+        }
+
+        float[] previous = mPrevious;
+        float[] current = mCurrent;
+        for (int i = 0; i < SAMPLES; i++) {
+            int from = Math.max(0, i - BAND);
+            int to = Math.min(SAMPLES - 1, i + BAND);
+            float rowMin = Float.MAX_VALUE;
+            for (int j = 0; j < SAMPLES; j++) {
+                if (j < from || j > to) {
+                    current[j] = Float.MAX_VALUE;
+                    continue;
+                }
+                float best;
+                if (i == 0 && j == 0) {
+                    best = 0;
+                } else {
+                    best = Float.MAX_VALUE;
+                    if (i > 0) {
+                        best = Math.min(best, previous[j]);
+                        if (j > 0) {
+                            best = Math.min(best, previous[j - 1]);
+                        }
+                    }
+                    if (j > 0) {
+                        best = Math.min(best, current[j - 1]);
+                    }
+                }
+                current[j] = best == Float.MAX_VALUE ? Float.MAX_VALUE : best + mDistances[i * SAMPLES + j];
+                rowMin = Math.min(rowMin, current[j]);
+            }
+            // Costs only grow along the path, stop once every cell is over the limit.
+            if (rowMin > aLimit) {
+                return Float.MAX_VALUE;
+            }
+            float[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        float distance = previous[SAMPLES - 1];
+        return distance > aLimit ? Float.MAX_VALUE : distance;
+    }
+
+    private int findKey(char aChar) {
+        for (int i = 0; i < mKeys.length; i++) {
+            if (mKeys[i] == aChar) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // Resamples the polyline to SAMPLES points evenly spaced along its length.
+    private static void resample(float[] aX, float[] aY, int aCount, float[] aOutX, float[] aOutY, int aOffset) {
+        float length = 0;
+        for (int i = 1; i < aCount; i++) {
+            length += (float)Math.sqrt(distanceSquared(aX[i - 1], aY[i - 1], aX[i], aY[i]));
+        }
+        if (aCount < 2 || length == 0) {
+            Arrays.fill(aOutX, aOffset, aOffset + SAMPLES, aX[0]);
+            Arrays.fill(aOutY, aOffset, aOffset + SAMPLES, aY[0]);
+            return;
+        }
+
+        float step = length / (SAMPLES - 1);
+        int segment = 1;
+        float segmentStart = 0;
+        float segmentLength = (float)Math.sqrt(distanceSquared(aX[0], aY[0], aX[1], aY[1]));
+        for (int i = 0; i < SAMPLES; i++) {
+            float target = Math.min(i * step, length);
+            while (segment < aCount - 1 && segmentStart + segmentLength < target) {
+                segmentStart += segmentLength;
+                segment++;
+                segmentLength = (float)Math.sqrt(distanceSquared(aX[segment - 1], aY[segment - 1], aX[segment], aY[segment]));
+            }
+            float t = segmentLength > 0 ? Math.min(1.0f, (target - segmentStart) / segmentLength) : 0;
+            aOutX[aOffset + i] = aX[segment - 1] + (aX[segment] - aX[segment - 1]) * t;
+            aOutY[aOffset + i] = aY[segment - 1] + (aY[segment] - aY[segment - 1]) * t;
+        }
+    }
+
+    private static float distanceSquared(float aX1, float aY1, float aX2, float aY2) {
+        float dx = aX1 - aX2;
+        float dy = aY1 - aY2;
+        return dx * dx + dy * dy;
+    }
+}
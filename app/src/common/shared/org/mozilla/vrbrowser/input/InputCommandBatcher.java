@@ -0,0 +1,341 @@
+/* -*- Mode: Java; c-basic-offset: 4; tab-width: 4; indent-tabs-mode: nil; -*-
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.vrbrowser.input;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.view.inputmethod.InputConnection;
+
+import java.util.ArrayList;
+import java.util.concurrent.Executor;
+
+// Queues the keyboard input commands for an InputConnection and applies them in batches.
+// Consecutive text commits are merged into a single commitText() and consecutive backspaces into
+// a single deleteSurroundingText(), so fast typing or key repeat doesn't cost one round trip into
+// Gecko per character. Selection updates and other commands act as barriers: they are applied in
+// the order they were queued relative to the text commands.
+//
+// The batcher also keeps the text before the cursor as its commands leave it, so predictions
+// don't read it back from Gecko after every key. It is only read again after the cursor or the
+// selection moved, or after a command that edits the connection directly.
+//
+// Commands are queued from the UI thread. The flush is scheduled once per batch with the executor
+// (usually posting to the InputConnection handler) and runs on that thread.
+public class InputCommandBatcher {
+    private static final int TYPE_TEXT = 0;
+    private static final int TYPE_BACKSPACE = 1;
+    private static final int TYPE_SELECTION = 2;
+    private static final int TYPE_COMMAND = 3;
+    private static final int MAX_TRACKED_TEXT = 256;
+
+    public interface Command {
+        void run(@NonNull InputConnection aConnection);
+    }
+
+    private static class Op {
+        int mType;
+        final StringBuilder mText = new StringBuilder();
+        int mCount;
+        int mSelectionStart;
+        int mSelectionEnd;
+        int mCompositionStart;
+        int mCompositionEnd;
+        Command mCommand;
+        boolean mTracked;
+    }
+
+    private final InputConnection mConnection;
+    private final Executor mExecutor;
+    // Ops are recycled: mPending holds mPendingCount live ops, the rest are spares.
+    private ArrayList<Op> mPending = new ArrayList<>();
+    private ArrayList<Op> mFlushing = new ArrayList<>();
+    private int mPendingCount;
+    private boolean mFlushScheduled;
+    private long mKeystrokes;
+    private long mCommits;
+    // Text before the cursor, only accessed on the InputConnection thread.
+    private final StringBuilder mTextBeforeCursor = new StringBuilder();
+    private boolean mTextKnown;
+    // Whether mTextBeforeCursor starts at the beginning of the field
+    private boolean mTextComplete;
+    // Expected cursor position, tells the selection updates echoing our edits from cursor moves
+    private int mCursor = -1;
+
+    private final Runnable mFlushRunnable = this::flush;
+
+    public InputCommandBatcher(@NonNull InputConnection aConnection, @NonNull Executor aExecutor) {
+        mConnection = aConnection;
+        mExecutor = aExecutor;
+    }
+
+    @NonNull
+    public InputConnection getInputConnection() {
+        return mConnection;
+    }
+
+    public void commitText(char aChar) {
+        synchronized (this) {
+            mKeystrokes++;
+            textOp().mText.append(aChar);
+        }
+        scheduleFlush();
+    }
+
+    public void commitText(@NonNull CharSequence aText) {
+        synchronized (this) {
+            mKeystrokes++;
+            textOp().mText.append(aText);
+        }
+        scheduleFlush();
+    }
+
+    // Deletes the selection if there is one, the character before the cursor otherwise.
+    public void backspace() {
+        synchronized (this) {
+            mKeystrokes++;
+            Op last = lastOp();
+            if (last != null && last.mType == TYPE_TEXT && last.mText.length() > 0) {
+                // Nothing is selected after a commit, so deleting pending text just drops it.
+                // A surrogate pair is dropped as a whole.
+                int length = last.mText.length();
+                last.mText.setLength(length - Character.charCount(Character.codePointBefore(last.mText, length)));
+            } else if (last != null && last.mType == TYPE_BACKSPACE) {
+                last.mCount++;
+            } else {
+                newOp(TYPE_BACKSPACE).mCount = 1;
+            }
+        }
+        scheduleFlush();
+    }
+
+    public void updateSelection(int aSelectionStart, int aSelectionEnd, int aCompositionStart, int aCompositionEnd) {
+        synchronized (this) {
+            Op last = lastOp();
+            Op op;
+            if (last != null && last.mType == TYPE_SELECTION && (aCompositionStart >= 0 || last.mCompositionStart < 0)) {
+                // Only the latest selection matters.
+                op = last;
+            } else {
+                op = newOp(TYPE_SELECTION);
+            }
+            op.mSelectionStart = aSelectionStart;
+            op.mSelectionEnd = aSelectionEnd;
+            op.mCompositionStart = aCompositionStart;
+            op.mCompositionEnd = aCompositionEnd;
+        }
+        scheduleFlush();
+    }
+
+    // Queues any other command (editor actions, long press deletes...) keeping the ordering.
+    // The text before the cursor is read again after it.
+    public void post(@NonNull Command aCommand) {
+        post(aCommand, false);
+    }
+
+    // Queues a command that only reads and edits the text with getTextBeforeCursor() and
+    // replaceTextBeforeCursor(), so the text known before the cursor stays valid.
+    public void postTracked(@NonNull Command aCommand) {
+        post(aCommand, true);
+    }
+
+    private void post(@NonNull Command aCommand, boolean aTracked) {
+        synchronized (this) {
+            Op op = newOp(TYPE_COMMAND);
+            op.mCommand = aCommand;
+            op.mTracked = aTracked;
+        }
+        scheduleFlush();
+    }
+
+    // Returns up to aLength characters before the cursor, reading them from the connection only
+    // if they aren't known. Call it from a command, on the InputConnection thread.
+    @Nullable
+    public CharSequence getTextBeforeCursor(int aLength) {
+        if (!mTextKnown || (mTextBeforeCursor.length() < aLength && !mTextComplete)) {
+            CharSequence text = mConnection.getTextBeforeCursor(aLength, 0);
+            if (text == null) {
+                resetText();
+                return null;
+            }
+            mTextBeforeCursor.setLength(0);
+            mTextBeforeCursor.append(text);
+            mTextKnown = true;
+            mTextComplete = text.length() < aLength;
+        }
+        int length = mTextBeforeCursor.length();
+        return mTextBeforeCursor.subSequence(Math.max(0, length - aLength), length);
+    }
+
+    // Replaces the aLength characters before the cursor with aText. Call it from a command, on the
+    // InputConnection thread.
+    public void replaceTextBeforeCursor(int aLength, @NonNull CharSequence aText) {
+        if (aLength > 0) {
+            mConnection.deleteSurroundingText(aLength, 0);
+            onTextDeleted(aLength);
+        }
+        mConnection.commitText(aText, 1);
+        onTextCommitted(aText);
+    }
+
+    // Applies all the queued commands. Runs on the InputConnection thread.
+    public void flush() {
+        ArrayList<Op> ops;
+        int count;
+        synchronized (this) {
+            mFlushScheduled = false;
+            ops = mPending;
+            count = mPendingCount;
+            mPending = mFlushing;
+            mFlushing = ops;
+            mPendingCount = 0;
+        }
+
+        for (int i = 0; i < count; i++) {
+            Op op = ops.get(i);
+            switch (op.mType) {
+                case TYPE_TEXT:
+                    mConnection.commitText(op.mText.toString(), 1);
+                    countCommit();
+                    onTextCommitted(op.mText);
+                    break;
+                case TYPE_BACKSPACE:
+                    applyBackspace(op.mCount);
+                    break;
+                case TYPE_SELECTION:
+                    if (op.mCompositionStart >= 0 && op.mCompositionEnd >= 0) {
+                        mConnection.setComposingRegion(op.mCompositionStart, op.mCompositionEnd);
+                    }
+                    mConnection.setSelection(op.mSelectionStart, op.mSelectionEnd);
+                    if (op.mSelectionStart != op.mSelectionEnd || op.mSelectionStart != mCursor) {
+                        resetText();
+                        mCursor = op.mSelectionStart == op.mSelectionEnd ? op.mSelectionStart : -1;
+                    }
+                    break;
+                case TYPE_COMMAND:
+                    op.mCommand.run(mConnection);
+                    op.mCommand = null;
+                    if (!op.mTracked) {
+                        resetText();
+                    }
+                    break;
+            }
+        }
+    }
+
+    public synchronized long getKeystrokeCount() {
+        return mKeystrokes;
+    }
+
+    public synchronized long getCommitCount() {
+        return mCommits;
+    }
+
+    // Number of commitText()/deleteSurroundingText() calls issued per key press.
+    public synchronized float getCommitsPerKeystroke() {
+        return mKeystrokes > 0 ? (float)mCommits / mKeystrokes : 0.0f;
+    }
+
+    private void applyBackspace(int aCount) {
+        CharSequence selectedText = mConnection.getSelectedText(0);
+        if (selectedText != null && selectedText.length() > 0) {
+            // The first backspace deletes the selected text
+            mConnection.commitText("", 1);
+            countCommit();
+            resetText();
+            aCount--;
+        }
+        if (aCount > 0) {
+            mConnection.deleteSurroundingTextInCodePoints(aCount, 0);
+            countCommit();
+            // The deleted length is only known in chars if the deleted text is known
+            int length = mTextBeforeCursor.length();
+            int known = mTextKnown ? mTextBeforeCursor.codePointCount(0, length) : 0;
+            if (mTextKnown && (mTextComplete || known >= aCount)) {
+                onTextDeleted(length - mTextBeforeCursor.offsetByCodePoints(length, -Math.min(aCount, known)));
+            } else {
+                resetText();
+            }
+        }
+    }
+
+    private void onTextCommitted(CharSequence aText) {
+        if (mCursor >= 0) {
+            mCursor += aText.length();
+        }
+        if (mTextKnown) {
+            mTextBeforeCursor.append(aText);
+            int excess = mTextBeforeCursor.length() - MAX_TRACKED_TEXT;
+            if (excess > 0) {
+                mTextBeforeCursor.delete(0, excess);
+                mTextComplete = false;
+            }
+        }
+    }
+
+    private void onTextDeleted(int aLength) {
+        if (mTextKnown && mTextComplete) {
+            aLength = Math.min(aLength, mTextBeforeCursor.length());
+        }
+        if (mCursor >= 0) {
+            mCursor = Math.max(0, mCursor - aLength);
+        }
+        if (mTextKnown) {
+            if (aLength <= mTextBeforeCursor.length()) {
+                mTextBeforeCursor.setLength(mTextBeforeCursor.length() - aLength);
+            } else {
+                mTextKnown = false;
+            }
+        }
+    }
+
+    private void resetText() {
+        mTextKnown = false;
+        mCursor = -1;
+    }
+
+    private synchronized void countCommit() {
+        mCommits++;
+    }
+
+    private void scheduleFlush() {
+        synchronized (this) {
+            if (mFlushScheduled) {
+                return;
+            }
+            mFlushScheduled = true;
+        }
+        mExecutor.execute(mFlushRunnable);
+    }
+
+    private Op lastOp() {
+        return mPendingCount > 0 ? mPending.get(mPendingCount - 1) : null;
+    }
+
+    private Op textOp() {
+        Op last = lastOp();
+        if (last != null && last.mType == TYPE_TEXT) {
+            return last;
+        }
+        return newOp(TYPE_TEXT);
+    }
+
+    private Op newOp(int aType) {
+        Op op;
+        if (mPendingCount < mPending.size()) {
+            op = mPending.get(mPendingCount);
+        } else {
+            op = new Op();
+            mPending.add(op);
+        }
+        mPendingCount++;
+        op.mType = aType;
+        op.mText.setLength(0);
+        op.mCount = 0;
+        op.mCommand = null;
+        op.mTracked = false;
+        return op;
+    }
+}
@@ -0,0 +1,171 @@
+/* -*- Mode: Java; c-basic-offset: 4; tab-width: 4; indent-tabs-mode: nil; -*-
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.vrbrowser.input;
+
+// Uniform grid over the key rectangles of a keyboard layout, built once per layout.
+// Each cell stores the indices of the keys overlapping it (in key order) in a flat array,
+// so looking up the key under a pointer only tests the few keys of one cell and queries
+// don't allocate. Hit testing follows Keyboard.Key.isInside(), including the edge flags
+// that extend the keys on the keyboard borders outwards.
+public class KeyGridIndex {
+    public static final int NOT_A_KEY = -1;
+
+    // Same values as Keyboard.EDGE_*
+    public static final int EDGE_LEFT = 0x01;
+    public static final int EDGE_RIGHT = 0x02;
+    public static final int EDGE_TOP = 0x04;
+    public static final int EDGE_BOTTOM = 0x08;
+
+    private static final int GRID_WIDTH = 16;
+    private static final int GRID_HEIGHT = 8;
+
+    private final int[] mX;
+    private final int[] mY;
+    private final int[] mWidth;
+    private final int[] mHeight;
+    private final int[] mEdgeFlags;
+    private final int mCellWidth;
+    private final int mCellHeight;
+    private final int mColumns;
+    private final int mRows;
+    // Cell c contains mCellKeys[mCellStart[c]] .. mCellKeys[mCellStart[c + 1] - 1]
+    private final int[] mCellStart;
+    private int[] mCellKeys;
+    // Per key stamp used to deduplicate keys spanning several cells in proximity queries.
+    private final int[] mVisited;
+    private int mStamp;
+
+    public KeyGridIndex(int[] aX, int[] aY, int[] aWidth, int[] aHeight, int[] aEdgeFlags,
+                        int aTotalWidth, int aTotalHeight) {
+        int count = aX.length;
+        if (aY.length != count || aWidth.length != count || aHeight.length != count || aEdgeFlags.length != count) {
+            throw new IllegalArgumentException("Key arrays must have the same length");
+        }
+        mX = aX.clone();
+        mY = aY.clone();
+        mWidth = aWidth.clone();
+        mHeight = aHeight.clone();
+        mEdgeFlags = aEdgeFlags.clone();
+        mVisited = new int[count];
+
+        int totalWidth = Math.max(1, aTotalWidth);
+        int totalHeight = Math.max(1, aTotalHeight);
+        for (int i = 0; i < count; i++) {
+            totalWidth = Math.max(totalWidth, mX[i] + mWidth[i]);
+            totalHeight = Math.max(totalHeight, mY[i] + mHeight[i]);
+        }
+        mCellWidth = (totalWidth + GRID_WIDTH - 1) / GRID_WIDTH;
+        mCellHeight = (totalHeight + GRID_HEIGHT - 1) / GRID_HEIGHT;
+        mColumns = (totalWidth + mCellWidth - 1) / mCellWidth;
+        mRows = (totalHeight + mCellHeight - 1) / mCellHeight;
+
+        // Two passes: count the keys per cell, then fill the flat array.
+        int cellCount = mColumns * mRows;
+        mCellStart = new int[cellCount + 1];
+        for (int pass = 0; pass < 2; pass++) {
+            int[] fill = pass == 0 ? null : new int[cellCount];
+            for (int i = 0; i < count; i++) {
+                int firstColumn = (mEdgeFlags[i] & EDGE_LEFT) != 0 ? 0 : column(mX[i]);
+                int lastColumn = (mEdgeFlags[i] & EDGE_RIGHT) != 0 ? mColumns - 1 : column(mX[i] + mWidth[i] - 1);
+                int firstRow = (mEdgeFlags[i] & EDGE_TOP) != 0 ? 0 : row(mY[i]);
+                int lastRow = (mEdgeFlags[i] & EDGE_BOTTOM) != 0 ? mRows - 1 : row(mY[i] + mHeight[i] - 1);
+                for (int r = firstRow; r <= lastRow; r++) {
+                    for (int c = firstColumn; c <= lastColumn; c++) {
+                        int cell = r * mColumns + c;
+                        if (pass == 0) {
+                            mCellStart[cell + 1]++;
+                        } else {
+                            mCellKeys[mCellStart[cell] + fill[cell]++] = i;
+                        }
+                    }
+                }
+            }
+            if (pass == 0) {
+                for (int c = 0; c < cellCount; c++) {
+                    mCellStart[c + 1] += mCellStart[c];
+                }
+                mCellKeys = new int[mCellStart[cellCount]];
+            }
+        }
+    }
+
+    public int getKeyCount() {
+        return mX.length;
+    }
+
+    // Returns the first key (in layout order) containing the point, or NOT_A_KEY.
+    public int findKey(int x, int y) {
+        int cell = row(y) * mColumns + column(x);
+        for (int i = mCellStart[cell]; i < mCellStart[cell + 1]; i++) {
+            int key = mCellKeys[i];
+            if (isInside(key, x, y)) {
+                return key;
+            }
+        }
+        return NOT_A_KEY;
+    }
+
+    // Fills aResult with the keys containing the point or whose center is closer than
+    // sqrt(aThresholdSquared), and returns how many were found (at most aResult.length).
+    public int findNearbyKeys(int x, int y, int aThresholdSquared, int[] aResult) {
+        if (++mStamp == 0) {
+            java.util.Arrays.fill(mVisited, 0);
+            mStamp = 1;
+        }
+        int radius = (int)Math.ceil(Math.sqrt(Math.max(0, aThresholdSquared)));
+        int firstColumn = column(x - radius);
+        int lastColumn = column(x + radius);
+        int firstRow = row(y - radius);
+        int lastRow = row(y + radius);
+        int found = 0;
+        for (int r = firstRow; r <= lastRow; r++) {
+            for (int c = firstColumn; c <= lastColumn; c++) {
+                int cell = r * mColumns + c;
+                for (int i = mCellStart[cell]; i < mCellStart[cell + 1]; i++) {
+                    int key = mCellKeys[i];
+                    if (mVisited[key] == mStamp) {
+                        continue;
+                    }
+                    mVisited[key] = mStamp;
+                    if (isInside(key, x, y) || squaredDistanceFrom(key, x, y) < aThresholdSquared) {
+                        if (found < aResult.length) {
+                            aResult[found++] = key;
+                        }
+                    }
+                }
+            }
+        }
+        // Keep the layout order, like a linear scan would.
+        java.util.Arrays.sort(aResult, 0, found);
+        return found;
+    }
+
+    public boolean isInside(int aKey, int x, int y) {
+        final int flags = mEdgeFlags[aKey];
+        final int keyX = mX[aKey];
+        final int keyY = mY[aKey];
+        final int width = mWidth[aKey];
+        final int height = mHeight[aKey];
+        return (x >= keyX || ((flags & EDGE_LEFT) != 0 && x <= keyX + width))
+                && (x < keyX + width || ((flags & EDGE_RIGHT) != 0 && x >= keyX))
+                && (y >= keyY || ((flags & EDGE_TOP) != 0 && y <= keyY + height))
+                && (y < keyY + height || ((flags & EDGE_BOTTOM) != 0 && y >= keyY));
+    }
+
+    public int squaredDistanceFrom(int aKey, int x, int y) {
+        int xDist = mX[aKey] + mWidth[aKey] / 2 - x;
+        int yDist = mY[aKey] + mHeight[aKey] / 2 - y;
+        return xDist * xDist + yDist * yDist;
+    }
+
+    private int column(int x) {
+        return Math.max(0, Math.min(mColumns - 1, x / mCellWidth));
+    }
+
+    private int row(int y) {
+        return Math.max(0, Math.min(mRows - 1, y / mCellHeight));
+    }
+}
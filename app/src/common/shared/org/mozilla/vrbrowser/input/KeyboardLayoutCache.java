@@ -0,0 +1,98 @@
+/* -*- Mode: Java; c-basic-offset: 4; tab-width: 4; indent-tabs-mode: nil; -*-
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.vrbrowser.input;
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+import android.util.Log;
+
+import org.mozilla.vrbrowser.utils.AssetWarmupService;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+// Parses each keyboard layout once and shares the resulting CustomKeyboard (and its key geometry)
+// between all the users of the layout. Layouts can be prefetched in the asset warmup pool so the
+// XML parsing doesn't happen on the UI thread the first time a layout is shown.
+public class KeyboardLayoutCache {
+    private static final String LOGTAG = "VRB";
+    private static final int MAX_POPUP_LAYOUTS = 32;
+
+    private final Context mContext;
+    private final Map<Integer, CustomKeyboard> mLayouts = new ConcurrentHashMap<>();
+    private final Map<Integer, Future<Void>> mPending = new ConcurrentHashMap<>();
+    private final HashMap<String, CustomKeyboard> mPopupLayouts = new HashMap<>();
+
+    public KeyboardLayoutCache(@NonNull Context aContext) {
+        mContext = aContext.getApplicationContext();
+    }
+
+    public void prefetch(int... aLayoutResIds) {
+        for (final int resId: aLayoutResIds) {
+            Future<Void> pending = mPending.get(resId);
+            if (mLayouts.containsKey(resId) || (pending != null && !pending.isCancelled())) {
+                continue;
+            }
+            mPending.put(resId, AssetWarmupService.get().submit(getWarmupName(resId),
+                    AssetWarmupService.Priority.NORMAL,
+                    () -> {
+                        mLayouts.putIfAbsent(resId, new CustomKeyboard(mContext, resId));
+                        return true;
+                    },
+                    null));
+        }
+    }
+
+    @NonNull
+    public CustomKeyboard get(int aLayoutResId) {
+        CustomKeyboard keyboard = mLayouts.get(aLayoutResId);
+        if (keyboard != null) {
+            return keyboard;
+        }
+
+        // If the layout is being parsed in the background wait for it instead of parsing it twice.
+        // A prefetch still queued behind other warmups is cancelled and parsed here instead.
+        Future<Void> pending = mPending.remove(aLayoutResId);
+        if (pending != null && !pending.isCancelled() &&
+                !AssetWarmupService.get().cancelIfQueued(getWarmupName(aLayoutResId))) {
+            try {
+                pending.get();
+            } catch (InterruptedException | ExecutionException e) {
+                Log.e(LOGTAG, "Keyboard layout prefetch failed: " + e.toString());
+            }
+            keyboard = mLayouts.get(aLayoutResId);
+            if (keyboard != null) {
+                return keyboard;
+            }
+        }
+
+        keyboard = new CustomKeyboard(mContext, aLayoutResId);
+        CustomKeyboard existing = mLayouts.putIfAbsent(aLayoutResId, keyboard);
+        return existing != null ? existing : keyboard;
+    }
+
+    private String getWarmupName(int aLayoutResId) {
+        return "keyboard:" + aLayoutResId + "@" + System.identityHashCode(this);
+    }
+
+    // Popup keyboards are built from a template and the popup characters of the long pressed key.
+    @NonNull
+    public CustomKeyboard getPopup(@NonNull Context aContext, int aTemplateResId, @NonNull CharSequence aCharacters, int aColumns) {
+        String key = aTemplateResId + ":" + aColumns + ":" + aCharacters;
+        CustomKeyboard keyboard = mPopupLayouts.get(key);
+        if (keyboard == null) {
+            if (mPopupLayouts.size() >= MAX_POPUP_LAYOUTS) {
+                mPopupLayouts.clear();
+            }
+            keyboard = new CustomKeyboard(aContext, aTemplateResId, aCharacters, aColumns, 0);
+            mPopupLayouts.put(key, keyboard);
+        }
+        return keyboard;
+    }
+}
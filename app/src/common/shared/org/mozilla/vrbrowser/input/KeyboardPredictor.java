@@ -0,0 +1,312 @@
+/* -*- Mode: Java; c-basic-offset: 4; tab-width: 4; indent-tabs-mode: nil; -*-
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.vrbrowser.input;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Process;
+import android.os.SystemClock;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+import org.mozilla.vrbrowser.utils.LatencyHistogram;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+
+// Runs the PredictionEngine on its own thread for the keyboard.
+// The dictionary is compiled from the text asset the first time and cached as a binary trie,
+// which is memory mapped on the next launches. Learned words are stored in the app files.
+public class KeyboardPredictor {
+    private static final String LOGTAG = "VRB";
+    private static final String DICTIONARY_ASSET = "dictionaries/en_US.txt";
+    private static final String LEARNED_WORDS_FILE = "learned_words.txt";
+    private static final int LATENCY_BUCKET_US = 100;
+    private static final int LATENCY_BUCKETS = 50;
+    // Most frequent dictionary words used as gesture typing templates. The bundled list has
+    // about 600 words, so all of them are templates for now.
+    private static final int MAX_GESTURE_WORDS = 5000;
+
+    public interface Delegate {
+        // Called on the UI thread. aPrefix is the word being typed the candidates complete.
+        void onCandidates(@NonNull String aPrefix, @NonNull List<String> aCandidates);
+    }
+
+    public interface GestureDelegate {
+        // Called on the UI thread with the words decoded for a gesture path, best first.
+        // aFinished is true for the final result once the path is complete.
+        void onGestureDecoded(@NonNull List<String> aWords, boolean aFinished);
+    }
+
+    private final Context mContext;
+    private final HandlerThread mThread;
+    private final Handler mHandler;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private final LatencyHistogram mLatency;
+    private final LatencyHistogram mGestureLatency;
+    private PredictionEngine mEngine;
+    private DictionaryTrie mDictionary;
+    private GestureDecoder mGestureDecoder;
+    // Keys of the current gesture templates, only accessed from the main thread
+    private char[] mGestureKeys;
+    private float[] mGestureKeyX;
+    private float[] mGestureKeyY;
+    private float mGestureKeyWidth;
+    private Delegate mDelegate;
+    private GestureDelegate mGestureDelegate;
+    // Sequence of the latest request, older results are dropped.
+    private volatile int mRequest;
+    private volatile int mGestureRequest;
+
+    public KeyboardPredictor(@NonNull Context aContext) {
+        mContext = aContext.getApplicationContext();
+        mLatency = new LatencyHistogram("Prediction latency (us)", LATENCY_BUCKET_US, LATENCY_BUCKETS);
+        mGestureLatency = new LatencyHistogram("Gesture decoding latency (us)", LATENCY_BUCKET_US * 10, LATENCY_BUCKETS);
+        mThread = new HandlerThread("Prediction", Process.THREAD_PRIORITY_BACKGROUND);
+        mThread.start();
+        mHandler = new Handler(mThread.getLooper());
+        mHandler.post(this::load);
+    }
+
+    public void setDelegate(@Nullable Delegate aDelegate) {
+        mDelegate = aDelegate;
+    }
+
+    // Computes the candidates for the text before the cursor. If aLearn is true the last word
+    // completed in the text is learned first.
+    public void predict(@Nullable CharSequence aTextBeforeCursor, boolean aLearn, final int aMax) {
+        final String text = aTextBeforeCursor != null ? aTextBeforeCursor.toString() : "";
+        final int request = ++mRequest;
+        mHandler.post(() -> {
+            if (mEngine == null) {
+                return;
+            }
+            if (aLearn) {
+                mEngine.learnFromText(text);
+            }
+            if (request != mRequest) {
+                return;
+            }
+            long start = SystemClock.elapsedRealtimeNanos();
+            final PredictionEngine.Context context = PredictionEngine.parseContext(text);
+            final List<String> candidates = mEngine.getCandidates(context.previousWord, context.prefix, aMax);
+            mLatency.record((SystemClock.elapsedRealtimeNanos() - start) / 1000);
+            mMainHandler.post(() -> {
+                if (request == mRequest && mDelegate != null) {
+                    mDelegate.onCandidates(context.prefix, candidates);
+                }
+            });
+        });
+    }
+
+    public void setGestureDelegate(@Nullable GestureDelegate aDelegate) {
+        mGestureDelegate = aDelegate;
+    }
+
+    // Sets the keys used to decode gesture paths. The decoder templates are built in the background
+    // again whenever the keys move, e.g. when the keyboard is resized.
+    public void setGestureKeys(@NonNull char[] aKeys, @NonNull float[] aKeyX, @NonNull float[] aKeyY, float aKeyWidth) {
+        if (Arrays.equals(aKeys, mGestureKeys) && Arrays.equals(aKeyX, mGestureKeyX) &&
+                Arrays.equals(aKeyY, mGestureKeyY) && aKeyWidth == mGestureKeyWidth) {
+            return;
+        }
+        mGestureKeys = aKeys;
+        mGestureKeyX = aKeyX;
+        mGestureKeyY = aKeyY;
+        mGestureKeyWidth = aKeyWidth;
+        final GestureDecoder decoder = new GestureDecoder(aKeys, aKeyX, aKeyY, aKeyWidth);
+        mHandler.post(() -> {
+            long start = SystemClock.elapsedRealtime();
+            int[] nodes = new int[MAX_GESTURE_WORDS];
+            int count = mDictionary != null ? mDictionary.complete("", nodes) : 0;
+            ArrayList<String> words = new ArrayList<>(count);
+            int[] frequencies = new int[count];
+            StringBuilder word = new StringBuilder();
+            for (int i = 0; i < count; i++) {
+                word.setLength(0);
+                mDictionary.getWord(nodes[i], word);
+                words.add(word.toString());
+                frequencies[i] = mDictionary.getNodeFrequency(nodes[i]);
+            }
+            decoder.setWords(words, frequencies);
+            mGestureDecoder = decoder;
+            Log.d(LOGTAG, "Gesture templates for " + decoder.getWordCount() + " words built in " +
+                    (SystemClock.elapsedRealtime() - start) + "ms");
+        });
+    }
+
+    // Decodes the first aCount points of a gesture path. Intermediate paths that can't be decoded
+    // before a newer one arrives are skipped.
+    public void decodeGesture(@NonNull float[] aX, @NonNull float[] aY, int aCount, final boolean aFinished, final int aMax) {
+        final float[] x = Arrays.copyOf(aX, aCount);
+        final float[] y = Arrays.copyOf(aY, aCount);
+        final int request = ++mGestureRequest;
+        mHandler.post(() -> {
+            if (mGestureDecoder == null || (!aFinished && request != mGestureRequest)) {
+                return;
+            }
+            long start = SystemClock.elapsedRealtimeNanos();
+            List<GestureDecoder.Candidate> candidates = mGestureDecoder.decode(x, y, x.length, aMax);
+            mGestureLatency.record((SystemClock.elapsedRealtimeNanos() - start) / 1000);
+            final ArrayList<String> words = new ArrayList<>(candidates.size());
+            for (GestureDecoder.Candidate candidate: candidates) {
+                words.add(candidate.word);
+            }
+            mMainHandler.post(() -> {
+                if ((aFinished || request == mGestureRequest) && mGestureDelegate != null) {
+                    mGestureDelegate.onGestureDecoded(words, aFinished);
+                }
+            });
+        });
+    }
+
+    public void clearCandidates() {
+        ++mRequest;
+        if (mDelegate != null) {
+            mDelegate.onCandidates("", Collections.emptyList());
+        }
+    }
+
+    public void onCandidateCommitted(@NonNull final String aPrefix, @NonNull final String aCandidate) {
+        mHandler.post(() -> {
+            if (mEngine != null) {
+                mEngine.onCandidateCommitted(aPrefix, aCandidate);
+            }
+        });
+    }
+
+    // Writes the learned words if they changed and logs the prediction stats.
+    public void save() {
+        mHandler.post(() -> {
+            if (mEngine == null) {
+                return;
+            }
+            if (mEngine.getWordCount() > 0) {
+                Log.d(LOGTAG, mLatency.toString() + ", keystrokes saved per word: " +
+                        String.format("%.2f", mEngine.getKeystrokesSavedPerWord()));
+            }
+            if (mGestureLatency.getCount() > 0) {
+                Log.d(LOGTAG, mGestureLatency.toString());
+            }
+            if (!mEngine.hasLearnedWordsChanged()) {
+                return;
+            }
+            File file = new File(mContext.getFilesDir(), LEARNED_WORDS_FILE);
+            File temp = new File(mContext.getFilesDir(), LEARNED_WORDS_FILE + ".tmp");
+            try (OutputStreamWriter writer = new OutputStreamWriter(new FileOutputStream(temp), StandardCharsets.UTF_8)) {
+                mEngine.writeLearnedWords(writer);
+            } catch (IOException e) {
+                Log.e(LOGTAG, "Unable to save learned words: " + e.toString());
+                return;
+            }
+            if (!temp.renameTo(file)) {
+                Log.e(LOGTAG, "Unable to save learned words");
+            }
+        });
+    }
+
+    public void release() {
+        save();
+        mThread.quitSafely();
+    }
+
+    public LatencyHistogram getLatency() {
+        return mLatency;
+    }
+
+    private void load() {
+        long start = SystemClock.elapsedRealtime();
+        DictionaryTrie dictionary = null;
+        try {
+            dictionary = new DictionaryTrie(mapDictionary());
+        } catch (IOException | IllegalArgumentException e) {
+            Log.e(LOGTAG, "Unable to load the prediction dictionary: " + e.toString());
+        }
+        PredictionEngine engine = new PredictionEngine(dictionary);
+
+        File learned = new File(mContext.getFilesDir(), LEARNED_WORDS_FILE);
+        if (learned.exists()) {
+            try (InputStreamReader reader = new InputStreamReader(new FileInputStream(learned), StandardCharsets.UTF_8)) {
+                engine.readLearnedWords(reader);
+            } catch (IOException e) {
+                Log.e(LOGTAG, "Unable to read learned words: " + e.toString());
+            }
+        }
+        mDictionary = dictionary;
+        mEngine = engine;
+        Log.d(LOGTAG, "Prediction dictionary loaded in " + (SystemClock.elapsedRealtime() - start) + "ms");
+    }
+
+    // Maps the compiled dictionary, compiling it from the asset if there is no cached copy for
+    // this asset content and trie format. The asset is small, so checksumming it is cheap.
+    private ByteBuffer mapDictionary() throws IOException {
+        byte[] asset = readAsset(DICTIONARY_ASSET);
+        CRC32 crc = new CRC32();
+        crc.update(asset);
+        File directory = new File(mContext.getCacheDir(), "dictionaries");
+        File file = new File(directory, "en_US-" + DictionaryTrie.VERSION + "-" + Long.toHexString(crc.getValue()) + ".bin");
+        if (!file.exists()) {
+            ByteBuffer buffer;
+            try (InputStreamReader reader = new InputStreamReader(new ByteArrayInputStream(asset), StandardCharsets.UTF_8)) {
+                buffer = new DictionaryTrie.Builder().parse(reader).build();
+            }
+            // Remove the dictionaries compiled from other assets or formats.
+            File[] old = directory.listFiles();
+            if (old != null) {
+                for (File entry: old) {
+                    entry.delete();
+                }
+            }
+            if (!directory.exists() && !directory.mkdirs()) {
+                return buffer;
+            }
+            File temp = new File(directory, file.getName() + ".tmp");
+            try (FileOutputStream output = new FileOutputStream(temp)) {
+                output.getChannel().write(buffer);
+            }
+            if (!temp.renameTo(file)) {
+                buffer.rewind();
+                return buffer;
+            }
+        }
+
+        try (RandomAccessFile input = new RandomAccessFile(file, "r")) {
+            // The mapping stays valid after the channel is closed.
+            return input.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, input.length());
+        }
+    }
+
+    private byte[] readAsset(String aName) throws IOException {
+        try (InputStream input = mContext.getAssets().open(aName)) {
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            byte[] chunk = new byte[8192];
+            int read;
+            while ((read = input.read(chunk)) > 0) {
+                output.write(chunk, 0, read);
+            }
+            return output.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,357 @@
+/* -*- Mode: Java; c-basic-offset: 4; tab-width: 4; indent-tabs-mode: nil; -*-
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.vrbrowser.input;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+// Word completion and next word prediction for the keyboard.
+// Candidates are ranked by dictionary unigram and bigram frequencies plus the words learned from
+// the text the user committed. The engine isn't thread safe: it's meant to be used from a single
+// background thread.
+public class PredictionEngine {
+    private static final int DICTIONARY_CANDIDATES = 16;
+    private static final int MAX_LEARNED_CANDIDATES = 32;
+    private static final int MAX_WORD_LENGTH = 48;
+    private static final int MAX_LEARNED_WORDS = 5000;
+    private static final int MAX_LEARNED_BIGRAMS_PER_WORD = 32;
+    // Score weights. Dictionary frequencies go from 1 to 255.
+    private static final int BIGRAM_WEIGHT = 2;
+    private static final int LEARNED_WEIGHT = 24;
+    private static final int LEARNED_BIGRAM_WEIGHT = 64;
+    private static final int MAX_LEARNED_SCORE = 4 * DictionaryTrie.MAX_FREQUENCY;
+
+    @Nullable
+    private final DictionaryTrie mDictionary;
+    private final TreeMap<String, Integer> mLearnedWords = new TreeMap<>();
+    private final HashMap<String, HashMap<String, Integer>> mLearnedBigrams = new HashMap<>();
+    private boolean mLearnedWordsChanged;
+    private final int[] mNodes = new int[DICTIONARY_CANDIDATES];
+    private final StringBuilder mWord = new StringBuilder();
+    private long mWordCount;
+    private long mKeystrokesSaved;
+
+    // Words around the cursor: the word being typed and the two complete words before it.
+    public static class Context {
+        @Nullable public String previousWord;
+        @Nullable public String wordBeforePrevious;
+        @NonNull public String prefix = "";
+    }
+
+    public PredictionEngine(@Nullable DictionaryTrie aDictionary) {
+        mDictionary = aDictionary;
+    }
+
+    public static boolean isWordChar(char aChar) {
+        return Character.isLetterOrDigit(aChar) || aChar == '\'' || aChar == '-';
+    }
+
+    // Parses the text before the cursor. Words are only related when separated by spaces, so the
+    // previous word after a sentence end or a line break is null.
+    @NonNull
+    public static Context parseContext(@Nullable CharSequence aTextBeforeCursor) {
+        Context context = new Context();
+        if (aTextBeforeCursor == null) {
+            return context;
+        }
+        int end = aTextBeforeCursor.length();
+        int start = wordStart(aTextBeforeCursor, end);
+        context.prefix = aTextBeforeCursor.subSequence(start, end).toString();
+
+        int previousEnd = skipSpaces(aTextBeforeCursor, start);
+        if (previousEnd == start && start != end) {
+            return context;
+        }
+        int previousStart = wordStart(aTextBeforeCursor, previousEnd);
+        if (previousStart == previousEnd) {
+            return context;
+        }
+        context.previousWord = aTextBeforeCursor.subSequence(previousStart, previousEnd).toString();
+
+        int beforeEnd = skipSpaces(aTextBeforeCursor, previousStart);
+        int beforeStart = wordStart(aTextBeforeCursor, beforeEnd);
+        if (beforeEnd < previousStart && beforeStart < beforeEnd) {
+            context.wordBeforePrevious = aTextBeforeCursor.subSequence(beforeStart, beforeEnd).toString();
+        }
+        return context;
+    }
+
+    // Length of the word being typed at the end of aTextBeforeCursor.
+    public static int currentWordLength(@Nullable CharSequence aTextBeforeCursor) {
+        if (aTextBeforeCursor == null) {
+            return 0;
+        }
+        return aTextBeforeCursor.length() - wordStart(aTextBeforeCursor, aTextBeforeCursor.length());
+    }
+
+    @NonNull
+    public List<String> predict(@Nullable CharSequence aTextBeforeCursor, int aMax) {
+        Context context = parseContext(aTextBeforeCursor);
+        return getCandidates(context.previousWord, context.prefix, aMax);
+    }
+
+    // Returns up to aMax completions of aPrefix, or next word predictions if aPrefix is empty.
+    @NonNull
+    public List<String> getCandidates(@Nullable String aPreviousWord, @NonNull String aPrefix, int aMax) {
+        if (aMax <= 0 || aPrefix.length() > MAX_WORD_LENGTH || (aPrefix.isEmpty() && aPreviousWord == null)) {
+            return Collections.emptyList();
+        }
+        String prefix = aPrefix.toLowerCase(Locale.ROOT);
+        String previous = aPreviousWord != null ? aPreviousWord.toLowerCase(Locale.ROOT) : null;
+        int previousNode = previous != null && mDictionary != null ? mDictionary.findNode(previous) : DictionaryTrie.NO_NODE;
+
+        HashMap<String, Integer> scores = new HashMap<>();
+        if (mDictionary != null) {
+            if (!prefix.isEmpty()) {
+                int count = mDictionary.complete(prefix, mNodes);
+                for (int i = 0; i < count; i++) {
+                    addCandidate(scores, wordAt(mNodes[i]), previous, previousNode);
+                }
+            }
+            if (previousNode != DictionaryTrie.NO_NODE) {
+                int end = mDictionary.getBigramEnd(previousNode);
+                for (int i = mDictionary.getFirstBigram(previousNode); i < end; i++) {
+                    String word = wordAt(mDictionary.getBigramNode(i));
+                    if (word.startsWith(prefix)) {
+                        addCandidate(scores, word, previous, previousNode);
+                    }
+                }
+            }
+        }
+
+        if (!prefix.isEmpty()) {
+            int count = 0;
+            for (String word: mLearnedWords.subMap(prefix, prefix + Character.MAX_VALUE).keySet()) {
+                addCandidate(scores, word, previous, previousNode);
+                if (++count >= MAX_LEARNED_CANDIDATES) {
+                    break;
+                }
+            }
+        }
+        Map<String, Integer> learnedNext = previous != null ? mLearnedBigrams.get(previous) : null;
+        if (learnedNext != null) {
+            for (String word: learnedNext.keySet()) {
+                if (word.startsWith(prefix)) {
+                    addCandidate(scores, word, previous, previousNode);
+                }
+            }
+        }
+
+        ArrayList<Map.Entry<String, Integer>> ranked = new ArrayList<>(scores.entrySet());
+        Collections.sort(ranked, (a, b) -> {
+            int result = Integer.compare(b.getValue(), a.getValue());
+            return result != 0 ? result : a.getKey().compareTo(b.getKey());
+        });
+        ArrayList<String> result = new ArrayList<>(Math.min(aMax, ranked.size()));
+        for (int i = 0; i < ranked.size() && result.size() < aMax; i++) {
+            result.add(matchCase(ranked.get(i).getKey(), aPrefix));
+        }
+        return result;
+    }
+
+    // Learns the last complete word before the cursor, if the text ends after it.
+    public void learnFromText(@Nullable CharSequence aTextBeforeCursor) {
+        Context context = parseContext(aTextBeforeCursor);
+        if (context.previousWord != null) {
+            learn(context.wordBeforePrevious, context.previousWord);
+        } else if (aTextBeforeCursor != null && context.prefix.isEmpty()) {
+            // Word followed by punctuation, learn it without context.
+            int end = aTextBeforeCursor.length();
+            while (end > 0 && !isWordChar(aTextBeforeCursor.charAt(end - 1))) {
+                end--;
+            }
+            int start = wordStart(aTextBeforeCursor, end);
+            if (start < end) {
+                learn(null, aTextBeforeCursor.subSequence(start, end).toString());
+            }
+        }
+    }
+
+    public void learn(@Nullable String aPreviousWord, @NonNull String aWord) {
+        mWordCount++;
+        String word = aWord.toLowerCase(Locale.ROOT);
+        if (!isLearnable(word)) {
+            return;
+        }
+        Integer count = mLearnedWords.get(word);
+        mLearnedWords.put(word, count != null ? count + 1 : 1);
+        if (aPreviousWord != null && isLearnable(aPreviousWord)) {
+            String previous = aPreviousWord.toLowerCase(Locale.ROOT);
+            HashMap<String, Integer> next = mLearnedBigrams.get(previous);
+            if (next == null) {
+                next = new HashMap<>();
+                mLearnedBigrams.put(previous, next);
+            }
+            Integer bigramCount = next.get(word);
+            if (bigramCount != null || next.size() < MAX_LEARNED_BIGRAMS_PER_WORD) {
+                next.put(word, bigramCount != null ? bigramCount + 1 : 1);
+            }
+        }
+        if (mLearnedWords.size() > MAX_LEARNED_WORDS) {
+            decayLearnedWords();
+        }
+        mLearnedWordsChanged = true;
+    }
+
+    // Counts the keystrokes saved by committing aCandidate when aPrefix was typed. Committing the
+    // candidate takes one selection and adds the trailing space.
+    public void onCandidateCommitted(@NonNull String aPrefix, @NonNull String aCandidate) {
+        mKeystrokesSaved += Math.max(0, aCandidate.length() - aPrefix.length());
+    }
+
+    public long getWordCount() {
+        return mWordCount;
+    }
+
+    public float getKeystrokesSavedPerWord() {
+        return mWordCount > 0 ? (float)mKeystrokesSaved / mWordCount : 0.0f;
+    }
+
+    public boolean hasLearnedWordsChanged() {
+        return mLearnedWordsChanged;
+    }
+
+    // Learned words are stored as "word count" and "previous word count" lines.
+    public void writeLearnedWords(@NonNull Writer aWriter) throws IOException {
+        for (Map.Entry<String, Integer> entry: mLearnedWords.entrySet()) {
+            aWriter.write(entry.getKey() + " " + entry.getValue() + "\n");
+        }
+        for (Map.Entry<String, HashMap<String, Integer>> first: mLearnedBigrams.entrySet()) {
+            for (Map.Entry<String, Integer> second: first.getValue().entrySet()) {
+                aWriter.write(first.getKey() + " " + second.getKey() + " " + second.getValue() + "\n");
+            }
+        }
+        aWriter.flush();
+        mLearnedWordsChanged = false;
+    }
+
+    public void readLearnedWords(@NonNull Reader aReader) throws IOException {
+        BufferedReader reader = new BufferedReader(aReader);
+        String line;
+        while ((line = reader.readLine()) != null) {
+            String[] parts = line.split(" ");
+            try {
+                if (parts.length == 2 && isLearnable(parts[0])) {
+                    mLearnedWords.put(parts[0], Integer.parseInt(parts[1]));
+                } else if (parts.length == 3 && isLearnable(parts[0]) && isLearnable(parts[1])) {
+                    HashMap<String, Integer> next = mLearnedBigrams.get(parts[0]);
+                    if (next == null) {
+                        next = new HashMap<>();
+                        mLearnedBigrams.put(parts[0], next);
+                    }
+                    next.put(parts[1], Integer.parseInt(parts[2]));
+                }
+            } catch (NumberFormatException e) {
+                // Ignore corrupted entries
+            }
+        }
+    }
+
+    public void clearLearnedWords() {
+        mLearnedWords.clear();
+        mLearnedBigrams.clear();
+        mLearnedWordsChanged = true;
+    }
+
+    private void addCandidate(HashMap<String, Integer> aScores, String aWord, String aPrevious, int aPreviousNode) {
+        if (aScores.containsKey(aWord)) {
+            return;
+        }
+        int score = 0;
+        if (mDictionary != null) {
+            int node = mDictionary.findNode(aWord);
+            if (node != DictionaryTrie.NO_NODE) {
+                score += mDictionary.getNodeFrequency(node);
+                score += mDictionary.getBigramFrequency(aPreviousNode, node) * BIGRAM_WEIGHT;
+            }
+        }
+        Integer learned = mLearnedWords.get(aWord);
+        int learnedScore = learned != null ? learned * LEARNED_WEIGHT : 0;
+        if (aPrevious != null) {
+            Map<String, Integer> next = mLearnedBigrams.get(aPrevious);
+            Integer count = next != null ? next.get(aWord) : null;
+            learnedScore += count != null ? count * LEARNED_BIGRAM_WEIGHT : 0;
+        }
+        aScores.put(aWord, score + Math.min(learnedScore, MAX_LEARNED_SCORE));
+    }
+
+    private String wordAt(int aNode) {
+        mWord.setLength(0);
+        mDictionary.getWord(aNode, mWord);
+        return mWord.toString();
+    }
+
+    // Halves the learned counts and forgets the words used only once.
+    private void decayLearnedWords() {
+        Iterator<Map.Entry<String, Integer>> words = mLearnedWords.entrySet().iterator();
+        while (words.hasNext()) {
+            Map.Entry<String, Integer> entry = words.next();
+            if (entry.getValue() <= 1) {
+                words.remove();
+            } else {
+                entry.setValue(entry.getValue() / 2);
+            }
+        }
+        mLearnedBigrams.keySet().retainAll(mLearnedWords.keySet());
+        for (HashMap<String, Integer> next: mLearnedBigrams.values()) {
+            next.keySet().retainAll(mLearnedWords.keySet());
+        }
+    }
+
+    private static boolean isLearnable(String aWord) {
+        if (aWord.length() < 2 || aWord.length() > MAX_WORD_LENGTH) {
+            return false;
+        }
+        boolean hasLetter = false;
+        for (int i = 0; i < aWord.length(); i++) {
+            char c = aWord.charAt(i);
+            if (!isWordChar(c)) {
+                return false;
+            }
+            hasLetter |= Character.isLetter(c);
+        }
+        return hasLetter;
+    }
+
+    private static String matchCase(String aWord, String aPrefix) {
+        if (aPrefix.isEmpty() || !Character.isUpperCase(aPrefix.charAt(0))) {
+            return aWord;
+        }
+        if (aPrefix.length() > 1 && aPrefix.equals(aPrefix.toUpperCase(Locale.ROOT))) {
+            return aWord.toUpperCase(Locale.ROOT);
+        }
+        return Character.toUpperCase(aWord.charAt(0)) + aWord.substring(1);
+    }
+
+    private static int wordStart(CharSequence aText, int aEnd) {
+        int start = aEnd;
+        while (start > 0 && aEnd - start < MAX_WORD_LENGTH && isWordChar(aText.charAt(start - 1))) {
+            start--;
+        }
+        return start;
+    }
+
+    private static int skipSpaces(CharSequence aText, int aEnd) {
+        int end = aEnd;
+        while (end > 0 && aText.charAt(end - 1) == ' ') {
+            end--;
+        }
+        return end;
+    }
+}
@@ -0,0 +1,115 @@
+/* -*- Mode: Java; c-basic-offset: 4; tab-width: 4; indent-tabs-mode: nil; -*-
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.vrbrowser.input;
+
+import android.support.annotation.NonNull;
+import android.view.inputmethod.InputConnection;
+
+// Word wise delete used while the backspace key is long pressed.
+// Each repeat deletes whole words before the cursor, and the number of words per repeat grows the
+// longer the key is held. Only a bounded window of text before the cursor is read for each repeat,
+// so clearing a large field costs about the size of the deleted text instead of the field size.
+public class RepeatDeleteEngine {
+    // Max characters read per word to find its boundary
+    private static final int WORD_WINDOW = 16;
+    private static final int MAX_WINDOW = 1024;
+    // Repeats between each doubling of the words deleted per repeat
+    private static final int ACCELERATION_REPEATS = 8;
+    private static final int MAX_WORDS_PER_REPEAT = 16;
+
+    private boolean mActive;
+    private int mRepeats;
+    private long mCharsRead;
+    private long mCharsDeleted;
+
+    // Called when the long press starts.
+    public void start() {
+        mActive = true;
+        mRepeats = 0;
+    }
+
+    public void stop() {
+        mActive = false;
+        mRepeats = 0;
+    }
+
+    public boolean isActive() {
+        return mActive;
+    }
+
+    // Returns the number of words the next repeat should delete and advances the acceleration.
+    public int nextRepeat() {
+        int words = 1 << Math.min(mRepeats / ACCELERATION_REPEATS, 30);
+        mRepeats++;
+        return Math.min(words, MAX_WORDS_PER_REPEAT);
+    }
+
+    // Deletes the selection if there is one, otherwise up to aWords words before the cursor.
+    // Runs on the InputConnection thread. Returns the number of characters deleted.
+    public int deleteWords(@NonNull InputConnection aConnection, int aWords) {
+        CharSequence selectedText = aConnection.getSelectedText(0);
+        if (selectedText != null && selectedText.length() > 0) {
+            countRead(selectedText.length());
+            aConnection.commitText("", 1);
+            countDeleted(selectedText.length());
+            return selectedText.length();
+        }
+
+        int window = Math.min(Math.max(1, aWords) * WORD_WINDOW, MAX_WINDOW);
+        CharSequence before = aConnection.getTextBeforeCursor(window, 0);
+        if (before == null || before.length() == 0) {
+            return 0;
+        }
+        countRead(before.length());
+
+        int length = findDeleteLength(before, aWords, before.length() >= window);
+        if (length > 0) {
+            aConnection.deleteSurroundingText(length, 0);
+            countDeleted(length);
+        }
+        return length;
+    }
+
+    // Returns how many characters at the end of aText make up its last aWords words, including
+    // the separators that follow them. If the window may be truncated (aTruncated) and no word
+    // boundary was found, the whole window is deleted, minus a dangling low surrogate.
+    static int findDeleteLength(@NonNull CharSequence aText, int aWords, boolean aTruncated) {
+        int index = aText.length();
+        for (int word = 0; word < aWords && index > 0; word++) {
+            while (index > 0 && !isWordChar(aText.charAt(index - 1))) {
+                index--;
+            }
+            while (index > 0 && isWordChar(aText.charAt(index - 1))) {
+                index--;
+            }
+        }
+
+        if (index == 0 && aTruncated && Character.isLowSurrogate(aText.charAt(0))) {
+            index = 1;
+        }
+        return aText.length() - index;
+    }
+
+    public synchronized long getCharsRead() {
+        return mCharsRead;
+    }
+
+    public synchronized long getCharsDeleted() {
+        return mCharsDeleted;
+    }
+
+    private static boolean isWordChar(char aChar) {
+        return Character.isLetterOrDigit(aChar) || Character.isSurrogate(aChar) || aChar == '_' || aChar == '\'';
+    }
+
+    private synchronized void countRead(int aChars) {
+        mCharsRead += aChars;
+    }
+
+    private synchronized void countDeleted(int aChars) {
+        mCharsDeleted += aChars;
+    }
+}
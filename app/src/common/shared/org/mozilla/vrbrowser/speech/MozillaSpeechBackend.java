@@ -0,0 +1,85 @@
+/* -*- Mode: Java; c-basic-offset: 4; tab-width: 4; indent-tabs-mode: nil; -*-
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.vrbrowser.speech;
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.mozilla.speechlibrary.ISpeechRecognitionListener;
+import com.mozilla.speechlibrary.MozillaSpeechService;
+import com.mozilla.speechlibrary.STTResult;
+
+// SpeechBackend for the Mozilla speech service. The service only returns the final transcription.
+public class MozillaSpeechBackend implements SpeechBackend, ISpeechRecognitionListener {
+    private final MozillaSpeechService mService;
+    private Listener mListener;
+
+    public MozillaSpeechBackend() {
+        mService = MozillaSpeechService.getInstance();
+        mService.setProductTag("fxr");
+    }
+
+    @Override
+    public void setListener(@Nullable Listener aListener) {
+        if (aListener != null && mListener == null) {
+            mService.addListener(this);
+        } else if (aListener == null && mListener != null) {
+            mService.removeListener(this);
+        }
+        mListener = aListener;
+    }
+
+    @Override
+    public void start(@NonNull Context aContext, @NonNull String aLanguage) {
+        mService.setLanguage(aLanguage);
+        mService.start(aContext);
+    }
+
+    @Override
+    public void cancel() {
+        mService.cancel();
+    }
+
+    @Override
+    public boolean supportsPartialResults() {
+        return false;
+    }
+
+    @Override
+    public void onSpeechStatusChanged(MozillaSpeechService.SpeechState aState, Object aPayload) {
+        Listener listener = mListener;
+        if (listener == null) {
+            return;
+        }
+        switch (aState) {
+            case START_LISTEN:
+                listener.onStartListening();
+                break;
+            case MIC_ACTIVITY:
+                listener.onMicLevel((double)aPayload);
+                break;
+            case DECODING:
+                listener.onDecoding();
+                break;
+            case STT_RESULT:
+                STTResult result = (STTResult)aPayload;
+                listener.onFinalResult(result.mTranscription, result.mConfidence);
+                break;
+            case NO_VOICE:
+                listener.onNoVoice();
+                break;
+            case CANCELED:
+                listener.onCanceled();
+                break;
+            case ERROR:
+                listener.onError(aPayload != null ? aPayload.toString() : null);
+                break;
+            default:
+                break;
+        }
+    }
+}
@@ -0,0 +1,32 @@
+/* -*- Mode: Java; c-basic-offset: 4; tab-width: 4; indent-tabs-mode: nil; -*-
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.vrbrowser.speech;
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+// Speech recognition service used by the voice search.
+// Listener callbacks may be called from any thread.
+public interface SpeechBackend {
+    interface Listener {
+        void onStartListening();
+        // Microphone activity in dB, the closer to 0 the louder. Called for every audio buffer.
+        void onMicLevel(double aDb);
+        void onDecoding();
+        // Hypothesis for the speech so far. Only sent by backends that support partial results.
+        void onPartialResult(@NonNull String aTranscription);
+        void onFinalResult(@NonNull String aTranscription, float aConfidence);
+        void onNoVoice();
+        void onCanceled();
+        void onError(@Nullable String aError);
+    }
+
+    void setListener(@Nullable Listener aListener);
+    void start(@NonNull Context aContext, @NonNull String aLanguage);
+    void cancel();
+    boolean supportsPartialResults();
+}
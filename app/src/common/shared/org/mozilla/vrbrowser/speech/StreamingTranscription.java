@@ -0,0 +1,154 @@
+/* -*- Mode: Java; c-basic-offset: 4; tab-width: 4; indent-tabs-mode: nil; -*-
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.vrbrowser.speech;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import org.mozilla.vrbrowser.utils.LatencyHistogram;
+
+// Tracks the hypotheses of a streaming voice search.
+// Each new partial hypothesis is resolved to the URL it would load, so when the final result
+// matches the last partial, or the user confirms a partial early, the URL is already known.
+// Also measures the time to the first partial and to the final result of each recognition.
+public class StreamingTranscription {
+    private static final int LATENCY_BUCKET_MS = 100;
+    private static final int LATENCY_BUCKETS = 50;
+
+    public interface Resolver {
+        // Returns the URL loaded for the text typed in the URL bar.
+        @NonNull String resolve(@NonNull String aText);
+    }
+
+    private final Resolver mResolver;
+    private final LatencyHistogram mFirstPartialLatency;
+    private final LatencyHistogram mFinalLatency;
+    private boolean mActive;
+    private long mStartTime;
+    private boolean mHasPartial;
+    private String mHypothesis = "";
+    private String mResolvedText;
+    private String mResolvedUrl;
+    private long mResolveCount;
+    private long mResultCount;
+    private long mSpeculativeHits;
+
+    public StreamingTranscription(@NonNull Resolver aResolver) {
+        mResolver = aResolver;
+        mFirstPartialLatency = new LatencyHistogram("Voice time to first partial (ms)", LATENCY_BUCKET_MS, LATENCY_BUCKETS);
+        mFinalLatency = new LatencyHistogram("Voice time to final (ms)", LATENCY_BUCKET_MS, LATENCY_BUCKETS);
+    }
+
+    // Called when the microphone starts listening. aTime is in milliseconds.
+    public void start(long aTime) {
+        mActive = true;
+        mStartTime = aTime;
+        mHasPartial = false;
+        mHypothesis = "";
+    }
+
+    public void cancel() {
+        mActive = false;
+        mHypothesis = "";
+    }
+
+    public boolean isActive() {
+        return mActive;
+    }
+
+    // Returns true if the hypothesis changed and should be displayed.
+    public boolean onPartialResult(@NonNull String aText, long aTime) {
+        if (!mActive) {
+            return false;
+        }
+        String text = normalize(aText);
+        if (!mHasPartial) {
+            mHasPartial = true;
+            mFirstPartialLatency.record(aTime - mStartTime);
+        }
+        if (text.isEmpty() || text.equals(mHypothesis)) {
+            return false;
+        }
+        mHypothesis = text;
+        resolve(text);
+        return true;
+    }
+
+    @NonNull
+    public String getHypothesis() {
+        return mHypothesis;
+    }
+
+    // URL resolved for the current hypothesis, null if there isn't one yet.
+    @Nullable
+    public String getSpeculativeUrl() {
+        return mHypothesis.isEmpty() ? null : mResolvedUrl;
+    }
+
+    // Returns the URL to load for the final transcription, or null if it's empty.
+    @Nullable
+    public String onFinalResult(@NonNull String aText, long aTime) {
+        if (!mActive) {
+            return null;
+        }
+        mActive = false;
+        mFinalLatency.record(aTime - mStartTime);
+        return finish(normalize(aText));
+    }
+
+    // The user accepted the current hypothesis before the final result. Returns the URL to load,
+    // or null if there is no hypothesis yet.
+    @Nullable
+    public String confirm(long aTime) {
+        if (!mActive || mHypothesis.isEmpty()) {
+            return null;
+        }
+        mActive = false;
+        mFinalLatency.record(aTime - mStartTime);
+        return finish(mHypothesis);
+    }
+
+    private String finish(String aText) {
+        mHypothesis = "";
+        if (aText.isEmpty()) {
+            return null;
+        }
+        mResultCount++;
+        if (aText.equals(mResolvedText)) {
+            mSpeculativeHits++;
+            return mResolvedUrl;
+        }
+        return resolve(aText);
+    }
+
+    private String resolve(String aText) {
+        mResolveCount++;
+        mResolvedText = aText;
+        mResolvedUrl = mResolver.resolve(aText);
+        return mResolvedUrl;
+    }
+
+    private static String normalize(String aText) {
+        return aText.trim().replaceAll("\\s+", " ");
+    }
+
+    public LatencyHistogram getFirstPartialLatency() {
+        return mFirstPartialLatency;
+    }
+
+    public LatencyHistogram getFinalLatency() {
+        return mFinalLatency;
+    }
+
+    public long getResolveCount() {
+        return mResolveCount;
+    }
+
+    // Fraction of the results whose URL was resolved before the result arrived.
+    public float getSpeculativeHitRate() {
+        return mResultCount > 0 ? (float)mSpeculativeHits / mResultCount : 0.0f;
+    }
+}
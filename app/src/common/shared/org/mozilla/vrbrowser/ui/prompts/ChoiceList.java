@@ -0,0 +1,205 @@
+/* -*- Mode: Java; c-basic-offset: 4; tab-width: 4; indent-tabs-mode: nil; -*-
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.vrbrowser.ui.prompts;
+
+import android.support.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.Locale;
+
+// Flattened list of the choices of a prompt, with nested groups following their parent.
+// Positions map to the original items without wrapping each one, the selection is a bitset, and
+// the sorted label index used to find items by typing is only built on the first search.
+class ChoiceList<T> {
+
+    interface Accessor<T> {
+        // Children of a group, null or empty for options
+        T[] getItems(@NonNull T aItem);
+        String getId(@NonNull T aItem);
+        String getLabel(@NonNull T aItem);
+        boolean isSelected(@NonNull T aItem);
+        boolean isDisabled(@NonNull T aItem);
+    }
+
+    private final Accessor<T> mAccessor;
+    private final ArrayList<T> mItems;
+    private int[] mLevels;
+    private final BitSet mGroups = new BitSet();
+    private final BitSet mSelected = new BitSet();
+    private final BitSet mDefaultSelected = new BitSet();
+    // Positions sorted by label, and the normalized labels in the same order
+    private Integer[] mLabelOrder;
+    private String[] mSortedLabels;
+
+    ChoiceList(@NonNull T[] aItems, @NonNull Accessor<T> aAccessor) {
+        mAccessor = aAccessor;
+        mItems = new ArrayList<>(aItems.length);
+        mLevels = new int[aItems.length];
+        add(aItems, 0);
+        mSelected.or(mDefaultSelected);
+    }
+
+    private void add(T[] aItems, int aLevel) {
+        for (T item: aItems) {
+            int position = mItems.size();
+            mItems.add(item);
+            if (position >= mLevels.length) {
+                mLevels = Arrays.copyOf(mLevels, mLevels.length * 2 + 1);
+            }
+            mLevels[position] = aLevel;
+            if (mAccessor.isSelected(item)) {
+                mDefaultSelected.set(position);
+            }
+            T[] children = mAccessor.getItems(item);
+            if (children != null && children.length > 0) {
+                mGroups.set(position);
+                add(children, aLevel + 1);
+            }
+        }
+    }
+
+    int size() {
+        return mItems.size();
+    }
+
+    T get(int aPosition) {
+        return mItems.get(aPosition);
+    }
+
+    int getLevel(int aPosition) {
+        return mLevels[aPosition];
+    }
+
+    boolean isGroup(int aPosition) {
+        return mGroups.get(aPosition);
+    }
+
+    boolean isEnabled(int aPosition) {
+        return !isGroup(aPosition) && !mAccessor.isDisabled(mItems.get(aPosition));
+    }
+
+    boolean isSelected(int aPosition) {
+        return mSelected.get(aPosition);
+    }
+
+    // Returns the position of the first selected item, or -1.
+    int getFirstSelected() {
+        return mSelected.nextSetBit(0);
+    }
+
+    void setSelected(int aPosition, boolean aSelected) {
+        mSelected.set(aPosition, aSelected);
+    }
+
+    void toggle(int aPosition) {
+        mSelected.flip(aPosition);
+    }
+
+    // Selects only the item at aPosition.
+    void selectSingle(int aPosition) {
+        mSelected.clear();
+        mSelected.set(aPosition);
+    }
+
+    // Goes back to the selection the choices came with.
+    void resetSelection() {
+        mSelected.clear();
+        mSelected.or(mDefaultSelected);
+    }
+
+    @NonNull
+    String[] getSelectedIds() {
+        return getIds(mSelected);
+    }
+
+    @NonNull
+    String[] getDefaultIds() {
+        return getIds(mDefaultSelected);
+    }
+
+    private String[] getIds(BitSet aPositions) {
+        String[] result = new String[aPositions.cardinality()];
+        int index = 0;
+        for (int i = aPositions.nextSetBit(0); i >= 0; i = aPositions.nextSetBit(i + 1)) {
+            result[index++] = mAccessor.getId(mItems.get(i));
+        }
+        return result;
+    }
+
+    // Returns the first enabled item at or after aStart whose label starts with aPrefix, wrapping
+    // around to the beginning, or -1 if there is none.
+    int find(@NonNull String aPrefix, int aStart) {
+        String prefix = normalize(aPrefix);
+        if (prefix.isEmpty()) {
+            return -1;
+        }
+        buildLabelIndex();
+
+        // Labels starting with the prefix are contiguous in the sorted index
+        int first = lowerBound(prefix);
+        int best = -1;
+        int wrapped = -1;
+        for (int i = first; i < mSortedLabels.length && mSortedLabels[i].startsWith(prefix); i++) {
+            int position = mLabelOrder[i];
+            if (!isEnabled(position)) {
+                continue;
+            }
+            if (position >= aStart) {
+                if (best < 0 || position < best) {
+                    best = position;
+                }
+            } else if (wrapped < 0 || position < wrapped) {
+                wrapped = position;
+            }
+        }
+        return best >= 0 ? best : wrapped;
+    }
+
+    private void buildLabelIndex() {
+        if (mLabelOrder != null) {
+            return;
+        }
+        int size = mItems.size();
+        final String[] labels = new String[size];
+        Integer[] order = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            labels[i] = normalize(mAccessor.getLabel(mItems.get(i)));
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return labels[a].compareTo(labels[b]);
+            }
+        });
+        mSortedLabels = new String[size];
+        for (int i = 0; i < size; i++) {
+            mSortedLabels[i] = labels[order[i]];
+        }
+        mLabelOrder = order;
+    }
+
+    private int lowerBound(String aKey) {
+        int low = 0;
+        int high = mSortedLabels.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (mSortedLabels[middle].compareTo(aKey) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private static String normalize(String aLabel) {
+        return aLabel == null ? "" : aLabel.trim().toLowerCase(Locale.ROOT);
+    }
+}
@@ -3,16 +3,22 @@ package org.mozilla.vrbrowser.ui.prompts;
 import android.content.Context;
 import android.graphics.Typeface;
 import android.os.Handler;
+import android.os.SystemClock;
 import android.support.annotation.NonNull;
+import android.text.Editable;
+import android.text.TextWatcher;
 import android.util.AttributeSet;
-import android.util.SparseBooleanArray;
+import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.MotionEvent;
 import android.view.View;
 import android.view.ViewGroup;
+import android.view.ViewParent;
+import android.view.inputmethod.EditorInfo;
 import android.widget.AdapterView;
-import android.widget.ArrayAdapter;
+import android.widget.BaseAdapter;
 import android.widget.Button;
+import android.widget.EditText;
 import android.widget.LinearLayout;
 import android.widget.ListView;
 import android.widget.RadioButton;
@@ -25,12 +31,12 @@ import org.mozilla.vrbrowser.ui.widgets.WidgetPlacement;
 import org.mozilla.vrbrowser.audio.AudioEngine;
 import org.mozilla.vrbrowser.ui.widgets.UIWidget;
 
-import java.util.ArrayList;
-import java.util.Arrays;
-
 public class ChoicePromptWidget extends UIWidget implements WidgetManagerDelegate.FocusChangeListener {
 
+    private static final String LOGTAG = "VRB";
     private static final int DIALOG_CLOSE_DELAY = 250;
+    // Shorter lists are quicker to scroll than to search
+    private static final int SEARCH_MIN_CHOICES = 10;
 
     public interface ChoicePromptDelegate {
         void onDismissed(String[] text);
@@ -42,10 +48,13 @@ public class ChoicePromptWidget extends UIWidget implements WidgetManagerDelegat
     private Button mOkButton;
     private TextView mPromptTitle;
     private TextView mPromptMessage;
-    private ChoiceWrapper[] mListItems;
+    private ChoiceList<Choice> mChoices;
+    private int mChoiceMode = ListView.CHOICE_MODE_SINGLE;
     private ChoicePromptDelegate mPromptDelegate;
     private ChoiceAdapter mAdapter;
     private final Handler handler = new Handler();
+    private long mOpenStart;
+    private EditText mSearch;
 
     public ChoicePromptWidget(Context aContext) {
         super(aContext);
@@ -79,15 +88,21 @@ public class ChoicePromptWidget extends UIWidget implements WidgetManagerDelegat
                     mAudio.playSound(AudioEngine.Sound.CLICK);
                 }
 
+                if (mChoiceMode == ListView.CHOICE_MODE_MULTIPLE) {
+                    mChoices.toggle(position);
+                } else {
+                    mChoices.selectSingle(position);
+                }
+                // Only rebinds the visible rows
                 mAdapter.notifyDataSetChanged();
 
                 handler.postDelayed(new Runnable() {
                     @Override
                     public void run() {
-                        ChoiceWrapper selectedItem = mListItems[position];
-                        if (mList.getChoiceMode() == ListView.CHOICE_MODE_SINGLE) {
+                        Choice selectedItem = mChoices.get(position);
+                        if (mChoiceMode == ListView.CHOICE_MODE_SINGLE) {
                             if (mPromptDelegate != null) {
-                                mPromptDelegate.onDismissed(new String[]{selectedItem.getChoice().id});
+                                mPromptDelegate.onDismissed(new String[]{selectedItem.id});
                             }
                         }
                     }
@@ -95,6 +110,37 @@ public class ChoicePromptWidget extends UIWidget implements WidgetManagerDelegat
             }
         });
 
+        // The keyboard only opens when the user picks the search field
+        mSearch = findViewById(R.id.choiceSearch);
+        mSearch.setShowSoftInputOnFocus(false);
+        mSearch.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence charSequence, int i, int i1, int i2) {
+
+            }
+
+            @Override
+            public void onTextChanged(CharSequence charSequence, int i, int i1, int i2) {
+                int position = mChoices.find(charSequence.toString(), 0);
+                if (position >= 0) {
+                    mList.setSelection(position);
+                }
+            }
+
+            @Override
+            public void afterTextChanged(Editable editable) {
+
+            }
+        });
+        mSearch.setOnEditorActionListener((aTextView, actionId, event) -> {
+            if (actionId == EditorInfo.IME_ACTION_DONE) {
+                // Back to the list, which closes the keyboard
+                requestFocusFromTouch();
+                return true;
+            }
+            return false;
+        });
+
         mPromptTitle = findViewById(R.id.promptTitle);
         mPromptMessage = findViewById(R.id.promptMessage);
 
@@ -107,11 +153,11 @@ public class ChoicePromptWidget extends UIWidget implements WidgetManagerDelegat
                     mAudio.playSound(AudioEngine.Sound.CLICK);
                 }
 
-                switch (mList.getChoiceMode()) {
+                switch (mChoiceMode) {
                     case ListView.CHOICE_MODE_SINGLE:
                     case ListView.CHOICE_MODE_MULTIPLE: {
                         if (mPromptDelegate != null) {
-                            mPromptDelegate.onDismissed(getDefaultChoices(mListItems));
+                            mPromptDelegate.onDismissed(mChoices.getDefaultIds());
                         }
                     }
                     break;
@@ -128,19 +174,11 @@ public class ChoicePromptWidget extends UIWidget implements WidgetManagerDelegat
                     mAudio.playSound(AudioEngine.Sound.CLICK);
                 }
 
-                switch (mList.getChoiceMode()) {
+                switch (mChoiceMode) {
                     case ListView.CHOICE_MODE_SINGLE:
                     case ListView.CHOICE_MODE_MULTIPLE: {
                         if (mPromptDelegate != null) {
-                            int len = mList.getCount();
-                            SparseBooleanArray selected = mList.getCheckedItemPositions();
-                            ArrayList<String> selectedChoices = new ArrayList<>();
-                            for (int i = 0; i < len; i++) {
-                                if (selected.get(i)) {
-                                    selectedChoices.add(mListItems[i].getChoice().id);
-                                }
-                            }
-                            mPromptDelegate.onDismissed(selectedChoices.toArray(new String[selectedChoices.size()]));
+                            mPromptDelegate.onDismissed(mChoices.getSelectedIds());
                         }
                     }
                     break;
@@ -148,7 +186,7 @@ public class ChoicePromptWidget extends UIWidget implements WidgetManagerDelegat
             }
         });
 
-        mListItems = new ChoiceWrapper[]{};
+        setChoices(new Choice[]{});
     }
 
     @Override
@@ -175,7 +213,7 @@ public class ChoicePromptWidget extends UIWidget implements WidgetManagerDelegat
         hide();
 
         if (mPromptDelegate != null) {
-            mPromptDelegate.onDismissed(getDefaultChoices(mListItems));
+            mPromptDelegate.onDismissed(mChoices.getDefaultIds());
         }
     }
 
@@ -183,10 +221,15 @@ public class ChoicePromptWidget extends UIWidget implements WidgetManagerDelegat
     public void show() {
         super.show();
 
-        for (int i = 0; i < mListItems.length; i++) {
-            mList.setItemChecked(i, mListItems[i].mChoice.selected);
-        }
+        // The selection lives in mChoices, so opening doesn't touch every item
+        mChoices.resetSelection();
         mAdapter.notifyDataSetChanged();
+        int selected = mChoices.getFirstSelected();
+        if (selected >= 0) {
+            mList.setSelection(selected);
+        }
+        mList.post(() -> Log.d(LOGTAG, "Choice prompt with " + mChoices.size() + " options opened in " +
+                (SystemClock.uptimeMillis() - mOpenStart) + "ms"));
     }
 
     public void setDelegate(ChoicePromptDelegate delegate) {
@@ -194,8 +237,11 @@ public class ChoicePromptWidget extends UIWidget implements WidgetManagerDelegat
     }
 
     public void setChoices(Choice[] choices) {
-        mListItems = getWrappedChoices(choices);
-        mAdapter = new ChoiceAdapter(getContext(), R.layout.choice_prompt_item, mListItems);
+        mOpenStart = SystemClock.uptimeMillis();
+        mChoices = new ChoiceList<>(choices, CHOICE_ACCESSOR);
+        mSearch.getText().clear();
+        mSearch.setVisibility(mChoices.size() >= SEARCH_MIN_CHOICES ? View.VISIBLE : View.GONE);
+        mAdapter = new ChoiceAdapter(getContext());
         mList.setAdapter(mAdapter);
     }
 
@@ -221,13 +267,13 @@ public class ChoicePromptWidget extends UIWidget implements WidgetManagerDelegat
         switch (type) {
             case Choice.CHOICE_TYPE_SINGLE:
             case Choice.CHOICE_TYPE_MENU: {
-                mList.setChoiceMode(ListView.CHOICE_MODE_SINGLE);
+                mChoiceMode = ListView.CHOICE_MODE_SINGLE;
                 mCloseButton.setVisibility(View.VISIBLE);
                 mOkButton.setVisibility(View.GONE);
             }
             break;
             case Choice.CHOICE_TYPE_MULTIPLE: {
-                mList.setChoiceMode(ListView.CHOICE_MODE_MULTIPLE);
+                mChoiceMode = ListView.CHOICE_MODE_MULTIPLE;
                 mCloseButton.setVisibility(View.VISIBLE);
                 mOkButton.setVisibility(View.VISIBLE);
             }
@@ -235,63 +281,35 @@ public class ChoicePromptWidget extends UIWidget implements WidgetManagerDelegat
         }
     }
 
-    @NonNull
-    private static ChoiceWrapper[] getWrappedChoices(Choice[] aChoices) {
-        return getWrappedChoices(aChoices, 0);
-    }
-
-    @NonNull
-    private static ChoiceWrapper[] getWrappedChoices(Choice[] aChoices, int aLevel) {
-        ArrayList<ChoiceWrapper> flattenedChoicesList = new ArrayList<>();
-        for (int i = 0; i < aChoices.length; i++) {
-            flattenedChoicesList.add(new ChoiceWrapper(aChoices[i], aLevel));
-            if (aChoices[i].items != null && aChoices[i].items.length > 0) {
-                ChoiceWrapper[] childChoices = getWrappedChoices(aChoices[i].items, aLevel+1);
-                flattenedChoicesList.addAll(Arrays.asList(childChoices));
-            }
-        }
-
-        return flattenedChoicesList.toArray(new ChoiceWrapper[flattenedChoicesList.size()]);
-    }
-
-    @NonNull
-    private static String[] getDefaultChoices(ChoiceWrapper[] aChoices) {
-        ArrayList<String> defaultChoices = new ArrayList<>();
-        for (int i = 0; i < aChoices.length; i++) {
-            if (aChoices[i].getChoice().selected) {
-                defaultChoices.add(aChoices[i].getChoice().id);
-            }
+    private static final ChoiceList.Accessor<Choice> CHOICE_ACCESSOR = new ChoiceList.Accessor<Choice>() {
+        @Override
+        public Choice[] getItems(@NonNull Choice aItem) {
+            return aItem.items;
         }
 
-        return defaultChoices.toArray(new String[defaultChoices.size()]);
-    }
-
-    static class ChoiceWrapper {
-
-        private int mLevel;
-        private Choice mChoice;
-        private boolean isParent;
-
-        public ChoiceWrapper(Choice choice, int level) {
-            mChoice = choice;
-            mLevel = level;
-            isParent = mChoice.items != null && mChoice.items.length > 0;
+        @Override
+        public String getId(@NonNull Choice aItem) {
+            return aItem.id;
         }
 
-        public boolean isParent() {
-            return isParent;
+        @Override
+        public String getLabel(@NonNull Choice aItem) {
+            return aItem.label;
         }
 
-        public int getLevel() {
-            return mLevel;
+        @Override
+        public boolean isSelected(@NonNull Choice aItem) {
+            return aItem.selected;
         }
 
-        public Choice getChoice() {
-            return mChoice;
+        @Override
+        public boolean isDisabled(@NonNull Choice aItem) {
+            return aItem.disabled;
         }
-    }
+    };
 
-    public class ChoiceAdapter extends ArrayAdapter<ChoiceWrapper> {
+    // ListView only creates the rows that fit in the prompt and rebinds them while scrolling
+    public class ChoiceAdapter extends BaseAdapter {
 
         private class ChoiceViewHolder {
             LinearLayout layout;
@@ -301,10 +319,23 @@ public class ChoicePromptWidget extends UIWidget implements WidgetManagerDelegat
 
         private LayoutInflater mInflater;
 
-        public ChoiceAdapter(Context context, int resource, ChoiceWrapper[] choices) {
-            super(context, resource, choices);
+        public ChoiceAdapter(Context context) {
+            mInflater = LayoutInflater.from(context);
+        }
+
+        @Override
+        public int getCount() {
+            return mChoices.size();
+        }
+
+        @Override
+        public Choice getItem(int position) {
+            return mChoices.get(position);
+        }
 
-            mInflater = LayoutInflater.from(getContext());
+        @Override
+        public long getItemId(int position) {
+            return position;
         }
 
         @Override
@@ -314,7 +345,7 @@ public class ChoicePromptWidget extends UIWidget implements WidgetManagerDelegat
 
         @Override
         public boolean isEnabled(int position) {
-            return !getItem(position).getChoice().disabled && !getItem(position).isParent();
+            return mChoices.isEnabled(position);
         }
 
         public View getView(int position, View convertView, ViewGroup parent) {
@@ -338,7 +369,7 @@ public class ChoicePromptWidget extends UIWidget implements WidgetManagerDelegat
                 choiceViewHolder = (ChoiceViewHolder) listItem.getTag(R.string.list_item_view_tag);
             }
 
-            ChoiceWrapper currentChoice = getItem(position);
+            Choice currentChoice = getItem(position);
 
             // Reset state
             choiceViewHolder.check.setVisibility(View.VISIBLE);
@@ -347,18 +378,18 @@ public class ChoicePromptWidget extends UIWidget implements WidgetManagerDelegat
             choiceViewHolder.layout.setTag(R.string.position_tag, position);
 
             choiceViewHolder.label.setTypeface(choiceViewHolder.check.getTypeface(), Typeface.NORMAL);
-            if (currentChoice.isParent()) {
+            if (mChoices.isGroup(position)) {
                 choiceViewHolder.label.setTypeface(choiceViewHolder.check.getTypeface(), Typeface.BOLD);
                 choiceViewHolder.check.setVisibility(View.GONE);
                 choiceViewHolder.label.setEnabled(false);
             }
-            choiceViewHolder.label.setText(currentChoice.getChoice().label);
+            choiceViewHolder.label.setText(currentChoice.label);
 
-            listItem.setEnabled(!currentChoice.getChoice().disabled);
+            listItem.setEnabled(!currentChoice.disabled);
 
-            choiceViewHolder.check.setChecked(mList.isItemChecked(position));
+            choiceViewHolder.check.setChecked(mChoices.isSelected(position));
 
-            if (currentChoice.getChoice().disabled) {
+            if (currentChoice.disabled) {
                 choiceViewHolder.check.setEnabled(false);
                 choiceViewHolder.label.setEnabled(false);
             }
@@ -401,11 +432,21 @@ public class ChoicePromptWidget extends UIWidget implements WidgetManagerDelegat
     // WidgetManagerDelegate.FocusChangeListener
     @Override
     public void onGlobalFocusChanged(View oldFocus, View newFocus) {
-        if (oldFocus == this && isVisible()) {
+        // Moving to the search field keeps the prompt open
+        if (oldFocus == this && isVisible() && !isOwnView(newFocus)) {
             if (mPromptDelegate != null) {
-                mPromptDelegate.onDismissed(getDefaultChoices(mListItems));
+                mPromptDelegate.onDismissed(mChoices.getDefaultIds());
+            }
+        }
+    }
+
+    private boolean isOwnView(View aView) {
+        for (ViewParent parent = aView != null ? aView.getParent() : null; parent != null; parent = parent.getParent()) {
+            if (parent == this) {
+                return true;
             }
         }
+        return false;
     }
 
 }
@@ -15,6 +15,7 @@ public class ButtonSetting extends LinearLayout {
     private AudioEngine mAudio;
     private String mDescription;
     private String mButtonText;
+    private TextView mDescriptionView;
     private TextView mButton;
     private OnClickListener mListener;
 
@@ -38,8 +39,8 @@ public class ButtonSetting extends LinearLayout {
 
         mAudio = AudioEngine.fromContext(aContext);
 
-        TextView description = findViewById(R.id.setting_description);
-        description.setText(mDescription);
+        mDescriptionView = findViewById(R.id.setting_description);
+        mDescriptionView.setText(mDescription);
 
         mButton = findViewById(R.id.button);
         mButton.setText(mButtonText);
@@ -63,6 +64,16 @@ public class ButtonSetting extends LinearLayout {
         }
     }
 
+    public void setDescription(String aDescription) {
+        mDescription = aDescription;
+        mDescriptionView.setText(aDescription);
+    }
+
+    public void setButtonText(String aText) {
+        mButtonText = aText;
+        mButton.setText(aText);
+    }
+
     public void setOnClickListener(OnClickListener aListener) {
         mListener = aListener;
     }
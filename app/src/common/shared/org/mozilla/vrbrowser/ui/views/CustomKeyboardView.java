@@ -46,11 +46,13 @@ import android.widget.TextView;
 
 import org.mozilla.vrbrowser.R;
 import org.mozilla.vrbrowser.input.CustomKeyboard;
+import org.mozilla.vrbrowser.input.KeyGridIndex;
 
 import java.lang.reflect.Method;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -134,6 +136,20 @@ public class CustomKeyboardView extends View implements View.OnClickListener {
         void swipeUp();
     }
 
+    // Fork: gesture typing, receives the path traced over the keys in keyboard coordinates.
+    public interface OnGestureTypingListener {
+        /**
+         * Called while the path is traced (throttled) and once when it's finished.
+         * The arrays are reused by the view, copy the points to keep them.
+         */
+        void onGesturePath(float[] x, float[] y, int count, boolean finished);
+    }
+
+    // Fork: called when the keyboard is switched or its keys are resized with the view.
+    public interface OnKeysChangedListener {
+        void onKeysChanged(Keyboard keyboard);
+    }
+
     private static final boolean DEBUG = false;
     private static final int NOT_A_KEY = -1;
     private static final int[] KEY_DELETE = { Keyboard.KEYCODE_DELETE };
@@ -165,8 +181,23 @@ public class CustomKeyboardView extends View implements View.OnClickListener {
     private int mMiniKeyboardOffsetY;
     private Map<Key,View> mMiniKeyboardCache;
     private Key[] mKeys;
+    // Fork: spatial index used for hit testing, rebuilt when the layout or its size changes
+    private KeyGridIndex mKeyIndex;
+    private int[] mNearbyKeys = new int[MAX_NEARBY_KEYS];
 
     private OnKeyboardActionListener mKeyboardActionListener;
+    // Fork: gesture typing state
+    private static final int MAX_GESTURE_POINTS = 512;
+    private static final int GESTURE_UPDATE_INTERVAL = 60;
+    private OnGestureTypingListener mGestureTypingListener;
+    private OnKeysChangedListener mKeysChangedListener;
+    private boolean mGestureTypingEnabled;
+    private boolean mGestureTracking;
+    private boolean mGestureActive;
+    private float[] mGestureX = new float[MAX_GESTURE_POINTS];
+    private float[] mGestureY = new float[MAX_GESTURE_POINTS];
+    private int mGestureCount;
+    private long mLastGestureUpdate;
 
     private static final int MSG_SHOW_PREVIEW = 1;
     private static final int MSG_REMOVE_PREVIEW = 2;
@@ -268,6 +299,20 @@ public class CustomKeyboardView extends View implements View.OnClickListener {
     private AudioManager mAudioManager;
     /** Whether the requirement of a headset to hear passwords if accessibility is enabled is announced. */
     private boolean mHeadsetRequiredToHearPasswordsAnnounced;
+    /** Fork: Pre-rendered bitmaps of the keyboards previously shown, so switching back to them is a blit. */
+    private static final int MAX_CACHED_BUFFERS = 4;
+    private LinkedHashMap<Keyboard, CachedBuffer> mBufferCache = new LinkedHashMap<Keyboard, CachedBuffer>(MAX_CACHED_BUFFERS, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Keyboard, CachedBuffer> eldest) {
+            return size() > MAX_CACHED_BUFFERS;
+        }
+    };
+
+    private static class CachedBuffer {
+        Bitmap mBitmap;
+        Canvas mCanvas;
+        int mSignature;
+    }
 
 
     // Fork
@@ -476,6 +521,22 @@ public class CustomKeyboardView extends View implements View.OnClickListener {
         }
     }
 
+    public void setOnGestureTypingListener(OnGestureTypingListener aListener) {
+        mGestureTypingListener = aListener;
+    }
+
+    public void setOnKeysChangedListener(OnKeysChangedListener aListener) {
+        mKeysChangedListener = aListener;
+    }
+
+    public void setGestureTypingEnabled(boolean aEnabled) {
+        mGestureTypingEnabled = aEnabled;
+        if (!aEnabled) {
+            mGestureTracking = false;
+            mGestureActive = false;
+        }
+    }
+
     public void setOnKeyboardActionListener(OnKeyboardActionListener listener) {
         mKeyboardActionListener = listener;
     }
@@ -498,16 +559,25 @@ public class CustomKeyboardView extends View implements View.OnClickListener {
     public void setKeyboard(Keyboard keyboard) {
         if (mKeyboard != null) {
             showPreview(NOT_A_KEY);
+            storeBuffer();
         }
         // Remove any pending messages
         removeMessages();
         mKeyboard = keyboard;
         List<Key> keys = mKeyboard.getKeys();
         mKeys = keys.toArray(new Key[keys.size()]);
+        buildKeyIndex();
+        if (mKeysChangedListener != null) {
+            mKeysChangedListener.onKeysChanged(mKeyboard);
+        }
         requestLayout();
-        // Hint to reallocate the buffer if the size changed
-        mKeyboardChanged = true;
-        invalidateAllKeys();
+        if (restoreBuffer()) {
+            invalidate();
+        } else {
+            // Hint to reallocate the buffer if the size changed
+            mKeyboardChanged = true;
+            invalidateAllKeys();
+        }
         computeProximityThreshold(keyboard);
         mMiniKeyboardCache.clear(); // Not really necessary to do every time, but will free up views
         // Switching to a different keyboard should abort any pending keys so that the key up
@@ -515,6 +585,75 @@ public class CustomKeyboardView extends View implements View.OnClickListener {
         mAbortKey = true; // Until the next ACTION_DOWN
     }
 
+    // Fork: build the grid used for hit testing, so lookups don't scan all the keys.
+    private void buildKeyIndex() {
+        final Key[] keys = mKeys;
+        final int count = keys.length;
+        int[] x = new int[count];
+        int[] y = new int[count];
+        int[] width = new int[count];
+        int[] height = new int[count];
+        int[] edgeFlags = new int[count];
+        for (int i = 0; i < count; i++) {
+            x[i] = keys[i].x;
+            y[i] = keys[i].y;
+            width[i] = keys[i].width;
+            height[i] = keys[i].height;
+            edgeFlags[i] = keys[i].edgeFlags;
+        }
+        mKeyIndex = new KeyGridIndex(x, y, width, height, edgeFlags, mKeyboard.getMinWidth(), mKeyboard.getHeight());
+    }
+
+    // Fork: keep the rendered bitmap of the keyboard being replaced, in its idle state.
+    private void storeBuffer() {
+        if (mHoveredKey != NOT_A_KEY) {
+            int hovered = mHoveredKey;
+            mHoveredKey = NOT_A_KEY;
+            invalidateKey(hovered);
+        }
+        if (mBuffer != null && mCanvas != null && !mDrawPending && !mKeyboardChanged) {
+            CachedBuffer cached = new CachedBuffer();
+            cached.mBitmap = mBuffer;
+            cached.mCanvas = mCanvas;
+            cached.mSignature = computeSignature(mKeyboard);
+            mBufferCache.put(mKeyboard, cached);
+        }
+        // The new keyboard must not draw into the cached bitmap.
+        mBuffer = null;
+        mCanvas = null;
+    }
+
+    // Fork: reuse the bitmap rendered the last time the keyboard was shown if nothing changed.
+    private boolean restoreBuffer() {
+        CachedBuffer cached = mBufferCache.remove(mKeyboard);
+        if (cached == null) {
+            return false;
+        }
+        if (cached.mBitmap.getWidth() != Math.max(1, getWidth()) ||
+                cached.mBitmap.getHeight() != Math.max(1, getHeight()) ||
+                cached.mSignature != computeSignature(mKeyboard)) {
+            return false;
+        }
+        mBuffer = cached.mBitmap;
+        mCanvas = cached.mCanvas;
+        mKeyboardChanged = false;
+        mDrawPending = false;
+        mDirtyRect.setEmpty();
+        return true;
+    }
+
+    // Fork: cheap summary of everything in the keyboard that affects how its keys are rendered.
+    private int computeSignature(Keyboard keyboard) {
+        int result = keyboard.isShifted() ? 1 : 0;
+        for (Key key: keyboard.getKeys()) {
+            result = 31 * result + (key.label != null ? key.label.hashCode() : 0);
+            result = 31 * result + System.identityHashCode(key.icon);
+            result = 31 * result + (key.pressed ? 1 : 0);
+            result = 31 * result + (key.on ? 1 : 0);
+        }
+        return result;
+    }
+
     /**
      * Returns the current keyboard being displayed by this view.
      * @return the currently attached keyboard
@@ -677,9 +816,15 @@ public class CustomKeyboardView extends View implements View.OnClickListener {
                     ex.printStackTrace();
                 }
             }
+            // Key geometry may have changed
+            buildKeyIndex();
+            if (mKeysChangedListener != null) {
+                mKeysChangedListener.onKeysChanged(mKeyboard);
+            }
         }
         // Release the buffer, if any and it will be reallocated on the next draw
         mBuffer = null;
+        mBufferCache.clear();
     }
 
     @Override
@@ -863,8 +1008,16 @@ public class CustomKeyboardView extends View implements View.OnClickListener {
         int closestKey = NOT_A_KEY;
         int closestKeyDist = mProximityThreshold + 1;
         java.util.Arrays.fill(mDistances, Integer.MAX_VALUE);
-        int [] nearestKeyIndices = mKeyboard.getNearestKeys(x, y);
-        final int keyCount = nearestKeyIndices.length;
+        // Fork: query the grid instead of scanning all the keys. Without proximity correction
+        // only the key under the pointer is a candidate, like CustomKeyboard.getNearestKeys().
+        final int[] nearestKeyIndices = mNearbyKeys;
+        final int keyCount;
+        if (mProximityCorrectOn) {
+            keyCount = mKeyIndex.findNearbyKeys(x, y, mProximityThreshold, nearestKeyIndices);
+        } else {
+            nearestKeyIndices[0] = mKeyIndex.findKey(x, y);
+            keyCount = nearestKeyIndices[0] != KeyGridIndex.NOT_A_KEY ? 1 : 0;
+        }
         for (int i = 0; i < keyCount; i++) {
             final Key key = keys[nearestKeyIndices[i]];
             int dist = 0;
@@ -1258,6 +1411,10 @@ public class CustomKeyboardView extends View implements View.OnClickListener {
             return true;
         }
 
+        if (handleGestureTyping(action, keyIndex, touchX, touchY, eventTime)) {
+            return true;
+        }
+
         if (mGestureDetector.onTouchEvent(me)) {
             showPreview(NOT_A_KEY);
             mHandler.removeMessages(MSG_REPEAT);
@@ -1380,6 +1537,86 @@ public class CustomKeyboardView extends View implements View.OnClickListener {
         return true;
     }
 
+    // Fork: records the path of presses starting on a letter key. Once the pointer leaves the
+    // first key far enough it becomes a gesture: key presses are cancelled and the path is sent
+    // to the gesture typing listener. Returns true if the event was consumed by the gesture.
+    private boolean handleGestureTyping(int action, int keyIndex, int touchX, int touchY, long eventTime) {
+        if (mGestureTypingListener == null || !mGestureTypingEnabled) {
+            return false;
+        }
+        switch (action) {
+            case MotionEvent.ACTION_DOWN:
+                mGestureActive = false;
+                mGestureCount = 0;
+                mGestureTracking = keyIndex != NOT_A_KEY && Character.isLetter(mKeys[keyIndex].codes[0]);
+                addGesturePoint(touchX, touchY);
+                return false;
+
+            case MotionEvent.ACTION_MOVE:
+                if (!mGestureTracking) {
+                    return false;
+                }
+                addGesturePoint(touchX, touchY);
+                if (!mGestureActive) {
+                    Key downKey = mKeys[mDownKey >= 0 ? mDownKey : 0];
+                    int dx = touchX - mStartX;
+                    int dy = touchY - mStartY;
+                    if (keyIndex == mDownKey || dx * dx + dy * dy < downKey.width * downKey.width) {
+                        return false;
+                    }
+                    // Became a gesture: cancel the pending key.
+                    mGestureActive = true;
+                    removeMessages();
+                    showPreview(NOT_A_KEY);
+                    mRepeatKeyIndex = NOT_A_KEY;
+                }
+                if (eventTime - mLastGestureUpdate >= GESTURE_UPDATE_INTERVAL) {
+                    mLastGestureUpdate = eventTime;
+                    mGestureTypingListener.onGesturePath(mGestureX, mGestureY, mGestureCount, false);
+                }
+                return true;
+
+            case MotionEvent.ACTION_UP:
+            case MotionEvent.ACTION_CANCEL:
+                boolean active = mGestureActive;
+                mGestureTracking = false;
+                mGestureActive = false;
+                if (!active) {
+                    return false;
+                }
+                if (action == MotionEvent.ACTION_UP) {
+                    addGesturePoint(touchX, touchY);
+                    mGestureTypingListener.onGesturePath(mGestureX, mGestureY, mGestureCount, true);
+                }
+                removeMessages();
+                invalidateAllKeys();
+                return true;
+        }
+        return false;
+    }
+
+    private void addGesturePoint(int x, int y) {
+        if (mGestureCount > 0) {
+            // Skip points that barely moved, they don't change the path
+            float dx = x - mGestureX[mGestureCount - 1];
+            float dy = y - mGestureY[mGestureCount - 1];
+            if (dx * dx + dy * dy < 4) {
+                return;
+            }
+        }
+        if (mGestureCount == MAX_GESTURE_POINTS) {
+            // Drop every other point to keep the whole path in the buffer
+            for (int i = 0; i < MAX_GESTURE_POINTS / 2; i++) {
+                mGestureX[i] = mGestureX[i * 2];
+                mGestureY[i] = mGestureY[i * 2];
+            }
+            mGestureCount = MAX_GESTURE_POINTS / 2;
+        }
+        mGestureX[mGestureCount] = x;
+        mGestureY[mGestureCount] = y;
+        mGestureCount++;
+    }
+
     private boolean repeatKey() {
         Key key = mKeys[mRepeatKeyIndex];
         detectAndSendKey(mCurrentKey, key.x, key.y, mLastTapTime);
@@ -1419,6 +1656,7 @@ public class CustomKeyboardView extends View implements View.OnClickListener {
         dismissPopupKeyboard();
         mBuffer = null;
         mCanvas = null;
+        mBufferCache.clear();
         mMiniKeyboardCache.clear();
     }
 
@@ -23,6 +23,7 @@ import android.view.inputmethod.EditorInfo;
 import android.widget.*;
 import org.mozilla.vrbrowser.R;
 import org.mozilla.vrbrowser.browser.SessionStore;
+import org.mozilla.vrbrowser.browser.SpeculativeLoader;
 import org.mozilla.vrbrowser.search.SearchEngine;
 import org.mozilla.vrbrowser.telemetry.TelemetryWrapper;
 
@@ -47,6 +48,7 @@ public class NavigationURLBar extends FrameLayout {
     private int mURLWebsiteColor;
     private Pattern mURLPattern;
     private NavigationURLBarDelegate mDelegate;
+    private SpeculativeLoader mSpeculativeLoader;
 
     public interface NavigationURLBarDelegate {
         void OnVoiceSearchClicked();
@@ -60,6 +62,17 @@ public class NavigationURLBar extends FrameLayout {
     private void initialize(Context aContext) {
         inflate(aContext, R.layout.navigation_url, this);
         mURLPattern = Pattern.compile("[\\d\\w][.][\\d\\w]");
+        mSpeculativeLoader = new SpeculativeLoader(new SpeculativeLoader.Resolver() {
+            @Override
+            public String resolve(String aText) {
+                return resolveURL(aText);
+            }
+
+            @Override
+            public boolean isURL(String aText) {
+                return parseURI(aText) != null;
+            }
+        });
         mURL = findViewById(R.id.urlEditText);
         mURL.setShowSoftInputOnFocus(false);
         mURL.setOnEditorActionListener(new TextView.OnEditorActionListener() {
@@ -76,6 +89,9 @@ public class NavigationURLBar extends FrameLayout {
             @Override
             public void onFocusChange(View view, boolean b) {
                 showVoiceSearch(!b || (mURL.getText().length() == 0));
+                if (!b) {
+                    mSpeculativeLoader.cancel();
+                }
 
                 mURL.setSelection(mURL.getText().length(), 0);
             }
@@ -212,6 +228,48 @@ public class NavigationURLBar extends FrameLayout {
 
     public  void handleURLEdit(String text) {
         text = text.trim();
+        loadURL(text, resolveURL(text));
+    }
+
+    // Returns the URL loaded for the text, the search URL if it doesn't look like an URL.
+    public String resolveURL(String text) {
+        text = text.trim();
+        URI uri = parseURI(text);
+        if (uri != null) {
+            return uri.toString();
+        } else if (text.startsWith("about:") || text.startsWith("resource://")) {
+            return text;
+        }
+        return SearchEngine.get(getContext()).getSearchURL(text);
+    }
+
+    // Loads the URL resolved for the text, it may have been resolved ahead by the voice search.
+    public void loadURL(String aText, String aURL) {
+        if (parseURI(aText) != null) {
+            TelemetryWrapper.urlBarEvent(true);
+        } else if (!aText.startsWith("about:") && !aText.startsWith("resource://")) {
+            // Doing search in the URL bar, so sending "aIsURL: false" to telemetry.
+            TelemetryWrapper.urlBarEvent(false);
+        }
+
+        mSpeculativeLoader.cancel();
+        if (SessionStore.get().getCurrentUri() != aURL) {
+            SessionStore.get().submitUri(aURL);
+        }
+
+        showVoiceSearch(aText.isEmpty());
+    }
+
+    // Shows the voice search hypothesis while it's being recognized.
+    public void setPartialTranscription(String aText) {
+        mURL.removeTextChangedListener(mURLTextWatcher);
+        mURL.setText(aText);
+        mURL.setSelection(aText.length());
+        mURL.addTextChangedListener(mURLTextWatcher);
+        mSpeculativeLoader.onTextChanged(aText);
+    }
+
+    private URI parseURI(String text) {
         URI uri = null;
         try {
             boolean hasProtocol = text.contains("://");
@@ -229,25 +287,7 @@ public class NavigationURLBar extends FrameLayout {
         }
         catch (Exception ex) {
         }
-
-        String url;
-        if (uri != null) {
-            url = uri.toString();
-            TelemetryWrapper.urlBarEvent(true);
-        } else if (text.startsWith("about:") || text.startsWith("resource://")) {
-            url = text;
-        } else {
-            url = SearchEngine.get(getContext()).getSearchURL(text);
-
-            // Doing search in the URL bar, so sending "aIsURL: false" to telemetry.
-            TelemetryWrapper.urlBarEvent(false);
-        }
-
-        if (SessionStore.get().getCurrentUri() != url) {
-            SessionStore.get().loadUri(url);
-        }
-
-        showVoiceSearch(text.isEmpty());
+        return uri;
     }
 
     public void setPrivateMode(boolean isEnabled) {
@@ -296,6 +336,9 @@ public class NavigationURLBar extends FrameLayout {
             } else {
                 showVoiceSearch(true);
             }
+            if (mURL.isFocused()) {
+                mSpeculativeLoader.onTextChanged(mURL.getText().toString());
+            }
         }
 
         @Override
@@ -6,6 +6,7 @@
 package org.mozilla.vrbrowser.ui.widgets;
 
 import android.content.Context;
+import android.graphics.Matrix;
 import android.graphics.Rect;
 import android.graphics.SurfaceTexture;
 import android.util.Log;
@@ -30,6 +31,9 @@ import org.mozilla.vrbrowser.ui.prompts.ChoicePromptWidget;
 public class BrowserWidget extends View implements Widget, SessionStore.SessionChangeListener, GeckoSession.PromptDelegate {
 
     private static final String LOGTAG = "VRB";
+    // Bounds of the resolution of the content surface under GPU load
+    private static final float MIN_RESOLUTION_SCALE = 0.5f;
+    private static final float MAX_RESOLUTION_SCALE = 1.0f;
 
     private int mSessionId;
     private GeckoDisplay mDisplay;
@@ -41,6 +45,9 @@ public class BrowserWidget extends View implements Widget, SessionStore.SessionC
     private WidgetPlacement mWidgetPlacement;
     private WidgetManagerDelegate mWidgetManager;
     private ChoicePromptWidget mChoicePrompt;
+    private ContentResolutionController mResolution = new ContentResolutionController(MIN_RESOLUTION_SCALE, MAX_RESOLUTION_SCALE);
+    private float mResolutionScale = MAX_RESOLUTION_SCALE;
+    private Matrix mEventTransform = new Matrix();
 
     public BrowserWidget(Context aContext, int aSessionId) {
         super(aContext);
@@ -90,7 +97,38 @@ public class BrowserWidget extends View implements Widget, SessionStore.SessionC
             return;
         }
 
-        mDisplay.surfaceChanged(mSurface, mWidth, mHeight);
+        mDisplay.surfaceChanged(mSurface, getSurfaceWidth(), getSurfaceHeight());
+    }
+
+    public void setRefreshRate(float aRate) {
+        mResolution.setRefreshRate(aRate);
+    }
+
+    // Steps the resolution of the content down or up from the average and maximum frame
+    // time of the native loop, in milliseconds. The surface is resized right away, which lays
+    // the page out again in the scaled viewport, so the steps are kept infrequent.
+    public void handleFrameTime(float aAverage, float aMax) {
+        float scale = mResolution.onFrameTime(aAverage);
+        if (scale == mResolutionScale) {
+            return;
+        }
+        mResolutionScale = scale;
+        Log.d(LOGTAG, "Browser resolution scale " + scale + " (" + getSurfaceWidth() + "x" + getSurfaceHeight() +
+                "), frame time " + aAverage + "ms, max " + aMax + "ms, target " + mResolution.getRefreshInterval() +
+                "ms, " + mResolution.getChangeCount() + " changes");
+        if (mSurfaceTexture == null || mDisplay == null) {
+            return;
+        }
+        mSurfaceTexture.setDefaultBufferSize(getSurfaceWidth(), getSurfaceHeight());
+        mDisplay.surfaceChanged(mSurface, getSurfaceWidth(), getSurfaceHeight());
+    }
+
+    private int getSurfaceWidth() {
+        return Math.max(1, Math.round(mWidth * mResolutionScale));
+    }
+
+    private int getSurfaceHeight() {
+        return Math.max(1, Math.round(mHeight * mResolutionScale));
     }
 
     public void setBrowserSize(float windowWidth, float windowHeight, float multiplier) {
@@ -114,22 +152,22 @@ public class BrowserWidget extends View implements Widget, SessionStore.SessionC
         mWidth = aWidth;
         mHeight = aHeight;
         mSurfaceTexture = aTexture;
-        aTexture.setDefaultBufferSize(aWidth, aHeight);
+        aTexture.setDefaultBufferSize(getSurfaceWidth(), getSurfaceHeight());
         mSurface = new Surface(aTexture);
         if (mDisplay == null) {
             mDisplay = session.acquireDisplay();
         } else {
             Log.e(LOGTAG, "GeckoDisplay was not null in BrowserWidget.setSurfaceTexture()");
         }
-        mDisplay.surfaceChanged(mSurface, aWidth, aHeight);
+        mDisplay.surfaceChanged(mSurface, getSurfaceWidth(), getSurfaceHeight());
     }
 
     @Override
     public void resizeSurfaceTexture(final int aWidth, final int aHeight) {
         mWidth = aWidth;
         mHeight = aHeight;
-        mSurfaceTexture.setDefaultBufferSize(aWidth, aHeight);
-        mDisplay.surfaceChanged(mSurface, aWidth, aHeight);
+        mSurfaceTexture.setDefaultBufferSize(getSurfaceWidth(), getSurfaceHeight());
+        mDisplay.surfaceChanged(mSurface, getSurfaceWidth(), getSurfaceHeight());
     }
 
     @Override
@@ -152,7 +190,11 @@ public class BrowserWidget extends View implements Widget, SessionStore.SessionC
         if (session == null) {
             return;
         }
-        session.getPanZoomController().onTouchEvent(aEvent);
+        MotionEvent event = scaleEvent(aEvent);
+        session.getPanZoomController().onTouchEvent(event);
+        if (event != aEvent) {
+            event.recycle();
+        }
     }
 
     @Override
@@ -161,7 +203,23 @@ public class BrowserWidget extends View implements Widget, SessionStore.SessionC
         if (session == null) {
             return;
         }
-        session.getPanZoomController().onMotionEvent(aEvent);
+        MotionEvent event = scaleEvent(aEvent);
+        session.getPanZoomController().onMotionEvent(event);
+        if (event != aEvent) {
+            event.recycle();
+        }
+    }
+
+    // Pointer coordinates come in texture pixels, the content surface may be smaller. Returns
+    // the event itself, or a scaled copy of every pointer to be recycled by the caller.
+    private MotionEvent scaleEvent(MotionEvent aEvent) {
+        if (mResolutionScale == MAX_RESOLUTION_SCALE) {
+            return aEvent;
+        }
+        MotionEvent event = MotionEvent.obtain(aEvent);
+        mEventTransform.setScale(mResolutionScale, mResolutionScale);
+        event.transform(mEventTransform);
+        return event;
     }
 
     @Override
@@ -239,7 +297,7 @@ public class BrowserWidget extends View implements Widget, SessionStore.SessionC
         mSessionId = aId;
         mDisplay = aSession.acquireDisplay();
         Log.d(LOGTAG, "surfaceChanged: " + aId);
-        mDisplay.surfaceChanged(mSurface, mWidth, mHeight);
+        mDisplay.surfaceChanged(mSurface, getSurfaceWidth(), getSurfaceHeight());
         aSession.getTextInput().setView(this);
 
         boolean isPrivateMode  = aSession.getSettings().getBoolean(GeckoSessionSettings.USE_PRIVATE_MODE);
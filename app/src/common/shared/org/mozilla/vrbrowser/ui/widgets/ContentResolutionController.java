@@ -0,0 +1,108 @@
+/* -*- Mode: Java; c-basic-offset: 4; tab-width: 4; indent-tabs-mode: nil; -*-
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.vrbrowser.ui.widgets;
+
+// Steps the resolution of the browser content down while frames take longer than the display
+// refresh interval, and back up once they have been on time for a while.
+class ContentResolutionController {
+    static final float STEP = 0.1f;
+    // Frames this much slower than the refresh interval are late
+    static final float SLOW_RATIO = 1.15f;
+    static final float FAST_RATIO = 1.05f;
+    // Reports in a row needed to change the resolution, the native loop sends one per second
+    static final int SLOW_REPORTS = 2;
+    static final int FAST_REPORTS = 5;
+    // Reports to wait after a step down before stepping up, doubled every time a step up
+    // turns out to be too much for the GPU
+    static final int STEP_UP_DELAY = 10;
+    static final int MAX_STEP_UP_DELAY = 120;
+    static final float DEFAULT_REFRESH_RATE = 60.0f;
+    // Refresh rates outside this range are not taken
+    private static final float MIN_REFRESH_RATE = 30.0f;
+    private static final float MAX_REFRESH_RATE = 200.0f;
+
+    private final float mMinScale;
+    private final float mMaxScale;
+    private final int mMaxLevel;
+    private int mLevel;
+    private float mInterval = 1000.0f / DEFAULT_REFRESH_RATE;
+    private int mSlowReports;
+    private int mFastReports;
+    private int mReportsSinceStepDown = STEP_UP_DELAY;
+    private int mReportsSinceStepUp = Integer.MAX_VALUE;
+    private int mStepUpDelay = STEP_UP_DELAY;
+    private int mChangeCount;
+
+    ContentResolutionController(float aMinScale, float aMaxScale) {
+        mMinScale = aMinScale;
+        mMaxScale = aMaxScale;
+        // Tolerates the rounding of bounds that are a whole number of steps apart
+        mMaxLevel = (int) ((aMaxScale - aMinScale) / STEP + 0.01f);
+    }
+
+    // Frames are on time when they take the refresh interval of the display, in hertz.
+    void setRefreshRate(float aRate) {
+        if (aRate >= MIN_REFRESH_RATE && aRate <= MAX_REFRESH_RATE) {
+            mInterval = 1000.0f / aRate;
+        }
+    }
+
+    // Returns the scale of the content surface after a report of the average frame time of the
+    // last interval, in milliseconds.
+    float onFrameTime(float aAverage) {
+        mReportsSinceStepDown++;
+        if (mReportsSinceStepUp < Integer.MAX_VALUE) {
+            mReportsSinceStepUp++;
+        }
+
+        if (aAverage > mInterval * SLOW_RATIO) {
+            mFastReports = 0;
+            mSlowReports++;
+            if (mSlowReports >= SLOW_REPORTS && mLevel < mMaxLevel) {
+                if (mReportsSinceStepUp <= FAST_REPORTS) {
+                    mStepUpDelay = Math.min(mStepUpDelay * 2, MAX_STEP_UP_DELAY);
+                }
+                mLevel++;
+                mSlowReports = 0;
+                mReportsSinceStepDown = 0;
+                mChangeCount++;
+            }
+        } else if (aAverage < mInterval * FAST_RATIO) {
+            mSlowReports = 0;
+            mFastReports++;
+            if (mFastReports >= FAST_REPORTS && mReportsSinceStepDown >= mStepUpDelay && mLevel > 0) {
+                mLevel--;
+                mFastReports = 0;
+                mReportsSinceStepUp = 0;
+                mChangeCount++;
+            }
+        } else {
+            mSlowReports = 0;
+            mFastReports = 0;
+        }
+        // A long stable period forgets about earlier oscillations
+        if (mReportsSinceStepDown >= MAX_STEP_UP_DELAY) {
+            mStepUpDelay = STEP_UP_DELAY;
+        }
+        return getScale();
+    }
+
+    float getScale() {
+        return getScale(mLevel);
+    }
+
+    float getRefreshInterval() {
+        return mInterval;
+    }
+
+    int getChangeCount() {
+        return mChangeCount;
+    }
+
+    private float getScale(int aLevel) {
+        return Math.max(mMinScale, mMaxScale - aLevel * STEP);
+    }
+}
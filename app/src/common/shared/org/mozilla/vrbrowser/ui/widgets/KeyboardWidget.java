@@ -22,15 +22,25 @@ import android.view.inputmethod.InputConnection;
 import android.widget.ImageButton;
 import android.widget.ImageView;
 import android.widget.RelativeLayout;
+import android.widget.TextView;
 
 import org.mozilla.geckoview.GeckoSession;
 import org.mozilla.vrbrowser.R;
 import org.mozilla.vrbrowser.browser.SessionStore;
 import org.mozilla.vrbrowser.telemetry.TelemetryWrapper;
 import org.mozilla.vrbrowser.input.CustomKeyboard;
+import org.mozilla.vrbrowser.input.InputCommandBatcher;
+import org.mozilla.vrbrowser.input.KeyboardLayoutCache;
+import org.mozilla.vrbrowser.input.KeyboardPredictor;
+import org.mozilla.vrbrowser.input.PredictionEngine;
+import org.mozilla.vrbrowser.input.RepeatDeleteEngine;
 import org.mozilla.vrbrowser.ui.views.CustomKeyboardView;
 import org.mozilla.vrbrowser.ui.views.UIButton;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
 
 public class KeyboardWidget extends UIWidget implements CustomKeyboardView.OnKeyboardActionListener,
         GeckoSession.TextInputDelegate, WidgetManagerDelegate.FocusChangeListener {
@@ -39,18 +49,32 @@ public class KeyboardWidget extends UIWidget implements CustomKeyboardView.OnKey
 
     private static int MAX_CHARS_PER_LINE_LONG = 9;
     private static int MAX_CHARS_PER_LINE_SHORT = 7;
+    // Key presses within this window are sent to the InputConnection in a single batch
+    private static final long INPUT_BATCH_WINDOW_MS = 16;
+    private static final int MAX_CANDIDATES = 3;
+    // Characters before the cursor read to find the word being typed and its context
+    private static final int MAX_PREDICTION_CONTEXT = 64;
 
     private CustomKeyboardView mKeyboardview;
     private CustomKeyboardView mPopupKeyboardview;
+    private KeyboardLayoutCache mLayoutCache;
     private CustomKeyboard mKeyboardQuerty;
-    private CustomKeyboard mKeyboardSymbols1;
-    private CustomKeyboard mKeyboardSymbols2;
     private Drawable mShiftOnIcon;
     private Drawable mShiftOffIcon;
     private Drawable mCapsLockOnIcon;
     private View mFocusedView;
     private BrowserWidget mBrowserWidget;
     private InputConnection mInputConnection;
+    private InputCommandBatcher mInputBatcher;
+    private RepeatDeleteEngine mDeleteEngine = new RepeatDeleteEngine();
+    private KeyboardPredictor mPredictor;
+    private TextView[] mCandidateViews;
+    private String mCandidatePrefix = "";
+    private boolean mPredictionsEnabled;
+    private AtomicBoolean mPredictionQueued = new AtomicBoolean();
+    private volatile boolean mLearnPending;
+    // Last word typed with a gesture, a candidate tapped right after replaces it
+    private String mGestureWord;
     private EditorInfo mEditorInfo = new EditorInfo();
 
     private UIButton mKeyboardIcon;
@@ -87,9 +111,10 @@ public class KeyboardWidget extends UIWidget implements CustomKeyboardView.OnKey
         mPopupKeyboardview = findViewById(R.id.popupKeyboard);
         mPopupKeyboardLayer = findViewById(R.id.popupKeyboardLayer);
 
-        mKeyboardQuerty = new CustomKeyboard(aContext.getApplicationContext(), R.xml.keyboard_qwerty);
-        mKeyboardSymbols1 = new CustomKeyboard(aContext.getApplicationContext(), R.xml.keyboard_symbols);
-        mKeyboardSymbols2 = new CustomKeyboard(aContext.getApplicationContext(), R.xml.keyboard_symbols2);
+        // Only the default layout is needed right away, the symbol layouts are parsed in the background.
+        mLayoutCache = new KeyboardLayoutCache(aContext);
+        mKeyboardQuerty = mLayoutCache.get(R.xml.keyboard_qwerty);
+        mLayoutCache.prefetch(R.xml.keyboard_symbols, R.xml.keyboard_symbols2);
 
         mKeyboardview.setPreviewEnabled(false);
         mKeyboardview.setKeyboard(mKeyboardQuerty);
@@ -164,6 +189,26 @@ public class KeyboardWidget extends UIWidget implements CustomKeyboardView.OnKey
             }
         };
 
+        mCandidateViews = new TextView[] {
+                findViewById(R.id.keyboardCandidate0),
+                findViewById(R.id.keyboardCandidate1),
+                findViewById(R.id.keyboardCandidate2)
+        };
+        for (final TextView candidateView: mCandidateViews) {
+            candidateView.setOnClickListener(view -> commitCandidate(candidateView.getText().toString()));
+        }
+        mPredictor = new KeyboardPredictor(aContext);
+        mPredictor.setDelegate(this::showCandidates);
+        mPredictor.setGestureDelegate(this::onGestureDecoded);
+        setGestureKeys(mKeyboardQuerty);
+        mKeyboardview.setOnKeysChangedListener(keyboard -> {
+            if (keyboard == mKeyboardQuerty) {
+                setGestureKeys(mKeyboardQuerty);
+            }
+        });
+        mKeyboardview.setOnGestureTypingListener((x, y, count, finished) ->
+                mPredictor.decodeGesture(x, y, count, finished, MAX_CANDIDATES));
+
         SessionStore.get().addTextInputListener(this);
     }
 
@@ -171,6 +216,7 @@ public class KeyboardWidget extends UIWidget implements CustomKeyboardView.OnKey
     public void releaseWidget() {
         mWidgetManager.removeFocusChangeListener(this);
         SessionStore.get().removeTextInputListener(this);
+        mPredictor.release();
         mBrowserWidget = null;
         super.releaseWidget();
     }
@@ -179,7 +225,9 @@ public class KeyboardWidget extends UIWidget implements CustomKeyboardView.OnKey
     protected void initializeWidgetPlacement(WidgetPlacement aPlacement) {
         Context context = getContext();
         aPlacement.width = WidgetPlacement.dpDimension(context, R.dimen.keyboard_width);
-        aPlacement.height = WidgetPlacement.dpDimension(context, R.dimen.keyboard_height);
+        aPlacement.height = WidgetPlacement.dpDimension(context, R.dimen.keyboard_height) +
+                WidgetPlacement.dpDimension(context, R.dimen.keyboard_candidates_height) +
+                WidgetPlacement.dpDimension(context, R.dimen.keyboard_candidates_margin);
         aPlacement.parentAnchorX = 0.5f;
         aPlacement.parentAnchorY = 0.0f;
         aPlacement.anchorX = 0.5f;
@@ -203,16 +251,24 @@ public class KeyboardWidget extends UIWidget implements CustomKeyboardView.OnKey
         mFocusedView = aFocusedView;
         if (aFocusedView != null && aFocusedView.onCheckIsTextEditor()) {
             mInputConnection = aFocusedView.onCreateInputConnection(mEditorInfo);
+            mInputBatcher = mInputConnection != null ? createInputBatcher(mInputConnection) : null;
             ((CustomKeyboard)mKeyboardview.getKeyboard()).setImeOptions(mEditorInfo.imeOptions);
             if ((mEditorInfo.inputType & EditorInfo.TYPE_CLASS_NUMBER) == EditorInfo.TYPE_CLASS_NUMBER)
-                mKeyboardview.setKeyboard(mKeyboardSymbols1);
+                mKeyboardview.setKeyboard(getSymbols1Keyboard());
             else
                 mKeyboardview.setKeyboard(mKeyboardQuerty);
 
         } else {
             mInputConnection = null;
+            mInputBatcher = null;
         }
 
+        mPredictor.clearCandidates();
+        mPredictionsEnabled = mInputConnection != null && isPredictionAllowed(mEditorInfo);
+        mGestureWord = null;
+        updateGestureTyping();
+        requestPredictions(false);
+
         boolean showKeyboard = mInputConnection != null;
         boolean keyboardIsVisible = this.getVisibility() == View.VISIBLE;
         if (showKeyboard != keyboardIsVisible) {
@@ -238,10 +294,18 @@ public class KeyboardWidget extends UIWidget implements CustomKeyboardView.OnKey
 
        mIsCapsLock = false;
        mIsLongPress = false;
+       mDeleteEngine.stop();
        handleShift(false);
+       mPredictor.clearCandidates();
+       mPredictor.save();
 
        mPopupKeyboardview.setVisibility(View.GONE);
        mPopupKeyboardLayer.setVisibility(View.GONE);
+
+       if (mInputBatcher != null && mInputBatcher.getKeystrokeCount() > 0) {
+           Log.d(LOGTAG, "Keyboard input: " + mInputBatcher.getKeystrokeCount() + " keystrokes, " +
+                   String.format("%.2f", mInputBatcher.getCommitsPerKeystroke()) + " commits per keystroke");
+       }
     }
 
     protected void onDismiss() {
@@ -251,6 +315,8 @@ public class KeyboardWidget extends UIWidget implements CustomKeyboardView.OnKey
     @Override
     public void onPress(int primaryCode) {
         Log.d("VRB", "Keyboard onPress " + primaryCode);
+        // A new press ends any long press delete
+        mDeleteEngine.stop();
     }
 
     @Override
@@ -300,8 +366,8 @@ public class KeyboardWidget extends UIWidget implements CustomKeyboardView.OnKey
             }
             params.topMargin = popupKey.y + mKeyboardPopupTopMargin;
 
-            CustomKeyboard popupKeyboard = new CustomKeyboard(getContext(), popupKey.popupResId,
-                    popupCharacters, maxCharsPerLine, 0);
+            CustomKeyboard popupKeyboard = mLayoutCache.getPopup(getContext(), popupKey.popupResId,
+                    popupCharacters, maxCharsPerLine);
             mPopupKeyboardview.setKeyboard(popupKeyboard);
             mPopupKeyboardview.setLayoutParams(params);
             mPopupKeyboardview.setShifted(mIsCapsLock);
@@ -330,6 +396,7 @@ public class KeyboardWidget extends UIWidget implements CustomKeyboardView.OnKey
     @Override
     public void onKey(int primaryCode, int[] keyCodes, boolean hasPopup) {
         Log.d("VRB", "Keyboard onPress++ " + primaryCode);
+        mGestureWord = null;
         switch (primaryCode) {
             case Keyboard.KEYCODE_MODE_CHANGE:
                 handleModeChange();
@@ -431,42 +498,30 @@ public class KeyboardWidget extends UIWidget implements CustomKeyboardView.OnKey
     }
 
     private void handleBackspace(final boolean isLongPress) {
-        final InputConnection connection = mInputConnection;
-        postInputCommand(new Runnable() {
-            @Override
-            public void run() {
-                CharSequence selectedText = mInputConnection.getSelectedText(0);
-                if (selectedText == null || selectedText.length() == 0) {
-                    if (isLongPress) {
-                        CharSequence currentText = connection.getExtractedText(new ExtractedTextRequest(), 0).text;
-                        CharSequence beforeCursorText = connection.getTextBeforeCursor(currentText.length(), 0);
-                        CharSequence afterCursorText = connection.getTextAfterCursor(currentText.length(), 0);
-                        connection.deleteSurroundingText(beforeCursorText.length(), afterCursorText.length());
-
-                    } else {
-                        // No selected text to delete. Remove the character before the cursor.
-                        connection.deleteSurroundingText(1, 0);
-                    }
+        if (mInputBatcher == null) {
+            Log.e(LOGTAG, "InputConnection command not submitted, mInputConnection was null");
+            return;
+        }
 
-                } else {
-                    // Delete the selected text
-                    connection.commitText("", 1);
-                }
-            }
-        });
+        if (isLongPress) {
+            // Switch the key repeat to word wise delete.
+            mDeleteEngine.start();
+        } else if (!mDeleteEngine.isActive()) {
+            // Deletes the selected text or the character before the cursor.
+            mInputBatcher.backspace();
+            return;
+        }
 
+        final int words = mDeleteEngine.nextRepeat();
+        mInputBatcher.post(connection -> mDeleteEngine.deleteWords(connection, words));
+        requestPredictions(false);
     }
 
     private void handleDone() {
-        final InputConnection connection = mInputConnection;
         final int action = mEditorInfo.imeOptions & EditorInfo.IME_MASK_ACTION;
-        postInputCommand(new Runnable() {
-            @Override
-            public void run() {
-                connection.performEditorAction(action);
-
-            }
-        });
+        if (mInputBatcher != null) {
+            mInputBatcher.post(connection -> connection.performEditorAction(action));
+        }
 
         boolean hide = (action & (EditorInfo.IME_ACTION_DONE | EditorInfo.IME_ACTION_GO |
                                  EditorInfo.IME_ACTION_SEARCH | EditorInfo.IME_ACTION_SEND)) != 0;
@@ -476,14 +531,25 @@ public class KeyboardWidget extends UIWidget implements CustomKeyboardView.OnKey
     }
 
 
+    private CustomKeyboard getSymbols1Keyboard() {
+        return mLayoutCache.get(R.xml.keyboard_symbols);
+    }
+
+    private CustomKeyboard getSymbols2Keyboard() {
+        return mLayoutCache.get(R.xml.keyboard_symbols2);
+    }
+
     private void handleModeChange() {
         Keyboard current = mKeyboardview.getKeyboard();
-        mKeyboardview.setKeyboard(current == mKeyboardQuerty ? mKeyboardSymbols1 : mKeyboardQuerty);
+        mKeyboardview.setKeyboard(current == mKeyboardQuerty ? getSymbols1Keyboard() : mKeyboardQuerty);
+        updateGestureTyping();
     }
 
     private void handleSymbolsChange() {
         Keyboard current = mKeyboardview.getKeyboard();
-        mKeyboardview.setKeyboard(current == mKeyboardSymbols1 ? mKeyboardSymbols2 : mKeyboardSymbols1);
+        CustomKeyboard symbols1 = getSymbols1Keyboard();
+        mKeyboardview.setKeyboard(current == symbols1 ? getSymbols2Keyboard() : symbols1);
+        updateGestureTyping();
     }
 
     private void handleKey(int primaryCode, int[] keyCodes) {
@@ -491,18 +557,13 @@ public class KeyboardWidget extends UIWidget implements CustomKeyboardView.OnKey
             return;
         }
 
-        String str = String.valueOf((char) primaryCode);
-        if (mKeyboardview.isShifted() && Character.isLowerCase(str.charAt(0))) {
-            str = str.toUpperCase();
+        char c = (char) primaryCode;
+        if (mKeyboardview.isShifted() && Character.isLowerCase(c)) {
+            c = Character.toUpperCase(c);
         }
-        final String result = str;
-        final InputConnection connection = mInputConnection;
-        postInputCommand(new Runnable() {
-            @Override
-            public void run() {
-                connection.commitText(result, 1);
-            }
-        });
+        mInputBatcher.commitText(c);
+        // Learn the word when a separator completes it
+        requestPredictions(!PredictionEngine.isWordChar(c));
     }
 
     private void handleText(final String aText) {
@@ -510,32 +571,164 @@ public class KeyboardWidget extends UIWidget implements CustomKeyboardView.OnKey
             return;
         }
 
-        final InputConnection connection = mInputConnection;
-        postInputCommand(new Runnable() {
-            @Override
-            public void run() {
-                connection.commitText(aText, 1);
+        mInputBatcher.commitText(aText);
+        requestPredictions(true);
+    }
+
+    private static boolean isPredictionAllowed(EditorInfo aEditorInfo) {
+        int inputClass = aEditorInfo.inputType & EditorInfo.TYPE_MASK_CLASS;
+        int variation = aEditorInfo.inputType & EditorInfo.TYPE_MASK_VARIATION;
+        if (inputClass != EditorInfo.TYPE_CLASS_TEXT) {
+            return false;
+        }
+        if ((aEditorInfo.inputType & EditorInfo.TYPE_TEXT_FLAG_NO_SUGGESTIONS) != 0) {
+            return false;
+        }
+        return variation != EditorInfo.TYPE_TEXT_VARIATION_PASSWORD &&
+                variation != EditorInfo.TYPE_TEXT_VARIATION_VISIBLE_PASSWORD &&
+                variation != EditorInfo.TYPE_TEXT_VARIATION_WEB_PASSWORD;
+    }
+
+    // Updates the candidates from the text before the cursor once the queued input is applied. The
+    // batcher knows that text from the input it applied, Gecko is only asked for it again after
+    // the cursor moves. Only one update is queued at a time. Words are never learned in private
+    // sessions.
+    private void requestPredictions(boolean aLearn) {
+        if (!mPredictionsEnabled || mInputBatcher == null) {
+            return;
+        }
+        if (aLearn && !SessionStore.get().isCurrentSessionPrivate()) {
+            mLearnPending = true;
+        }
+        if (mPredictionQueued.getAndSet(true)) {
+            return;
+        }
+        final InputCommandBatcher batcher = mInputBatcher;
+        batcher.postTracked(connection -> {
+            mPredictionQueued.set(false);
+            boolean learn = mLearnPending;
+            mLearnPending = false;
+            mPredictor.predict(batcher.getTextBeforeCursor(MAX_PREDICTION_CONTEXT), learn, MAX_CANDIDATES);
+        });
+    }
+
+    private void showCandidates(@NonNull String aPrefix, @NonNull List<String> aCandidates) {
+        mCandidatePrefix = aPrefix;
+        for (int i = 0; i < mCandidateViews.length; i++) {
+            if (i < aCandidates.size()) {
+                mCandidateViews[i].setText(aCandidates.get(i));
+                mCandidateViews[i].setVisibility(View.VISIBLE);
+            } else {
+                mCandidateViews[i].setVisibility(View.INVISIBLE);
             }
+        }
+    }
+
+    // Replaces the word being typed with the candidate followed by a space.
+    private void commitCandidate(final String aCandidate) {
+        if (mInputBatcher == null || aCandidate.isEmpty()) {
+            return;
+        }
+        if (mGestureWord != null) {
+            replaceGestureWord(aCandidate);
+            return;
+        }
+        final InputCommandBatcher batcher = mInputBatcher;
+        batcher.postTracked(connection -> {
+            CharSequence textBeforeCursor = batcher.getTextBeforeCursor(MAX_PREDICTION_CONTEXT);
+            batcher.replaceTextBeforeCursor(PredictionEngine.currentWordLength(textBeforeCursor), aCandidate + " ");
         });
+        mPredictor.onCandidateCommitted(mCandidatePrefix, aCandidate);
+        requestPredictions(true);
+        if (!mIsCapsLock) {
+            handleShift(false);
+        }
     }
 
-    private void handleVoiceInput() {
-        mKeyboardview.setVisibility(View.GONE);
-        TelemetryWrapper.voiceInputEvent();
+    // Gesture typing is only available on the letters layout of fields with predictions.
+    private void updateGestureTyping() {
+        mKeyboardview.setGestureTypingEnabled(mPredictionsEnabled && mKeyboardview.getKeyboard() == mKeyboardQuerty);
     }
 
-    private void postInputCommand(Runnable aRunnable) {
-        if (mInputConnection == null) {
-            Log.e(LOGTAG, "InputConnection command not submitted, mInputConnection was null");
+    private void setGestureKeys(CustomKeyboard aKeyboard) {
+        ArrayList<Keyboard.Key> letters = new ArrayList<>();
+        for (Keyboard.Key key: aKeyboard.getKeys()) {
+            if (key.codes.length > 0 && Character.isLetter(key.codes[0])) {
+                letters.add(key);
+            }
+        }
+        char[] chars = new char[letters.size()];
+        float[] x = new float[letters.size()];
+        float[] y = new float[letters.size()];
+        float keyWidth = 0;
+        for (int i = 0; i < letters.size(); i++) {
+            Keyboard.Key key = letters.get(i);
+            chars[i] = Character.toLowerCase((char) key.codes[0]);
+            x[i] = key.x + key.width * 0.5f;
+            y[i] = key.y + key.height * 0.5f;
+            keyWidth = Math.max(keyWidth, key.width);
+        }
+        mPredictor.setGestureKeys(chars, x, y, keyWidth);
+    }
+
+    // Shows the words matching the path while it's traced and types the best one when it ends.
+    private void onGestureDecoded(@NonNull List<String> aWords, boolean aFinished) {
+        if (!aFinished || aWords.isEmpty() || mInputBatcher == null) {
+            showCandidates("", aWords);
             return;
         }
+        String word = aWords.get(0);
+        if (mKeyboardview.isShifted()) {
+            word = Character.toUpperCase(word.charAt(0)) + word.substring(1);
+        }
+        final String text = word;
+        final InputCommandBatcher batcher = mInputBatcher;
+        batcher.postTracked(connection -> {
+            // Separate the word from the one before it
+            CharSequence before = batcher.getTextBeforeCursor(1);
+            boolean space = before != null && before.length() > 0 && PredictionEngine.isWordChar(before.charAt(0));
+            batcher.replaceTextBeforeCursor(0, (space ? " " : "") + text + " ");
+        });
+        mGestureWord = text;
+        showCandidates("", aWords);
+        if (!mIsCapsLock) {
+            handleShift(false);
+        }
+    }
 
-        Handler handler = mInputConnection.getHandler();
-        if (handler != null) {
-            handler.post(aRunnable);
-        } else {
-            aRunnable.run();
+    // Replaces the word typed by the last gesture with one of its alternatives.
+    private void replaceGestureWord(final String aCandidate) {
+        final String previous = mGestureWord;
+        String word = aCandidate;
+        if (Character.isUpperCase(previous.charAt(0))) {
+            word = Character.toUpperCase(word.charAt(0)) + word.substring(1);
         }
+        final String text = word;
+        final InputCommandBatcher batcher = mInputBatcher;
+        batcher.postTracked(connection -> {
+            CharSequence before = batcher.getTextBeforeCursor(previous.length() + 1);
+            if (before != null && before.toString().equals(previous + " ")) {
+                batcher.replaceTextBeforeCursor(before.length(), text + " ");
+            }
+        });
+        mGestureWord = text;
+        mPredictor.onCandidateCommitted("", aCandidate);
+    }
+
+    private void handleVoiceInput() {
+        mKeyboardview.setVisibility(View.GONE);
+        TelemetryWrapper.voiceInputEvent();
+    }
+
+    private InputCommandBatcher createInputBatcher(final InputConnection aConnection) {
+        return new InputCommandBatcher(aConnection, flush -> {
+            Handler handler = aConnection.getHandler();
+            if (handler != null) {
+                handler.postDelayed(flush, INPUT_BATCH_WINDOW_MS);
+            } else {
+                flush.run();
+            }
+        });
     }
 
     // GeckoSession.TextInputDelegate
@@ -565,16 +758,7 @@ public class KeyboardWidget extends UIWidget implements CustomKeyboardView.OnKey
             return;
         }
 
-        final InputConnection connection = mInputConnection;
-        postInputCommand(new Runnable() {
-            @Override
-            public void run() {
-                if (compositionStart >= 0 && compositionEnd >= 0) {
-                    connection.setComposingRegion(compositionStart, compositionEnd);
-                }
-                connection.setSelection(selStart, selEnd);
-            }
-        });
+        mInputBatcher.updateSelection(selStart, selEnd, compositionStart, compositionEnd);
     }
 
     @Override
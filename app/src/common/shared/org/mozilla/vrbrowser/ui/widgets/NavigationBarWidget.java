@@ -618,8 +618,18 @@ public class NavigationBarWidget extends UIWidget implements GeckoSession.Naviga
     }
 
     @Override
-    public void OnVoiceSearchResult(String transcription, float confidance) {
-        mURLBar.handleURLEdit(transcription);
+    public void OnVoiceSearchPartialResult(String transcription) {
+        mURLBar.setPartialTranscription(transcription);
+    }
+
+    @Override
+    public String OnVoiceSearchResolveURL(String transcription) {
+        return mURLBar.resolveURL(transcription);
+    }
+
+    @Override
+    public void OnVoiceSearchResult(String transcription, String url, float confidance) {
+        mURLBar.loadURL(transcription, url);
     }
 
     @Override
@@ -11,6 +11,7 @@ import android.text.SpannableStringBuilder;
 import android.util.AttributeSet;
 import android.util.Log;
 import android.view.View;
+import android.widget.CheckBox;
 import android.widget.ImageButton;
 import android.widget.ImageView;
 import android.widget.TextView;
@@ -26,6 +27,7 @@ public class PermissionWidget extends UIWidget implements WidgetManagerDelegate.
 
     private TextView mPermissionMessage;
     private ImageView mPermissionIcon;
+    private CheckBox mRememberCheckBox;
     private GeckoSession.PermissionDelegate.Callback mPermissionCallback;
 
     public enum PermissionType {
@@ -59,6 +61,7 @@ public class PermissionWidget extends UIWidget implements WidgetManagerDelegate.
 
         mPermissionIcon = findViewById(R.id.permissionIcon);
         mPermissionMessage = findViewById(R.id.permissionText);
+        mRememberCheckBox = findViewById(R.id.permissionRemember);
 
         ImageButton cancelButton = findViewById(R.id.permissionCancelButton);
 
@@ -114,6 +117,11 @@ public class PermissionWidget extends UIWidget implements WidgetManagerDelegate.
     }
 
     public void showPrompt(String aUri, PermissionType aType, GeckoSession.PermissionDelegate.Callback aCallback) {
+        showPrompt(aUri, aType, false, aCallback);
+    }
+
+    // With aRememberable the prompt offers to remember the answer, see isRememberChecked().
+    public void showPrompt(String aUri, PermissionType aType, boolean aRememberable, GeckoSession.PermissionDelegate.Callback aCallback) {
         int messageId;
         int iconId;
         switch (aType) {
@@ -158,10 +166,17 @@ public class PermissionWidget extends UIWidget implements WidgetManagerDelegate.
 
         mPermissionMessage.setText(str);
         mPermissionIcon.setImageResource(iconId);
+        mRememberCheckBox.setChecked(false);
+        mRememberCheckBox.setVisibility(aRememberable ? View.VISIBLE : View.GONE);
 
         show();
     }
 
+    // Whether the user asked to remember the answer to the current prompt.
+    public boolean isRememberChecked() {
+        return mRememberCheckBox.getVisibility() == View.VISIBLE && mRememberCheckBox.isChecked();
+    }
+
     String getRequesterName(String aUri) {
         try {
             URI uri = new URI(aUri);
@@ -38,6 +38,7 @@ public class SettingsWidget extends UIWidget implements WidgetManagerDelegate.Fo
 
     private AudioEngine mAudio;
     private int mDeveloperOptionsDialogHandle = -1;
+    private int mSitePermissionsDialogHandle = -1;
     private TextView mBuildText;
 
     class VersionGestureListener extends GestureDetector.SimpleOnGestureListener {
@@ -168,6 +169,15 @@ public class SettingsWidget extends UIWidget implements WidgetManagerDelegate.Fo
             onDeveloperOptionsClick();
         });
 
+        SettingsButton sitePermissionsButton = findViewById(R.id.sitePermissionsButton);
+        sitePermissionsButton.setOnClickListener(view -> {
+            if (mAudio != null) {
+                mAudio.playSound(AudioEngine.Sound.CLICK);
+            }
+
+            showSitePermissionsDialog();
+        });
+
         mAudio = AudioEngine.fromContext(aContext);
     }
 
@@ -290,25 +300,42 @@ public class SettingsWidget extends UIWidget implements WidgetManagerDelegate.Fo
         if (widget == null) {
             widget = createChild(DeveloperOptionsWidget.class, false);
             mDeveloperOptionsDialogHandle = widget.getHandle();
-            widget.setDelegate(() -> onDeveloperOptionsDialogDismissed());
+            widget.setDelegate(() -> onDialogDismissed());
         }
 
         widget.show();
     }
 
-    private void onDeveloperOptionsDialogDismissed() {
+    private void onDialogDismissed() {
         mWidgetManager.popWorldBrightness(this);
         show();
     }
 
+    private void showSitePermissionsDialog() {
+        mWidgetManager.pushWorldBrightness(this, WidgetManagerDelegate.DEFAULT_DIM_BRIGHTNESS);
+        hide();
+        UIWidget widget = getChild(mSitePermissionsDialogHandle);
+        if (widget == null) {
+            widget = createChild(SitePermissionsWidget.class, false);
+            mSitePermissionsDialogHandle = widget.getHandle();
+            widget.setDelegate(() -> onDialogDismissed());
+        }
+
+        widget.show();
+    }
+
     // WindowManagerDelegate.FocusChangeListener
     @Override
     public void onGlobalFocusChanged(View oldFocus, View newFocus) {
         boolean dismiss = false;
         UIWidget widget = getChild(mDeveloperOptionsDialogHandle);
+        UIWidget sitePermissions = getChild(mSitePermissionsDialogHandle);
         if (widget != null && oldFocus == widget && widget.isVisible()) {
             dismiss = true;
 
+        } else if (sitePermissions != null && oldFocus == sitePermissions && sitePermissions.isVisible()) {
+            dismiss = true;
+
         } else if (oldFocus == this && isVisible()) {
             dismiss = true;
         }
@@ -0,0 +1,146 @@
+/* -*- Mode: Java; c-basic-offset: 4; tab-width: 4; indent-tabs-mode: nil; -*-
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.vrbrowser.ui.widgets;
+
+import java.util.ArrayList;
+
+// Packs rectangles into a fixed size area as rows of shelves. A rectangle goes on the shelf
+// that wastes the least height, and a new shelf is opened below the last one when none fits.
+// Space is given back when the last rectangle of a shelf, or of the whole shelf, is freed.
+class ShelfPacker {
+
+    static class Slot {
+        final int x;
+        final int y;
+        final int width;
+        final int height;
+        private final Shelf shelf;
+
+        private Slot(int aX, int aY, int aWidth, int aHeight, Shelf aShelf) {
+            x = aX;
+            y = aY;
+            width = aWidth;
+            height = aHeight;
+            shelf = aShelf;
+        }
+    }
+
+    private static class Shelf {
+        final int y;
+        final int height;
+        int used;
+        int count;
+
+        Shelf(int aY, int aHeight) {
+            y = aY;
+            height = aHeight;
+        }
+    }
+
+    private final int mWidth;
+    private final int mHeight;
+    private final int mPadding;
+    private final ArrayList<Shelf> mShelves = new ArrayList<>();
+    private int mUsedArea;
+
+    // aPadding is left empty to the right of and below each rectangle.
+    ShelfPacker(int aWidth, int aHeight, int aPadding) {
+        mWidth = aWidth;
+        mHeight = aHeight;
+        mPadding = aPadding;
+    }
+
+    // Returns the slot of a aWidth x aHeight rectangle, or null if there is no space left.
+    Slot allocate(int aWidth, int aHeight) {
+        int width = aWidth + mPadding;
+        int height = aHeight + mPadding;
+        if (aWidth <= 0 || aHeight <= 0 || width > mWidth || height > mHeight) {
+            return null;
+        }
+
+        Shelf best = null;
+        for (Shelf shelf: mShelves) {
+            if (shelf.height >= height && mWidth - shelf.used >= width &&
+                    (best == null || shelf.height < best.height)) {
+                best = shelf;
+            }
+        }
+        // Don't put a small rectangle on a much taller shelf while a new one can be opened
+        if (best == null || best.height - height > aHeight) {
+            int top = getBottom();
+            if (top + height <= mHeight) {
+                best = new Shelf(top, height);
+                mShelves.add(best);
+            }
+        }
+        if (best == null) {
+            return null;
+        }
+
+        Slot slot = new Slot(best.used, best.y, aWidth, aHeight, best);
+        best.used += width;
+        best.count++;
+        mUsedArea += aWidth * aHeight;
+        return slot;
+    }
+
+    void free(Slot aSlot) {
+        Shelf shelf = aSlot.shelf;
+        if (!mShelves.contains(shelf)) {
+            return;
+        }
+        mUsedArea -= aSlot.width * aSlot.height;
+        shelf.count--;
+        if (shelf.count == 0) {
+            shelf.used = 0;
+        } else if (aSlot.x + aSlot.width + mPadding == shelf.used) {
+            shelf.used = aSlot.x;
+        }
+        // Empty shelves at the bottom can be opened again with any height
+        while (!mShelves.isEmpty() && mShelves.get(mShelves.size() - 1).count == 0) {
+            mShelves.remove(mShelves.size() - 1);
+        }
+    }
+
+    // Returns the slot of the rectangle resized to aWidth x aHeight. The space of the old slot is
+    // given back first when freeing it can make room. If the new size doesn't fit, a slot of the
+    // old size is returned, which is the old slot itself when its space couldn't be given back.
+    Slot reallocate(Slot aSlot, int aWidth, int aHeight) {
+        Shelf shelf = aSlot.shelf;
+        boolean reclaimable = shelf.count == 1 || aSlot.x + aSlot.width + mPadding == shelf.used;
+        if (!reclaimable) {
+            Slot slot = allocate(aWidth, aHeight);
+            if (slot == null) {
+                return aSlot;
+            }
+            free(aSlot);
+            return slot;
+        }
+        free(aSlot);
+        Slot slot = allocate(aWidth, aHeight);
+        if (slot == null) {
+            // The freed space is enough for the old size again
+            slot = allocate(aSlot.width, aSlot.height);
+        }
+        return slot;
+    }
+
+    int getUsedArea() {
+        return mUsedArea;
+    }
+
+    int getShelfCount() {
+        return mShelves.size();
+    }
+
+    private int getBottom() {
+        if (mShelves.isEmpty()) {
+            return 0;
+        }
+        Shelf last = mShelves.get(mShelves.size() - 1);
+        return last.y + last.height;
+    }
+}
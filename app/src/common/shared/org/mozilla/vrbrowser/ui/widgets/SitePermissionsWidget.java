@@ -0,0 +1,120 @@
+/* -*- Mode: Java; c-basic-offset: 4; tab-width: 4; indent-tabs-mode: nil; -*-
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.vrbrowser.ui.widgets;
+
+import android.content.Context;
+import android.text.TextUtils;
+import android.util.AttributeSet;
+import android.widget.LinearLayout;
+
+import org.mozilla.vrbrowser.R;
+import org.mozilla.vrbrowser.audio.AudioEngine;
+import org.mozilla.vrbrowser.browser.PermissionStore;
+import org.mozilla.vrbrowser.ui.settings.ButtonSetting;
+import org.mozilla.vrbrowser.ui.views.UIButton;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+// Lists the permission decisions remembered per site, so they can be revoked.
+public class SitePermissionsWidget extends UIWidget {
+
+    private AudioEngine mAudio;
+    private ButtonSetting mClearButton;
+    private LinearLayout mSitePermissionsList;
+
+    public SitePermissionsWidget(Context aContext) {
+        super(aContext);
+        initialize(aContext);
+    }
+
+    public SitePermissionsWidget(Context aContext, AttributeSet aAttrs) {
+        super(aContext, aAttrs);
+        initialize(aContext);
+    }
+
+    public SitePermissionsWidget(Context aContext, AttributeSet aAttrs, int aDefStyle) {
+        super(aContext, aAttrs, aDefStyle);
+        initialize(aContext);
+    }
+
+    private void initialize(Context aContext) {
+        inflate(aContext, R.layout.site_permissions, this);
+
+        mAudio = AudioEngine.fromContext(aContext);
+
+        UIButton backButton = findViewById(R.id.backButton);
+        backButton.setOnClickListener(view -> {
+            if (mAudio != null) {
+                mAudio.playSound(AudioEngine.Sound.CLICK);
+            }
+
+            onDismiss();
+        });
+
+        mClearButton = findViewById(R.id.clearButton);
+        mClearButton.setOnClickListener(view -> {
+            PermissionStore.getInstance(getContext()).clear();
+            updateSitePermissions();
+        });
+        mSitePermissionsList = findViewById(R.id.sitePermissionsList);
+    }
+
+    @Override
+    protected void initializeWidgetPlacement(WidgetPlacement aPlacement) {
+        aPlacement.visible = false;
+        aPlacement.width =  WidgetPlacement.dpDimension(getContext(), R.dimen.site_permissions_width);
+        aPlacement.height = WidgetPlacement.dpDimension(getContext(), R.dimen.site_permissions_height);
+        aPlacement.parentAnchorX = 0.5f;
+        aPlacement.parentAnchorY = 0.5f;
+        aPlacement.anchorX = 0.5f;
+        aPlacement.anchorY = 0.5f;
+        aPlacement.translationY = WidgetPlacement.unitFromMeters(getContext(), R.dimen.restart_dialog_world_y);
+        aPlacement.translationZ = WidgetPlacement.unitFromMeters(getContext(), R.dimen.restart_dialog_world_z);
+    }
+
+    @Override
+    public void show() {
+        super.show();
+        updateSitePermissions();
+    }
+
+    // Shows the number of remembered decisions, and one row per site to revoke its decisions.
+    private void updateSitePermissions() {
+        final PermissionStore store = PermissionStore.getInstance(getContext());
+        List<PermissionStore.Decision> decisions = store.getDecisions();
+        mClearButton.setDescription(getContext().getString(R.string.site_permissions_count, decisions.size()));
+
+        TreeMap<String, List<String>> origins = new TreeMap<>();
+        for (PermissionStore.Decision decision: decisions) {
+            List<String> permissions = origins.get(decision.origin);
+            if (permissions == null) {
+                permissions = new ArrayList<>();
+                origins.put(decision.origin, permissions);
+            }
+            permissions.add(getContext().getString(decision.granted ?
+                    R.string.site_permissions_allowed :
+                    R.string.site_permissions_blocked, decision.type));
+        }
+
+        mSitePermissionsList.removeAllViews();
+        int height = getResources().getDimensionPixelSize(R.dimen.site_permissions_row_height);
+        for (Map.Entry<String, List<String>> entry: origins.entrySet()) {
+            final String origin = entry.getKey();
+            ButtonSetting row = new ButtonSetting(getContext(), null);
+            row.setDescription(getContext().getString(R.string.site_permissions_site,
+                    origin, TextUtils.join(", ", entry.getValue())));
+            row.setButtonText(getContext().getString(R.string.site_permissions_revoke));
+            row.setOnClickListener(view -> {
+                store.removeOrigin(origin);
+                updateSitePermissions();
+            });
+            mSitePermissionsList.addView(row, new LinearLayout.LayoutParams(LinearLayout.LayoutParams.MATCH_PARENT, height));
+        }
+    }
+}
@@ -0,0 +1,135 @@
+/* -*- Mode: Java; c-basic-offset: 4; tab-width: 4; indent-tabs-mode: nil; -*-
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.vrbrowser.ui.widgets;
+
+import java.util.HashMap;
+import java.util.Map;
+
+// Picks the texture scale of each widget from the angle it covers in the headset, so widgets
+// far from the user don't keep more pixels than the display can show. A scale only changes
+// when it is off by more than HYSTERESIS, to avoid resizing textures on every small move, and
+// all the scales are lowered when the textures would use more than the memory budget.
+public class TextureResolutionPolicy {
+    public interface Delegate {
+        // The scale of another widget than the one updating changed with the memory budget
+        void onTextureScaleChanged(int aHandle, float aScale);
+    }
+
+    // Per eye pixels per degree of current standalone headsets
+    public static final float DEFAULT_PIXELS_PER_DEGREE = 15.0f;
+    public static final long DEFAULT_MEMORY_BUDGET = 64 * 1024 * 1024;
+    static final float MIN_SCALE = 0.25f;
+    static final float MAX_SCALE = 1.0f;
+    // Relative change of the scale needed to resize a texture
+    static final float HYSTERESIS = 0.2f;
+    private static final float MIN_DISTANCE = 0.1f;
+    private static final int BYTES_PER_PIXEL = 4;
+
+    private static class Entry {
+        int width;
+        int height;
+        // Scale for the angular size, before the memory budget
+        float target = MAX_SCALE;
+        float scale = MAX_SCALE;
+    }
+
+    private HashMap<Integer, Entry> mEntries = new HashMap<>();
+    private float mPixelsPerDegree = DEFAULT_PIXELS_PER_DEGREE;
+    private long mMemoryBudget = DEFAULT_MEMORY_BUDGET;
+    private float mBudgetScale = 1.0f;
+    private Delegate mDelegate;
+
+    public void setDelegate(Delegate aDelegate) {
+        mDelegate = aDelegate;
+    }
+
+    public void setPixelsPerDegree(float aPixelsPerDegree) {
+        mPixelsPerDegree = aPixelsPerDegree;
+    }
+
+    public void setMemoryBudget(long aBytes) {
+        mMemoryBudget = aBytes;
+    }
+
+    // Returns the scale of the texture of the widget. aWidth and aHeight are the full size of
+    // its texture, aWorldWidth and aDistance are in meters.
+    public float update(int aHandle, float aWorldWidth, float aDistance, int aWidth, int aHeight) {
+        Entry entry = mEntries.get(aHandle);
+        if (entry == null) {
+            entry = new Entry();
+            mEntries.put(aHandle, entry);
+        }
+        entry.width = aWidth;
+        entry.height = aHeight;
+        entry.target = getAngularScale(aWorldWidth, aDistance, aWidth);
+
+        updateBudgetScale(aHandle);
+        applyScale(entry);
+        return entry.scale;
+    }
+
+    public void remove(int aHandle) {
+        if (mEntries.remove(aHandle) != null) {
+            updateBudgetScale(aHandle);
+        }
+    }
+
+    // Bytes used by the textures at their current scales.
+    public long getMemoryUsage() {
+        long result = 0;
+        for (Entry entry: mEntries.values()) {
+            result += (long) Math.ceil(entry.width * entry.scale) * (long) Math.ceil(entry.height * entry.scale) * BYTES_PER_PIXEL;
+        }
+        return result;
+    }
+
+    float getAngularScale(float aWorldWidth, float aDistance, int aWidth) {
+        if (aWidth <= 0 || aWorldWidth <= 0.0f) {
+            return MAX_SCALE;
+        }
+        double degrees = Math.toDegrees(2.0 * Math.atan2(aWorldWidth * 0.5, Math.max(aDistance, MIN_DISTANCE)));
+        float scale = (float) (degrees * mPixelsPerDegree / aWidth);
+        return Math.max(MIN_SCALE, Math.min(MAX_SCALE, scale));
+    }
+
+    // The budget is shared by every texture, so all the other scales follow when it changes.
+    private void updateBudgetScale(int aSkipHandle) {
+        float budgetScale = getBudgetScale();
+        if (budgetScale == mBudgetScale) {
+            return;
+        }
+        mBudgetScale = budgetScale;
+        for (Map.Entry<Integer, Entry> item: mEntries.entrySet()) {
+            if (item.getKey() != aSkipHandle && applyScale(item.getValue()) && mDelegate != null) {
+                mDelegate.onTextureScaleChanged(item.getKey(), item.getValue().scale);
+            }
+        }
+    }
+
+    // Returns true if the scale of the entry changed.
+    private boolean applyScale(Entry aEntry) {
+        float scale = Math.max(MIN_SCALE, aEntry.target * mBudgetScale);
+        boolean atLimit = scale == MIN_SCALE || scale == MAX_SCALE;
+        // Keeping a larger texture would go over the budget
+        boolean overBudget = mBudgetScale < 1.0f && scale < aEntry.scale;
+        if (Math.abs(scale - aEntry.scale) > aEntry.scale * HYSTERESIS || (atLimit && scale != aEntry.scale) || overBudget) {
+            aEntry.scale = scale;
+            return true;
+        }
+        return false;
+    }
+
+    private float getBudgetScale() {
+        double total = 0;
+        for (Entry entry: mEntries.values()) {
+            total += (double) entry.width * entry.height * entry.target * entry.target * BYTES_PER_PIXEL;
+        }
+        if (total <= mMemoryBudget) {
+            return 1.0f;
+        }
+        return (float) Math.sqrt(mMemoryBudget / total);
+    }
+}
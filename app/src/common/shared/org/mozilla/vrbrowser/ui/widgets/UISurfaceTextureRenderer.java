@@ -9,6 +9,7 @@ package org.mozilla.vrbrowser.ui.widgets;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.PorterDuff;
+import android.graphics.Rect;
 import android.graphics.SurfaceTexture;
 import android.opengl.GLES11Ext;
 import android.opengl.GLES20;
@@ -50,11 +51,20 @@ class UISurfaceTextureRenderer {
     }
 
     Canvas drawBegin() {
+        Canvas canvas = drawBegin(null);
+        if (canvas != null) {
+            canvas.drawColor(Color.TRANSPARENT, PorterDuff.Mode.CLEAR);
+        }
+        return canvas;
+    }
+
+    // Only aDirty has to be painted, the rest of the surface keeps its content. The surface may
+    // grow aDirty if it can't keep the content, and then the new area has to be painted too.
+    Canvas drawBegin(Rect aDirty) {
         mSurfaceCanvas = null;
         if (mSurface != null) {
             try {
-                mSurfaceCanvas = mSurface.lockCanvas(null);
-                mSurfaceCanvas.drawColor(Color.TRANSPARENT, PorterDuff.Mode.CLEAR);
+                mSurfaceCanvas = mSurface.lockCanvas(aDirty);
             }
             catch (Exception e){
                 e.printStackTrace();
@@ -30,6 +30,7 @@ public abstract class UIWidget extends FrameLayout implements Widget {
 
     private UISurfaceTextureRenderer mRenderer;
     private SurfaceTexture mTexture;
+    private WidgetAtlas mAtlas;
     protected int mHandle;
     protected WidgetPlacement mWidgetPlacement;
     protected WidgetManagerDelegate mWidgetManager;
@@ -61,6 +62,10 @@ public abstract class UIWidget extends FrameLayout implements Widget {
         initializeWidgetPlacement(mWidgetPlacement);
         mInitialWidth = mWidgetPlacement.width;
         mInitialHeight = mWidgetPlacement.height;
+        WidgetAtlas atlas = mWidgetManager.getWidgetAtlas();
+        if (atlas != null && atlas.allocate(this)) {
+            mAtlas = atlas;
+        }
 
         mChildren = new HashMap<>();
         mBackHandler = new Runnable() {
@@ -76,6 +81,12 @@ public abstract class UIWidget extends FrameLayout implements Widget {
 
     @Override
     public void setSurfaceTexture(SurfaceTexture aTexture, final int aWidth, final int aHeight) {
+        if (mAtlas != null) {
+            mAtlas.setSurfaceTexture(aTexture);
+            setWillNotDraw(aTexture == null);
+            postInvalidate();
+            return;
+        }
         if (mTexture!= null && (mTexture.equals(aTexture))) {
             Log.d(LOGTAG, "Texture already set");
             return;
@@ -85,7 +96,7 @@ public abstract class UIWidget extends FrameLayout implements Widget {
             mRenderer.release();
         }
         if (aTexture != null) {
-            mRenderer = new UISurfaceTextureRenderer(aTexture, aWidth, aHeight);
+            mRenderer = new UISurfaceTextureRenderer(aTexture, scale(aWidth), scale(aHeight));
         }
         setWillNotDraw(mRenderer == null);
     }
@@ -93,7 +104,7 @@ public abstract class UIWidget extends FrameLayout implements Widget {
     @Override
     public void resizeSurfaceTexture(final int aWidth, final int aHeight) {
         if (mRenderer != null){
-            mRenderer.resize(aWidth, aHeight);
+            mRenderer.resize(scale(aWidth), scale(aHeight));
         }
 
         FrameLayout.LayoutParams params = (FrameLayout.LayoutParams) getLayoutParams();
@@ -102,6 +113,20 @@ public abstract class UIWidget extends FrameLayout implements Widget {
         setLayoutParams(params);
     }
 
+    // Changes the size of the texture the widget is drawn to. The views keep their size and are
+    // drawn scaled.
+    public void setTextureScale(float aScale) {
+        mWidgetPlacement.textureScale = aScale;
+        if (mRenderer != null) {
+            mRenderer.resize(mWidgetPlacement.scaledTextureWidth(), mWidgetPlacement.scaledTextureHeight());
+        }
+        postInvalidate();
+    }
+
+    private int scale(int aSize) {
+        return (int) Math.ceil(aSize * mWidgetPlacement.textureScale);
+    }
+
     @Override
     public int getHandle() {
         return mHandle;
@@ -143,6 +168,10 @@ public abstract class UIWidget extends FrameLayout implements Widget {
 
     @Override
     public void releaseWidget() {
+        if (mAtlas != null) {
+            mAtlas.release(this);
+            mAtlas = null;
+        }
         if (mRenderer != null) {
             mRenderer.release();
             mRenderer = null;
@@ -163,6 +192,16 @@ public abstract class UIWidget extends FrameLayout implements Widget {
 
     @Override
     public void draw(Canvas aCanvas) {
+        if (mAtlas != null) {
+            Canvas atlasCanvas = mAtlas.drawBegin(this);
+            if (atlasCanvas == null) {
+                super.draw(aCanvas);
+                return;
+            }
+            super.draw(atlasCanvas);
+            mAtlas.drawEnd(this, atlasCanvas);
+            return;
+        }
         if (mRenderer == null) {
             super.draw(aCanvas);
             return;
@@ -178,10 +217,15 @@ public abstract class UIWidget extends FrameLayout implements Widget {
         mRenderer.drawEnd();
     }
 
+    // Draws the views of the widget without going through its texture.
+    void drawContent(Canvas aCanvas) {
+        super.draw(aCanvas);
+    }
+
     @Override
     public void onDescendantInvalidated (View child, View target) {
         super.onDescendantInvalidated(child, target);
-        if (mRenderer != null) {
+        if (mRenderer != null || mAtlas != null) {
             // TODO: transform rect and use invalidate(dirty)
             postInvalidate();
         }
@@ -192,7 +236,7 @@ public abstract class UIWidget extends FrameLayout implements Widget {
     @Override
     public ViewParent invalidateChildInParent(int[] aLocation, Rect aDirty) {
         ViewParent parent =  super.invalidateChildInParent(aLocation, aDirty);
-        if (parent != null && mRenderer != null) {
+        if (parent != null && (mRenderer != null || mAtlas != null)) {
             // TODO: transform rect and use invalidate(dirty)
             postInvalidate();
         }
@@ -9,7 +9,10 @@ import android.graphics.drawable.ClipDrawable;
 import android.graphics.drawable.Drawable;
 import android.graphics.drawable.LayerDrawable;
 import android.os.Bundle;
+import android.os.SystemClock;
 import android.support.annotation.IdRes;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 import android.support.v4.app.ActivityCompat;
 import android.util.AttributeSet;
 import android.util.Log;
@@ -20,10 +23,13 @@ import android.view.animation.LinearInterpolator;
 import android.view.animation.RotateAnimation;
 import android.widget.ImageView;
 import android.widget.TextView;
-import com.mozilla.speechlibrary.ISpeechRecognitionListener;
-import com.mozilla.speechlibrary.MozillaSpeechService;
-import com.mozilla.speechlibrary.STTResult;
 import org.mozilla.vrbrowser.R;
+import org.mozilla.vrbrowser.speech.MozillaSpeechBackend;
+import org.mozilla.vrbrowser.speech.SpeechBackend;
+import org.mozilla.vrbrowser.speech.StreamingTranscription;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static org.mozilla.gecko.GeckoAppShell.getApplicationContext;
 
@@ -37,14 +43,21 @@ public class VoiceSearchWidget extends UIWidget implements WidgetManagerDelegate
     private static int MAX_CLIPPING = 10000;
     private static int MAX_DB = 130;
     private static int MIN_DB = 50;
+    // Levels closer than this to the displayed one aren't worth redrawing the widget
+    private static final int MIN_LEVEL_CHANGE = MAX_CLIPPING / 100;
 
     public interface VoiceSearchDelegate {
-        void OnVoiceSearchResult(String transcription, float confidance);
+        // Called for each new partial hypothesis when the backend streams them
+        void OnVoiceSearchPartialResult(String transcription);
+        // Returns the URL that would be loaded for the transcription
+        String OnVoiceSearchResolveURL(String transcription);
+        void OnVoiceSearchResult(String transcription, String url, float confidance);
         void OnVoiceSearchCanceled();
         void OnVoiceSearchError();
     }
 
-    private MozillaSpeechService mMozillaSpeechService;
+    private SpeechBackend mSpeechBackend;
+    private StreamingTranscription mTranscription;
     private VoiceSearchDelegate mDelegate;
     private ImageView mVoiceSearchInput;
     private ImageView mVoiceSearchSearching;
@@ -58,6 +71,12 @@ public class VoiceSearchWidget extends UIWidget implements WidgetManagerDelegate
     private CloseButtonWidget mCloseButton;
     private boolean mIsSpeechRecognitionRunning = false;
     private boolean mWasSpeechRecognitionRunning = false;
+    // Latest microphone dB, as raw double bits, written by the speech thread and applied once
+    // per frame on the UI thread.
+    private final AtomicLong mLatestDb = new AtomicLong(Double.doubleToRawLongBits(-MAX_DB));
+    private final AtomicBoolean mLevelUpdateScheduled = new AtomicBoolean();
+    private final Runnable mApplyLevel = this::applyMicLevel;
+    private int mLevel;
 
     public VoiceSearchWidget(Context aContext) {
         super(aContext);
@@ -80,12 +99,14 @@ public class VoiceSearchWidget extends UIWidget implements WidgetManagerDelegate
         mWidgetManager.addFocusChangeListener(this);
         mWidgetManager.addPermissionListener(this);
 
-        mMozillaSpeechService = MozillaSpeechService.getInstance();
-        mMozillaSpeechService.setProductTag("fxr");
+        mSpeechBackend = new MozillaSpeechBackend();
+        mTranscription = new StreamingTranscription(text ->
+                mDelegate != null ? mDelegate.OnVoiceSearchResolveURL(text) : text);
 
         mVoiceSearchText1 = findViewById(R.id.voiceSearchText1);
         mVoiceSearchText2 = findViewById(R.id.voiceSearchText2);
         mVoiceSearchText3 = findViewById(R.id.voiceSearchText3);
+        mVoiceSearchText2.setOnClickListener(view -> confirmPartialResult());
 
         mVoiceInputGravity = 0;
         mVoiceInputBackgroundDrawable = getResources().getDrawable(R.drawable.ic_voice_search_volume_input_black, getContext().getTheme());
@@ -119,11 +140,17 @@ public class VoiceSearchWidget extends UIWidget implements WidgetManagerDelegate
         mDelegate = delegate;
     }
 
+    // Replaces the speech recognition backend, mainly to drive the widget with a local one.
+    public void setSpeechBackend(SpeechBackend aBackend) {
+        mSpeechBackend.setListener(null);
+        mSpeechBackend = aBackend;
+    }
+
     @Override
     public void releaseWidget() {
         mWidgetManager.removeFocusChangeListener(this);
         mWidgetManager.removePermissionListener(this);
-        mMozillaSpeechService.removeListener(mVoiceSearchListener);
+        mSpeechBackend.setListener(null);
         ((Application)getApplicationContext()).unregisterActivityLifecycleCallbacks(this);
 
         super.releaseWidget();
@@ -142,83 +169,151 @@ public class VoiceSearchWidget extends UIWidget implements WidgetManagerDelegate
         aPlacement.translationZ = WidgetPlacement.unitFromMeters(getContext(), R.dimen.restart_dialog_world_z);
     }
 
-    private ISpeechRecognitionListener mVoiceSearchListener = new ISpeechRecognitionListener() {
-
-        public void onSpeechStatusChanged(final MozillaSpeechService.SpeechState aState, final Object aPayload){
-            ((Activity)getContext()).runOnUiThread(new Runnable() {
-                @Override
-                public void run() {
-                    switch (aState) {
-                        case DECODING:
-                            // Handle when the speech object changes to decoding state
-                            Log.d(LOGTAG, "===> DECODING");
-                            setDecodingState();
-                            break;
-                        case MIC_ACTIVITY:
-                            // Captures the activity from the microphone
-                            Log.d(LOGTAG, "===> MIC_ACTIVITY");
-                            double db = (double)aPayload * -1; // the higher the value, quieter the user/environment is
-                            db = db == Double.POSITIVE_INFINITY ? MAX_DB : db;
-                            int level = (int)(MAX_CLIPPING - (((db - MIN_DB) / (MAX_DB - MIN_DB)) * MAX_CLIPPING));
-                            Log.d(LOGTAG, "===> db:      " + db);
-                            Log.d(LOGTAG, "===> level    " + level);
-                            mVoiceInputClipDrawable.setLevel(level);
-                            break;
-                        case STT_RESULT:
-                            // When the api finished processing and returned a hypothesis
-                            Log.d(LOGTAG, "===> STT_RESULT");
-                            String transcription = ((STTResult)aPayload).mTranscription;
-                            float confidence = ((STTResult)aPayload).mConfidence;
-                            if (mDelegate != null)
-                                mDelegate.OnVoiceSearchResult(transcription, confidence);
-                            hide();
-                            break;
-                        case START_LISTEN:
-                            // Handle when the api successfully opened the microphone and started listening
-                            Log.d(LOGTAG, "===> START_LISTEN");
-                            break;
-                        case NO_VOICE:
-                            // Handle when the api didn't detect any voice
-                            Log.d(LOGTAG, "===> NO_VOICE");
-                            setResultState();
-                            break;
-                        case CANCELED:
-                            // Handle when a cancelation was fully executed
-                            Log.d(LOGTAG, "===> CANCELED");
-                            setResultState();
-                            if (mDelegate != null)
-                                mDelegate.OnVoiceSearchCanceled();
-                            break;
-                        case ERROR:
-                            Log.d(LOGTAG, "===> ERROR: " + aPayload.toString());
-                            setResultState();
-                            // Handle when any error occurred
-                            if (mDelegate != null)
-                                mDelegate.OnVoiceSearchError();
-                            break;
-                        default:
-                            break;
-                    }
+    private SpeechBackend.Listener mVoiceSearchListener = new SpeechBackend.Listener() {
+        @Override
+        public void onStartListening() {
+            // Handle when the api successfully opened the microphone and started listening
+            final long time = SystemClock.elapsedRealtime();
+            post(() -> {
+                Log.d(LOGTAG, "===> START_LISTEN");
+                mTranscription.start(time);
+            });
+        }
+
+        @Override
+        public void onMicLevel(double aDb) {
+            // Sent for every audio buffer: only keep the latest value and apply it on the next frame.
+            mLatestDb.set(Double.doubleToRawLongBits(aDb));
+            if (!mLevelUpdateScheduled.getAndSet(true)) {
+                postOnAnimation(mApplyLevel);
+            }
+        }
+
+        @Override
+        public void onDecoding() {
+            // Handle when the speech object changes to decoding state
+            post(() -> {
+                Log.d(LOGTAG, "===> DECODING");
+                setDecodingState();
+            });
+        }
+
+        @Override
+        public void onPartialResult(@NonNull String aTranscription) {
+            final long time = SystemClock.elapsedRealtime();
+            post(() -> {
+                if (mTranscription.onPartialResult(aTranscription, time)) {
+                    setPartialResultState(mTranscription.getHypothesis());
+                    if (mDelegate != null)
+                        mDelegate.OnVoiceSearchPartialResult(mTranscription.getHypothesis());
+                }
+            });
+        }
+
+        @Override
+        public void onFinalResult(@NonNull String aTranscription, float aConfidence) {
+            // When the api finished processing and returned a hypothesis
+            final long time = SystemClock.elapsedRealtime();
+            post(() -> {
+                Log.d(LOGTAG, "===> STT_RESULT");
+                if (!mTranscription.isActive()) {
+                    // Already confirmed from a partial result
+                    return;
+                }
+                String url = mTranscription.onFinalResult(aTranscription, time);
+                if (url == null) {
+                    setResultState();
+                    return;
                 }
+                if (mDelegate != null)
+                    mDelegate.OnVoiceSearchResult(aTranscription.trim(), url, aConfidence);
+                hide();
+            });
+        }
+
+        @Override
+        public void onNoVoice() {
+            // Handle when the api didn't detect any voice
+            post(() -> {
+                Log.d(LOGTAG, "===> NO_VOICE");
+                mTranscription.cancel();
+                setResultState();
+            });
+        }
+
+        @Override
+        public void onCanceled() {
+            // Handle when a cancelation was fully executed
+            post(() -> {
+                Log.d(LOGTAG, "===> CANCELED");
+                mTranscription.cancel();
+                setResultState();
+                if (mDelegate != null)
+                    mDelegate.OnVoiceSearchCanceled();
+            });
+        }
+
+        @Override
+        public void onError(@Nullable String aError) {
+            // Handle when any error occurred
+            post(() -> {
+                Log.d(LOGTAG, "===> ERROR: " + aError);
+                mTranscription.cancel();
+                setResultState();
+                if (mDelegate != null)
+                    mDelegate.OnVoiceSearchError();
             });
         }
     };
 
+    // Loads the hypothesis displayed so far without waiting for the final result.
+    private void confirmPartialResult() {
+        String transcription = mTranscription.getHypothesis();
+        String url = mTranscription.confirm(SystemClock.elapsedRealtime());
+        if (url == null) {
+            return;
+        }
+        if (mDelegate != null)
+            mDelegate.OnVoiceSearchResult(transcription, url, 1.0f);
+        hide();
+    }
+
+    // Runs on the UI thread at most once per frame while the microphone is active.
+    private void applyMicLevel() {
+        mLevelUpdateScheduled.set(false);
+        if (mVoiceSearchInput.getVisibility() != View.VISIBLE) {
+            // The level isn't displayed while decoding or after an error
+            return;
+        }
+        int level = getMicLevel(Double.longBitsToDouble(mLatestDb.get()));
+        if (level == mLevel || (Math.abs(level - mLevel) < MIN_LEVEL_CHANGE && level != 0 && level != MAX_CLIPPING)) {
+            return;
+        }
+        mLevel = level;
+        mVoiceInputClipDrawable.setLevel(level);
+    }
+
+    private static int getMicLevel(double aDb) {
+        double db = aDb * -1; // the higher the value, quieter the user/environment is
+        db = db == Double.POSITIVE_INFINITY ? MAX_DB : db;
+        int level = (int)(MAX_CLIPPING - (((db - MIN_DB) / (MAX_DB - MIN_DB)) * MAX_CLIPPING));
+        return Math.max(0, Math.min(MAX_CLIPPING, level));
+    }
+
     public void startVoiceSearch() {
         if (ActivityCompat.checkSelfPermission(getApplicationContext(), Manifest.permission.RECORD_AUDIO)
                 != PackageManager.PERMISSION_GRANTED) {
             ActivityCompat.requestPermissions((Activity)getContext(), new String[]{Manifest.permission.RECORD_AUDIO},
                     VOICESEARCH_AUDIO_REQUEST_CODE);
         } else {
-            mMozillaSpeechService.setLanguage("en-us");
-            mMozillaSpeechService.start(getApplicationContext());
+            mSpeechBackend.start(getApplicationContext(), "en-us");
             mIsSpeechRecognitionRunning = true;
         }
     }
 
     public void stopVoiceSearch() {
         try {
-            mMozillaSpeechService.cancel();
+            mSpeechBackend.cancel();
             mIsSpeechRecognitionRunning = false;
 
         } catch (Exception e) {
@@ -255,7 +350,7 @@ public class VoiceSearchWidget extends UIWidget implements WidgetManagerDelegate
 
         mCloseButton.show();
 
-        mMozillaSpeechService.addListener(mVoiceSearchListener);
+        mSpeechBackend.setListener(mVoiceSearchListener);
         startVoiceSearch();
     }
 
@@ -263,11 +358,19 @@ public class VoiceSearchWidget extends UIWidget implements WidgetManagerDelegate
     public void hide() {
         super.hide();
 
-        mMozillaSpeechService.removeListener(mVoiceSearchListener);
+        mSpeechBackend.setListener(null);
         stopVoiceSearch();
+        mTranscription.cancel();
+        if (mTranscription.getFinalLatency().getCount() > 0) {
+            Log.d(LOGTAG, mTranscription.getFirstPartialLatency().toString() + ", " +
+                    mTranscription.getFinalLatency().toString() + ", speculative URL hit rate: " +
+                    String.format("%.2f", mTranscription.getSpeculativeHitRate()));
+        }
     }
 
     private void setStartListeningState() {
+        mLevel = 0;
+        mVoiceInputClipDrawable.setLevel(0);
         mVoiceSearchText1.setText(R.string.voice_search_start);
         mVoiceSearchText1.setVisibility(View.VISIBLE);
         mVoiceSearchText2.setVisibility(View.GONE);
@@ -277,6 +380,15 @@ public class VoiceSearchWidget extends UIWidget implements WidgetManagerDelegate
         mVoiceSearchSearching.setVisibility(View.INVISIBLE);
     }
 
+    private void setPartialResultState(String aTranscription) {
+        mVoiceSearchText1.setText(R.string.voice_search_start);
+        mVoiceSearchText1.setVisibility(View.VISIBLE);
+        mVoiceSearchText2.setText(aTranscription);
+        mVoiceSearchText2.setVisibility(View.VISIBLE);
+        mVoiceSearchText3.setVisibility(View.VISIBLE);
+        mVoiceSearchInput.setVisibility(View.VISIBLE);
+    }
+
     private void setDecodingState() {
         mVoiceSearchText1.setText(R.string.voice_search_decoding);
         mVoiceSearchText1.setVisibility(View.VISIBLE);
@@ -324,7 +436,7 @@ public class VoiceSearchWidget extends UIWidget implements WidgetManagerDelegate
     @Override
     public void onActivityResumed(Activity activity) {
         if (mWasSpeechRecognitionRunning) {
-            mMozillaSpeechService.addListener(mVoiceSearchListener);
+            mSpeechBackend.setListener(mVoiceSearchListener);
             startVoiceSearch();
         }
     }
@@ -333,7 +445,7 @@ public class VoiceSearchWidget extends UIWidget implements WidgetManagerDelegate
     public void onActivityPaused(Activity activity) {
         mWasSpeechRecognitionRunning = mIsSpeechRecognitionRunning;
         if (mIsSpeechRecognitionRunning) {
-            mMozillaSpeechService.removeListener(mVoiceSearchListener);
+            mSpeechBackend.setListener(null);
             stopVoiceSearch();
         }
     }
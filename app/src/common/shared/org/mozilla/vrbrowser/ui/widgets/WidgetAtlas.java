@@ -0,0 +1,192 @@
+/* -*- Mode: Java; c-basic-offset: 4; tab-width: 4; indent-tabs-mode: nil; -*-
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.vrbrowser.ui.widgets;
+
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.PorterDuff;
+import android.graphics.Rect;
+import android.graphics.SurfaceTexture;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+// Small widgets share one surface texture instead of getting one each. Every widget draws into
+// its own slot of the atlas, and the native quad of the widget only samples that region.
+// A widget only locks its slot when it repaints, so the rest of the atlas is kept as it was.
+public class WidgetAtlas {
+    private static final String LOGTAG = "VRB";
+    // Must match kAtlasSize in BrowserWorld.cpp
+    public static final int SIZE = 1024;
+    // Larger widgets keep their own surface texture
+    private static final int MAX_SLOT_WIDTH = SIZE / 2;
+    private static final int MAX_SLOT_HEIGHT = SIZE / 4;
+    // Keeps the texture filtering of a widget from sampling its neighbours
+    private static final int PADDING = 2;
+
+    private WidgetManagerDelegate mWidgetManager;
+    private ShelfPacker mPacker = new ShelfPacker(SIZE, SIZE, PADDING);
+    private HashMap<Integer, ShelfPacker.Slot> mSlots = new HashMap<>();
+    private HashMap<Integer, UIWidget> mWidgets = new HashMap<>();
+    // Widgets drawn for the first time since the last frame of the atlas
+    private ArrayList<UIWidget> mFirstDraws = new ArrayList<>();
+    private SurfaceTexture mTexture;
+    private UISurfaceTextureRenderer mRenderer;
+    private Handler mHandler = new Handler(Looper.getMainLooper());
+    private Rect mDirty = new Rect();
+
+    public WidgetAtlas(@NonNull WidgetManagerDelegate aWidgetManager) {
+        mWidgetManager = aWidgetManager;
+    }
+
+    // Reserves a slot for the widget if it is small enough and there is space left.
+    boolean allocate(@NonNull UIWidget aWidget) {
+        WidgetPlacement placement = aWidget.getPlacement();
+        int width = placement.scaledTextureWidth();
+        int height = placement.scaledTextureHeight();
+        if (width > MAX_SLOT_WIDTH || height > MAX_SLOT_HEIGHT) {
+            return false;
+        }
+        ShelfPacker.Slot slot = mPacker.allocate(width, height);
+        if (slot == null) {
+            Log.d(LOGTAG, "Widget atlas full, widget " + aWidget.getHandle() + " gets its own texture");
+            return false;
+        }
+        mSlots.put(aWidget.getHandle(), slot);
+        mWidgets.put(aWidget.getHandle(), aWidget);
+        setSlot(placement, slot);
+        Log.d(LOGTAG, "Widget atlas: " + mSlots.size() + " widgets, " +
+                (mPacker.getUsedArea() * 100 / (SIZE * SIZE)) + "% used");
+        return true;
+    }
+
+    // Moves the widget to a slot of its new scaled texture size. If there is no space it keeps a
+    // slot of the old size and is drawn scaled into it.
+    public void resize(@NonNull Widget aWidget) {
+        ShelfPacker.Slot slot = mSlots.get(aWidget.getHandle());
+        if (slot == null) {
+            return;
+        }
+        WidgetPlacement placement = aWidget.getPlacement();
+        int width = placement.scaledTextureWidth();
+        int height = placement.scaledTextureHeight();
+        if (width == slot.width && height == slot.height) {
+            return;
+        }
+        if (width > MAX_SLOT_WIDTH || height > MAX_SLOT_HEIGHT) {
+            Log.e(LOGTAG, "Widget " + aWidget.getHandle() + " is too large for the atlas at " + width + "x" + height);
+            return;
+        }
+        ShelfPacker.Slot newSlot = mPacker.reallocate(slot, width, height);
+        if (newSlot.width != width || newSlot.height != height) {
+            Log.e(LOGTAG, "Widget " + aWidget.getHandle() + " doesn't fit in the atlas at " + width + "x" + height);
+        }
+        if (newSlot != slot) {
+            mSlots.put(aWidget.getHandle(), newSlot);
+            setSlot(placement, newSlot);
+        }
+    }
+
+    void release(@NonNull UIWidget aWidget) {
+        ShelfPacker.Slot slot = mSlots.remove(aWidget.getHandle());
+        if (slot != null) {
+            mPacker.free(slot);
+        }
+        mWidgets.remove(aWidget.getHandle());
+        mFirstDraws.remove(aWidget);
+        aWidget.getPlacement().atlasX = -1;
+        aWidget.getPlacement().atlasY = -1;
+    }
+
+    // Every widget in the atlas receives the same surface texture.
+    void setSurfaceTexture(@Nullable SurfaceTexture aTexture) {
+        if (aTexture == mTexture) {
+            return;
+        }
+        if (mRenderer != null) {
+            mRenderer.release();
+            mRenderer = null;
+        }
+        mTexture = aTexture;
+        if (aTexture != null) {
+            mRenderer = new UISurfaceTextureRenderer(aTexture, SIZE, SIZE);
+            aTexture.setOnFrameAvailableListener(mFrameAvailableListener, mHandler);
+        }
+    }
+
+    // Locks the slot of the widget and returns a canvas translated and scaled to it, or null if
+    // the widget can't draw into the atlas yet.
+    @Nullable
+    Canvas drawBegin(@NonNull UIWidget aWidget) {
+        ShelfPacker.Slot slot = mSlots.get(aWidget.getHandle());
+        if (mRenderer == null || slot == null) {
+            return null;
+        }
+        mDirty.set(slot.x, slot.y, slot.x + slot.width, slot.y + slot.height);
+        Canvas canvas = mRenderer.drawBegin(mDirty);
+        if (canvas == null) {
+            return null;
+        }
+        // The surface may not keep the previous content, e.g. on the first frames of the
+        // buffer queue. The other widgets are painted again in the same frame then.
+        if (mDirty.width() > slot.width || mDirty.height() > slot.height) {
+            for (UIWidget widget: mWidgets.values()) {
+                if (widget != aWidget) {
+                    beginSlot(canvas, widget, mSlots.get(widget.getHandle()));
+                    widget.drawContent(canvas);
+                    canvas.restore();
+                }
+            }
+        }
+        beginSlot(canvas, aWidget, slot);
+        return canvas;
+    }
+
+    void drawEnd(@NonNull UIWidget aWidget, @NonNull Canvas aCanvas) {
+        aCanvas.restore();
+        mRenderer.drawEnd();
+        if (!aWidget.getFirstDraw() && !mFirstDraws.contains(aWidget)) {
+            mFirstDraws.add(aWidget);
+        }
+    }
+
+    private void beginSlot(Canvas aCanvas, UIWidget aWidget, ShelfPacker.Slot aSlot) {
+        aCanvas.save();
+        aCanvas.clipRect(aSlot.x, aSlot.y, aSlot.x + aSlot.width, aSlot.y + aSlot.height);
+        aCanvas.translate(aSlot.x, aSlot.y);
+        aCanvas.drawColor(Color.TRANSPARENT, PorterDuff.Mode.CLEAR);
+        // The slot may keep the old size after a resize that didn't fit, with another aspect ratio
+        if (aWidget.getWidth() > 0 && aWidget.getHeight() > 0) {
+            aCanvas.scale(aSlot.width / (float) aWidget.getWidth(), aSlot.height / (float) aWidget.getHeight());
+        }
+    }
+
+    private static void setSlot(WidgetPlacement aPlacement, ShelfPacker.Slot aSlot) {
+        aPlacement.atlasX = aSlot.x;
+        aPlacement.atlasY = aSlot.y;
+        aPlacement.atlasWidth = aSlot.width;
+        aPlacement.atlasHeight = aSlot.height;
+    }
+
+    private SurfaceTexture.OnFrameAvailableListener mFrameAvailableListener = new SurfaceTexture.OnFrameAvailableListener() {
+        @Override
+        public void onFrameAvailable(SurfaceTexture surfaceTexture) {
+            // The frame has the content of every widget drawn before it was posted
+            for (UIWidget widget: mFirstDraws) {
+                if (!widget.getFirstDraw()) {
+                    widget.setFirstDraw(true);
+                    mWidgetManager.updateWidget(widget);
+                }
+            }
+            mFirstDraws.clear();
+        }
+    };
+}
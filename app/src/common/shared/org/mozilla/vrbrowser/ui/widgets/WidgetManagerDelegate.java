@@ -1,6 +1,7 @@
 package org.mozilla.vrbrowser.ui.widgets;
 
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 import android.view.View;
 
 import org.mozilla.geckoview.GeckoSession;
@@ -47,4 +48,5 @@ public interface WidgetManagerDelegate {
     void removeWorldClickListener(WorldClickListener aListener);
     boolean isPermissionGranted(@NonNull String permission);
     void requestPermission(@NonNull String uri, @NonNull String permission, GeckoSession.PermissionDelegate.Callback aCallback);
+    @Nullable WidgetAtlas getWidgetAtlas();
 }
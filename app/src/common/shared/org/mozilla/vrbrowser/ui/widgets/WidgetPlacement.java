@@ -36,6 +36,13 @@ public class WidgetPlacement {
     public boolean opaque = false;
     public boolean showPointer = true;
     public boolean firstDraw = false;
+    // Region of the widget in the widget atlas, atlasX is -1 if it has its own texture
+    public int atlasX = -1;
+    public int atlasY = -1;
+    public int atlasWidth;
+    public int atlasHeight;
+    // Size of the texture relative to the size of the views of the widget
+    public float textureScale = 1.0f;
 
     public WidgetPlacement clone() {
         WidgetPlacement w = new WidgetPlacement();
@@ -64,6 +71,15 @@ public class WidgetPlacement {
         this.opaque = w.opaque;
         this.showPointer = w.showPointer;
         this.firstDraw = w.firstDraw;
+        this.atlasX = w.atlasX;
+        this.atlasY = w.atlasY;
+        this.atlasWidth = w.atlasWidth;
+        this.atlasHeight = w.atlasHeight;
+        this.textureScale = w.textureScale;
+    }
+
+    public boolean isInAtlas() {
+        return atlasX >= 0;
     }
 
     public int textureWidth() {
@@ -74,6 +90,19 @@ public class WidgetPlacement {
         return (int) Math.ceil(height * density);
     }
 
+    public int scaledTextureWidth() {
+        return (int) Math.ceil(textureWidth() * textureScale);
+    }
+
+    public int scaledTextureHeight() {
+        return (int) Math.ceil(textureHeight() * textureScale);
+    }
+
+    // World width in meters.
+    public float worldWidth() {
+        return worldWidth > 0.0f ? worldWidth : width * WORLD_DPI_RATIO;
+    }
+
     public static int pixelDimension(Context aContext, int aDimensionID) {
         return aContext.getResources().getDimensionPixelSize(aDimensionID);
     }
@@ -92,6 +121,10 @@ public class WidgetPlacement {
         return aMeters / WORLD_DPI_RATIO;
     }
 
+    public static float metersFromUnit(float aUnits) {
+        return aUnits * WORLD_DPI_RATIO;
+    }
+
     public static float unitFromMeters(Context aContext, int aDimensionId) {
         return unitFromMeters(floatDimension(aContext, aDimensionId));
     }
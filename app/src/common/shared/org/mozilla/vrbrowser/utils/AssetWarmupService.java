@@ -0,0 +1,240 @@
+/* -*- Mode: Java; c-basic-offset: 4; tab-width: 4; indent-tabs-mode: nil; -*-
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.vrbrowser.utils;
+
+import android.content.res.AssetManager;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Small bounded pool used to load and warm up assets off the UI and render threads.
+// Tasks run by priority (what's visible first) and then in submission order. Pending tasks are
+// cancelled when the app is paused; tasks that succeeded are remembered by name and not run again
+// until their owner forgets them.
+public class AssetWarmupService {
+    private static final String LOGTAG = "VRB";
+    private static final int POOL_SIZE = 2;
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+    private static final int LOAD_TIME_BUCKET_MS = 5;
+    private static final int LOAD_TIME_BUCKETS = 200;
+
+    public enum Priority {
+        VISIBLE,
+        HIGH,
+        NORMAL,
+        LOW
+    }
+
+    // Loads an asset, returns false if it failed so it can be tried again.
+    public interface Loader {
+        boolean load();
+    }
+
+    private static AssetWarmupService mInstance;
+
+    public static synchronized AssetWarmupService get() {
+        if (mInstance == null) {
+            mInstance = new AssetWarmupService();
+        }
+        return mInstance;
+    }
+
+    private class WarmupTask extends FutureTask<Void> implements Comparable<WarmupTask> {
+        final String mName;
+        final Priority mPriority;
+        final long mSequence;
+        // Callbacks of every submitter, posted once the task is done or cancelled
+        private final ArrayList<Runnable> mCallbacks = new ArrayList<>();
+        private boolean mCallbacksPosted;
+
+        WarmupTask(String aName, Priority aPriority, Callable<Void> aCallable) {
+            super(aCallable);
+            mName = aName;
+            mPriority = aPriority;
+            mSequence = mSequenceGenerator.getAndIncrement();
+        }
+
+        // Returns false if the callbacks were already posted.
+        synchronized boolean addCallback(@NonNull Runnable aCallback) {
+            if (mCallbacksPosted) {
+                return false;
+            }
+            mCallbacks.add(aCallback);
+            return true;
+        }
+
+        private synchronized void postCallbacks() {
+            mCallbacksPosted = true;
+            for (Runnable callback: mCallbacks) {
+                mMainHandler.post(callback);
+            }
+            mCallbacks.clear();
+        }
+
+        @Override
+        public int compareTo(@NonNull WarmupTask aOther) {
+            if (mPriority != aOther.mPriority) {
+                return mPriority.compareTo(aOther.mPriority);
+            }
+            return Long.compare(mSequence, aOther.mSequence);
+        }
+
+        @Override
+        protected void done() {
+            mPending.remove(mName, this);
+            postCallbacks();
+        }
+    }
+
+    private final ThreadPoolExecutor mExecutor;
+    private final AtomicLong mSequenceGenerator = new AtomicLong();
+    private final Map<String, WarmupTask> mPending = new ConcurrentHashMap<>();
+    private final Set<String> mCompleted = ConcurrentHashMap.newKeySet();
+    private final Map<String, Long> mLoadTimes = Collections.synchronizedMap(new HashMap<>());
+    private final LatencyHistogram mLoadTime;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    private AssetWarmupService() {
+        AtomicInteger threadCount = new AtomicInteger();
+        mExecutor = new ThreadPoolExecutor(POOL_SIZE, POOL_SIZE, 30, TimeUnit.SECONDS,
+                new PriorityBlockingQueue<>(),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "AssetWarmup-" + threadCount.incrementAndGet());
+                    thread.setPriority(Thread.NORM_PRIORITY - 1);
+                    return thread;
+                });
+        mExecutor.allowCoreThreadTimeOut(true);
+        mLoadTime = new LatencyHistogram("Asset load time (ms)", LOAD_TIME_BUCKET_MS, LOAD_TIME_BUCKETS);
+    }
+
+    // Submits a named loader. aCallback, if not null, runs on the UI thread once the loader
+    // finished, even if it failed or was cancelled. Submitting a name that is already pending
+    // adds the callback to the pending task and returns its future.
+    public Future<Void> submit(@NonNull String aName, @NonNull Priority aPriority,
+                               @NonNull Loader aLoader, @Nullable Runnable aCallback) {
+        if (mCompleted.contains(aName)) {
+            if (aCallback != null) {
+                mMainHandler.post(aCallback);
+            }
+            return CompletableFuture.completedFuture(null);
+        }
+
+        WarmupTask task = new WarmupTask(aName, aPriority, () -> {
+            long start = SystemClock.elapsedRealtime();
+            boolean loaded = aLoader.load();
+            if (Thread.currentThread().isInterrupted()) {
+                // Cancelled while loading, don't remember it as loaded.
+                return null;
+            }
+            long elapsed = SystemClock.elapsedRealtime() - start;
+            if (loaded) {
+                mLoadTime.record(elapsed);
+                mLoadTimes.put(aName, elapsed);
+                mCompleted.add(aName);
+                Log.d(LOGTAG, "Asset warmup: " + aName + " loaded in " + elapsed + "ms");
+            } else {
+                Log.e(LOGTAG, "Asset warmup: " + aName + " failed after " + elapsed + "ms");
+            }
+            return null;
+        });
+        if (aCallback != null) {
+            task.addCallback(aCallback);
+        }
+
+        WarmupTask existing = mPending.putIfAbsent(aName, task);
+        if (existing != null) {
+            if (aCallback != null && !existing.addCallback(aCallback)) {
+                // Finished in the meantime
+                mMainHandler.post(aCallback);
+            }
+            return existing;
+        }
+        mExecutor.execute(task);
+        return task;
+    }
+
+    // Cancels the named task if it hasn't started yet, so the caller can load it right away
+    // instead of waiting behind other tasks. Returns false if it is running or done.
+    public boolean cancelIfQueued(@NonNull String aName) {
+        WarmupTask task = mPending.get(aName);
+        if (task == null || !mExecutor.remove(task)) {
+            return false;
+        }
+        task.cancel(false);
+        return true;
+    }
+
+    // Reads an asset once so the native loader finds it in the page cache.
+    public Future<Void> warmupAsset(@NonNull AssetManager aAssets, @NonNull String aPath, @NonNull Priority aPriority) {
+        return submit(aPath, aPriority, () -> {
+            byte[] buffer = new byte[READ_BUFFER_SIZE];
+            try (InputStream stream = aAssets.open(aPath, AssetManager.ACCESS_STREAMING)) {
+                while (stream.read(buffer) > 0) {
+                    if (Thread.currentThread().isInterrupted()) {
+                        return false;
+                    }
+                }
+                return true;
+            } catch (IOException e) {
+                Log.e(LOGTAG, "Unable to warm up asset " + aPath + ": " + e.toString());
+                return false;
+            }
+        }, null);
+    }
+
+    // Cancels everything not started yet and interrupts running loaders. Called on pause,
+    // cancelled assets are warmed up again if they are resubmitted. The callbacks still run.
+    public void cancelPending() {
+        ArrayList<WarmupTask> tasks = new ArrayList<>(mPending.values());
+        for (WarmupTask task: tasks) {
+            task.cancel(true);
+            mExecutor.remove(task);
+        }
+        if (tasks.size() > 0) {
+            Log.d(LOGTAG, "Asset warmup: cancelled " + tasks.size() + " pending tasks");
+        }
+    }
+
+    // Called when what a task loaded has been released, so submitting it again runs it again.
+    public void forget(@NonNull String aName) {
+        mCompleted.remove(aName);
+        mLoadTimes.remove(aName);
+    }
+
+    public boolean isLoaded(@NonNull String aName) {
+        return mCompleted.contains(aName);
+    }
+
+    @Nullable
+    public Long getLoadTime(@NonNull String aName) {
+        return mLoadTimes.get(aName);
+    }
+
+    public LatencyHistogram getLoadTimeHistogram() {
+        return mLoadTime;
+    }
+}
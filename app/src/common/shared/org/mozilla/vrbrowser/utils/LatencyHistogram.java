@@ -0,0 +1,91 @@
+/* -*- Mode: Java; c-basic-offset: 4; tab-width: 4; indent-tabs-mode: nil; -*-
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.vrbrowser.utils;
+
+// Fixed size bucketed histogram used for local performance instrumentation.
+// Values are unit agnostic (callers usually record microseconds or milliseconds).
+// Samples bigger than the last bucket are clamped into it, like the telemetry histograms.
+public class LatencyHistogram {
+    private final String mName;
+    private final long mBucketSize;
+    private final int[] mBuckets;
+    private long mCount;
+    private long mSum;
+    private long mMax;
+
+    public LatencyHistogram(String aName, long aBucketSize, int aBucketCount) {
+        if (aBucketSize <= 0 || aBucketCount <= 0) {
+            throw new IllegalArgumentException("Invalid histogram size");
+        }
+        mName = aName;
+        mBucketSize = aBucketSize;
+        mBuckets = new int[aBucketCount];
+    }
+
+    public synchronized void record(long aValue) {
+        if (aValue < 0) {
+            aValue = 0;
+        }
+        int index = (int)Math.min(aValue / mBucketSize, mBuckets.length - 1);
+        mBuckets[index]++;
+        mCount++;
+        mSum += aValue;
+        if (aValue > mMax) {
+            mMax = aValue;
+        }
+    }
+
+    public String getName() {
+        return mName;
+    }
+
+    public synchronized long getCount() {
+        return mCount;
+    }
+
+    public synchronized long getMax() {
+        return mMax;
+    }
+
+    public synchronized double getMean() {
+        return mCount > 0 ? (double)mSum / mCount : 0.0;
+    }
+
+    // Returns the upper bound of the bucket containing the requested percentile (0..100).
+    public synchronized long getPercentile(float aPercentile) {
+        if (mCount == 0) {
+            return 0;
+        }
+        long target = (long)Math.ceil(mCount * Math.max(0.0f, Math.min(aPercentile, 100.0f)) / 100.0f);
+        long accumulated = 0;
+        for (int i = 0; i < mBuckets.length; i++) {
+            accumulated += mBuckets[i];
+            if (accumulated >= target && accumulated > 0) {
+                return Math.min((i + 1) * mBucketSize, mMax);
+            }
+        }
+        return mMax;
+    }
+
+    public synchronized int[] getBuckets() {
+        return mBuckets.clone();
+    }
+
+    public synchronized void reset() {
+        for (int i = 0; i < mBuckets.length; i++) {
+            mBuckets[i] = 0;
+        }
+        mCount = 0;
+        mSum = 0;
+        mMax = 0;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return mName + ": count=" + mCount + " mean=" + String.format("%.1f", getMean()) +
+                " p50=" + getPercentile(50) + " p95=" + getPercentile(95) + " max=" + mMax;
+    }
+}
@@ -11,30 +11,47 @@ public class ServoUtils {
     private static final String CLASSNAME = "org.mozilla.servo.ServoSession";
     private static final String LOGTAG = "ServoUtils";
 
-    public static boolean isServoAvailable() {
+    // Resolved once, Servo is either built in or not
+    private static boolean sResolved;
+    private static Class<?> sServoClass;
+    private static Constructor<?> sConstructor;
+
+    private static synchronized void resolve() {
+        if (sResolved) {
+            return;
+        }
+        sResolved = true;
         try {
-            Class.forName(CLASSNAME);
-            return true;
+            sServoClass = Class.forName(CLASSNAME);
+            sConstructor = sServoClass.getConstructor(Context.class);
         } catch (ClassNotFoundException e) {
-            return false;
+            sServoClass = null;
+        } catch (NoSuchMethodException e) {
+            Log.e(LOGTAG, "Can't find the ServoSession constructor: " + e);
+            sServoClass = null;
         }
     }
 
+    public static boolean isServoAvailable() {
+        resolve();
+        return sServoClass != null;
+    }
+
     public static boolean isInstanceOfServoSession(Object obj) {
-        try {
-            return Class.forName(CLASSNAME).isInstance(obj);
-        } catch (ClassNotFoundException e) {
-            return false;
-        }
+        resolve();
+        return sServoClass != null && sServoClass.isInstance(obj);
     }
 
     public static GeckoSession createServoSession(Context context) {
+        resolve();
+        if (sConstructor == null) {
+            Log.e(LOGTAG, "Can't load ServoSession");
+            return null;
+        }
         try {
-            Class servoClass = Class.forName(CLASSNAME);
-            Constructor<?> constructor = servoClass.getConstructor(Context.class);
-            return (GeckoSession) constructor.newInstance(context);
+            return (GeckoSession) sConstructor.newInstance(context);
         } catch (Exception e) {
-            Log.e(LOGTAG, "Can't load or instanciate ServoSession: " + e);
+            Log.e(LOGTAG, "Can't instanciate ServoSession: " + e);
             return null;
         }
     }
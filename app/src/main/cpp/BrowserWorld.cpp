@@ -45,6 +45,7 @@
 #include "vrb/Vector.h"
 #include "Quad.h"
 
+#include <algorithm>
 #include <array>
 #include <functional>
 #include <fstream>
@@ -70,6 +71,11 @@ static const int GestureSwipeRight = 1;
 static const float kScrollFactor = 20.0f; // Just picked what fell right.
 static const float kWorldDPIRatio = 2.0f/720.0f;
 static const double kHoverRate = 1.0 / 10.0;
+// Frame times are reported to Java once per interval, in seconds
+static const double kFrameTimeInterval = 1.0;
+// Must match WidgetAtlas.SIZE
+static const int32_t kAtlasSize = 1024;
+static const std::string kAtlasName = "crow::WidgetAtlas";
 
 #if SPACE_THEME == 1
   static const std::string CubemapDay = "cubemap/space";
@@ -159,9 +165,14 @@ struct BrowserWorld::State {
   uint32_t loaderDelay;
   bool exitImmersiveRequested;
   WidgetPtr resizingWidget;
+  TextureSurfacePtr atlas;
   LoadingAnimationPtr loadingAnimation;
   SplashAnimationPtr splashAnimation;
   int colorIndex;
+  double frameTimeStart;
+  double lastFrameTime;
+  double maxFrameTime;
+  uint32_t frameCount;
 
   State() : paused(true), glInitialized(false), modelsLoaded(false), env(nullptr), nearClip(0.1f),
             farClip(300.0f), activity(nullptr), windowsInitialized(false), exitImmersiveRequested(false), loaderDelay(0) {
@@ -186,11 +197,14 @@ struct BrowserWorld::State {
     loadingAnimation = LoadingAnimation::Create(create);
     splashAnimation = SplashAnimation::Create(create);
     colorIndex = 0;
+    ResetFrameTime(0.0);
   }
 
   void CheckBackButton();
   bool CheckExitImmersive();
   void UpdateControllers(bool& aRelayoutWidgets);
+  void UpdateFrameTime();
+  void ResetFrameTime(const double aTimestamp);
   WidgetPtr GetWidget(int32_t aHandle) const;
   WidgetPtr FindWidget(const std::function<bool(const WidgetPtr&)>& aCondition) const;
 };
@@ -221,6 +235,33 @@ BrowserWorld::State::CheckExitImmersive() {
   return false;
 }
 
+void
+BrowserWorld::State::UpdateFrameTime() {
+  const double now = context->GetTimestamp();
+  const double frameTime = now - lastFrameTime;
+  if (lastFrameTime <= 0.0 || frameTime > kFrameTimeInterval) {
+    // First frame, or resumed after a pause
+    ResetFrameTime(now);
+    return;
+  }
+  lastFrameTime = now;
+  maxFrameTime = std::max(maxFrameTime, frameTime);
+  frameCount++;
+  if (now - frameTimeStart >= kFrameTimeInterval) {
+    const double average = (now - frameTimeStart) / frameCount;
+    VRBrowser::HandleFrameTime((jfloat)(average * 1000.0), (jfloat)(maxFrameTime * 1000.0));
+    ResetFrameTime(now);
+  }
+}
+
+void
+BrowserWorld::State::ResetFrameTime(const double aTimestamp) {
+  frameTimeStart = aTimestamp;
+  lastFrameTime = aTimestamp;
+  maxFrameTime = 0.0;
+  frameCount = 0;
+}
+
 static bool
 OutOfDeadZone(Controller& aController, const float aX, const float aY) {
   if (!aController.inDeadZone) {
@@ -538,11 +579,18 @@ BrowserWorld::InitializeGL() {
       SurfaceTextureFactoryPtr factory = m.context->GetSurfaceTextureFactory();
       for (WidgetPtr& widget: m.widgets) {
         const std::string name = widget->GetSurfaceTextureName();
+        if (name == kAtlasName) {
+          continue;
+        }
         jobject surface = factory->LookupSurfaceTexture(name);
         if (surface) {
           SetSurfaceTexture(name, surface);
         }
       }
+      jobject atlas = factory->LookupSurfaceTexture(kAtlasName);
+      if (atlas) {
+        SetSurfaceTexture(kAtlasName, atlas);
+      }
     }
   }
 }
@@ -620,6 +668,7 @@ BrowserWorld::Draw() {
     }
     DrawWorld();
     m.externalVR->PushSystemState();
+    m.UpdateFrameTime();
   }
   // Update the 3d audio engine with the most recent head rotation.
   const vrb::Matrix &head = m.device->GetHeadTransform();
@@ -663,13 +712,13 @@ void
 BrowserWorld::SetSurfaceTexture(const std::string& aName, jobject& aSurface) {
   ASSERT_ON_RENDER_THREAD();
   VRB_LOG("SetSurfaceTexture: %s", aName.c_str());
-  WidgetPtr widget = m.FindWidget([=](const WidgetPtr& aWidget) -> bool {
-    return aName == aWidget->GetSurfaceTextureName();
-  });
-  if (widget) {
-    int32_t width = 0, height = 0;
-    widget->GetSurfaceTextureSize(width, height);
-    VRBrowser::DispatchCreateWidget(widget->GetHandle(), aSurface, width, height);
+  // All the widgets in the atlas share its surface
+  for (const WidgetPtr& widget: m.widgets) {
+    if (aName == widget->GetSurfaceTextureName()) {
+      int32_t width = 0, height = 0;
+      widget->GetSurfaceTextureSize(width, height);
+      VRBrowser::DispatchCreateWidget(widget->GetHandle(), aSurface, width, height);
+    }
   }
 }
 
@@ -686,11 +735,20 @@ BrowserWorld::AddWidget(int32_t aHandle, const WidgetPlacementPtr& aPlacement) {
     worldWidth = aPlacement->width * kWorldDPIRatio;
   }
 
-  WidgetPtr widget = Widget::Create(m.context,
-                                    aHandle,
-                                    (int32_t)(ceilf(aPlacement->width * aPlacement->density)),
-                                    (int32_t)(ceilf(aPlacement->height * aPlacement->density)),
-                                    worldWidth);
+  const int32_t textureWidth = (int32_t)(ceilf(aPlacement->width * aPlacement->density));
+  const int32_t textureHeight = (int32_t)(ceilf(aPlacement->height * aPlacement->density));
+  WidgetPtr widget;
+  jobject atlasSurface = nullptr;
+  if (aPlacement->atlasX >= 0) {
+    if (!m.atlas) {
+      m.atlas = TextureSurface::Create(m.context, kAtlasName);
+    }
+    widget = Widget::Create(m.context, aHandle, textureWidth, textureHeight, worldWidth, m.atlas, kAtlasName);
+    // Widgets added after the atlas surface was created don't get a creation callback
+    atlasSurface = m.context->GetSurfaceTextureFactory()->LookupSurfaceTexture(kAtlasName);
+  } else {
+    widget = Widget::Create(m.context, aHandle, textureWidth, textureHeight, worldWidth);
+  }
   if (aPlacement->opaque) {
     m.rootOpaque->AddNode(widget->GetRoot());
   } else {
@@ -705,6 +763,10 @@ BrowserWorld::AddWidget(int32_t aHandle, const WidgetPlacementPtr& aPlacement) {
     widget->SetPointerGeometry(emptyNode);
   }
   widget->SetPointerColor(vrb::Color(VRBrowser::GetPointerColor()));
+
+  if (atlasSurface) {
+    VRBrowser::DispatchCreateWidget(aHandle, atlasSurface, textureWidth, textureHeight);
+  }
 }
 
 void
@@ -727,6 +789,12 @@ BrowserWorld::UpdateWidget(int32_t aHandle, const WidgetPlacementPtr& aPlacement
   widget->ToggleWidget(aPlacement->visible);
   widget->SetSurfaceTextureSize((int32_t)(ceilf(aPlacement->width * aPlacement->density)),
                                 (int32_t)(ceilf(aPlacement->height * aPlacement->density)));
+  if (aPlacement->atlasX >= 0) {
+    const float size = (float)kAtlasSize;
+    widget->SetTextureRegion(vrb::Vector(aPlacement->atlasX / size, aPlacement->atlasY / size, 0.0f),
+                             vrb::Vector((aPlacement->atlasX + aPlacement->atlasWidth) / size,
+                                         (aPlacement->atlasY + aPlacement->atlasHeight) / size, 0.0f));
+  }
 
   float worldWidth = 0.0f, worldHeight = 0.0f;
   widget->GetWorldSize(worldWidth, worldHeight);
@@ -33,6 +33,8 @@ struct Quad::State {
   vrb::TransformPtr backgroundTransform;
   vrb::GeometryPtr backgroundGeometry;
   vrb::Color backgroundColor;
+  vrb::Vector uvMin;
+  vrb::Vector uvMax;
 
   State()
       : textureWidth(0)
@@ -40,6 +42,8 @@ struct Quad::State {
       , scaleMode(ScaleMode::Fill)
       , worldMin(0.0f, 0.0f, 0.0f)
       , worldMax(0.0f, 0.0f, 0.0f)
+      , uvMin(0.0f, 0.0f, 0.0f)
+      , uvMax(1.0f, 1.0f, 0.0f)
   {}
 
   void Initialize() {
@@ -97,10 +101,7 @@ struct Quad::State {
         u0 = 0.5f - ul;
       }
 
-      array->SetUV(0, vrb::Vector(u0, v0 + vl, 0.0f));
-      array->SetUV(1, vrb::Vector(u0 + ul, v0 + vl, 0.0f));
-      array->SetUV(2, vrb::Vector(u0 + ul, v0, 0.0f));
-      array->SetUV(3, vrb::Vector(u0, v0, 0.0f));
+      SetUVs(u0, v0, ul, vl);
     }
 
     const vrb::Vector bottomRight(max.x(), min.y(), min.z());
@@ -112,6 +113,21 @@ struct Quad::State {
     geometry->UpdateBuffers();
   }
 
+  // Texture coordinates relative to the texture region of the quad.
+  void SetUVs(float u0, float v0, float ul, float vl) {
+    vrb::VertexArrayPtr array = geometry->GetVertexArray();
+    const float uScale = uvMax.x() - uvMin.x();
+    const float vScale = uvMax.y() - uvMin.y();
+    u0 = uvMin.x() + u0 * uScale;
+    v0 = uvMin.y() + v0 * vScale;
+    ul *= uScale;
+    vl *= vScale;
+    array->SetUV(0, vrb::Vector(u0, v0 + vl, 0.0f));
+    array->SetUV(1, vrb::Vector(u0 + ul, v0 + vl, 0.0f));
+    array->SetUV(2, vrb::Vector(u0 + ul, v0, 0.0f));
+    array->SetUV(3, vrb::Vector(u0, v0, 0.0f));
+  }
+
   void LayoutBackground() {
     if (!backgroundTransform) {
       return;
@@ -260,6 +276,21 @@ Quad::SetTextureSize(int32_t aWidth, int32_t aHeight) {
   m.textureHeight = aHeight;
 }
 
+void
+Quad::SetTextureRegion(const vrb::Vector& aMin, const vrb::Vector& aMax) {
+  if (m.uvMin == aMin && m.uvMax == aMax) {
+    return;
+  }
+  m.uvMin = aMin;
+  m.uvMax = aMax;
+  if (m.scaleMode == ScaleMode::AspectFill) {
+    m.UpdateVertexArray();
+  } else {
+    m.SetUVs(0.0f, 0.0f, 1.0f, 1.0f);
+    m.geometry->UpdateBuffers();
+  }
+}
+
 void
 Quad::GetWorldMinAndMax(vrb::Vector& aMin, vrb::Vector& aMax) const {
   aMin = m.worldMin;
@@ -36,6 +36,7 @@ public:
   void SetBackgroundColor(const vrb::Color& aColor);
   void GetTextureSize(int32_t& aWidth, int32_t& aHeight) const;
   void SetTextureSize(int32_t aWidth, int32_t aHeight);
+  void SetTextureRegion(const vrb::Vector& aMin, const vrb::Vector& aMax);
   void GetWorldMinAndMax(vrb::Vector& aMin, vrb::Vector& aMax) const;
   const vrb::Vector& GetWorldMin() const;
   const vrb::Vector& GetWorldMax() const;
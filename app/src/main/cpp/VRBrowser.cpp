@@ -24,6 +24,8 @@ static const char* kHandleResizeName = "handleResize";
 static const char* kHandleResizeSignature = "(IFF)V";
 static const char* kHandleBackEventName = "handleBack";
 static const char* kHandleBackEventSignature = "()V";
+static const char* kHandleFrameTimeName = "handleFrameTime";
+static const char* kHandleFrameTimeSignature = "(FF)V";
 static const char* kRegisterExternalContextName = "registerExternalContext";
 static const char* kRegisterExternalContextSignature = "(J)V";
 static const char* kPauseCompositorName = "pauseGeckoViewCompositor";
@@ -48,6 +50,7 @@ static jmethodID sHandleAudioPose;
 static jmethodID sHandleGesture;
 static jmethodID sHandleResize;
 static jmethodID sHandleBack;
+static jmethodID sHandleFrameTime;
 static jmethodID sRegisterExternalContext;
 static jmethodID sPauseCompositor;
 static jmethodID sResumeCompositor;
@@ -81,6 +84,7 @@ VRBrowser::InitializeJava(JNIEnv* aEnv, jobject aActivity) {
   sHandleGesture = FindJNIMethodID(sEnv, browserClass, kHandleGestureName, kHandleGestureSignature);
   sHandleResize = FindJNIMethodID(sEnv, browserClass, kHandleResizeName, kHandleResizeSignature);
   sHandleBack = FindJNIMethodID(sEnv, browserClass, kHandleBackEventName, kHandleBackEventSignature);
+  sHandleFrameTime = FindJNIMethodID(sEnv, browserClass, kHandleFrameTimeName, kHandleFrameTimeSignature);
   sRegisterExternalContext = FindJNIMethodID(sEnv, browserClass, kRegisterExternalContextName, kRegisterExternalContextSignature);
   sPauseCompositor = FindJNIMethodID(sEnv, browserClass, kPauseCompositorName, kPauseCompositorSignature);
   sResumeCompositor = FindJNIMethodID(sEnv, browserClass, kResumeCompositorName, kResumeCompositorSignature);
@@ -107,6 +111,7 @@ VRBrowser::ShutdownJava() {
   sHandleGesture = nullptr;
   sHandleResize = nullptr;
   sHandleBack = nullptr;
+  sHandleFrameTime = nullptr;
   sRegisterExternalContext = nullptr;
   sPauseCompositor = nullptr;
   sResumeCompositor = nullptr;
@@ -162,6 +167,13 @@ VRBrowser::HandleBack() {
   CheckJNIException(sEnv, __FUNCTION__);
 }
 
+void
+VRBrowser::HandleFrameTime(jfloat aAverage, jfloat aMax) {
+  if (!ValidateMethodID(sEnv, sActivity, sHandleFrameTime, __FUNCTION__)) { return; }
+  sEnv->CallVoidMethod(sActivity, sHandleFrameTime, aAverage, aMax);
+  CheckJNIException(sEnv, __FUNCTION__);
+}
+
 void
 VRBrowser::RegisterExternalContext(jlong aContext) {
   if (!ValidateMethodID(sEnv, sActivity, sRegisterExternalContext, __FUNCTION__)) { return; }
@@ -24,6 +24,7 @@ void HandleAudioPose(jfloat qx, jfloat qy, jfloat qz, jfloat qw, jfloat px, jflo
 void HandleGesture(jint aType);
 void HandleResize(jint aWidgetHandle, jfloat aWorldWidth, jfloat aWorldHeight);
 void HandleBack();
+void HandleFrameTime(jfloat aAverage, jfloat aMax);
 void RegisterExternalContext(jlong aContext);
 void PauseCompositor();
 void ResumeCompositor();
@@ -93,14 +93,20 @@ struct Widget::State {
     return geometry;
   }
 
-  void Initialize(const int aHandle, const vrb::Vector& aWindowMin, const vrb::Vector& aWindowMax, const int32_t aTextureWidth, const int32_t aTextureHeight) {
+  void Initialize(const int aHandle, const vrb::Vector& aWindowMin, const vrb::Vector& aWindowMax, const int32_t aTextureWidth, const int32_t aTextureHeight,
+                  const vrb::TextureSurfacePtr& aSurface = nullptr, const std::string& aSurfaceName = "") {
     handle = aHandle;
-    name = "crow::Widget-" + std::to_string(handle);
     vrb::RenderContextPtr render = context.lock();
     if (!render) {
       return;
     }
-    surface = vrb::TextureSurface::Create(render, name);
+    if (aSurface) {
+      name = aSurfaceName;
+      surface = aSurface;
+    } else {
+      name = "crow::Widget-" + std::to_string(handle);
+      surface = vrb::TextureSurface::Create(render, name);
+    }
     vrb::CreationContextPtr create = render->GetRenderThreadCreationContext();
     quad = Quad::Create(create, aWindowMin, aWindowMax);
     quad->SetTexture(surface, aTextureWidth, aTextureHeight);
@@ -164,6 +170,18 @@ Widget::Create(vrb::RenderContextPtr& aContext, const int aHandle, const int32_t
   return result;
 }
 
+WidgetPtr
+Widget::Create(vrb::RenderContextPtr& aContext, const int aHandle, const int32_t aWidth, const int32_t aHeight, float aWorldWidth,
+               const vrb::TextureSurfacePtr& aSurface, const std::string& aSurfaceName) {
+  WidgetPtr result = std::make_shared<vrb::ConcreteClass<Widget, Widget::State> >(aContext);
+  const float aspect = (float)aWidth / (float)aHeight;
+  const float worldHeight = aWorldWidth / aspect;
+  vrb::Vector windowMin(-aWorldWidth * 0.5f, -worldHeight * 0.5f, 0.0f);
+  vrb::Vector windowMax(aWorldWidth *0.5f, worldHeight * 0.5f, 0.0f);
+  result->m.Initialize(aHandle, windowMin, windowMax, aWidth, aHeight, aSurface, aSurfaceName);
+  return result;
+}
+
 uint32_t
 Widget::GetHandle() const {
   return m.handle;
@@ -194,6 +212,11 @@ Widget::SetSurfaceTextureSize(int32_t aWidth, int32_t aHeight) {
   m.quad->SetTextureSize(aWidth, aHeight);
 }
 
+void
+Widget::SetTextureRegion(const vrb::Vector& aMin, const vrb::Vector& aMax) {
+  m.quad->SetTextureRegion(aMin, aMax);
+}
+
 void
 Widget::GetWidgetMinAndMax(vrb::Vector& aMin, vrb::Vector& aMax) const {
   m.quad->GetWorldMinAndMax(aMin, aMax);
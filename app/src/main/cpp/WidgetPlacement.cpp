@@ -52,6 +52,10 @@ WidgetPlacement::FromJava(JNIEnv* aEnv, jobject& aObject) {
   GET_BOOLEAN_FIELD(opaque);
   GET_BOOLEAN_FIELD(showPointer);
   GET_BOOLEAN_FIELD(firstDraw);
+  GET_INT_FIELD(atlasX);
+  GET_INT_FIELD(atlasY);
+  GET_INT_FIELD(atlasWidth);
+  GET_INT_FIELD(atlasHeight);
 
   return result;
 }
@@ -30,6 +30,10 @@ struct WidgetPlacement {
   bool opaque;
   bool showPointer;
   bool firstDraw;
+  int32_t atlasX;
+  int32_t atlasY;
+  int32_t atlasWidth;
+  int32_t atlasHeight;
 
   static WidgetPlacementPtr FromJava(JNIEnv* aEnv, jobject& aObject);
 private:
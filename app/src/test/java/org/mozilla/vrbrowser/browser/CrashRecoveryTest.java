@@ -0,0 +1,46 @@
+package org.mozilla.vrbrowser.browser;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CrashRecoveryTest {
+    @Test
+    public void restoresAndMeasuresRecovery() {
+        CrashRecovery recovery = new CrashRecovery();
+        assertTrue(recovery.onCrash(1, 1000));
+        assertTrue(recovery.isRecovering(1));
+        assertFalse(recovery.isRecovering(2));
+        assertEquals(-1, recovery.onLoaded(2, 1500));
+        assertEquals(750, recovery.onLoaded(1, 1750));
+        assertFalse(recovery.isRecovering(1));
+        assertEquals(1, recovery.getRecoveryLatency().getCount());
+        assertEquals(750, recovery.getRecoveryLatency().getMax());
+    }
+
+    @Test
+    public void repeatedCrashesResetTheSession() {
+        CrashRecovery recovery = new CrashRecovery();
+        assertTrue(recovery.onCrash(1, 0));
+        assertTrue(recovery.onCrash(1, 10000));
+        assertFalse(recovery.onCrash(1, 20000));
+        assertEquals(1, recovery.getResetCount());
+        // The count starts again after a reset
+        assertTrue(recovery.onCrash(1, 30000));
+
+        // Crashes spread over time don't reset
+        assertTrue(recovery.onCrash(2, 0));
+        assertTrue(recovery.onCrash(2, 50000));
+        assertTrue(recovery.onCrash(2, 100000));
+        assertEquals(1, recovery.getResetCount());
+
+        // Recovered later than the crash
+        recovery.onRecoveryStarted(2, 200000);
+        assertEquals(300, recovery.onLoaded(2, 200300));
+
+        recovery.forget(2);
+        assertFalse(recovery.isRecovering(2));
+    }
+}
@@ -0,0 +1,73 @@
+package org.mozilla.vrbrowser.browser;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class TabActivityPolicyTest {
+    private static TabActivityPolicy.Entry entry(int aId, long aLastFocus, boolean aCurrent, boolean aDiscardable) {
+        TabActivityPolicy.Entry entry = new TabActivityPolicy.Entry(aId);
+        entry.lastFocusTime = aLastFocus;
+        entry.current = aCurrent;
+        entry.discardable = aDiscardable;
+        return entry;
+    }
+
+    @Test
+    public void tiersFollowTimeSinceFocus() {
+        TabActivityPolicy policy = new TabActivityPolicy(1000, 10000, 10);
+        List<TabActivityPolicy.Entry> entries = Arrays.asList(
+                entry(1, 0, true, true),
+                entry(2, 19500, false, true),
+                entry(3, 18000, false, true),
+                entry(4, 5000, false, true),
+                entry(5, 0, false, false));
+        policy.update(entries, 20000);
+
+        assertEquals(TabActivityPolicy.TIER_ACTIVE, entries.get(0).tier);
+        assertEquals(TabActivityPolicy.TIER_ACTIVE, entries.get(1).tier);
+        assertEquals(TabActivityPolicy.TIER_FROZEN, entries.get(2).tier);
+        assertEquals(TabActivityPolicy.TIER_DISCARDED, entries.get(3).tier);
+        // Sessions that can't be restored stay frozen
+        assertEquals(TabActivityPolicy.TIER_FROZEN, entries.get(4).tier);
+
+        assertEquals(2, policy.getTierCount(TabActivityPolicy.TIER_ACTIVE));
+        assertEquals(2, policy.getTierCount(TabActivityPolicy.TIER_FROZEN));
+        assertEquals(1, policy.getTierCount(TabActivityPolicy.TIER_DISCARDED));
+    }
+
+    @Test
+    public void memoryBudgetDiscardsLeastRecentlyFocused() {
+        TabActivityPolicy policy = new TabActivityPolicy(1000, 100000, 1);
+        List<TabActivityPolicy.Entry> entries = Arrays.asList(
+                entry(1, 900, false, true),
+                entry(2, 500, false, true),
+                entry(3, 950, false, true),
+                entry(4, 0, true, true));
+        policy.update(entries, 1000);
+
+        assertEquals(TabActivityPolicy.TIER_DISCARDED, entries.get(0).tier);
+        assertEquals(TabActivityPolicy.TIER_DISCARDED, entries.get(1).tier);
+        assertEquals(TabActivityPolicy.TIER_ACTIVE, entries.get(2).tier);
+        assertEquals(TabActivityPolicy.TIER_ACTIVE, entries.get(3).tier);
+
+        policy.setMaxLiveSessions(0);
+        policy.update(entries, 1000);
+        assertEquals(3, policy.getTierCount(TabActivityPolicy.TIER_DISCARDED));
+        assertEquals(TabActivityPolicy.TIER_ACTIVE, entries.get(3).tier);
+
+        // Discarded sessions stay discarded when the budget grows, until they get focus
+        policy.setMaxLiveSessions(10);
+        entries.get(0).current = true;
+        entries.get(3).current = false;
+        entries.get(3).lastFocusTime = 1000;
+        policy.update(entries, 1000);
+        assertEquals(TabActivityPolicy.TIER_ACTIVE, entries.get(0).tier);
+        assertEquals(TabActivityPolicy.TIER_DISCARDED, entries.get(1).tier);
+        assertEquals(TabActivityPolicy.TIER_DISCARDED, entries.get(2).tier);
+        assertEquals(TabActivityPolicy.TIER_ACTIVE, entries.get(3).tier);
+    }
+}
@@ -0,0 +1,201 @@
+package org.mozilla.vrbrowser.input;
+
+import android.os.Bundle;
+import android.os.Handler;
+import android.view.KeyEvent;
+import android.view.inputmethod.CompletionInfo;
+import android.view.inputmethod.CorrectionInfo;
+import android.view.inputmethod.ExtractedText;
+import android.view.inputmethod.ExtractedTextRequest;
+import android.view.inputmethod.InputConnection;
+import android.view.inputmethod.InputContentInfo;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Minimal in memory editor implementing InputConnection. Records the calls it receives and the
+// number of characters it returned, which stands for the text copied across the Gecko IPC boundary.
+public class FakeInputConnection implements InputConnection {
+    public final StringBuilder text = new StringBuilder();
+    public int selectionStart;
+    public int selectionEnd;
+    public final List<String> calls = new ArrayList<>();
+    public long charsRead;
+
+    public FakeInputConnection() {
+    }
+
+    public FakeInputConnection(String aText, int aSelectionStart, int aSelectionEnd) {
+        text.append(aText);
+        selectionStart = aSelectionStart;
+        selectionEnd = aSelectionEnd;
+    }
+
+    public int count(String aCallPrefix) {
+        int count = 0;
+        for (String call: calls) {
+            if (call.startsWith(aCallPrefix)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private CharSequence read(CharSequence aText) {
+        charsRead += aText.length();
+        return aText;
+    }
+
+    @Override
+    public CharSequence getTextBeforeCursor(int n, int flags) {
+        calls.add("before:" + n);
+        return read(text.substring(Math.max(0, selectionStart - n), selectionStart));
+    }
+
+    @Override
+    public CharSequence getTextAfterCursor(int n, int flags) {
+        calls.add("after:" + n);
+        return read(text.substring(selectionEnd, Math.min(text.length(), selectionEnd + n)));
+    }
+
+    @Override
+    public CharSequence getSelectedText(int flags) {
+        calls.add("selected");
+        return selectionStart == selectionEnd ? null : read(text.substring(selectionStart, selectionEnd));
+    }
+
+    @Override
+    public int getCursorCapsMode(int reqModes) {
+        return 0;
+    }
+
+    @Override
+    public ExtractedText getExtractedText(ExtractedTextRequest request, int flags) {
+        calls.add("extract");
+        ExtractedText result = new ExtractedText();
+        result.text = read(text.toString());
+        return result;
+    }
+
+    @Override
+    public boolean deleteSurroundingText(int beforeLength, int afterLength) {
+        calls.add("delete:" + beforeLength + "," + afterLength);
+        int end = Math.min(text.length(), selectionEnd + afterLength);
+        text.delete(selectionEnd, end);
+        int start = Math.max(0, selectionStart - beforeLength);
+        text.delete(start, selectionStart);
+        selectionEnd -= selectionStart - start;
+        selectionStart = start;
+        return true;
+    }
+
+    @Override
+    public boolean deleteSurroundingTextInCodePoints(int beforeLength, int afterLength) {
+        int before = selectionStart - text.offsetByCodePoints(selectionStart, -Math.min(beforeLength, text.codePointCount(0, selectionStart)));
+        int after = text.offsetByCodePoints(selectionEnd, Math.min(afterLength, text.codePointCount(selectionEnd, text.length()))) - selectionEnd;
+        return deleteSurroundingText(before, after);
+    }
+
+    @Override
+    public boolean setComposingText(CharSequence text, int newCursorPosition) {
+        return false;
+    }
+
+    @Override
+    public boolean setComposingRegion(int start, int end) {
+        calls.add("region:" + start + "," + end);
+        return true;
+    }
+
+    @Override
+    public boolean finishComposingText() {
+        return true;
+    }
+
+    @Override
+    public boolean commitText(CharSequence aText, int newCursorPosition) {
+        calls.add("commit:" + aText);
+        text.replace(selectionStart, selectionEnd, aText.toString());
+        selectionStart += aText.length();
+        selectionEnd = selectionStart;
+        return true;
+    }
+
+    @Override
+    public boolean commitCompletion(CompletionInfo text) {
+        return false;
+    }
+
+    @Override
+    public boolean commitCorrection(CorrectionInfo correctionInfo) {
+        return false;
+    }
+
+    @Override
+    public boolean setSelection(int start, int end) {
+        calls.add("selection:" + start + "," + end);
+        selectionStart = Math.max(0, Math.min(start, text.length()));
+        selectionEnd = Math.max(selectionStart, Math.min(end, text.length()));
+        return true;
+    }
+
+    @Override
+    public boolean performEditorAction(int editorAction) {
+        calls.add("action:" + editorAction);
+        return true;
+    }
+
+    @Override
+    public boolean performContextMenuAction(int id) {
+        return false;
+    }
+
+    @Override
+    public boolean beginBatchEdit() {
+        return false;
+    }
+
+    @Override
+    public boolean endBatchEdit() {
+        return false;
+    }
+
+    @Override
+    public boolean sendKeyEvent(KeyEvent event) {
+        return false;
+    }
+
+    @Override
+    public boolean clearMetaKeyStates(int states) {
+        return false;
+    }
+
+    @Override
+    public boolean reportFullscreenMode(boolean enabled) {
+        return false;
+    }
+
+    @Override
+    public boolean performPrivateCommand(String action, Bundle data) {
+        return false;
+    }
+
+    @Override
+    public boolean requestCursorUpdates(int cursorUpdateMode) {
+        return false;
+    }
+
+    @Override
+    public Handler getHandler() {
+        return null;
+    }
+
+    @Override
+    public void closeConnection() {
+    }
+
+    @Override
+    public boolean commitContent(InputContentInfo inputContentInfo, int flags, Bundle opts) {
+        return false;
+    }
+}
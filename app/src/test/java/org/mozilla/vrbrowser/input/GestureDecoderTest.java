@@ -0,0 +1,149 @@
+package org.mozilla.vrbrowser.input;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class GestureDecoderTest {
+    private static final String[] ROWS = { "qwertyuiop", "asdfghjkl", "zxcvbnm" };
+    private static final float KEY_WIDTH = 40;
+    private static final String[] WORDS = {
+            "the", "they", "then", "there", "this", "that", "what", "was", "were", "with",
+            "hello", "help", "world", "word", "work", "would", "could", "good", "google", "mozilla",
+            "firefox", "browser", "keyboard", "quick", "brown", "fox", "jumps", "over", "lazy", "dog",
+            "type", "typing", "gesture", "reality", "virtual", "search", "page", "tab", "video", "news"
+    };
+
+    private GestureDecoder mDecoder;
+    private char[] mKeys;
+    private float[] mKeyX;
+    private float[] mKeyY;
+
+    @Before
+    public void setUp() {
+        int count = 0;
+        for (String row: ROWS) {
+            count += row.length();
+        }
+        mKeys = new char[count];
+        mKeyX = new float[count];
+        mKeyY = new float[count];
+        int index = 0;
+        for (int row = 0; row < ROWS.length; row++) {
+            for (int i = 0; i < ROWS[row].length(); i++) {
+                mKeys[index] = ROWS[row].charAt(i);
+                mKeyX[index] = row * KEY_WIDTH / 2 + i * KEY_WIDTH + KEY_WIDTH / 2;
+                mKeyY[index] = row * KEY_WIDTH + KEY_WIDTH / 2;
+                index++;
+            }
+        }
+        mDecoder = new GestureDecoder(mKeys, mKeyX, mKeyY, KEY_WIDTH);
+        int[] frequencies = new int[WORDS.length];
+        Arrays.fill(frequencies, 100);
+        mDecoder.setWords(Arrays.asList(WORDS), frequencies);
+    }
+
+    // Generates a traced path: key centers joined by points with random noise added.
+    private int tracePath(String aWord, Random aRandom, float aNoise, float[] aX, float[] aY) {
+        int count = 0;
+        float lastX = 0, lastY = 0;
+        for (int i = 0; i < aWord.length(); i++) {
+            int key = new String(mKeys).indexOf(aWord.charAt(i));
+            float x = mKeyX[key] + (aRandom.nextFloat() - 0.5f) * aNoise;
+            float y = mKeyY[key] + (aRandom.nextFloat() - 0.5f) * aNoise;
+            int steps = i == 0 ? 1 : 6;
+            for (int s = 1; s <= steps; s++) {
+                float t = (float)s / steps;
+                aX[count] = i == 0 ? x : lastX + (x - lastX) * t;
+                aY[count] = i == 0 ? y : lastY + (y - lastY) * t;
+                count++;
+            }
+            lastX = x;
+            lastY = y;
+        }
+        return count;
+    }
+
+    @Test
+    public void decodesCleanPaths() {
+        float[] x = new float[256];
+        float[] y = new float[256];
+        Random random = new Random(1);
+        for (String word: new String[] { "hello", "world", "keyboard", "quick", "mozilla" }) {
+            int count = tracePath(word, random, 0, x, y);
+            List<GestureDecoder.Candidate> candidates = mDecoder.decode(x, y, count, 3);
+            assertFalse(candidates.isEmpty());
+            assertEquals(word, candidates.get(0).word);
+        }
+    }
+
+    @Test
+    public void candidatesAreRankedAndBounded() {
+        float[] x = new float[256];
+        float[] y = new float[256];
+        int count = tracePath("they", new Random(2), 0, x, y);
+        List<GestureDecoder.Candidate> candidates = mDecoder.decode(x, y, count, 3);
+        assertTrue(candidates.size() <= 3);
+        for (int i = 1; i < candidates.size(); i++) {
+            assertTrue(candidates.get(i - 1).score <= candidates.get(i).score);
+        }
+    }
+
+    @Test
+    public void ignoresUnknownCharactersAndShortPaths() {
+        GestureDecoder decoder = new GestureDecoder(mKeys, mKeyX, mKeyY, KEY_WIDTH);
+        decoder.setWords(Arrays.asList("ok", "a", "n0pe"), new int[] { 1, 1, 1 });
+        assertEquals(1, decoder.getWordCount());
+        assertTrue(decoder.decode(new float[] { 0 }, new float[] { 0 }, 1, 3).isEmpty());
+    }
+
+    // Noisy paths are decoded against a 5k word dictionary with the word in the top 3.
+    @Test
+    public void decodesNoisyPathsInLargeDictionary() {
+        Random random = new Random(3);
+        List<String> words = new ArrayList<>(Arrays.asList(WORDS));
+        while (words.size() < 5000) {
+            StringBuilder word = new StringBuilder();
+            int length = 3 + random.nextInt(6);
+            for (int i = 0; i < length; i++) {
+                word.append(mKeys[random.nextInt(mKeys.length)]);
+            }
+            words.add(word.toString());
+        }
+        int[] frequencies = new int[words.size()];
+        for (int i = 0; i < frequencies.length; i++) {
+            frequencies[i] = i < WORDS.length ? 200 : 1 + random.nextInt(100);
+        }
+        GestureDecoder decoder = new GestureDecoder(mKeys, mKeyX, mKeyY, KEY_WIDTH);
+        decoder.setWords(words, frequencies);
+
+        final int paths = 500;
+        float[][] xs = new float[paths][256];
+        float[][] ys = new float[paths][256];
+        int[] counts = new int[paths];
+        String[] expected = new String[paths];
+        for (int i = 0; i < paths; i++) {
+            expected[i] = WORDS[random.nextInt(WORDS.length)];
+            counts[i] = tracePath(expected[i], random, KEY_WIDTH * 0.6f, xs[i], ys[i]);
+        }
+
+        int correct = 0;
+        for (int i = 0; i < paths; i++) {
+            List<GestureDecoder.Candidate> candidates = decoder.decode(xs[i], ys[i], counts[i], 3);
+            for (GestureDecoder.Candidate candidate: candidates) {
+                if (candidate.word.equals(expected[i])) {
+                    correct++;
+                    break;
+                }
+            }
+        }
+        float accuracy = (float)correct / paths;
+        assertTrue("Top 3 accuracy " + accuracy, accuracy > 0.8f);
+    }
+}
@@ -0,0 +1,207 @@
+package org.mozilla.vrbrowser.input;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class InputCommandBatcherTest {
+    private FakeInputConnection mConnection;
+    private List<Runnable> mScheduled;
+    private InputCommandBatcher mBatcher;
+
+    @Before
+    public void setUp() {
+        mConnection = new FakeInputConnection();
+        mScheduled = new ArrayList<>();
+        mBatcher = new InputCommandBatcher(mConnection, mScheduled::add);
+    }
+
+    private void runScheduled() {
+        List<Runnable> scheduled = new ArrayList<>(mScheduled);
+        mScheduled.clear();
+        for (Runnable runnable: scheduled) {
+            runnable.run();
+        }
+    }
+
+    @Test
+    public void consecutiveTextIsCommittedOnce() {
+        mBatcher.commitText('h');
+        mBatcher.commitText('e');
+        mBatcher.commitText("llo");
+        assertEquals(1, mScheduled.size());
+        assertTrue(mConnection.calls.isEmpty());
+
+        runScheduled();
+        assertEquals(Arrays.asList("commit:hello"), mConnection.calls);
+        assertEquals("hello", mConnection.text.toString());
+        assertEquals(3, mBatcher.getKeystrokeCount());
+        assertEquals(1.0f / 3.0f, mBatcher.getCommitsPerKeystroke(), 0.001f);
+    }
+
+    @Test
+    public void backspacesAreMerged() {
+        mConnection.text.append("abcdef");
+        mConnection.selectionStart = mConnection.selectionEnd = 6;
+        mBatcher.backspace();
+        mBatcher.backspace();
+        mBatcher.backspace();
+        runScheduled();
+
+        assertEquals(Arrays.asList("selected", "delete:3,0"), mConnection.calls);
+        assertEquals("abc", mConnection.text.toString());
+    }
+
+    @Test
+    public void backspaceDeletesSelectionFirst() {
+        mConnection.text.append("abcdef");
+        mConnection.selectionStart = 2;
+        mConnection.selectionEnd = 4;
+        mBatcher.backspace();
+        mBatcher.backspace();
+        runScheduled();
+
+        // Same result as two separate backspaces: the selection and then the 'b'.
+        assertEquals("aef", mConnection.text.toString());
+        assertEquals(2, mBatcher.getCommitCount());
+    }
+
+    @Test
+    public void backspaceTrimsPendingText() {
+        mConnection.text.append("x");
+        mConnection.selectionStart = mConnection.selectionEnd = 1;
+        mBatcher.commitText("ab");
+        mBatcher.backspace();
+        mBatcher.backspace();
+        mBatcher.backspace();
+        mBatcher.commitText('c');
+        runScheduled();
+
+        assertEquals(Arrays.asList("commit:", "selected", "delete:1,0", "commit:c"), mConnection.calls);
+        assertEquals("c", mConnection.text.toString());
+    }
+
+    @Test
+    public void backspaceTrimsSurrogatePairFromPendingText() {
+        mBatcher.commitText("a😀");
+        mBatcher.backspace();
+        runScheduled();
+
+        assertEquals(Arrays.asList("commit:a"), mConnection.calls);
+        assertEquals("a", mConnection.text.toString());
+    }
+
+    @Test
+    public void backspaceDeletesCommittedSurrogatePair() {
+        mConnection.text.append("a😀");
+        mConnection.selectionStart = mConnection.selectionEnd = 3;
+        mBatcher.backspace();
+        runScheduled();
+
+        assertEquals("a", mConnection.text.toString());
+    }
+
+    @Test
+    public void selectionUpdatesKeepTheirOrder() {
+        mBatcher.commitText('a');
+        mBatcher.updateSelection(1, 1, -1, -1);
+        mBatcher.updateSelection(0, 1, 0, 1);
+        mBatcher.commitText('b');
+        mBatcher.post(connection -> connection.performEditorAction(2));
+        runScheduled();
+
+        assertEquals(Arrays.asList("commit:a", "region:0,1", "selection:0,1", "commit:b", "action:2"),
+                mConnection.calls);
+        assertEquals("b", mConnection.text.toString());
+    }
+
+    @Test
+    public void commandsQueuedWhileFlushingAreScheduledAgain() {
+        mBatcher.commitText('a');
+        runScheduled();
+        mBatcher.commitText('b');
+        assertEquals(1, mScheduled.size());
+        runScheduled();
+
+        assertEquals(Arrays.asList("commit:a", "commit:b"), mConnection.calls);
+        assertEquals(2, mBatcher.getCommitCount());
+    }
+
+    private String readTextBeforeCursor(int aLength) {
+        StringBuilder result = new StringBuilder();
+        mBatcher.postTracked(connection -> result.append(mBatcher.getTextBeforeCursor(aLength)));
+        runScheduled();
+        return result.toString();
+    }
+
+    @Test
+    public void textBeforeCursorIsReadOnce() {
+        mConnection.text.append("say ");
+        mConnection.selectionStart = mConnection.selectionEnd = 4;
+        mBatcher.commitText("hel");
+        assertEquals("say hel", readTextBeforeCursor(64));
+
+        mBatcher.commitText("lo");
+        mBatcher.backspace();
+        mBatcher.backspace();
+        mBatcher.backspace();
+        mBatcher.commitText("p");
+        assertEquals("say hep", readTextBeforeCursor(64));
+        mBatcher.postTracked(connection -> mBatcher.replaceTextBeforeCursor(3, "help "));
+        assertEquals("say help ", readTextBeforeCursor(64));
+        assertEquals("say help ", mConnection.text.toString());
+        assertEquals(1, mConnection.count("before:"));
+    }
+
+    @Test
+    public void textBeforeCursorIsReadAgainAfterCursorMoves() {
+        mConnection.text.append("one two");
+        mConnection.selectionStart = mConnection.selectionEnd = 7;
+        mBatcher.updateSelection(7, 7, -1, -1);
+        assertEquals("one two", readTextBeforeCursor(64));
+
+        // Selection updates echoing our own edits keep the text
+        mBatcher.commitText("s");
+        mBatcher.updateSelection(8, 8, -1, -1);
+        assertEquals("one twos", readTextBeforeCursor(64));
+        assertEquals(1, mConnection.count("before:"));
+
+        mBatcher.updateSelection(3, 3, -1, -1);
+        assertEquals("one", readTextBeforeCursor(64));
+        assertEquals(2, mConnection.count("before:"));
+    }
+
+    @Test
+    public void textBeforeCursorIsReadAgainAfterCommands() {
+        mConnection.text.append("one two");
+        mConnection.selectionStart = mConnection.selectionEnd = 7;
+        assertEquals("one two", readTextBeforeCursor(64));
+
+        mBatcher.post(connection -> connection.deleteSurroundingText(4, 0));
+        assertEquals("one", readTextBeforeCursor(64));
+        assertEquals(2, mConnection.count("before:"));
+    }
+
+    @Test
+    public void typingBurstResultMatchesUnbatchedInput() {
+        String typed = "the quick brown fox";
+        FakeInputConnection reference = new FakeInputConnection();
+        for (int i = 0; i < typed.length(); i++) {
+            mBatcher.commitText(typed.charAt(i));
+            reference.commitText(String.valueOf(typed.charAt(i)), 1);
+            if (i % 5 == 4) {
+                mBatcher.backspace();
+                reference.deleteSurroundingText(1, 0);
+            }
+        }
+        runScheduled();
+
+        assertEquals(reference.text.toString(), mConnection.text.toString());
+        assertTrue(mBatcher.getCommitsPerKeystroke() < 0.1f);
+    }
+}
@@ -0,0 +1,100 @@
+package org.mozilla.vrbrowser.input;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class KeyGridIndexTest {
+    private static final int KEY_WIDTH = 80;
+    private static final int KEY_HEIGHT = 60;
+    private static final int GAP = 4;
+    private static final int[] ROW_KEYS = { 10, 10, 9, 7, 5 };
+
+    private int[] mX;
+    private int[] mY;
+    private int[] mWidth;
+    private int[] mHeight;
+    private int[] mEdgeFlags;
+    private int mTotalWidth;
+    private int mTotalHeight;
+    private KeyGridIndex mIndex;
+
+    // Builds a QWERTY like layout: staggered rows with gaps and a wide space bar.
+    @Before
+    public void setUp() {
+        int count = 0;
+        for (int keys: ROW_KEYS) {
+            count += keys;
+        }
+        mX = new int[count];
+        mY = new int[count];
+        mWidth = new int[count];
+        mHeight = new int[count];
+        mEdgeFlags = new int[count];
+
+        int index = 0;
+        for (int row = 0; row < ROW_KEYS.length; row++) {
+            int x = (row % 2) * KEY_WIDTH / 2;
+            for (int k = 0; k < ROW_KEYS[row]; k++) {
+                mX[index] = x;
+                mY[index] = row * (KEY_HEIGHT + GAP);
+                mWidth[index] = row == ROW_KEYS.length - 1 && k == 2 ? KEY_WIDTH * 4 : KEY_WIDTH;
+                mHeight[index] = KEY_HEIGHT;
+                if (k == 0) mEdgeFlags[index] |= KeyGridIndex.EDGE_LEFT;
+                if (k == ROW_KEYS[row] - 1) mEdgeFlags[index] |= KeyGridIndex.EDGE_RIGHT;
+                if (row == 0) mEdgeFlags[index] |= KeyGridIndex.EDGE_TOP;
+                if (row == ROW_KEYS.length - 1) mEdgeFlags[index] |= KeyGridIndex.EDGE_BOTTOM;
+                x += mWidth[index] + GAP;
+                mTotalWidth = Math.max(mTotalWidth, x);
+                index++;
+            }
+        }
+        mTotalHeight = ROW_KEYS.length * (KEY_HEIGHT + GAP);
+        mIndex = new KeyGridIndex(mX, mY, mWidth, mHeight, mEdgeFlags, mTotalWidth, mTotalHeight);
+    }
+
+    // Linear scan equivalent to CustomKeyboard.getNearestKeys()
+    private int scanKey(int x, int y) {
+        for (int i = 0; i < mX.length; i++) {
+            if (mIndex.isInside(i, x, y)) {
+                return i;
+            }
+        }
+        return KeyGridIndex.NOT_A_KEY;
+    }
+
+    @Test
+    public void findKeyMatchesLinearScan() {
+        for (int y = -50; y < mTotalHeight + 50; y += 3) {
+            for (int x = -50; x < mTotalWidth + 50; x += 3) {
+                assertEquals("Mismatch at " + x + "," + y, scanKey(x, y), mIndex.findKey(x, y));
+            }
+        }
+    }
+
+    @Test
+    public void gapsAreNotKeys() {
+        assertEquals(KeyGridIndex.NOT_A_KEY, mIndex.findKey(KEY_WIDTH + 1, 10));
+        assertEquals(0, mIndex.findKey(10, 10));
+    }
+
+    @Test
+    public void nearbyKeysMatchLinearScan() {
+        int threshold = KEY_WIDTH * KEY_WIDTH;
+        int[] result = new int[mX.length];
+        for (int y = 0; y < mTotalHeight; y += 7) {
+            for (int x = 0; x < mTotalWidth; x += 7) {
+                int count = mIndex.findNearbyKeys(x, y, threshold, result);
+                int expected = 0;
+                for (int i = 0; i < mX.length; i++) {
+                    if (mIndex.isInside(i, x, y) || mIndex.squaredDistanceFrom(i, x, y) < threshold) {
+                        assertTrue(expected < count);
+                        assertEquals(i, result[expected++]);
+                    }
+                }
+                assertEquals(expected, count);
+            }
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package org.mozilla.vrbrowser.input;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class PredictionEngineTest {
+    private static final String DICTIONARY =
+            "# word frequency\n" +
+            "the 255\n" +
+            "there 120\n" +
+            "their 110\n" +
+            "they 150\n" +
+            "then 100\n" +
+            "this 200\n" +
+            "of 240\n" +
+            "world 90\n" +
+            "work 95\n" +
+            "hello 60\n" +
+            "# bigrams\n" +
+            "hello world 200\n" +
+            "of the 255\n" +
+            "of this 10\n";
+
+    private DictionaryTrie mDictionary;
+    private PredictionEngine mEngine;
+
+    @Before
+    public void setUp() throws IOException {
+        ByteBuffer buffer = new DictionaryTrie.Builder().parse(new StringReader(DICTIONARY)).build();
+        mDictionary = new DictionaryTrie(buffer);
+        mEngine = new PredictionEngine(mDictionary);
+    }
+
+    @Test
+    public void trieLookups() {
+        assertEquals(255, mDictionary.getFrequency("the"));
+        assertEquals(0, mDictionary.getFrequency("th"));
+        assertEquals(0, mDictionary.getFrequency("xyz"));
+        int node = mDictionary.findNode("world");
+        StringBuilder word = new StringBuilder();
+        mDictionary.getWord(node, word);
+        assertEquals("world", word.toString());
+        assertEquals(200, mDictionary.getBigramFrequency(mDictionary.findNode("hello"), node));
+        assertEquals(0, mDictionary.getBigramFrequency(mDictionary.findNode("the"), node));
+        assertEquals(3, mDictionary.getBigramCount());
+    }
+
+    @Test
+    public void completionsAreSortedByFrequency() {
+        int[] nodes = new int[4];
+        int count = mDictionary.complete("th", nodes);
+        assertEquals(4, count);
+        String[] words = new String[count];
+        for (int i = 0; i < count; i++) {
+            StringBuilder word = new StringBuilder();
+            mDictionary.getWord(nodes[i], word);
+            words[i] = word.toString();
+        }
+        assertEquals(Arrays.asList("the", "this", "they", "there"), Arrays.asList(words));
+    }
+
+    @Test
+    public void rejectsInvalidBuffers() {
+        try {
+            new DictionaryTrie(ByteBuffer.allocate(16));
+            fail("Expected an exception");
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void bigramsBoostCandidates() {
+        assertEquals(Arrays.asList("work", "world"), mEngine.getCandidates(null, "wor", 3));
+        assertEquals(Arrays.asList("world", "work"), mEngine.getCandidates("hello", "wor", 3));
+        assertEquals(Arrays.asList("the", "this"), mEngine.getCandidates("of", "", 3));
+        assertTrue(mEngine.getCandidates(null, "", 3).isEmpty());
+    }
+
+    @Test
+    public void candidatesMatchTheTypedCase() {
+        assertEquals(Arrays.asList("The", "This"), mEngine.getCandidates(null, "Th", 2));
+        assertEquals(Arrays.asList("THE", "THIS"), mEngine.getCandidates(null, "TH", 2));
+    }
+
+    @Test
+    public void parsesTheTextBeforeTheCursor() {
+        PredictionEngine.Context context = PredictionEngine.parseContext("Say hello wor");
+        assertEquals("wor", context.prefix);
+        assertEquals("hello", context.previousWord);
+        assertEquals("Say", context.wordBeforePrevious);
+
+        context = PredictionEngine.parseContext("End. Wor");
+        assertEquals("Wor", context.prefix);
+        assertNull(context.previousWord);
+
+        context = PredictionEngine.parseContext("of ");
+        assertEquals("", context.prefix);
+        assertEquals("of", context.previousWord);
+        assertEquals(3, PredictionEngine.currentWordLength("hello wor"));
+    }
+
+    @Test
+    public void learnsCommittedWords() throws IOException {
+        assertTrue(mEngine.getCandidates(null, "moz", 3).isEmpty());
+        mEngine.learnFromText("I like mozilla ");
+        mEngine.learnFromText("go mozilla, ");
+        assertEquals(Arrays.asList("mozilla"), mEngine.getCandidates(null, "moz", 3));
+        assertEquals("mozilla", mEngine.getCandidates("like", "", 1).get(0));
+        assertTrue(mEngine.hasLearnedWordsChanged());
+
+        StringWriter writer = new StringWriter();
+        mEngine.writeLearnedWords(writer);
+        PredictionEngine restored = new PredictionEngine(mDictionary);
+        restored.readLearnedWords(new StringReader(writer.toString()));
+        assertEquals(Arrays.asList("mozilla"), restored.getCandidates(null, "moz", 3));
+        assertEquals("mozilla", restored.getCandidates("like", "", 1).get(0));
+    }
+
+    @Test
+    public void worksWithoutDictionary() {
+        PredictionEngine engine = new PredictionEngine(null);
+        engine.learn(null, "firefox");
+        assertEquals(Arrays.asList("firefox"), engine.getCandidates(null, "fir", 3));
+    }
+
+    @Test
+    public void keystrokesSavedPerWord() {
+        mEngine.onCandidateCommitted("wor", "world");
+        mEngine.learn(null, "world");
+        mEngine.learn("world", "hello");
+        assertEquals(1.0f, mEngine.getKeystrokesSavedPerWord(), 0.001f);
+    }
+
+    // Candidates from a dictionary of 20k generated words complete the typed prefix.
+    @Test
+    public void largeDictionaryCandidatesMatchThePrefix() {
+        Random random = new Random(7);
+        DictionaryTrie.Builder builder = new DictionaryTrie.Builder();
+        String[] words = new String[20000];
+        for (int i = 0; i < words.length; i++) {
+            StringBuilder word = new StringBuilder();
+            int length = 2 + random.nextInt(9);
+            for (int j = 0; j < length; j++) {
+                word.append((char)('a' + random.nextInt(26)));
+            }
+            words[i] = word.toString();
+            builder.addWord(words[i], 1 + random.nextInt(255));
+        }
+        for (int i = 0; i < 20000; i++) {
+            builder.addBigram(words[random.nextInt(words.length)], words[random.nextInt(words.length)], 1 + random.nextInt(255));
+        }
+        PredictionEngine engine = new PredictionEngine(new DictionaryTrie(builder.build()));
+
+        for (int i = 0; i < 1000; i++) {
+            String word = words[random.nextInt(words.length)];
+            String previous = words[random.nextInt(words.length)];
+            String prefix = word.substring(0, 1 + random.nextInt(Math.min(word.length(), 4)));
+            List<String> candidates = engine.getCandidates(previous, prefix, 3);
+            assertFalse(candidates.isEmpty());
+            assertTrue(candidates.size() <= 3);
+            for (String candidate: candidates) {
+                assertTrue(candidate + " doesn't complete " + prefix, candidate.startsWith(prefix));
+            }
+        }
+    }
+}
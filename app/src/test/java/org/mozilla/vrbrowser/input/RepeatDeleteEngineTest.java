@@ -0,0 +1,99 @@
+package org.mozilla.vrbrowser.input;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class RepeatDeleteEngineTest {
+    private static FakeInputConnection cursorAtEnd(String aText) {
+        return new FakeInputConnection(aText, aText.length(), aText.length());
+    }
+
+    @Test
+    public void deletesWholeWordsBeforeTheCursor() {
+        FakeInputConnection connection = cursorAtEnd("hello big  world, ");
+        RepeatDeleteEngine engine = new RepeatDeleteEngine();
+
+        assertEquals(7, engine.deleteWords(connection, 1));
+        assertEquals("hello big  ", connection.text.toString());
+        assertEquals(11, engine.deleteWords(connection, 2));
+        assertEquals("", connection.text.toString());
+        assertEquals(0, engine.deleteWords(connection, 1));
+    }
+
+    @Test
+    public void keepsTextAfterTheCursor() {
+        FakeInputConnection connection = new FakeInputConnection("one two three", 7, 7);
+        new RepeatDeleteEngine().deleteWords(connection, 1);
+        assertEquals("one  three", connection.text.toString());
+        assertEquals(4, connection.selectionStart);
+    }
+
+    @Test
+    public void deletesSelectionFirst() {
+        FakeInputConnection connection = new FakeInputConnection("one two three", 4, 13);
+        new RepeatDeleteEngine().deleteWords(connection, 4);
+        assertEquals("one ", connection.text.toString());
+    }
+
+    @Test
+    public void longTokensAreDeletedInBoundedChunks() {
+        StringBuilder token = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            token.append("0123456789");
+        }
+        FakeInputConnection connection = cursorAtEnd(token.toString());
+        RepeatDeleteEngine engine = new RepeatDeleteEngine();
+        int deleted = engine.deleteWords(connection, 1);
+        assertTrue(deleted > 0 && deleted < 100);
+        assertEquals(1000 - deleted, connection.text.length());
+    }
+
+    @Test
+    public void doesNotSplitSurrogatePairs() {
+        assertEquals(3, RepeatDeleteEngine.findDeleteLength("\uDC00abc", 1, true));
+        assertEquals(5, RepeatDeleteEngine.findDeleteLength("\uD83D\uDE00abc", 1, true));
+    }
+
+    @Test
+    public void repeatsAccelerate() {
+        RepeatDeleteEngine engine = new RepeatDeleteEngine();
+        engine.start();
+        assertTrue(engine.isActive());
+        int first = engine.nextRepeat();
+        int last = first;
+        for (int i = 0; i < 100; i++) {
+            int words = engine.nextRepeat();
+            assertTrue(words >= last);
+            last = words;
+        }
+        assertEquals(1, first);
+        assertTrue(last > first);
+        engine.stop();
+        assertFalse(engine.isActive());
+        engine.start();
+        assertEquals(1, engine.nextRepeat());
+    }
+
+    @Test
+    public void clearingLargeFieldReadsAboutTheDeletedText() {
+        StringBuilder field = new StringBuilder();
+        while (field.length() < 200000) {
+            field.append("2018-10-19 12:00:00 INFO some log line\n");
+        }
+        FakeInputConnection connection = cursorAtEnd(field.toString());
+        RepeatDeleteEngine engine = new RepeatDeleteEngine();
+        engine.start();
+        int repeats = 0;
+        while (connection.text.length() > 0) {
+            engine.deleteWords(connection, engine.nextRepeat());
+            repeats++;
+        }
+
+        assertEquals(0, connection.count("extract"));
+        assertEquals(field.length(), engine.getCharsDeleted());
+        // Each repeat reads a bounded window proportional to what it deletes.
+        assertTrue(connection.charsRead < 5 * field.length());
+        assertTrue(repeats < field.length() / 10);
+    }
+}
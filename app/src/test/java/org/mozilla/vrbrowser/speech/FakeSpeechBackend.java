@@ -0,0 +1,52 @@
+package org.mozilla.vrbrowser.speech;
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+// Local SpeechBackend replaying scripted recognition events synchronously.
+public class FakeSpeechBackend implements SpeechBackend {
+    public Listener listener;
+    public int starts;
+    public int cancels;
+    public String language;
+
+    @Override
+    public void setListener(@Nullable Listener aListener) {
+        listener = aListener;
+    }
+
+    @Override
+    public void start(@NonNull Context aContext, @NonNull String aLanguage) {
+        starts++;
+        language = aLanguage;
+        if (listener != null) {
+            listener.onStartListening();
+        }
+    }
+
+    @Override
+    public void cancel() {
+        cancels++;
+        if (listener != null) {
+            listener.onCanceled();
+        }
+    }
+
+    @Override
+    public boolean supportsPartialResults() {
+        return true;
+    }
+
+    public void speak(String... aPartials) {
+        for (String partial: aPartials) {
+            listener.onMicLevel(-60);
+            listener.onPartialResult(partial);
+        }
+    }
+
+    public void finish(String aTranscription) {
+        listener.onDecoding();
+        listener.onFinalResult(aTranscription, 0.9f);
+    }
+}
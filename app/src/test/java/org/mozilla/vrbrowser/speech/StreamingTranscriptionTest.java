@@ -0,0 +1,138 @@
+package org.mozilla.vrbrowser.speech;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class StreamingTranscriptionTest {
+    private FakeSpeechBackend mBackend;
+    private StreamingTranscription mTranscription;
+    private List<String> mResolved;
+    private List<String> mDisplayed;
+    private String mLoaded;
+    private long mTime;
+
+    @Before
+    public void setUp() {
+        mResolved = new ArrayList<>();
+        mDisplayed = new ArrayList<>();
+        mLoaded = null;
+        mTime = 1000;
+        mTranscription = new StreamingTranscription(text -> {
+            mResolved.add(text);
+            return "https://search/?q=" + text.replace(' ', '+');
+        });
+        mBackend = new FakeSpeechBackend();
+        mBackend.setListener(new SpeechBackend.Listener() {
+            @Override
+            public void onStartListening() {
+                mTranscription.start(mTime);
+            }
+
+            @Override
+            public void onMicLevel(double aDb) {
+                mTime += 100;
+            }
+
+            @Override
+            public void onDecoding() {
+                mTime += 50;
+            }
+
+            @Override
+            public void onPartialResult(@NonNull String aTranscription) {
+                if (mTranscription.onPartialResult(aTranscription, mTime)) {
+                    mDisplayed.add(mTranscription.getHypothesis());
+                }
+            }
+
+            @Override
+            public void onFinalResult(@NonNull String aTranscription, float aConfidence) {
+                mLoaded = mTranscription.onFinalResult(aTranscription, mTime);
+            }
+
+            @Override
+            public void onNoVoice() {
+                mTranscription.cancel();
+            }
+
+            @Override
+            public void onCanceled() {
+                mTranscription.cancel();
+            }
+
+            @Override
+            public void onError(@Nullable String aError) {
+                mTranscription.cancel();
+            }
+        });
+    }
+
+    @Test
+    public void partialsAreResolvedSpeculatively() {
+        mBackend.start(null, "en-us");
+        mBackend.speak("weather", "weather  in", "weather in", "weather in paris");
+        assertEquals(Arrays.asList("weather", "weather in", "weather in paris"), mDisplayed);
+        assertEquals("https://search/?q=weather+in+paris", mTranscription.getSpeculativeUrl());
+
+        mBackend.finish(" weather in paris ");
+        assertEquals("https://search/?q=weather+in+paris", mLoaded);
+        // The final result reused the URL resolved for the last partial
+        assertEquals(3, mResolved.size());
+        assertEquals(1.0f, mTranscription.getSpeculativeHitRate(), 0.001f);
+        assertEquals(1, mTranscription.getFirstPartialLatency().getCount());
+        assertEquals(100, mTranscription.getFirstPartialLatency().getMax());
+        assertEquals(450, mTranscription.getFinalLatency().getMax());
+        assertFalse(mTranscription.isActive());
+    }
+
+    @Test
+    public void finalResultDifferentFromPartials() {
+        mBackend.start(null, "en-us");
+        mBackend.speak("whether");
+        mBackend.finish("weather");
+        assertEquals("https://search/?q=weather", mLoaded);
+        assertEquals(Arrays.asList("whether", "weather"), mResolved);
+        assertEquals(0.0f, mTranscription.getSpeculativeHitRate(), 0.001f);
+    }
+
+    @Test
+    public void confirmEarly() {
+        mBackend.start(null, "en-us");
+        assertNull(mTranscription.confirm(mTime));
+        mBackend.speak("mozilla", "mozilla mixed reality");
+        assertEquals("https://search/?q=mozilla+mixed+reality", mTranscription.confirm(mTime));
+        assertFalse(mTranscription.isActive());
+
+        // Results arriving after the confirmation are ignored
+        mBackend.finish("mozilla mixed reality blog");
+        assertNull(mLoaded);
+        assertEquals(2, mResolved.size());
+    }
+
+    @Test
+    public void cancelDiscardsHypothesis() {
+        mBackend.start(null, "en-us");
+        mBackend.speak("hello");
+        mBackend.cancel();
+        assertNull(mTranscription.getSpeculativeUrl());
+        assertFalse(mTranscription.onPartialResult("hello world", mTime));
+
+        mBackend.start(null, "en-us");
+        assertTrue(mTranscription.isActive());
+        mBackend.finish("");
+        assertNull(mLoaded);
+        assertEquals(2, mBackend.starts);
+    }
+}
@@ -0,0 +1,123 @@
+package org.mozilla.vrbrowser.ui.prompts;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ChoiceListTest {
+    private static class Node {
+        final String label;
+        final boolean selected;
+        final boolean disabled;
+        final Node[] items;
+
+        Node(String aLabel, boolean aSelected, boolean aDisabled, Node... aItems) {
+            label = aLabel;
+            selected = aSelected;
+            disabled = aDisabled;
+            items = aItems;
+        }
+    }
+
+    private static final ChoiceList.Accessor<Node> ACCESSOR = new ChoiceList.Accessor<Node>() {
+        @Override
+        public Node[] getItems(Node aItem) {
+            return aItem.items;
+        }
+
+        @Override
+        public String getId(Node aItem) {
+            return aItem.label;
+        }
+
+        @Override
+        public String getLabel(Node aItem) {
+            return aItem.label;
+        }
+
+        @Override
+        public boolean isSelected(Node aItem) {
+            return aItem.selected;
+        }
+
+        @Override
+        public boolean isDisabled(Node aItem) {
+            return aItem.disabled;
+        }
+    };
+
+    private static Node option(String aLabel) {
+        return new Node(aLabel, false, false);
+    }
+
+    private static ChoiceList<Node> createList() {
+        return new ChoiceList<>(new Node[] {
+                option("Andorra"),
+                new Node("Europe", false, false,
+                        option("Belgium"),
+                        new Node("Bulgaria", true, false),
+                        new Node("Denmark", false, true)),
+                option("Brazil"),
+                option("Chile")
+        }, ACCESSOR);
+    }
+
+    @Test
+    public void flattensGroups() {
+        ChoiceList<Node> list = createList();
+        assertEquals(7, list.size());
+        assertEquals("Belgium", list.get(2).label);
+        assertEquals(1, list.getLevel(2));
+        assertEquals(0, list.getLevel(5));
+        assertTrue(list.isGroup(1));
+        assertFalse(list.isEnabled(1));
+        assertFalse(list.isEnabled(4));
+        assertTrue(list.isEnabled(5));
+    }
+
+    @Test
+    public void keepsSelection() {
+        ChoiceList<Node> list = createList();
+        assertEquals(Arrays.asList("Bulgaria"), Arrays.asList(list.getSelectedIds()));
+        list.toggle(5);
+        list.setSelected(0, true);
+        assertEquals(Arrays.asList("Andorra", "Bulgaria", "Brazil"), Arrays.asList(list.getSelectedIds()));
+        list.selectSingle(6);
+        assertEquals(Arrays.asList("Chile"), Arrays.asList(list.getSelectedIds()));
+        assertEquals(Arrays.asList("Bulgaria"), Arrays.asList(list.getDefaultIds()));
+        list.resetSelection();
+        assertTrue(list.isSelected(3));
+        assertFalse(list.isSelected(6));
+    }
+
+    @Test
+    public void findsByPrefix() {
+        ChoiceList<Node> list = createList();
+        assertEquals(2, list.find("b", 0));
+        assertEquals(3, list.find("B", 3));
+        assertEquals(5, list.find("br", 0));
+        // Wraps around
+        assertEquals(2, list.find("b", 6));
+        assertEquals(0, list.find(" AND", 0));
+        // Groups and disabled options aren't found
+        assertEquals(-1, list.find("europe", 0));
+        assertEquals(-1, list.find("den", 0));
+        assertEquals(-1, list.find("x", 0));
+    }
+
+    @Test
+    public void handlesLargeLists() {
+        Node[] nodes = new Node[5000];
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = option("Option " + i);
+        }
+        ChoiceList<Node> list = new ChoiceList<>(nodes, ACCESSOR);
+        assertEquals(5000, list.size());
+        assertEquals(4999, list.find("option 4999", 0));
+        assertEquals(1234, list.find("option 1234", 0));
+    }
+}
@@ -0,0 +1,81 @@
+package org.mozilla.vrbrowser.ui.widgets;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class ContentResolutionControllerTest {
+    private static final float REFRESH_RATE = 72.0f;
+    private static final float ON_TIME = 13.9f;
+    private static final float LATE = 20.0f;
+
+    private static ContentResolutionController create() {
+        ContentResolutionController controller = new ContentResolutionController(0.5f, 1.0f);
+        controller.setRefreshRate(REFRESH_RATE);
+        return controller;
+    }
+
+    private static float report(ContentResolutionController aController, float aFrameTime, int aCount) {
+        float scale = 0.0f;
+        for (int i = 0; i < aCount; i++) {
+            scale = aController.onFrameTime(aFrameTime);
+        }
+        return scale;
+    }
+
+    @Test
+    public void stepsDownWhenLate() {
+        ContentResolutionController controller = create();
+        assertEquals(1.0f, report(controller, ON_TIME, 3), 0.001f);
+        assertEquals(1000.0f / REFRESH_RATE, controller.getRefreshInterval(), 0.001f);
+        // One late report is not enough
+        assertEquals(1.0f, report(controller, LATE, 1), 0.001f);
+        assertEquals(0.9f, report(controller, LATE, 1), 0.001f);
+        // Never below the minimum
+        assertEquals(0.5f, report(controller, LATE, 40), 0.001f);
+        assertEquals(5, controller.getChangeCount());
+    }
+
+    @Test
+    public void stepsUpAfterDelay() {
+        ContentResolutionController controller = create();
+        report(controller, ON_TIME, 1);
+        assertEquals(0.9f, report(controller, LATE, 2), 0.001f);
+        // Back on time, but too soon after the step down
+        assertEquals(0.9f, report(controller, ON_TIME, ContentResolutionController.STEP_UP_DELAY - 1), 0.001f);
+        assertEquals(1.0f, report(controller, ON_TIME, 1), 0.001f);
+        // Never above the maximum
+        assertEquals(1.0f, report(controller, ON_TIME, 20), 0.001f);
+    }
+
+    @Test
+    public void waitsLongerAfterOscillating() {
+        ContentResolutionController controller = create();
+        report(controller, ON_TIME, 1);
+        report(controller, LATE, 2);
+        assertEquals(1.0f, report(controller, ON_TIME, ContentResolutionController.STEP_UP_DELAY), 0.001f);
+        // The step up made the frames late again
+        assertEquals(0.9f, report(controller, LATE, 2), 0.001f);
+        assertEquals(0.9f, report(controller, ON_TIME, ContentResolutionController.STEP_UP_DELAY), 0.001f);
+        assertEquals(1.0f, report(controller, ON_TIME, ContentResolutionController.STEP_UP_DELAY), 0.001f);
+    }
+
+    @Test
+    public void keepsScaleInBetween() {
+        ContentResolutionController controller = create();
+        report(controller, ON_TIME, 1);
+        report(controller, LATE, 2);
+        // Slightly slower than the refresh interval, neither late nor on time
+        assertEquals(0.9f, report(controller, ON_TIME * 1.1f, 30), 0.001f);
+    }
+
+    @Test
+    public void ignoresFastReports() {
+        ContentResolutionController controller = create();
+        // E.g. a report while nothing was drawn doesn't change what is on time
+        report(controller, 7.0f, 1);
+        assertEquals(1.0f, report(controller, ON_TIME, 20), 0.001f);
+        assertEquals(1000.0f / REFRESH_RATE, controller.getRefreshInterval(), 0.001f);
+        assertEquals(0, controller.getChangeCount());
+    }
+}
@@ -0,0 +1,101 @@
+package org.mozilla.vrbrowser.ui.widgets;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class ShelfPackerTest {
+    @Test
+    public void packsOnShelves() {
+        ShelfPacker packer = new ShelfPacker(100, 100, 2);
+        ShelfPacker.Slot a = packer.allocate(40, 20);
+        ShelfPacker.Slot b = packer.allocate(40, 18);
+        assertEquals(0, a.x);
+        assertEquals(0, a.y);
+        // Same shelf, after the padding
+        assertEquals(42, b.x);
+        assertEquals(0, b.y);
+
+        // Doesn't fit in the width left on the first shelf
+        ShelfPacker.Slot c = packer.allocate(40, 20);
+        assertEquals(0, c.x);
+        assertEquals(22, c.y);
+        assertEquals(2, packer.getShelfCount());
+        assertEquals(40 * 20 * 2 + 40 * 18, packer.getUsedArea());
+    }
+
+    @Test
+    public void opensShelfForSmallRectangles() {
+        ShelfPacker packer = new ShelfPacker(100, 100, 0);
+        packer.allocate(10, 50);
+        // Would waste most of the first shelf
+        ShelfPacker.Slot small = packer.allocate(10, 10);
+        assertEquals(50, small.y);
+        // Close enough in height
+        ShelfPacker.Slot other = packer.allocate(10, 40);
+        assertEquals(0, other.y);
+    }
+
+    @Test
+    public void returnsNullWhenFull() {
+        ShelfPacker packer = new ShelfPacker(64, 64, 0);
+        assertNull(packer.allocate(65, 10));
+        assertNull(packer.allocate(0, 10));
+        for (int i = 0; i < 4; i++) {
+            assertNotNull(packer.allocate(64, 16));
+        }
+        assertNull(packer.allocate(1, 1));
+    }
+
+    @Test
+    public void reusesFreedSpace() {
+        ShelfPacker packer = new ShelfPacker(64, 64, 0);
+        ShelfPacker.Slot a = packer.allocate(32, 32);
+        ShelfPacker.Slot b = packer.allocate(32, 32);
+        ShelfPacker.Slot c = packer.allocate(64, 32);
+        assertNull(packer.allocate(8, 8));
+
+        // The last rectangle of a shelf gives its width back
+        packer.free(b);
+        ShelfPacker.Slot d = packer.allocate(32, 20);
+        assertEquals(32, d.x);
+        assertEquals(0, d.y);
+
+        // An empty bottom shelf is removed and opened again with another height
+        packer.free(c);
+        assertEquals(1, packer.getShelfCount());
+        ShelfPacker.Slot e = packer.allocate(10, 30);
+        assertEquals(32, e.y);
+
+        packer.free(a);
+        packer.free(d);
+        packer.free(e);
+        assertEquals(0, packer.getShelfCount());
+        assertEquals(0, packer.getUsedArea());
+    }
+
+    @Test
+    public void reallocatesIntoFreedSpace() {
+        ShelfPacker packer = new ShelfPacker(64, 64, 0);
+        ShelfPacker.Slot a = packer.allocate(32, 32);
+        ShelfPacker.Slot b = packer.allocate(32, 32);
+        packer.allocate(64, 32);
+
+        // Only fits in the space of the old slot
+        ShelfPacker.Slot c = packer.reallocate(b, 32, 30);
+        assertEquals(32, c.x);
+        assertEquals(30, c.height);
+
+        // Doesn't fit, keeps the old size with its other aspect ratio
+        ShelfPacker.Slot d = packer.reallocate(c, 20, 40);
+        assertEquals(32, d.width);
+        assertEquals(30, d.height);
+
+        // Not the last on its shelf, the old slot is kept
+        assertSame(a, packer.reallocate(a, 20, 40));
+        assertEquals(32 * 32 + 32 * 30 + 64 * 32, packer.getUsedArea());
+    }
+}
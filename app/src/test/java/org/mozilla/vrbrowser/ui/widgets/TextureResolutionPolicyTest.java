@@ -0,0 +1,78 @@
+package org.mozilla.vrbrowser.ui.widgets;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TextureResolutionPolicyTest {
+    @Test
+    public void scalesWithAngularSize() {
+        TextureResolutionPolicy policy = new TextureResolutionPolicy();
+        policy.setPixelsPerDegree(20.0f);
+        // 1m wide at 0.5m covers 90 degrees, more than the 800 pixels can show
+        assertEquals(1.0f, policy.update(1, 1.0f, 0.5f, 800, 400), 0.001f);
+        // 1m wide at 4m covers ~14.25 degrees
+        assertEquals(0.356f, policy.update(2, 1.0f, 4.0f, 800, 400), 0.01f);
+        // Never below the minimum
+        assertEquals(TextureResolutionPolicy.MIN_SCALE, policy.update(3, 1.0f, 40.0f, 800, 400), 0.001f);
+    }
+
+    @Test
+    public void ignoresSmallChanges() {
+        TextureResolutionPolicy policy = new TextureResolutionPolicy();
+        policy.setPixelsPerDegree(10.0f);
+        float scale = policy.update(1, 1.0f, 2.0f, 800, 400);
+        assertEquals(0.354f, scale, 0.01f);
+        // Slightly further away
+        assertEquals(scale, policy.update(1, 1.0f, 2.2f, 800, 400), 0.0f);
+        // Much further away
+        assertTrue(policy.update(1, 1.0f, 3.0f, 800, 400) < scale);
+        // Back to full size when close
+        assertEquals(1.0f, policy.update(1, 1.0f, 0.5f, 800, 400), 0.0f);
+    }
+
+    @Test
+    public void staysInMemoryBudget() {
+        TextureResolutionPolicy policy = new TextureResolutionPolicy();
+        policy.setMemoryBudget(1000 * 1000 * 4);
+        for (int i = 0; i < 4; i++) {
+            policy.update(i, 1.0f, 0.5f, 1000, 1000);
+        }
+        // The budget is shared when the widgets update again
+        for (int i = 0; i < 4; i++) {
+            assertEquals(0.5f, policy.update(i, 1.0f, 0.5f, 1000, 1000), 0.001f);
+        }
+        assertTrue(policy.getMemoryUsage() <= 1000 * 1000 * 4);
+
+        policy.remove(3);
+        policy.remove(2);
+        policy.remove(1);
+        assertEquals(1.0f, policy.update(0, 1.0f, 0.5f, 1000, 1000), 0.001f);
+    }
+
+    @Test
+    public void staysInMemoryBudgetAfterOneRound() {
+        TextureResolutionPolicy policy = new TextureResolutionPolicy();
+        policy.setMemoryBudget(1000 * 1000 * 4);
+        HashMap<Integer, Float> changes = new HashMap<>();
+        policy.setDelegate(changes::put);
+        for (int i = 0; i < 4; i++) {
+            assertEquals(i == 0 ? 1.0f : (float) Math.sqrt(1.0 / (i + 1)), policy.update(i, 1.0f, 0.5f, 1000, 1000), 0.001f);
+        }
+        // The widgets added first were scaled down with each new one
+        assertTrue(policy.getMemoryUsage() <= 1000 * 1000 * 4);
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0.5f, changes.get(i), 0.001f);
+        }
+
+        // Removing widgets gives the budget back to the others
+        changes.clear();
+        policy.remove(3);
+        policy.remove(2);
+        policy.remove(1);
+        assertEquals(1.0f, changes.get(0), 0.001f);
+    }
+}
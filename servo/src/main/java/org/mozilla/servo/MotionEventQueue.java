@@ -0,0 +1,119 @@
+package org.mozilla.servo;
+
+import android.view.MotionEvent;
+
+// Fixed size queue of the input received while the controller is detached.
+// The values needed to replay each event are copied into preallocated arrays, because the
+// MotionEvents are recycled by their sender once dispatched. Consecutive moves of the same
+// gesture and consecutive scrolls are merged, and the oldest events are dropped when full, so
+// memory stays flat however long the controller is detached.
+class MotionEventQueue {
+    static final int SOURCE_MOTION = 0;
+    static final int SOURCE_SCROLL = 1;
+
+    interface Consumer {
+        void onMotion(int aAction, long aDownTime, float aX, float aY, long aTime);
+        void onScroll(float aX, float aY, float aDeltaX, float aDeltaY, long aTime);
+    }
+
+    private final int[] mSources;
+    private final int[] mActions;
+    private final long[] mDownTimes;
+    private final long[] mTimes;
+    private final float[] mX;
+    private final float[] mY;
+    private final float[] mDeltaX;
+    private final float[] mDeltaY;
+    private int mHead;
+    private int mSize;
+    private int mDropped;
+
+    MotionEventQueue(int aCapacity) {
+        mSources = new int[aCapacity];
+        mActions = new int[aCapacity];
+        mDownTimes = new long[aCapacity];
+        mTimes = new long[aCapacity];
+        mX = new float[aCapacity];
+        mY = new float[aCapacity];
+        mDeltaX = new float[aCapacity];
+        mDeltaY = new float[aCapacity];
+    }
+
+    void addMotion(int aAction, long aDownTime, float aX, float aY, long aTime) {
+        int index = lastIndex();
+        boolean move = aAction == MotionEvent.ACTION_MOVE || aAction == MotionEvent.ACTION_HOVER_MOVE;
+        if (!move || index < 0 || mSources[index] != SOURCE_MOTION || mActions[index] != aAction ||
+                mDownTimes[index] != aDownTime) {
+            index = append();
+            mSources[index] = SOURCE_MOTION;
+            mActions[index] = aAction;
+            mDownTimes[index] = aDownTime;
+        }
+        mX[index] = aX;
+        mY[index] = aY;
+        mTimes[index] = aTime;
+    }
+
+    void addScroll(float aX, float aY, float aDeltaX, float aDeltaY, long aTime) {
+        int last = lastIndex();
+        if (last >= 0 && mSources[last] == SOURCE_SCROLL) {
+            mDeltaX[last] += aDeltaX;
+            mDeltaY[last] += aDeltaY;
+        } else {
+            last = append();
+            mSources[last] = SOURCE_SCROLL;
+            mDeltaX[last] = aDeltaX;
+            mDeltaY[last] = aDeltaY;
+        }
+        mX[last] = aX;
+        mY[last] = aY;
+        mTimes[last] = aTime;
+    }
+
+    // Sends the queued events to aConsumer in order and empties the queue.
+    void replay(Consumer aConsumer) {
+        int size = mSize;
+        int head = mHead;
+        clear();
+        for (int i = 0; i < size; i++) {
+            int index = (head + i) % mSources.length;
+            if (mSources[index] == SOURCE_SCROLL) {
+                aConsumer.onScroll(mX[index], mY[index], mDeltaX[index], mDeltaY[index], mTimes[index]);
+            } else {
+                aConsumer.onMotion(mActions[index], mDownTimes[index], mX[index], mY[index], mTimes[index]);
+            }
+        }
+    }
+
+    void clear() {
+        mHead = 0;
+        mSize = 0;
+    }
+
+    int size() {
+        return mSize;
+    }
+
+    int capacity() {
+        return mSources.length;
+    }
+
+    // Number of events dropped because the queue was full.
+    int getDroppedCount() {
+        return mDropped;
+    }
+
+    private int lastIndex() {
+        return mSize > 0 ? (mHead + mSize - 1) % mSources.length : -1;
+    }
+
+    private int append() {
+        if (mSize == mSources.length) {
+            mHead = (mHead + 1) % mSources.length;
+            mSize--;
+            mDropped++;
+        }
+        mSize++;
+        return (mHead + mSize - 1) % mSources.length;
+    }
+}
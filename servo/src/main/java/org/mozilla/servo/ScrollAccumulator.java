@@ -0,0 +1,88 @@
+package org.mozilla.servo;
+
+// Sums the scroll deltas of a gesture so they can be sent once per frame, keeping the fractional
+// part for the next frame instead of truncating it. Also tracks the recent velocity, so the
+// gesture can continue with a fling when the input stops.
+class ScrollAccumulator {
+    // Weight of the newest sample in the smoothed velocity
+    private static final float VELOCITY_SMOOTHING = 0.5f;
+    // Samples further apart than this don't describe a continuous movement
+    private static final long MAX_SAMPLE_INTERVAL = 100;
+    // Velocity decay per millisecond during a fling
+    private static final float FLING_FRICTION = 0.004f;
+    // Flings slower than this, in pixels per millisecond, stop
+    private static final float MIN_FLING_VELOCITY = 0.05f;
+
+    private float mPendingX;
+    private float mPendingY;
+    private float mVelocityX;
+    private float mVelocityY;
+    private long mLastSampleTime = -1;
+    private int mDeltaX;
+    private int mDeltaY;
+
+    void reset() {
+        mPendingX = 0;
+        mPendingY = 0;
+        mVelocityX = 0;
+        mVelocityY = 0;
+        mLastSampleTime = -1;
+        mDeltaX = 0;
+        mDeltaY = 0;
+    }
+
+    // Adds a scroll sample. aTime is in milliseconds.
+    void add(float aDeltaX, float aDeltaY, long aTime) {
+        mPendingX += aDeltaX;
+        mPendingY += aDeltaY;
+        long interval = aTime - mLastSampleTime;
+        if (mLastSampleTime < 0 || interval > MAX_SAMPLE_INTERVAL) {
+            mVelocityX = 0;
+            mVelocityY = 0;
+        } else if (interval > 0) {
+            mVelocityX += VELOCITY_SMOOTHING * (aDeltaX / interval - mVelocityX);
+            mVelocityY += VELOCITY_SMOOTHING * (aDeltaY / interval - mVelocityY);
+        }
+        mLastSampleTime = aTime;
+    }
+
+    // Moves the whole pixels accumulated so far to getDeltaX() and getDeltaY().
+    // Returns false if there is nothing to send.
+    boolean flush() {
+        mDeltaX = (int) mPendingX;
+        mDeltaY = (int) mPendingY;
+        mPendingX -= mDeltaX;
+        mPendingY -= mDeltaY;
+        return mDeltaX != 0 || mDeltaY != 0;
+    }
+
+    int getDeltaX() {
+        return mDeltaX;
+    }
+
+    int getDeltaY() {
+        return mDeltaY;
+    }
+
+    // True if the gesture was fast enough to continue with a fling.
+    boolean canFling() {
+        return getSpeed() >= MIN_FLING_VELOCITY;
+    }
+
+    // Accumulates aInterval milliseconds of fling. Returns false once the fling stopped.
+    boolean stepFling(long aInterval) {
+        if (aInterval <= 0) {
+            return canFling();
+        }
+        mPendingX += mVelocityX * aInterval;
+        mPendingY += mVelocityY * aInterval;
+        float decay = (float) Math.exp(-FLING_FRICTION * aInterval);
+        mVelocityX *= decay;
+        mVelocityY *= decay;
+        return canFling();
+    }
+
+    float getSpeed() {
+        return (float) Math.hypot(mVelocityX, mVelocityY);
+    }
+}
@@ -0,0 +1,243 @@
+package org.mozilla.servo;
+
+import android.graphics.Rect;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+import android.view.Choreographer;
+import android.view.MotionEvent;
+
+// Translates the pointer stream of a Servo session into Servo's input API.
+// Servo only takes clicks and scroll gestures, so a pointer that goes down and up without moving
+// is a click, and a pointer dragged past the slop scrolls the content with it. Wheel and
+// trackpad scrolls use the same gesture. Moves and scrolls are merged and sent once per frame,
+// and gestures that end fast continue with a fling. Hover only moves the pointer, as Servo has
+// no mouse move API yet.
+class ServoInputAdapter {
+    private static final String LOGTAG = "ServoSession";
+    // Pointer movement in pixels before a press becomes a drag
+    private static final float DRAG_SLOP = 8.0f;
+    // The scroll gesture ends when no scroll event arrives for this long
+    private static final long SCROLL_IDLE_TIMEOUT = 100;
+
+    private final ServoSession mSession;
+    private final Rect mTempRect = new Rect();
+    private final ScrollAccumulator mScroll = new ScrollAccumulator();
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private long mLastDownTime;
+    private boolean mPressed;
+    private boolean mDragging;
+    private float mDownX;
+    private float mDownY;
+    private float mPointerX;
+    private float mPointerY;
+    private boolean mIsScrolling;
+    private boolean mFrameScheduled;
+    private boolean mFling;
+    private long mLastFrameTime;
+    // Time of the oldest sample not sent to Servo yet, -1 if there is none
+    private long mPendingSampleTime = -1;
+    private long mDispatchCount;
+    private long mTotalLatency;
+    private long mMaxLatency;
+
+    ServoInputAdapter(ServoSession session) {
+        mSession = session;
+    }
+
+    // time is when the sample was taken, in the SystemClock.uptimeMillis() base.
+    boolean onPointer(int action, long downTime, float x, float y, long time) {
+        switch (action) {
+            case MotionEvent.ACTION_DOWN:
+                // Touching the content stops the current scroll or fling
+                endScroll();
+                mLastDownTime = downTime;
+                mPressed = true;
+                mDragging = false;
+                mDownX = x;
+                mDownY = y;
+                mPointerX = x;
+                mPointerY = y;
+                return true;
+
+            case MotionEvent.ACTION_MOVE:
+                if (!mPressed || mLastDownTime != downTime) {
+                    return false;
+                }
+                if (!mDragging && Math.hypot(x - mDownX, y - mDownY) < DRAG_SLOP) {
+                    return true;
+                }
+                if (!mDragging) {
+                    mDragging = true;
+                    mPointerX = mDownX;
+                    mPointerY = mDownY;
+                }
+                // The content follows the pointer
+                addScroll(x - mPointerX, y - mPointerY, time);
+                mPointerX = x;
+                mPointerY = y;
+                return true;
+
+            case MotionEvent.ACTION_UP:
+                if (!mPressed || mLastDownTime != downTime) {
+                    return false;
+                }
+                mPressed = false;
+                if (mDragging) {
+                    mDragging = false;
+                    onScrollIdle();
+                } else {
+                    mPointerX = x;
+                    mPointerY = y;
+                    recordLatency(time);
+                    mSession.getSurfaceBounds(mTempRect);
+                    mSession.click((int) (x - mTempRect.left), (int) (y - mTempRect.top));
+                }
+                return true;
+
+            case MotionEvent.ACTION_CANCEL:
+                mPressed = false;
+                mDragging = false;
+                endScroll();
+                return true;
+
+            case MotionEvent.ACTION_HOVER_ENTER:
+            case MotionEvent.ACTION_HOVER_MOVE:
+            case MotionEvent.ACTION_HOVER_EXIT:
+                if (!mPressed && !mIsScrolling) {
+                    mPointerX = x;
+                    mPointerY = y;
+                }
+                return true;
+
+            default:
+                return false;
+        }
+    }
+
+    boolean onScroll(float x, float y, float deltaX, float deltaY, long time) {
+        if (mPressed) {
+            // The pointer is driving the gesture
+            return false;
+        }
+        mPointerX = x;
+        mPointerY = y;
+        addScroll(deltaX, deltaY, time);
+        mHandler.removeCallbacks(mScrollIdle);
+        mHandler.postDelayed(mScrollIdle, SCROLL_IDLE_TIMEOUT);
+        return true;
+    }
+
+    long getDispatchCount() {
+        return mDispatchCount;
+    }
+
+    // Average time in milliseconds from a sample to its dispatch to Servo.
+    float getAverageLatency() {
+        return mDispatchCount > 0 ? (float) mTotalLatency / mDispatchCount : 0.0f;
+    }
+
+    long getMaxLatency() {
+        return mMaxLatency;
+    }
+
+    private void addScroll(float deltaX, float deltaY, long time) {
+        // New input takes over a running fling
+        mFling = false;
+        if (mPendingSampleTime < 0) {
+            mPendingSampleTime = time;
+        }
+        mScroll.add(deltaX, deltaY, time);
+        scheduleFrame();
+    }
+
+    private void scheduleFrame() {
+        if (!mFrameScheduled) {
+            mFrameScheduled = true;
+            Choreographer.getInstance().postFrameCallback(mFrameCallback);
+        }
+    }
+
+    private final Choreographer.FrameCallback mFrameCallback = new Choreographer.FrameCallback() {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            mFrameScheduled = false;
+            if (!mFling) {
+                flushScroll();
+                return;
+            }
+
+            final long time = frameTimeNanos / 1000000;
+            final boolean flinging = mScroll.stepFling(time - mLastFrameTime);
+            mLastFrameTime = time;
+            flushScroll();
+            if (flinging) {
+                scheduleFrame();
+            } else {
+                endScroll();
+            }
+        }
+    };
+
+    private final Runnable mScrollIdle = new Runnable() {
+        @Override
+        public void run() {
+            onScrollIdle();
+        }
+    };
+
+    private void onScrollIdle() {
+        mHandler.removeCallbacks(mScrollIdle);
+        flushScroll();
+        if (mIsScrolling && mScroll.canFling()) {
+            mFling = true;
+            mLastFrameTime = System.nanoTime() / 1000000;
+            scheduleFrame();
+        } else {
+            endScroll();
+        }
+    }
+
+    // Sends the whole pixels scrolled since the last frame in a single call.
+    private void flushScroll() {
+        if (!mScroll.flush()) {
+            return;
+        }
+
+        if (mPendingSampleTime >= 0) {
+            recordLatency(mPendingSampleTime);
+            mPendingSampleTime = -1;
+        }
+        mSession.getSurfaceBounds(mTempRect);
+        final int x = (int) (mPointerX - mTempRect.left);
+        final int y = (int) (mPointerY - mTempRect.top);
+        if (!mIsScrolling) {
+            mSession.scrollStart(mScroll.getDeltaX(), mScroll.getDeltaY(), x, y);
+            mIsScrolling = true;
+        } else {
+            mSession.scroll(mScroll.getDeltaX(), mScroll.getDeltaY(), x, y);
+        }
+    }
+
+    private void endScroll() {
+        mHandler.removeCallbacks(mScrollIdle);
+        mFling = false;
+        if (mIsScrolling) {
+            flushScroll();
+            mSession.getSurfaceBounds(mTempRect);
+            mSession.scrollEnd(0, 0, (int) (mPointerX - mTempRect.left), (int) (mPointerY - mTempRect.top));
+            mIsScrolling = false;
+            Log.d(LOGTAG, "Input latency avg: " + getAverageLatency() + "ms, max: " + mMaxLatency + "ms");
+        }
+        mScroll.reset();
+        mPendingSampleTime = -1;
+    }
+
+    private void recordLatency(long sampleTime) {
+        final long latency = Math.max(0, SystemClock.uptimeMillis() - sampleTime);
+        mDispatchCount++;
+        mTotalLatency += latency;
+        mMaxLatency = Math.max(mMaxLatency, latency);
+    }
+}
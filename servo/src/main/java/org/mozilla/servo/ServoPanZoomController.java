@@ -1,102 +1,66 @@
 package org.mozilla.servo;
 
-import android.graphics.Rect;
-import android.util.Pair;
 import android.view.InputDevice;
 import android.view.MotionEvent;
 
 import org.mozilla.gecko.gfx.PanZoomController;
 
-import java.util.ArrayList;
-
 public class ServoPanZoomController extends PanZoomController {
 
-    private static final int EVENT_SOURCE_SCROLL = 0;
-    private static final int EVENT_SOURCE_MOTION = 1;
-    private static final int EVENT_SOURCE_MOUSE = 2;
+    // Events received while detached, older ones are dropped beyond this
+    private static final int EVENT_QUEUE_CAPACITY = 64;
 
-    private final Rect mTempRect = new Rect();
     private boolean mAttached;
     private float mPointerScrollFactor = 64.0f;
     private long mLastDownTime;
-    private boolean mIsScrolling = false;
-    private final ServoSession mSession;
-    private ArrayList<Pair<Integer, MotionEvent>> mQueuedEvents;
+    private final ServoInputAdapter mInput;
+    private final MotionEventQueue mQueuedEvents = new MotionEventQueue(EVENT_QUEUE_CAPACITY);
 
     ServoPanZoomController(ServoSession session) {
         super(null);
-        mSession = session;
-        enableEventQueue();
+        mInput = new ServoInputAdapter(session);
         setAttached(true);
     }
 
     private boolean handleMotionEvent(MotionEvent event) {
-        if (!mAttached) {
-            mQueuedEvents.add(new Pair(EVENT_SOURCE_MOTION, event));
-            return false;
-        }
-
         if (event.getPointerCount() <= 0) {
             return false;
         }
+        return handleMotion(event.getActionMasked(), event.getDownTime(), event.getX(0), event.getY(0),
+                event.getEventTime());
+    }
 
-        final int action = event.getActionMasked();
-
-        if (action == MotionEvent.ACTION_DOWN) {
-            mLastDownTime = event.getDownTime();
-        } else if (mLastDownTime != event.getDownTime()) {
+    private boolean handleMotion(int action, long downTime, float x, float y, long time) {
+        if (!mAttached) {
+            mQueuedEvents.addMotion(action, downTime, x, y, time);
             return false;
         }
-
-        final MotionEvent.PointerCoords coords = new MotionEvent.PointerCoords();
-        event.getPointerCoords(0, coords);
-
-        if (action == MotionEvent.ACTION_UP) {
-            mSession.click((int) coords.x, (int) coords.y);
+        if (action == MotionEvent.ACTION_DOWN) {
+            mLastDownTime = downTime;
         }
-
-        return true;
+        return mInput.onPointer(action, downTime, x, y, time);
     }
 
     private boolean handleScrollEvent(MotionEvent event) {
-        if (!mAttached) {
-            mQueuedEvents.add(new Pair(EVENT_SOURCE_SCROLL, event));
-            return false;
-        }
-
         if (event.getPointerCount() <= 0) {
             return false;
         }
-
-        final MotionEvent.PointerCoords coords = new MotionEvent.PointerCoords();
-        event.getPointerCoords(0, coords);
-
-        mSession.getSurfaceBounds(mTempRect);
-        final float x = coords.x - mTempRect.left;
-        final float y = coords.y - mTempRect.top;
-
         final float hScroll = event.getAxisValue(MotionEvent.AXIS_HSCROLL) * mPointerScrollFactor;
         final float vScroll = event.getAxisValue(MotionEvent.AXIS_VSCROLL) * mPointerScrollFactor;
-
-        if (!mIsScrolling) {
-            mSession.scrollStart((int) hScroll, (int) vScroll, (int) x, (int) y);
-        } else {
-            mSession.scroll((int) hScroll, (int) vScroll, (int) x, (int) y);
-        }
-        mIsScrolling = true;
-        return true;
+        return handleScroll(event.getX(0), event.getY(0), hScroll, vScroll, event.getEventTime());
     }
 
-    private boolean handleMouseEvent(MotionEvent event) {
-        // FIXME: treat these events as mouse events
-        return handleMotionEvent(event);
+    private boolean handleScroll(float x, float y, float hScroll, float vScroll, long time) {
+        if (!mAttached) {
+            mQueuedEvents.addScroll(x, y, hScroll, vScroll, time);
+            return false;
+        }
+        return mInput.onScroll(x, y, hScroll, vScroll, time);
     }
 
     @Override
     public boolean onMouseEvent(final MotionEvent event) {
-        if (event.getToolType(0) == MotionEvent.TOOL_TYPE_MOUSE) {
-            return handleMouseEvent(event);
-        }
+        // Mouse buttons and hover go through the same pointer stream as touches
         return handleMotionEvent(event);
     }
 
@@ -140,43 +104,24 @@ public class ServoPanZoomController extends PanZoomController {
         // FIXME: Not supported by Servo
     }
 
-    private void enableEventQueue() {
-        if (mQueuedEvents != null) {
-            throw new IllegalStateException("Already have an event queue");
-        }
-        mQueuedEvents = new ArrayList();
-    }
-
-    private void flushEventQueue() {
-        if (mQueuedEvents == null) {
-            return;
+    private final MotionEventQueue.Consumer mQueueConsumer = new MotionEventQueue.Consumer() {
+        @Override
+        public void onMotion(int action, long downTime, float x, float y, long time) {
+            handleMotion(action, downTime, x, y, time);
         }
 
-        ArrayList<Pair<Integer, MotionEvent>> events = mQueuedEvents;
-        mQueuedEvents = null;
-        for (Pair<Integer, MotionEvent> pair : events) {
-            switch (pair.first) {
-                case EVENT_SOURCE_MOTION:
-                    handleMotionEvent(pair.second);
-                    break;
-                case EVENT_SOURCE_SCROLL:
-                    handleScrollEvent(pair.second);
-                    break;
-                case EVENT_SOURCE_MOUSE:
-                    handleMouseEvent(pair.second);
-                    break;
-
-            }
+        @Override
+        public void onScroll(float x, float y, float deltaX, float deltaY, long time) {
+            handleScroll(x, y, deltaX, deltaY, time);
         }
-    }
+    };
 
     private void setAttached(final boolean attached) {
         if (attached) {
             mAttached = true;
-            flushEventQueue();
+            mQueuedEvents.replay(mQueueConsumer);
         } else if (mAttached) {
             mAttached = false;
-            enableEventQueue();
         }
     }
 }
@@ -0,0 +1,110 @@
+package org.mozilla.servo;
+
+import android.view.MotionEvent;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class MotionEventQueueTest {
+    private static class Recorder implements MotionEventQueue.Consumer {
+        final List<String> events = new ArrayList<>();
+
+        @Override
+        public void onMotion(int aAction, long aDownTime, float aX, float aY, long aTime) {
+            events.add("motion " + aAction + " " + aDownTime + " " + aX + "," + aY + " " + aTime);
+        }
+
+        @Override
+        public void onScroll(float aX, float aY, float aDeltaX, float aDeltaY, long aTime) {
+            events.add("scroll " + aX + "," + aY + " " + aDeltaX + "," + aDeltaY + " " + aTime);
+        }
+    }
+
+    // Mutable sample reused for every event, like a recycled MotionEvent
+    private static class Sample {
+        int action;
+        long time;
+        float x;
+        float y;
+    }
+
+    @Test
+    public void keepsValuesOfRecycledEvents() {
+        MotionEventQueue queue = new MotionEventQueue(8);
+        Sample sample = new Sample();
+        sample.action = MotionEvent.ACTION_DOWN;
+        sample.time = 100;
+        sample.x = 1;
+        sample.y = 2;
+        queue.addMotion(sample.action, sample.time, sample.x, sample.y, sample.time);
+        sample.action = MotionEvent.ACTION_UP;
+        sample.x = 3;
+        sample.y = 4;
+        queue.addMotion(sample.action, sample.time, sample.x, sample.y, sample.time);
+        // Reused for something else before the queue is replayed
+        sample.action = MotionEvent.ACTION_MOVE;
+        sample.time = 0;
+        sample.x = 0;
+        sample.y = 0;
+
+        Recorder recorder = new Recorder();
+        queue.replay(recorder);
+        List<String> expected = new ArrayList<>();
+        expected.add("motion 0 100 1.0,2.0 100");
+        expected.add("motion 1 100 3.0,4.0 100");
+        assertEquals(expected, recorder.events);
+        assertEquals(0, queue.size());
+    }
+
+    @Test
+    public void coalescesMovesAndScrolls() {
+        MotionEventQueue queue = new MotionEventQueue(8);
+        queue.addMotion(MotionEvent.ACTION_DOWN, 100, 0, 0, 100);
+        queue.addMotion(MotionEvent.ACTION_MOVE, 100, 1, 1, 110);
+        queue.addMotion(MotionEvent.ACTION_MOVE, 100, 2, 2, 120);
+        // A move of another gesture isn't merged
+        queue.addMotion(MotionEvent.ACTION_MOVE, 200, 3, 3, 210);
+        queue.addScroll(5, 5, 1.5f, 0, 300);
+        queue.addScroll(6, 6, 2.5f, -1, 310);
+        queue.addMotion(MotionEvent.ACTION_UP, 100, 7, 7, 320);
+        assertEquals(5, queue.size());
+
+        Recorder recorder = new Recorder();
+        queue.replay(recorder);
+        List<String> expected = new ArrayList<>();
+        expected.add("motion 0 100 0.0,0.0 100");
+        expected.add("motion 2 100 2.0,2.0 120");
+        expected.add("motion 2 200 3.0,3.0 210");
+        expected.add("scroll 6.0,6.0 4.0,-1.0 310");
+        expected.add("motion 1 100 7.0,7.0 320");
+        assertEquals(expected, recorder.events);
+    }
+
+    @Test
+    public void dropsOldestWhenFull() {
+        MotionEventQueue queue = new MotionEventQueue(3);
+        for (int i = 0; i < 5; i++) {
+            queue.addMotion(MotionEvent.ACTION_DOWN, i, i, i, i);
+        }
+        assertEquals(3, queue.size());
+        assertEquals(2, queue.getDroppedCount());
+
+        Recorder recorder = new Recorder();
+        queue.replay(recorder);
+        List<String> expected = new ArrayList<>();
+        expected.add("motion 0 2 2.0,2.0 2");
+        expected.add("motion 0 3 3.0,3.0 3");
+        expected.add("motion 0 4 4.0,4.0 4");
+        assertEquals(expected, recorder.events);
+
+        // Reused after the replay
+        queue.addScroll(1, 1, 1, 1, 10);
+        recorder.events.clear();
+        queue.replay(recorder);
+        assertEquals(1, recorder.events.size());
+    }
+}